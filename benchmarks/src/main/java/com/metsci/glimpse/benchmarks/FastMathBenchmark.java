@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.metsci.glimpse.util.math.fast.FastAsin;
+import com.metsci.glimpse.util.math.fast.FastAtan;
+import com.metsci.glimpse.util.math.fast.FastLog;
+import com.metsci.glimpse.util.math.fast.FastSin;
+import com.metsci.glimpse.util.math.fast.PolynomialApprox;
+import com.metsci.glimpse.util.math.fast.QuickAtan;
+import com.metsci.glimpse.util.math.fast.QuickExp;
+
+/**
+ * The lookup-table and polynomial approximations in {@code util.math.fast}, each next to the
+ * {@link Math} function it replaces. Arguments cycle through a pre-generated table, so
+ * that the JIT cannot constant-fold them.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class FastMathBenchmark
+{
+
+    protected static final int numArgs = 4096;
+
+    protected FastSin fastSin;
+    protected FastAtan fastAtan;
+    protected FastAsin fastAsin;
+    protected FastLog fastLog;
+
+    // angles in [-pi, pi]
+    protected double[] angles;
+    // values in [-1, 1]
+    protected double[] unit;
+    // values in [-10, 10]
+    protected double[] wide;
+    // values in (0, 1e6]
+    protected double[] positive;
+
+    protected int next;
+
+    @Setup( Level.Trial )
+    public void setup( )
+    {
+        fastSin = new FastSin( ( float ) -Math.PI, ( float ) Math.PI, 100000 );
+        fastAtan = FastAtan.getInstance( );
+        fastAsin = FastAsin.getInstance( );
+        fastLog = FastLog.getInstance( );
+
+        Random r = new Random( 0 );
+        angles = new double[numArgs];
+        unit = new double[numArgs];
+        wide = new double[numArgs];
+        positive = new double[numArgs];
+        for ( int i = 0; i < numArgs; i++ )
+        {
+            unit[i] = 2 * r.nextDouble( ) - 1;
+            angles[i] = Math.PI * unit[i];
+            wide[i] = 10 * unit[i];
+            positive[i] = 1e6 * ( 1 - r.nextDouble( ) );
+        }
+    }
+
+    protected int next( )
+    {
+        return ( next++ ) & ( numArgs - 1 );
+    }
+
+    @Benchmark
+    public double sinMath( )
+    {
+        return Math.sin( angles[next( )] );
+    }
+
+    @Benchmark
+    public double sinFastFunc( )
+    {
+        return fastSin.lookup( angles[next( )] );
+    }
+
+    @Benchmark
+    public double asinMath( )
+    {
+        return Math.asin( unit[next( )] );
+    }
+
+    @Benchmark
+    public double asinFastFunc( )
+    {
+        return fastAsin.evaluate( unit[next( )] );
+    }
+
+    @Benchmark
+    public double asinPolynomial( )
+    {
+        return PolynomialApprox.asin( unit[next( )] );
+    }
+
+    @Benchmark
+    public double atan2Math( )
+    {
+        int i = next( );
+        return Math.atan2( wide[i], wide[( i + 1 ) & ( numArgs - 1 )] );
+    }
+
+    @Benchmark
+    public double atan2FastFunc( )
+    {
+        int i = next( );
+        return fastAtan.atan2( wide[i], wide[( i + 1 ) & ( numArgs - 1 )] );
+    }
+
+    @Benchmark
+    public double atan2Quick( )
+    {
+        int i = next( );
+        return QuickAtan.eval2( wide[i], wide[( i + 1 ) & ( numArgs - 1 )] );
+    }
+
+    @Benchmark
+    public double atan2Polynomial( )
+    {
+        int i = next( );
+        return PolynomialApprox.atan2( wide[i], wide[( i + 1 ) & ( numArgs - 1 )] );
+    }
+
+    @Benchmark
+    public double expMath( )
+    {
+        return Math.exp( wide[next( )] );
+    }
+
+    @Benchmark
+    public double expQuick( )
+    {
+        return QuickExp.eval( wide[next( )] );
+    }
+
+    @Benchmark
+    public double log2Math( )
+    {
+        return Math.log( positive[next( )] ) * FastLog.LN_2_INV;
+    }
+
+    @Benchmark
+    public double log2FastFunc( )
+    {
+        return fastLog.log2( positive[next( )] );
+    }
+}
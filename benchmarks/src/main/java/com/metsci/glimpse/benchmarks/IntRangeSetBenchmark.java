@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.metsci.glimpse.util.primitives.rangeset.IntRangeSetModifiable;
+
+/**
+ * Adds {@code numRanges} random ranges to an {@link IntRangeSetModifiable} and coalesces them,
+ * the way the dirty-range tracking in the GL buffers does once per frame.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class IntRangeSetBenchmark
+{
+
+    @Param( { "100", "10000" } )
+    public int numRanges;
+
+    @Param( { "1000000" } )
+    public int extent;
+
+    @Param( { "16" } )
+    public int maxRangeLength;
+
+    protected int[] firsts;
+    protected int[] counts;
+
+    protected IntRangeSetModifiable ranges;
+
+    @Setup( Level.Trial )
+    public void setupTrial( )
+    {
+        Random r = new Random( 0 );
+
+        firsts = new int[numRanges];
+        counts = new int[numRanges];
+        for ( int i = 0; i < numRanges; i++ )
+        {
+            firsts[i] = r.nextInt( extent );
+            counts[i] = 1 + r.nextInt( maxRangeLength );
+        }
+
+        ranges = new IntRangeSetModifiable( );
+    }
+
+    /**
+     * Adds ranges in random order.
+     */
+    @Benchmark
+    public IntRangeSetModifiable add( )
+    {
+        ranges.clear( );
+        for ( int i = 0; i < numRanges; i++ )
+        {
+            ranges.add( firsts[i], counts[i] );
+        }
+        return ranges;
+    }
+
+    /**
+     * Adds ranges in random order, then merges ranges separated by small gaps.
+     */
+    @Benchmark
+    public IntRangeSetModifiable addCoalesce( )
+    {
+        ranges.clear( );
+        for ( int i = 0; i < numRanges; i++ )
+        {
+            ranges.add( firsts[i], counts[i] );
+        }
+        ranges.coalesce( extent / numRanges );
+        return ranges;
+    }
+
+    /**
+     * Adds adjacent ranges in increasing order, the common case of appending to a buffer.
+     */
+    @Benchmark
+    public IntRangeSetModifiable addSequential( )
+    {
+        ranges.clear( );
+        for ( int i = 0; i < numRanges; i++ )
+        {
+            ranges.add( i * maxRangeLength, maxRangeLength );
+        }
+        return ranges;
+    }
+}
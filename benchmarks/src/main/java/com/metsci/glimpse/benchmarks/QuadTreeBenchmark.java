@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.metsci.glimpse.util.primitives.IntsArray;
+import com.metsci.glimpse.util.quadtree.QuadTreeInts;
+import com.metsci.glimpse.util.quadtree.QuadTreeXys;
+import com.metsci.glimpse.util.quadtree.Xy;
+
+/**
+ * Insert, search, and remove on {@link QuadTreeInts} and {@link QuadTreeXys}, holding
+ * {@code size} uniformly random points in the unit square.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class QuadTreeBenchmark
+{
+
+    protected static class Point implements Xy
+    {
+        public final float x;
+        public final float y;
+
+        public Point( float x, float y )
+        {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public float x( )
+        {
+            return x;
+        }
+
+        @Override
+        public float y( )
+        {
+            return y;
+        }
+    }
+
+    protected static class ArrayQuadTree extends QuadTreeInts
+    {
+        protected final float[] xs;
+        protected final float[] ys;
+
+        public ArrayQuadTree( int maxBucketSize, float[] xs, float[] ys )
+        {
+            super( maxBucketSize );
+            this.xs = xs;
+            this.ys = ys;
+        }
+
+        @Override
+        public float x( int v )
+        {
+            return xs[v];
+        }
+
+        @Override
+        public float y( int v )
+        {
+            return ys[v];
+        }
+    }
+
+    @Param( { "10000", "1000000" } )
+    public int size;
+
+    @Param( { "32" } )
+    public int maxBucketSize;
+
+    // side length of the square search window, as a fraction of the data extent
+    @Param( { "0.01", "0.1" } )
+    public float windowSize;
+
+    protected float[] xs;
+    protected float[] ys;
+    protected List<Point> points;
+
+    protected ArrayQuadTree intsTree;
+    protected QuadTreeXys<Point> xysTree;
+
+    protected float[] windows;
+    protected int nextWindow;
+    protected int nextValue;
+
+    @Setup( Level.Trial )
+    public void setup( )
+    {
+        Random r = new Random( 0 );
+
+        xs = new float[size];
+        ys = new float[size];
+        points = new ArrayList<Point>( size );
+        for ( int i = 0; i < size; i++ )
+        {
+            xs[i] = r.nextFloat( );
+            ys[i] = r.nextFloat( );
+            points.add( new Point( xs[i], ys[i] ) );
+        }
+
+        intsTree = new ArrayQuadTree( maxBucketSize, xs, ys );
+        xysTree = new QuadTreeXys<Point>( maxBucketSize );
+        for ( int i = 0; i < size; i++ )
+        {
+            intsTree.add( i );
+            xysTree.add( points.get( i ) );
+        }
+
+        // pre-generate window corners, so the benchmarks don't time the random generator
+        windows = new float[2 * 1024];
+        for ( int i = 0; i < windows.length; i++ )
+        {
+            windows[i] = r.nextFloat( ) * ( 1 - windowSize );
+        }
+    }
+
+    @Benchmark
+    public int searchInts( )
+    {
+        int i = ( nextWindow++ & 1023 ) * 2;
+        float x = windows[i];
+        float y = windows[i + 1];
+        return intsTree.search( x, x + windowSize, y, y + windowSize, new IntsArray( ) );
+    }
+
+    @Benchmark
+    public int searchXys( )
+    {
+        int i = ( nextWindow++ & 1023 ) * 2;
+        float x = windows[i];
+        float y = windows[i + 1];
+        return xysTree.search( x, x + windowSize, y, y + windowSize, new ArrayList<Point>( ) );
+    }
+
+    /**
+     * Removes a value and inserts it again, so the tree keeps its size across invocations.
+     */
+    @Benchmark
+    public void removeAddInts( )
+    {
+        int v = nextValue;
+        nextValue = ( nextValue + 7919 ) % size;
+        intsTree.remove( v );
+        intsTree.add( v );
+    }
+
+    /**
+     * Removes a value and inserts it again, so the tree keeps its size across invocations.
+     */
+    @Benchmark
+    public void removeAddXys( )
+    {
+        Point p = points.get( nextValue );
+        nextValue = ( nextValue + 7919 ) % size;
+        xysTree.remove( p );
+        xysTree.add( p );
+    }
+
+    /**
+     * Builds a tree from scratch.
+     */
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public QuadTreeInts buildInts( )
+    {
+        ArrayQuadTree tree = new ArrayQuadTree( maxBucketSize, xs, ys );
+        for ( int i = 0; i < size; i++ )
+        {
+            tree.add( i );
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.metsci.glimpse.util.primitives.sorted.ContinuousIndex;
+import com.metsci.glimpse.util.primitives.sorted.SortedDoublesArray;
+import com.metsci.glimpse.util.primitives.sorted.SortedFloatsArray;
+import com.metsci.glimpse.util.primitives.sorted.SortedLongsArray;
+
+/**
+ * Searches on the {@code Sorted*Array} classes, with {@link Arrays#binarySearch(double[], double)}
+ * as a baseline. Keys are drawn from a pre-generated table, so that consecutive searches
+ * land in different places.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SortedSearchBenchmark
+{
+
+    @Param( { "1000", "1000000" } )
+    public int size;
+
+    protected double[] doubleValues;
+    protected SortedDoublesArray doubles;
+    protected SortedFloatsArray floats;
+    protected SortedLongsArray longs;
+
+    protected double[] keys;
+    protected ContinuousIndex continuousIndex;
+    protected int nextKey;
+
+    @Setup( Level.Trial )
+    public void setup( )
+    {
+        Random r = new Random( 0 );
+
+        doubleValues = new double[size];
+        float[] floatValues = new float[size];
+        long[] longValues = new long[size];
+        double v = 0;
+        for ( int i = 0; i < size; i++ )
+        {
+            v += 1 + r.nextDouble( );
+            doubleValues[i] = v;
+            floatValues[i] = ( float ) v;
+            longValues[i] = ( long ) ( 1000 * v );
+        }
+
+        doubles = new SortedDoublesArray( doubleValues );
+        floats = new SortedFloatsArray( floatValues );
+        longs = new SortedLongsArray( longValues );
+
+        keys = new double[4096];
+        for ( int i = 0; i < keys.length; i++ )
+        {
+            keys[i] = r.nextDouble( ) * v;
+        }
+
+        continuousIndex = new ContinuousIndex( );
+    }
+
+    protected double nextKey( )
+    {
+        return keys[( nextKey++ ) & 4095];
+    }
+
+    @Benchmark
+    public int baselineBinarySearch( )
+    {
+        return Arrays.binarySearch( doubleValues, nextKey( ) );
+    }
+
+    @Benchmark
+    public int doublesIndexAtOrAfter( )
+    {
+        return doubles.indexAtOrAfter( nextKey( ) );
+    }
+
+    @Benchmark
+    public int doublesIndexNearest( )
+    {
+        return doubles.indexNearest( nextKey( ) );
+    }
+
+    @Benchmark
+    public ContinuousIndex doublesContinuousIndexOf( )
+    {
+        doubles.continuousIndexOf( nextKey( ), continuousIndex );
+        return continuousIndex;
+    }
+
+    @Benchmark
+    public int floatsIndexAtOrAfter( )
+    {
+        return floats.indexAtOrAfter( ( float ) nextKey( ) );
+    }
+
+    @Benchmark
+    public int floatsIndexNearest( )
+    {
+        return floats.indexNearest( ( float ) nextKey( ) );
+    }
+
+    @Benchmark
+    public int longsIndexAtOrAfter( )
+    {
+        return longs.indexAtOrAfter( ( long ) ( 1000 * nextKey( ) ) );
+    }
+
+    @Benchmark
+    public int longsIndexNearest( )
+    {
+        return longs.indexNearest( ( long ) ( 1000 * nextKey( ) ) );
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.metsci.glimpse.util.geo.LatLonGeo;
+import com.metsci.glimpse.util.geo.datum.Datum;
+import com.metsci.glimpse.util.geo.util.DistanceAzimuth;
+import com.metsci.glimpse.util.geo.util.PositionAzimuth;
+import com.metsci.glimpse.util.geo.util.SpheroidUtil;
+
+/**
+ * Forward and inverse geodesic problems on the WGS84 spheroid, over random start points,
+ * distances up to 5000 km, and azimuths.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SpheroidUtilBenchmark
+{
+
+    protected static final int numCases = 1024;
+
+    protected LatLonGeo[] froms;
+    protected LatLonGeo[] tos;
+    protected double[] distances;
+    protected double[] azimuths;
+
+    protected int next;
+
+    @Setup( Level.Trial )
+    public void setup( )
+    {
+        Random r = new Random( 0 );
+
+        froms = new LatLonGeo[numCases];
+        tos = new LatLonGeo[numCases];
+        distances = new double[numCases];
+        azimuths = new double[numCases];
+        for ( int i = 0; i < numCases; i++ )
+        {
+            froms[i] = LatLonGeo.fromDeg( 160 * r.nextDouble( ) - 80, 360 * r.nextDouble( ) - 180 );
+            distances[i] = 5e6 * r.nextDouble( );
+            azimuths[i] = 2 * Math.PI * r.nextDouble( );
+            tos[i] = SpheroidUtil.forward( Datum.wgs84, froms[i], distances[i], azimuths[i] ).getPosition( );
+        }
+    }
+
+    @Benchmark
+    public PositionAzimuth forward( )
+    {
+        int i = ( next++ ) & ( numCases - 1 );
+        return SpheroidUtil.forward( Datum.wgs84, froms[i], distances[i], azimuths[i] );
+    }
+
+    @Benchmark
+    public DistanceAzimuth inverse( )
+    {
+        int i = ( next++ ) & ( numCases - 1 );
+        return SpheroidUtil.inverse( Datum.wgs84, froms[i], tos[i] );
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.metsci.glimpse.util.units.time.format.TimeStampFormatStandard;
+
+/**
+ * Formatting and parsing with {@link TimeStampFormatStandard}, over random times between
+ * 1970 and 2040, in UTC and in a zone with daylight saving time.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TimeStampFormatBenchmark
+{
+
+    protected static final int numCases = 1024;
+
+    @Param( { "%y-%M-%dT%H:%m:%SZ", "%d %N %y %H:%m:%3S" } )
+    public String format;
+
+    @Param( { "UTC", "America/New_York" } )
+    public String timeZone;
+
+    protected TimeStampFormatStandard formatter;
+
+    protected long[] posixMillis;
+    protected BigDecimal[] posixSeconds;
+    protected String[] strings;
+
+    protected StringBuilder buffer;
+    protected int next;
+
+    @Setup( Level.Trial )
+    public void setup( )
+    {
+        formatter = new TimeStampFormatStandard( format, timeZone );
+
+        Random r = new Random( 0 );
+        posixMillis = new long[numCases];
+        posixSeconds = new BigDecimal[numCases];
+        strings = new String[numCases];
+        for ( int i = 0; i < numCases; i++ )
+        {
+            posixMillis[i] = ( long ) ( r.nextDouble( ) * 70 * 365.25 * 86400e3 );
+            posixSeconds[i] = BigDecimal.valueOf( posixMillis[i], 3 );
+            strings[i] = formatter.format( posixSeconds[i] );
+        }
+
+        buffer = new StringBuilder( );
+    }
+
+    protected int next( )
+    {
+        return ( next++ ) & ( numCases - 1 );
+    }
+
+    @Benchmark
+    public String formatBigDecimal( )
+    {
+        return formatter.format( posixSeconds[next( )] );
+    }
+
+    @Benchmark
+    public StringBuilder formatPosixMillis( )
+    {
+        buffer.setLength( 0 );
+        formatter.format( posixMillis[next( )], buffer );
+        return buffer;
+    }
+
+    @Benchmark
+    public BigDecimal parse( )
+    {
+        return formatter.parse( strings[next( )] );
+    }
+}
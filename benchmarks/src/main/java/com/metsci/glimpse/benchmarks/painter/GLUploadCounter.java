@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.benchmarks.painter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL4bc;
+import javax.media.opengl.GLContext;
+
+/**
+ * Counts GL calls, and bytes uploaded to the GL, by replacing a context's {@link GL} with a
+ * reflective proxy. Painters fetch their GL from the context each frame, so they pick up the
+ * proxy without any changes.
+ *
+ * <p>Uploads are counted for {@code glBufferData}, {@code glBufferSubData}, writable
+ * {@code glMapBufferRange}, and client-memory {@code glTex*Image*} calls. Writes through
+ * {@code glMapBuffer} are not counted, because the mapped size is not passed to the call.</p>
+ *
+ * <p>Every GL call goes through reflection while installed, so frame times measured with
+ * the counter installed are not meaningful.</p>
+ */
+public class GLUploadCounter implements InvocationHandler
+{
+    protected final GLContext context;
+    protected final GL delegate;
+    protected final GL proxy;
+
+    protected long uploadBytes;
+    protected long calls;
+
+    protected GLUploadCounter( GLContext context, GL delegate )
+    {
+        this.context = context;
+        this.delegate = delegate;
+        this.proxy = ( GL ) Proxy.newProxyInstance( GL4bc.class.getClassLoader( ), new Class<?>[] { GL4bc.class }, this );
+    }
+
+    /**
+     * Installs a counter on the given context. The context must be current.
+     *
+     * @return the counter, or null if the context's GL is not a desktop GL
+     */
+    public static GLUploadCounter install( GLContext context )
+    {
+        GL gl = context.getGL( );
+        if ( !( gl instanceof GL4bc ) ) return null;
+
+        GLUploadCounter counter = new GLUploadCounter( context, gl );
+        context.setGL( counter.proxy );
+        return counter;
+    }
+
+    /**
+     * Puts the original GL back on the context. The context must be current.
+     */
+    public void uninstall( )
+    {
+        if ( this.context.getGL( ) == this.proxy )
+        {
+            this.context.setGL( this.delegate );
+        }
+    }
+
+    public long getUploadBytes( )
+    {
+        return this.uploadBytes;
+    }
+
+    public long getCalls( )
+    {
+        return this.calls;
+    }
+
+    public void reset( )
+    {
+        this.uploadBytes = 0;
+        this.calls = 0;
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable
+    {
+        String name = method.getName( );
+        if ( name.startsWith( "gl" ) )
+        {
+            this.calls++;
+            this.uploadBytes += uploadBytes( name, args );
+        }
+
+        Object result;
+        try
+        {
+            result = method.invoke( this.delegate, args );
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw e.getCause( );
+        }
+
+        // getGL2( ), getGL3( ), etc. return the delegate itself -- hand out the proxy instead
+        return result == this.delegate ? this.proxy : result;
+    }
+
+    protected static long uploadBytes( String name, Object[] args )
+    {
+        switch ( name )
+        {
+            case "glBufferData":
+                // ( target, size, data, usage )
+                return args[2] == null ? 0 : ( Long ) args[1];
+
+            case "glBufferSubData":
+                // ( target, offset, size, data )
+                return ( Long ) args[2];
+
+            case "glMapBufferRange":
+                // ( target, offset, length, access )
+                return ( ( ( Integer ) args[3] ) & GL.GL_MAP_WRITE_BIT ) != 0 ? ( Long ) args[2] : 0;
+
+            default:
+                if ( name.startsWith( "glTex" ) && name.contains( "Image" ) )
+                {
+                    Object last = args[args.length - 1];
+                    return last instanceof Buffer ? remainingBytes( ( Buffer ) last ) : 0;
+                }
+                return 0;
+        }
+    }
+
+    protected static long remainingBytes( Buffer buffer )
+    {
+        long n = buffer.remaining( );
+        if ( buffer instanceof ByteBuffer ) return n;
+        if ( buffer instanceof ShortBuffer || buffer instanceof CharBuffer ) return 2 * n;
+        if ( buffer instanceof DoubleBuffer || buffer instanceof LongBuffer ) return 8 * n;
+        return 4 * n;
+    }
+}
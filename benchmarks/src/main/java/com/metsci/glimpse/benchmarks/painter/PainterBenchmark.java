@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.benchmarks.painter;
+
+import static com.metsci.glimpse.util.logging.LoggerUtils.*;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLContext;
+import javax.media.opengl.GLRunnable;
+
+import com.metsci.glimpse.axis.Axis2D;
+import com.metsci.glimpse.canvas.FBOGlimpseCanvas;
+import com.metsci.glimpse.context.GlimpseContext;
+import com.metsci.glimpse.gl.util.GLUtils;
+import com.metsci.glimpse.layout.GlimpseAxisLayout2D;
+import com.metsci.glimpse.painter.base.GlimpsePainter;
+import com.metsci.glimpse.painter.base.GlimpsePainterBase;
+import com.metsci.glimpse.support.settings.SwingLookAndFeel;
+
+/**
+ * Measures the frame cost of individual painters, drawing offscreen into an
+ * {@link FBOGlimpseCanvas}. No window is shown and no GPU is needed, but JOGL still creates
+ * its context through the platform's window system, so on Linux an X server is required.
+ * On a CI box without a display, run it under Xvfb against Mesa's llvmpipe software renderer:
+ *
+ * <pre>
+ * LIBGL_ALWAYS_SOFTWARE=1 xvfb-run -a java -Djava.awt.headless=true \
+ *     com.metsci.glimpse.benchmarks.painter.PainterBenchmark --out painters.csv
+ * </pre>
+ *
+ * <p>For each painter and element count, the painter is loaded with random data in the unit
+ * square and drawn alone while a scripted sequence moves the {@link Axis2D}. The sequence
+ * zooms in 100x, pans, then zooms back out. Each frame ends with {@code glFinish}, so wall
+ * times include the rasterization. One CSV row is written per painter and element count:</p>
+ * <ul>
+ * <li><b>setup_ms</b>: time to build and load the painter</li>
+ * <li><b>first_frame_ms</b>: time of the first frame, which includes the initial upload</li>
+ * <li><b>thread_cpu_ms_mean</b>: CPU time of the rendering thread, per frame</li>
+ * <li><b>process_cpu_ms_mean</b>: CPU time of the whole process, per frame. This includes
+ *     llvmpipe's rasterizer threads, and is -1 where the JVM does not report it.</li>
+ * <li><b>frame_ms_p50</b>, <b>_p90</b>, <b>_p99</b>, <b>_max</b>: wall-clock frame time percentiles</li>
+ * <li><b>upload_bytes_per_frame</b>, <b>gl_calls_per_frame</b>: steady-state GL traffic,
+ *     counted by {@link GLUploadCounter} in a second, untimed pass over the same sequence</li>
+ * </ul>
+ *
+ * <p>Options (all optional):</p>
+ * <pre>
+ * --painters TrackPainter,PolygonPainter,IconPainter,HeatMapPainter,DynamicPointSetPainter
+ * --sizes    1000,10000,100000,1000000,10000000
+ * --frames   300    (timed frames per case, after warmup)
+ * --warmup   60
+ * --width    1000
+ * --height   1000
+ * --seed     0
+ * --out      painter-benchmark.csv
+ * </pre>
+ */
+public class PainterBenchmark
+{
+    private static final Logger logger = Logger.getLogger( PainterBenchmark.class.getName( ) );
+
+    public static final String csvHeader = "painter,elements,width,height,frames,gl_renderer,setup_ms,first_frame_ms,thread_cpu_ms_mean,process_cpu_ms_mean,frame_ms_p50,frame_ms_p90,frame_ms_p99,frame_ms_max,upload_bytes_per_frame,gl_calls_per_frame";
+
+    // span of the axis at the most zoomed-in point of the script, relative to the data extent
+    protected static final double minSpan = 0.01;
+    protected static final double maxSpan = 1.1;
+
+    protected final FBOGlimpseCanvas canvas;
+    protected final int width;
+    protected final int height;
+    protected final int frames;
+    protected final int warmupFrames;
+    protected final long seed;
+
+    protected final ThreadMXBean threadBean;
+    protected final OperatingSystemMXBean osBean;
+
+    protected String glRenderer;
+
+    public PainterBenchmark( int width, int height, int frames, int warmupFrames, long seed )
+    {
+        this.width = width;
+        this.height = height;
+        this.frames = frames;
+        this.warmupFrames = warmupFrames;
+        this.seed = seed;
+
+        this.threadBean = ManagementFactory.getThreadMXBean( );
+        this.osBean = ManagementFactory.getOperatingSystemMXBean( );
+
+        this.canvas = new FBOGlimpseCanvas( GLUtils.getDefaultGLProfile( ), width, height );
+        this.canvas.setLookAndFeel( new SwingLookAndFeel( ) );
+    }
+
+    public String getGLRenderer( )
+    {
+        if ( this.glRenderer == null )
+        {
+            GLContext context = this.canvas.getGLContext( );
+            context.makeCurrent( );
+            try
+            {
+                GL gl = context.getGL( );
+                this.glRenderer = gl.glGetString( GL.GL_RENDERER ) + " / " + gl.glGetString( GL.GL_VERSION );
+            }
+            finally
+            {
+                context.release( );
+            }
+        }
+
+        return this.glRenderer;
+    }
+
+    /**
+     * Runs one painter at one element count, and returns its CSV row.
+     */
+    public String run( PainterScenario scenario, int numElements ) throws Exception
+    {
+        Random r = new Random( this.seed );
+
+        long setupStart = System.nanoTime( );
+        GlimpsePainter painter = scenario.create( numElements, r );
+        long setupNanos = System.nanoTime( ) - setupStart;
+
+        Axis2D axis = new Axis2D( );
+        GlimpseAxisLayout2D layout = new GlimpseAxisLayout2D( axis );
+        layout.addPainter( painter );
+        layout.addPainter( new FinishPainter( ) );
+        this.canvas.addLayout( layout );
+
+        try
+        {
+            applyScript( axis, 0, this.frames );
+            long firstStart = System.nanoTime( );
+            this.canvas.paint( );
+            long firstFrameNanos = System.nanoTime( ) - firstStart;
+
+            for ( int f = 0; f < this.warmupFrames; f++ )
+            {
+                applyScript( axis, f % this.frames, this.frames );
+                this.canvas.paint( );
+            }
+
+            long[] wallNanos = new long[this.frames];
+            long threadCpuNanos = 0;
+            long processCpuNanos = 0;
+            for ( int f = 0; f < this.frames; f++ )
+            {
+                applyScript( axis, f, this.frames );
+
+                long processCpu0 = processCpuTime( );
+                long threadCpu0 = this.threadBean.getCurrentThreadCpuTime( );
+                long wall0 = System.nanoTime( );
+
+                this.canvas.paint( );
+
+                wallNanos[f] = System.nanoTime( ) - wall0;
+                threadCpuNanos += this.threadBean.getCurrentThreadCpuTime( ) - threadCpu0;
+                processCpuNanos += processCpuTime( ) - processCpu0;
+            }
+
+            long[] traffic = countTraffic( axis );
+
+            Arrays.sort( wallNanos );
+            StringBuilder row = new StringBuilder( );
+            row.append( scenario.name ).append( ',' );
+            row.append( numElements ).append( ',' );
+            row.append( this.width ).append( ',' );
+            row.append( this.height ).append( ',' );
+            row.append( this.frames ).append( ',' );
+            row.append( '"' ).append( getGLRenderer( ).replace( "\"", "\"\"" ) ).append( '"' ).append( ',' );
+            row.append( millis( setupNanos ) ).append( ',' );
+            row.append( millis( firstFrameNanos ) ).append( ',' );
+            row.append( millis( threadCpuNanos / ( double ) this.frames ) ).append( ',' );
+            row.append( processCpuTime( ) < 0 ? "-1" : millis( processCpuNanos / ( double ) this.frames ) ).append( ',' );
+            row.append( millis( percentile( wallNanos, 50 ) ) ).append( ',' );
+            row.append( millis( percentile( wallNanos, 90 ) ) ).append( ',' );
+            row.append( millis( percentile( wallNanos, 99 ) ) ).append( ',' );
+            row.append( millis( wallNanos[wallNanos.length - 1] ) ).append( ',' );
+            row.append( traffic[0] < 0 ? -1 : traffic[0] / this.frames ).append( ',' );
+            row.append( traffic[1] < 0 ? -1 : traffic[1] / this.frames );
+            return row.toString( );
+        }
+        finally
+        {
+            this.canvas.removeLayout( layout );
+            disposePainter( painter );
+        }
+    }
+
+    /**
+     * Replays the script with a {@link GLUploadCounter} installed.
+     *
+     * @return total upload bytes and total GL calls, or -1s if the GL can't be counted
+     */
+    protected long[] countTraffic( Axis2D axis )
+    {
+        GLContext context = this.canvas.getGLContext( );
+
+        context.makeCurrent( );
+        GLUploadCounter counter;
+        try
+        {
+            counter = GLUploadCounter.install( context );
+        }
+        finally
+        {
+            context.release( );
+        }
+
+        if ( counter == null ) return new long[] { -1, -1 };
+
+        try
+        {
+            for ( int f = 0; f < this.frames; f++ )
+            {
+                applyScript( axis, f, this.frames );
+                this.canvas.paint( );
+            }
+            return new long[] { counter.getUploadBytes( ), counter.getCalls( ) };
+        }
+        finally
+        {
+            context.makeCurrent( );
+            try
+            {
+                counter.uninstall( );
+            }
+            finally
+            {
+                context.release( );
+            }
+        }
+    }
+
+    protected void disposePainter( final GlimpsePainter painter )
+    {
+        this.canvas.getGLDrawable( ).invoke( true, new GLRunnable( )
+        {
+            @Override
+            public boolean run( GLAutoDrawable drawable )
+            {
+                painter.dispose( canvas.getGlimpseContext( ) );
+                return true;
+            }
+        } );
+    }
+
+    public void dispose( )
+    {
+        this.canvas.destroy( );
+    }
+
+    protected long processCpuTime( )
+    {
+        if ( this.osBean instanceof com.sun.management.OperatingSystemMXBean )
+        {
+            return ( ( com.sun.management.OperatingSystemMXBean ) this.osBean ).getProcessCpuTime( );
+        }
+        else
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Sets the axis bounds for one frame of the script: zoom in from the whole unit square
+     * to a small window around its center, pan the window diagonally, then zoom back out.
+     */
+    public static void applyScript( Axis2D axis, int frame, int numFrames )
+    {
+        double t = frame / ( double ) numFrames;
+
+        double centerX;
+        double centerY;
+        double logSpan;
+        if ( t < 1 / 3.0 )
+        {
+            double s = 3 * t;
+            centerX = 0.5;
+            centerY = 0.5;
+            logSpan = Math.log( maxSpan ) + s * ( Math.log( minSpan ) - Math.log( maxSpan ) );
+        }
+        else if ( t < 2 / 3.0 )
+        {
+            double s = 3 * t - 1;
+            centerX = 0.5 - 0.25 * s;
+            centerY = 0.5 + 0.25 * s;
+            logSpan = Math.log( minSpan );
+        }
+        else
+        {
+            double s = 3 * t - 2;
+            centerX = 0.25 + 0.25 * s;
+            centerY = 0.75 - 0.25 * s;
+            logSpan = Math.log( minSpan ) + s * ( Math.log( maxSpan ) - Math.log( minSpan ) );
+        }
+
+        double halfSpan = 0.5 * Math.exp( logSpan );
+        axis.set( centerX - halfSpan, centerX + halfSpan, centerY - halfSpan, centerY + halfSpan );
+        axis.validate( );
+    }
+
+    protected static long percentile( long[] sorted, double percent )
+    {
+        int index = ( int ) Math.ceil( percent / 100 * sorted.length ) - 1;
+        return sorted[Math.max( 0, Math.min( sorted.length - 1, index ) )];
+    }
+
+    protected static String millis( double nanos )
+    {
+        return String.format( Locale.ROOT, "%.3f", nanos * 1e-6 );
+    }
+
+    /**
+     * Added after the painter under test, so that frame times include the GL's work and
+     * not just the command submission.
+     */
+    protected static class FinishPainter extends GlimpsePainterBase
+    {
+        @Override
+        protected void doPaintTo( GlimpseContext context )
+        {
+            context.getGL( ).glFinish( );
+        }
+
+        @Override
+        protected void doDispose( GlimpseContext context )
+        {
+        }
+    }
+
+    public static void main( String[] args ) throws Exception
+    {
+        List<PainterScenario> scenarios = new ArrayList<PainterScenario>( PainterScenario.all );
+        int[] sizes = new int[] { 1000, 10000, 100000, 1000000, 10000000 };
+        int frames = 300;
+        int warmupFrames = 60;
+        int width = 1000;
+        int height = 1000;
+        long seed = 0;
+        String out = "painter-benchmark.csv";
+
+        for ( int i = 0; i < args.length; i++ )
+        {
+            String arg = args[i];
+            if ( i + 1 >= args.length ) throw new IllegalArgumentException( "Missing value for option: " + arg );
+            String value = args[++i];
+
+            switch ( arg )
+            {
+                case "--painters":
+                    scenarios.clear( );
+                    for ( String name : value.split( "," ) )
+                    {
+                        scenarios.add( PainterScenario.forName( name.trim( ) ) );
+                    }
+                    break;
+                case "--sizes":
+                    String[] sizeStrings = value.split( "," );
+                    sizes = new int[sizeStrings.length];
+                    for ( int k = 0; k < sizes.length; k++ )
+                    {
+                        sizes[k] = ( int ) Double.parseDouble( sizeStrings[k].trim( ) );
+                    }
+                    break;
+                case "--frames":
+                    frames = Integer.parseInt( value );
+                    break;
+                case "--warmup":
+                    warmupFrames = Integer.parseInt( value );
+                    break;
+                case "--width":
+                    width = Integer.parseInt( value );
+                    break;
+                case "--height":
+                    height = Integer.parseInt( value );
+                    break;
+                case "--seed":
+                    seed = Long.parseLong( value );
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException( "Unrecognized option: " + arg );
+            }
+        }
+
+        PainterBenchmark benchmark = new PainterBenchmark( width, height, frames, warmupFrames, seed );
+        try ( PrintStream csv = new PrintStream( new FileOutputStream( out ), true, "UTF-8" ) )
+        {
+            logInfo( logger, "Renderer: %s", benchmark.getGLRenderer( ) );
+            csv.println( csvHeader );
+
+            for ( PainterScenario scenario : scenarios )
+            {
+                for ( int size : sizes )
+                {
+                    logInfo( logger, "Running %s with %d elements", scenario.name, size );
+                    String row = benchmark.run( scenario, size );
+                    csv.println( row );
+                    logInfo( logger, "%s", row );
+                }
+            }
+        }
+        finally
+        {
+            benchmark.dispose( );
+        }
+    }
+}
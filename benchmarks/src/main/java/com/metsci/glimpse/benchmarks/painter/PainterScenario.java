@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.benchmarks.painter;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.metsci.glimpse.axis.Axis1D;
+import com.metsci.glimpse.gl.texture.ColorTexture1D;
+import com.metsci.glimpse.painter.base.GlimpsePainter;
+import com.metsci.glimpse.painter.shape.DynamicPointSetPainter;
+import com.metsci.glimpse.painter.shape.DynamicPointSetPainter.BulkPointAccumulator;
+import com.metsci.glimpse.painter.shape.PolygonPainter;
+import com.metsci.glimpse.painter.texture.HeatMapPainter;
+import com.metsci.glimpse.painter.track.TrackPainter;
+import com.metsci.glimpse.support.atlas.TextureAtlas;
+import com.metsci.glimpse.support.atlas.painter.IconPainter;
+import com.metsci.glimpse.support.atlas.support.ImageDrawer;
+import com.metsci.glimpse.support.colormap.ColorGradients;
+import com.metsci.glimpse.support.projection.FlatProjection;
+import com.metsci.glimpse.support.texture.FloatTextureProjected2D;
+
+/**
+ * Builds a painter under test, loaded with a given number of random elements in the unit
+ * square. The meaning of an element depends on the painter: a track point, a polygon, an
+ * icon, a heat map cell, or a point.
+ */
+public abstract class PainterScenario
+{
+    public static final PainterScenario tracks = new PainterScenario( "TrackPainter" )
+    {
+        @Override
+        public GlimpsePainter create( int numElements, Random r ) throws Exception
+        {
+            TrackPainter painter = new TrackPainter( );
+
+            int pointsPerTrack = 1000;
+            int time = 0;
+            for ( int track = 0; track * pointsPerTrack < numElements; track++ )
+            {
+                int n = Math.min( pointsPerTrack, numElements - track * pointsPerTrack );
+                long[] times = new long[n];
+                float[] xs = new float[n];
+                float[] ys = new float[n];
+
+                // random walk, starting at a random point
+                float x = r.nextFloat( );
+                float y = r.nextFloat( );
+                for ( int i = 0; i < n; i++ )
+                {
+                    x = wrap( x + 0.002f * ( float ) r.nextGaussian( ) );
+                    y = wrap( y + 0.002f * ( float ) r.nextGaussian( ) );
+                    times[i] = time++;
+                    xs[i] = x;
+                    ys[i] = y;
+                }
+
+                painter.addPoints( track, times, xs, ys );
+                painter.setShowPoints( track, true );
+                painter.setPointSize( track, 3 );
+                painter.setLineColor( track, r.nextFloat( ), r.nextFloat( ), r.nextFloat( ), 1 );
+            }
+
+            return painter;
+        }
+    };
+
+    public static final PainterScenario polygons = new PainterScenario( "PolygonPainter" )
+    {
+        @Override
+        public GlimpsePainter create( int numElements, Random r ) throws Exception
+        {
+            PolygonPainter painter = new PolygonPainter( );
+            painter.setFill( 0, true );
+            painter.setFillColor( 0, 0.2f, 0.4f, 0.8f, 0.5f );
+            painter.setShowLines( 0, true );
+            painter.setLineColor( 0, 0, 0, 0, 1 );
+
+            // tessellation dominates setup for large counts, so spread it across cores
+            ForkJoinPool pool = new ForkJoinPool( );
+            try
+            {
+                painter.setTessellationExecutor( pool );
+
+                int sides = 6;
+                for ( int i = 0; i < numElements; i++ )
+                {
+                    float cx = r.nextFloat( );
+                    float cy = r.nextFloat( );
+                    float radius = 0.002f + 0.01f * r.nextFloat( );
+
+                    float[] xs = new float[sides];
+                    float[] ys = new float[sides];
+                    for ( int k = 0; k < sides; k++ )
+                    {
+                        double angle = 2 * Math.PI * k / sides;
+                        xs[k] = cx + radius * ( float ) Math.cos( angle );
+                        ys[k] = cy + radius * ( float ) Math.sin( angle );
+                    }
+
+                    painter.addPolygon( 0, i, xs, ys, 0 );
+                }
+
+                painter.getTessellationFuture( ).get( );
+            }
+            finally
+            {
+                painter.setTessellationExecutor( null );
+                pool.shutdown( );
+            }
+
+            return painter;
+        }
+    };
+
+    public static final PainterScenario icons = new PainterScenario( "IconPainter" )
+    {
+        @Override
+        public GlimpsePainter create( int numElements, Random r ) throws Exception
+        {
+            TextureAtlas atlas = new TextureAtlas( 256, 256 );
+            atlas.loadImage( "icon", 16, 16, new ImageDrawer( )
+            {
+                @Override
+                public void drawImage( Graphics2D g, int width, int height )
+                {
+                    g.setColor( Color.red );
+                    g.fillOval( 0, 0, width, height );
+                }
+            } );
+
+            IconPainter painter = new IconPainter( numElements, false );
+            painter.addIconGroup( "group", atlas, numElements );
+
+            float[] xs = new float[numElements];
+            float[] ys = new float[numElements];
+            float[] rotations = new float[numElements];
+            float[] scales = new float[numElements];
+            for ( int i = 0; i < numElements; i++ )
+            {
+                xs[i] = r.nextFloat( );
+                ys[i] = r.nextFloat( );
+                rotations[i] = ( float ) ( 2 * Math.PI * r.nextFloat( ) );
+                scales[i] = 1;
+            }
+            painter.addIcons( "group", "icon", xs, ys, rotations, scales );
+
+            return painter;
+        }
+    };
+
+    public static final PainterScenario heatMap = new PainterScenario( "HeatMapPainter" )
+    {
+        @Override
+        public GlimpsePainter create( int numElements, Random r ) throws Exception
+        {
+            Axis1D axisZ = new Axis1D( );
+            axisZ.setMin( 0 );
+            axisZ.setMax( 1 );
+
+            ColorTexture1D colors = new ColorTexture1D( 1024 );
+            colors.setColorGradient( ColorGradients.jet );
+
+            // square grid with at least numElements cells
+            int side = ( int ) Math.ceil( Math.sqrt( numElements ) );
+            float[][] data = new float[side][side];
+            for ( int i = 0; i < side; i++ )
+            {
+                for ( int j = 0; j < side; j++ )
+                {
+                    data[i][j] = r.nextFloat( );
+                }
+            }
+
+            FloatTextureProjected2D texture = new FloatTextureProjected2D( side, side );
+            texture.setProjection( new FlatProjection( 0, 1, 0, 1 ) );
+            texture.setData( data );
+
+            HeatMapPainter painter = new HeatMapPainter( axisZ );
+            painter.setColorScale( colors );
+            painter.setData( texture );
+
+            return painter;
+        }
+    };
+
+    public static final PainterScenario points = new PainterScenario( "DynamicPointSetPainter" )
+    {
+        @Override
+        public GlimpsePainter create( int numElements, Random r ) throws Exception
+        {
+            DynamicPointSetPainter painter = new DynamicPointSetPainter( numElements );
+            painter.setPointSize( 3 );
+
+            float[] color = new float[] { 0.2f, 0.4f, 0.8f, 1 };
+            BulkPointAccumulator accumulator = new BulkPointAccumulator( );
+            for ( int i = 0; i < numElements; i++ )
+            {
+                accumulator.add( i, r.nextFloat( ), r.nextFloat( ), color );
+            }
+            painter.putPoints( accumulator );
+
+            return painter;
+        }
+    };
+
+    public static final List<PainterScenario> all = Collections.unmodifiableList( Arrays.asList( tracks, polygons, icons, heatMap, points ) );
+
+    public static PainterScenario forName( String name )
+    {
+        for ( PainterScenario scenario : all )
+        {
+            if ( scenario.name.equalsIgnoreCase( name ) || scenario.name.equalsIgnoreCase( name + "Painter" ) )
+            {
+                return scenario;
+            }
+        }
+
+        throw new IllegalArgumentException( "Unrecognized painter: " + name );
+    }
+
+    protected static float wrap( float v )
+    {
+        return v - ( float ) Math.floor( v );
+    }
+
+    public final String name;
+
+    public PainterScenario( String name )
+    {
+        this.name = name;
+    }
+
+    /**
+     * Creates the painter and loads it with data. Returns once the painter is ready to draw
+     * all of its data (for example, once any asynchronous tessellation has finished).
+     */
+    public abstract GlimpsePainter create( int numElements, Random r ) throws Exception;
+
+    @Override
+    public String toString( )
+    {
+        return this.name;
+    }
+}
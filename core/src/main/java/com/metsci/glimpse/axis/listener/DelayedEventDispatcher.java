@@ -28,8 +28,10 @@ package com.metsci.glimpse.axis.listener;
 
 import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
 
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 /**
@@ -38,22 +40,32 @@ import java.util.logging.Logger;
  * Then, when no events have occurred for the duration of time specified in the
  * constructor, {@link #eventDispatch(Object)} is called.
  *
+ * Dispatches run on a {@link ScheduledExecutorService} (by default, the one shared by all
+ * dispatchers, see {@link EventDispatchScheduler}) rather than on a dedicated thread.
+ * No events are dispatched until {@link #start()} is called.
+ *
  * @author ulman
  */
 public abstract class DelayedEventDispatcher<D>
 {
     public static Logger logger = Logger.getLogger( DelayedEventDispatcher.class.getName( ) );
 
-    private long delayMillis;
-    private long lastRunTimeMillis;
+    private final long delayMillis;
+    // the time of the most recent event
+    private volatile long lastEventTimeMillis;
+
+    private final ScheduledExecutorService executor;
+    private final Runnable dispatchTask;
+    private ScheduledFuture<?> dispatchFuture;
 
-    private Thread thread;
-    private ReentrantLock lock;
-    private Condition cond;
+    // true while a dispatch is scheduled or running
+    private final AtomicBoolean pending;
+    // true if an event has occurred since the last dispatch began
     private volatile boolean updated;
+    private volatile boolean started;
     private volatile boolean shutdown;
 
-    private D data;
+    private volatile D data;
 
     public DelayedEventDispatcher( )
     {
@@ -66,144 +78,111 @@ public abstract class DelayedEventDispatcher<D>
     }
 
     public DelayedEventDispatcher( long delayMillis )
+    {
+        this( delayMillis, null );
+    }
+
+    /**
+     * @param executor the executor to dispatch events on, or null to use the shared executor
+     */
+    public DelayedEventDispatcher( long delayMillis, ScheduledExecutorService executor )
     {
         this.delayMillis = delayMillis;
-        this.lastRunTimeMillis = System.currentTimeMillis( ) - delayMillis;
+        this.lastEventTimeMillis = System.currentTimeMillis( ) - delayMillis;
 
-        this.lock = new ReentrantLock( );
-        this.cond = this.lock.newCondition( );
+        this.executor = executor;
+        this.pending = new AtomicBoolean( false );
 
-        this.thread = new Thread( )
+        this.dispatchTask = new Runnable( )
         {
             @Override
             public void run( )
             {
-                while ( true )
-                {
-                    lock.lock( );
-                    try
-                    {
-                        // wait until eventOccurred is called
-                        while ( !updated )
-                        {
-                            try
-                            {
-                                cond.await( );
-                            }
-                            catch ( InterruptedException e )
-                            {
-                            }
-                        }
-                    }
-                    catch ( Exception e )
-                    {
-                        logWarning( logger, "Exception in RateLimitedAxisListener", e );
-                    }
-                    finally
-                    {
-                        lock.unlock( );
-                    }
-
-                    long time;
-
-                    if ( shutdown ) return;
-
-                    // wait until enough time has passed between eventOccurred
-                    while ( ( time = millisToNextUpdate( ) ) > 0 )
-                    {
-                        try
-                        {
-                            Thread.sleep( time );
-                        }
-                        catch ( InterruptedException e )
-                        {
-                        }
-                    }
-
-                    if ( shutdown ) return;
-
-                    eventDispatch0( );
-                }
+                eventDispatch0( );
             }
         };
-
-        this.thread.setDaemon( true );
-        this.thread.setName( "delayed-event-dispatcher" );
     }
 
     public void start( )
     {
-        this.thread.start( );
+        this.started = true;
+
+        // dispatch any events which occurred before the dispatcher was started
+        if ( updated && pending.compareAndSet( false, true ) ) scheduleDispatch( );
     }
 
     public void dispose( )
     {
-        lock.lock( );
-        try
-        {
-            shutdown = true;
-            updated = true;
-            cond.signalAll( );
-        }
-        finally
+        shutdown = true;
+
+        synchronized ( dispatchTask )
         {
-            lock.unlock( );
+            if ( dispatchFuture != null ) dispatchFuture.cancel( false );
         }
     }
 
     protected long millisToNextUpdate( )
     {
-        lock.lock( );
-        try
-        {
-            long time = System.currentTimeMillis( );
-            long timeSinceLast = time - lastRunTimeMillis;
-            long timeToNext = delayMillis - timeSinceLast;
+        long time = System.currentTimeMillis( );
+        long timeSinceLast = time - lastEventTimeMillis;
+        long timeToNext = delayMillis - timeSinceLast;
 
-            return timeToNext;
-        }
-        finally
+        return timeToNext;
+    }
+
+    protected ScheduledExecutorService getExecutor( )
+    {
+        return executor != null ? executor : EventDispatchScheduler.getSharedExecutor( );
+    }
+
+    // must only be called by the thread which set pending to true
+    protected void scheduleDispatch( )
+    {
+        synchronized ( dispatchTask )
         {
-            lock.unlock( );
+            if ( shutdown ) return;
+
+            dispatchFuture = getExecutor( ).schedule( dispatchTask, Math.max( 0, millisToNextUpdate( ) ), TimeUnit.MILLISECONDS );
         }
     }
 
     protected void eventDispatch0( )
     {
-        D data_temp = null;
+        if ( shutdown ) return;
 
-        lock.lock( );
-        try
+        // more events have arrived since this dispatch was scheduled, so wait until things are quiet
+        if ( millisToNextUpdate( ) > 0 )
         {
-            updated = false;
-            data_temp = data;
+            scheduleDispatch( );
+            return;
         }
-        finally
-        {
-            lock.unlock( );
-        }
-
-        this.eventDispatch( data_temp );
-    }
 
-    public void eventOccurred( D _data )
-    {
-        lock.lock( );
         try
         {
-            lastRunTimeMillis = System.currentTimeMillis( );
-            data = _data;
-            updated = true;
-            cond.signalAll( );
+            this.updated = false;
+            this.eventDispatch( this.data );
         }
         catch ( Exception e )
         {
-            logWarning( logger, "Exception in RateLimitedAxisListener", e );
+            logWarning( logger, "Exception in DelayedEventDispatcher", e );
         }
         finally
         {
-            lock.unlock( );
+            pending.set( false );
         }
+
+        // an event arrived while dispatching, but could not schedule a dispatch of its own
+        if ( updated && pending.compareAndSet( false, true ) ) scheduleDispatch( );
+    }
+
+    public void eventOccurred( D _data )
+    {
+        lastEventTimeMillis = System.currentTimeMillis( );
+        data = _data;
+        updated = true;
+
+        // if a dispatch is already pending, it will notice the new event time and reschedule itself
+        if ( started && pending.compareAndSet( false, true ) ) scheduleDispatch( );
     }
 
     public abstract void eventDispatch( D data );
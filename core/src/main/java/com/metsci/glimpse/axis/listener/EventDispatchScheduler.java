@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.axis.listener;
+
+import static com.metsci.glimpse.util.concurrent.ConcurrencyUtils.newDaemonThreadFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the {@link ScheduledExecutorService} shared by all {@link RateLimitedEventDispatcher}s
+ * and {@link DelayedEventDispatcher}s which are not given an executor of their own.
+ *
+ * Dispatchers only occupy a thread while they are actually dispatching an event, so a
+ * small pool of daemon threads can serve any number of (mostly idle) dispatchers. The
+ * pool is created the first time it is requested.
+ */
+public class EventDispatchScheduler
+{
+    public static final int DEFAULT_POOL_SIZE = Math.max( 2, Runtime.getRuntime( ).availableProcessors( ) );
+
+    private static ScheduledExecutorService sharedExecutor;
+
+    public static synchronized ScheduledExecutorService getSharedExecutor( )
+    {
+        if ( sharedExecutor == null )
+        {
+            final AtomicInteger threadCount = new AtomicInteger( 0 );
+            final ThreadFactory baseFactory = Executors.defaultThreadFactory( );
+
+            ThreadFactory threadFactory = newDaemonThreadFactory( new ThreadFactory( )
+            {
+                @Override
+                public Thread newThread( Runnable r )
+                {
+                    Thread thread = baseFactory.newThread( r );
+                    thread.setName( "event-dispatcher-" + threadCount.incrementAndGet( ) );
+                    return thread;
+                }
+            } );
+
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor( DEFAULT_POOL_SIZE, threadFactory );
+            // dispatchers cancel their pending task when disposed, so don't let cancelled tasks pile up
+            executor.setRemoveOnCancelPolicy( true );
+
+            sharedExecutor = executor;
+        }
+
+        return sharedExecutor;
+    }
+
+    private EventDispatchScheduler( )
+    {
+    }
+}
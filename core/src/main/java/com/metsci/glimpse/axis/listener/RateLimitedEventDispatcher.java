@@ -28,8 +28,10 @@ package com.metsci.glimpse.axis.listener;
 
 import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
 
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 /**
@@ -37,10 +39,15 @@ import java.util.logging.Logger;
  * for receiving notifications that the min/max bounds of an Axis1D or Axis2D have changed
  * while guaranteeing that notifications arrive no faster than a specified rate.
  *
- * This class is threaded in order to provide an additional guarantee that no axis
+ * This class is asynchronous in order to provide an additional guarantee that no axis
  * update will be missed. That is, if an axisUpdate( ) call is suppressed, but no
  * subsequent axis updates occur, axisUpdate( ) will be called one last time when the
- * rate allows.
+ * rate allows. Rapid events are coalesced: the dispatch receives the most recent data.
+ *
+ * Dispatches run on a {@link ScheduledExecutorService} (by default, the one shared by all
+ * dispatchers, see {@link EventDispatchScheduler}) rather than on a dedicated thread, and
+ * nothing is scheduled until the first event occurs. Dispatches from a single dispatcher
+ * never overlap.
  *
  * @author ulman
  * @see com.metsci.glimpse.axis.Axis1D
@@ -49,16 +56,20 @@ public abstract class RateLimitedEventDispatcher<D>
 {
     public static Logger logger = Logger.getLogger( RateLimitedEventDispatcher.class.getName( ) );
 
-    private long idleTimeMillis;
-    private long lastRunTimeMillis;
+    private final long idleTimeMillis;
+    private volatile long lastRunTimeMillis;
+
+    private final ScheduledExecutorService executor;
+    private final Runnable dispatchTask;
+    private ScheduledFuture<?> dispatchFuture;
 
-    private Thread thread;
-    private ReentrantLock lock;
-    private Condition cond;
+    // true while a dispatch is scheduled or running
+    private final AtomicBoolean pending;
+    // true if an event has occurred since the last dispatch began
     private volatile boolean updated;
     private volatile boolean shutdown;
 
-    private D data;
+    private volatile D data;
 
     public RateLimitedEventDispatcher( )
     {
@@ -71,86 +82,38 @@ public abstract class RateLimitedEventDispatcher<D>
     }
 
     public RateLimitedEventDispatcher( long _idleTimeMillis )
+    {
+        this( _idleTimeMillis, null );
+    }
+
+    /**
+     * @param executor the executor to dispatch events on, or null to use the shared executor
+     */
+    public RateLimitedEventDispatcher( long _idleTimeMillis, ScheduledExecutorService executor )
     {
         this.idleTimeMillis = _idleTimeMillis;
         this.lastRunTimeMillis = System.currentTimeMillis( ) - idleTimeMillis;
 
-        this.lock = new ReentrantLock( );
-        this.cond = this.lock.newCondition( );
+        this.executor = executor;
+        this.pending = new AtomicBoolean( false );
 
-        this.thread = new Thread( )
+        this.dispatchTask = new Runnable( )
         {
             @Override
             public void run( )
             {
-                while ( true )
-                {
-                    lock.lock( );
-                    try
-                    {
-                        // wait until eventOccurred is called
-                        while ( !updated )
-                        {
-                            try
-                            {
-                                cond.await( );
-                            }
-                            catch ( InterruptedException e )
-                            {
-                            }
-                        }
-                    }
-                    catch ( Exception e )
-                    {
-                        logWarning( logger, "Exception in RateLimitedAxisListener", e );
-                    }
-                    finally
-                    {
-                        lock.unlock( );
-                    }
-
-                    long time;
-
-                    if ( shutdown ) return;
-
-                    // wait until enough time has passed between eventOccurred
-                    while ( ( time = millisToNextUpdate( ) ) > 0 )
-                    {
-                        try
-                        {
-                            Thread.sleep( time );
-                        }
-                        catch ( InterruptedException e )
-                        {
-                        }
-                    }
-
-                    if ( shutdown ) return;
-
-                    eventDispatch0( );
-                }
+                eventDispatch0( );
             }
         };
-
-        this.thread.setDaemon( true );
-        this.thread.setName( "rate-limited-axis-listener" );
-
-        // XXX: FIX, Don't start a thread in the constructor b/c subclasses possibly won't function properly
-        this.thread.start( );
     }
 
     public void dispose( )
     {
-        lock.lock( );
-        try
-        {
-            shutdown = true;
-            updated = true;
-            cond.signalAll( );
-        }
-        finally
+        shutdown = true;
+
+        synchronized ( dispatchTask )
         {
-            lock.unlock( );
+            if ( dispatchFuture != null ) dispatchFuture.cancel( false );
         }
     }
 
@@ -163,49 +126,53 @@ public abstract class RateLimitedEventDispatcher<D>
         return timeToNext;
     }
 
+    protected ScheduledExecutorService getExecutor( )
+    {
+        return executor != null ? executor : EventDispatchScheduler.getSharedExecutor( );
+    }
+
+    // must only be called by the thread which set pending to true
+    protected void scheduleDispatch( )
+    {
+        synchronized ( dispatchTask )
+        {
+            if ( shutdown ) return;
+
+            dispatchFuture = getExecutor( ).schedule( dispatchTask, Math.max( 0, millisToNextUpdate( ) ), TimeUnit.MILLISECONDS );
+        }
+    }
+
     protected void eventDispatch0( )
     {
-        D data_temp = null;
+        if ( shutdown ) return;
 
-        lock.lock( );
         try
         {
             this.lastRunTimeMillis = System.currentTimeMillis( );
             this.updated = false;
-            data_temp = this.data;
+            this.eventDispatch( this.data );
+        }
+        catch ( Exception e )
+        {
+            logWarning( logger, "Exception in RateLimitedAxisListener", e );
         }
         finally
         {
-            lock.unlock( );
+            pending.set( false );
         }
 
-        this.eventDispatch( data_temp );
+        // an event arrived while dispatching, but could not schedule a dispatch of its own
+        if ( updated && pending.compareAndSet( false, true ) ) scheduleDispatch( );
     }
 
     public void eventOccurred( D _data )
     {
-        // in the common case (we've already gotten lots up axisUpdated calls)
-        // and updated is already true, avoid the overhead of calling lock.lock( )
-        // this works because updated is declared as volatile, and is thus guaranteed
-        // to see updates to its value from other threads
-        if ( !updated )
-        {
-            lock.lock( );
-            try
-            {
-                data = _data;
-                updated = true;
-                cond.signalAll( );
-            }
-            catch ( Exception e )
-            {
-                logWarning( logger, "Exception in RateLimitedAxisListener", e );
-            }
-            finally
-            {
-                lock.unlock( );
-            }
-        }
+        data = _data;
+        updated = true;
+
+        // in the common case (we've already gotten lots of axisUpdated calls)
+        // a dispatch is already pending, and it will pick up the new data
+        if ( pending.compareAndSet( false, true ) ) scheduleDispatch( );
     }
 
     public abstract void eventDispatch( D data );
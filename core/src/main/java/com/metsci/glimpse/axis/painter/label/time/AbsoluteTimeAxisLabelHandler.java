@@ -88,6 +88,9 @@ public class AbsoluteTimeAxisLabelHandler implements TimeAxisLabelHandler
 
     protected AxisUnitConverter converter;
 
+    // tick labels, reused from frame to frame while panning
+    protected final TimeLabelCache labelCache = new TimeLabelCache( );
+
     public AbsoluteTimeAxisLabelHandler( Epoch epoch )
     {
         this( defaultTimeZone, epoch );
@@ -155,6 +158,9 @@ public class AbsoluteTimeAxisLabelHandler implements TimeAxisLabelHandler
         this.monthFormat = new TimeStampFormatStandard( monthString, timeZone );
         this.monthYearFormat = new TimeStampFormatStandard( monthYearString, timeZone );
         this.yearFormat = new TimeStampFormatStandard( yearString, timeZone );
+
+        // cached labels are keyed on the old format instances
+        this.labelCache.clear( );
     }
 
     public TimeZone getTimeZone( )
@@ -274,10 +280,10 @@ public class AbsoluteTimeAxisLabelHandler implements TimeAxisLabelHandler
         double tickInterval = getTickInterval( tickPositions );
         TimeStampFormat format = getTickFormat( tickInterval );
         
-        List<String> labels = Lists.newArrayList( );
+        List<String> labels = Lists.newArrayListWithCapacity( tickPositions.size( ) );
         for ( TimeStamp tick : tickPositions )
         {
-            String label = tick.toString( format );
+            String label = labelCache.getLabel( tick, format );
             labels.add( label );
         }
         
@@ -701,7 +707,7 @@ public class AbsoluteTimeAxisLabelHandler implements TimeAxisLabelHandler
         
         for ( TimeStruct day : days )
         {
-            day.text = day.textCenter.toString( format );
+            day.text = labelCache.format( day.textCenter, format );
         }
 
         return days;
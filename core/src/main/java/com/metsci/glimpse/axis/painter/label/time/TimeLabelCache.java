@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.axis.painter.label.time;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.metsci.glimpse.util.units.time.TimeStamp;
+import com.metsci.glimpse.util.units.time.TimeStampPosixMillisInt64;
+import com.metsci.glimpse.util.units.time.format.TimeStampFormat;
+import com.metsci.glimpse.util.units.time.format.TimeStampFormatStandard;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+/**
+ * Least-recently-used cache of time-axis tick labels, keyed by tick time and format. Since each
+ * {@link TimeStampFormatStandard} is bound to a single time zone, the format also identifies the zone.
+ * <p>
+ * While panning, most ticks stay the same from frame to frame, so most labels come straight from the
+ * cache. Misses are formatted with {@link TimeStampFormatStandard#format(long, StringBuilder)}, which
+ * avoids the BigDecimal and Calendar work of {@link TimeStamp#toString(TimeStampFormat)}. Times that
+ * are not plain posix millis, and other format implementations, are formatted the usual way.
+ */
+public class TimeLabelCache
+{
+    public static final int DEFAULT_CAPACITY_PER_FORMAT = 256;
+
+    protected final int capacityPerFormat;
+    protected final Map<TimeStampFormat, Long2ObjectLinkedOpenHashMap<String>> caches;
+    protected final StringBuilder scratch;
+
+    public TimeLabelCache( )
+    {
+        this( DEFAULT_CAPACITY_PER_FORMAT );
+    }
+
+    public TimeLabelCache( int capacityPerFormat )
+    {
+        this.capacityPerFormat = capacityPerFormat;
+        this.caches = new IdentityHashMap<TimeStampFormat, Long2ObjectLinkedOpenHashMap<String>>( );
+        this.scratch = new StringBuilder( 64 );
+    }
+
+    /**
+     * Returns the label for the given time, from the cache if possible.
+     */
+    public synchronized String getLabel( TimeStamp time, TimeStampFormat format )
+    {
+        if ( !isFastFormattable( time, format ) ) return time.toString( format );
+
+        Long2ObjectLinkedOpenHashMap<String> cache = caches.get( format );
+        if ( cache == null )
+        {
+            cache = new Long2ObjectLinkedOpenHashMap<String>( capacityPerFormat );
+            caches.put( format, cache );
+        }
+
+        long posixMillis = time.toPosixMillis( );
+        String label = cache.getAndMoveToLast( posixMillis );
+        if ( label == null )
+        {
+            label = formatUncached( posixMillis, ( TimeStampFormatStandard ) format );
+
+            if ( cache.size( ) >= capacityPerFormat ) cache.removeFirst( );
+            cache.put( posixMillis, label );
+        }
+
+        return label;
+    }
+
+    /**
+     * Formats the given time without consulting or filling the cache. Useful for times that
+     * are unlikely to repeat, such as the text positions of time structs.
+     */
+    public synchronized String format( TimeStamp time, TimeStampFormat format )
+    {
+        if ( !isFastFormattable( time, format ) ) return time.toString( format );
+
+        return formatUncached( time.toPosixMillis( ), ( TimeStampFormatStandard ) format );
+    }
+
+    public synchronized void clear( )
+    {
+        caches.clear( );
+    }
+
+    protected String formatUncached( long posixMillis, TimeStampFormatStandard format )
+    {
+        scratch.setLength( 0 );
+        format.format( posixMillis, scratch );
+        return scratch.toString( );
+    }
+
+    protected static boolean isFastFormattable( TimeStamp time, TimeStampFormat format )
+    {
+        return ( time instanceof TimeStampPosixMillisInt64 ) && ( format instanceof TimeStampFormatStandard );
+    }
+}
@@ -82,24 +82,28 @@ public abstract class AbstractGlimpseCanvas implements GlimpseCanvas
     public void addLayout( GlimpseLayout layout )
     {
         layoutManager.addLayout( layout );
+        RepaintTracker.markDirty( this );
     }
 
     @Override
     public void addLayout( GlimpseLayout layout, int zOrder )
     {
         layoutManager.addLayout( layout, zOrder );
+        RepaintTracker.markDirty( this );
     }
 
     @Override
     public void setZOrder( GlimpseLayout layout, int zOrder )
     {
         layoutManager.setZOrder( layout, zOrder );
+        RepaintTracker.markDirty( this );
     }
 
     @Override
     public void removeLayout( GlimpseLayout layout )
     {
         layoutManager.removeLayout( layout );
+        RepaintTracker.markDirty( this );
     }
 
     @SuppressWarnings( { "unchecked", "rawtypes" } )
@@ -116,6 +120,7 @@ public abstract class AbstractGlimpseCanvas implements GlimpseCanvas
     public void removeAllLayouts( )
     {
         layoutManager.removeAllLayouts( );
+        RepaintTracker.markDirty( this );
     }
 
     @Override
@@ -137,6 +142,8 @@ public abstract class AbstractGlimpseCanvas implements GlimpseCanvas
         {
             target.setLookAndFeel( laf );
         }
+
+        RepaintTracker.markDirty( this );
     }
 
     @Override
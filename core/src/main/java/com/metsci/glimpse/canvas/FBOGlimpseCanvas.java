@@ -49,6 +49,7 @@ import com.metsci.glimpse.context.GlimpseBounds;
 import com.metsci.glimpse.context.GlimpseTargetStack;
 import com.metsci.glimpse.gl.util.GLUtils;
 import com.metsci.glimpse.layout.GlimpseLayout;
+import com.metsci.glimpse.support.profile.PainterProfiler;
 import com.metsci.glimpse.support.texture.ExternalTextureProjected2D;
 import com.metsci.glimpse.support.texture.TextureProjected2D;
 
@@ -194,6 +195,8 @@ public class FBOGlimpseCanvas extends AbstractGlimpseCanvas
                 {
                     runnable.run( drawable );
                 }
+
+                PainterProfiler.getInstance( ).disposeGpuTimer( drawable.getContext( ), drawable.getGL( ) );
             }
         };
     }
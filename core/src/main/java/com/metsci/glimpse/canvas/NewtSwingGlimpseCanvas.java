@@ -54,6 +54,7 @@ import com.metsci.glimpse.event.mouse.newt.MouseWrapperNewt;
 import com.metsci.glimpse.gl.util.GLUtils;
 import com.metsci.glimpse.layout.GlimpseLayout;
 import com.metsci.glimpse.painter.base.GlimpsePainter;
+import com.metsci.glimpse.support.profile.PainterProfiler;
 import com.metsci.glimpse.support.settings.LookAndFeel;
 
 /**
@@ -206,6 +207,8 @@ public class NewtSwingGlimpseCanvas extends JPanel implements NewtGlimpseCanvas
                 {
                     runnable.run( drawable );
                 }
+
+                PainterProfiler.getInstance( ).disposeGpuTimer( drawable.getContext( ), drawable.getGL( ) );
             }
         };
     }
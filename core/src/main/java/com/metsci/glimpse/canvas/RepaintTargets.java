@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.canvas;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.metsci.glimpse.context.GlimpseContext;
+import com.metsci.glimpse.context.GlimpseTarget;
+import com.metsci.glimpse.context.GlimpseTargetStack;
+
+/**
+ * The canvases that a painter (or texture, or other drawable object) has been painted to,
+ * so that the object can ask for them to be repainted when it changes.
+ *
+ * <p>Call {@link #add(GlimpseContext)} each time the object is painted, and {@link #markDirty()}
+ * whenever it changes in a way that should be visible. Along with the canvas, any
+ * {@link CachedTarget cached targets} the object was painted inside are recorded, and their
+ * cached images are invalidated by {@link #markDirty()}. An object is almost always
+ * painted to a single canvas, so {@link #add(GlimpseContext)} is usually just a few reference
+ * comparisons. Targets are held weakly.</p>
+ *
+ * @see RepaintTracker
+ */
+public class RepaintTargets
+{
+    protected final CopyOnWriteArrayList<WeakReference<GlimpseTarget>> targets;
+
+    public RepaintTargets( )
+    {
+        this.targets = new CopyOnWriteArrayList<>( );
+    }
+
+    /**
+     * Records the canvas at the bottom of the context's stack, and the targets in it which are
+     * currently caching. Painting inside a target which starts caching later always happens
+     * again (the target repaints its contents when caching starts), so the target is recorded then.
+     */
+    public void add( GlimpseContext context )
+    {
+        List<GlimpseTarget> list = context.getTargetStack( ).getTargetList( );
+        for ( int i = 0; i < list.size( ); i++ )
+        {
+            GlimpseTarget target = list.get( i );
+            if ( target instanceof GlimpseCanvas || ( target instanceof CachedTarget && ( ( CachedTarget ) target ).isCached( ) ) )
+            {
+                add( target );
+            }
+        }
+    }
+
+    /**
+     * Records the canvas at the bottom of the stack, and every {@link CachedTarget} in it, whether
+     * or not it is caching yet. Suits long-lived listeners, which are not re-added each frame.
+     *
+     * @param includeTop whether the target at the top of the stack should be recorded
+     */
+    public void addAll( GlimpseTargetStack stack, boolean includeTop )
+    {
+        List<GlimpseTarget> list = stack.getTargetList( );
+        for ( int i = includeTop ? 0 : 1; i < list.size( ); i++ )
+        {
+            GlimpseTarget target = list.get( i );
+            if ( target instanceof GlimpseCanvas || target instanceof CachedTarget )
+            {
+                add( target );
+            }
+        }
+    }
+
+    public void add( GlimpseTarget target )
+    {
+        if ( target == null ) return;
+
+        for ( WeakReference<GlimpseTarget> ref : this.targets )
+        {
+            if ( ref.get( ) == target ) return;
+        }
+
+        // rare, so this is a convenient time to drop targets that have been collected
+        for ( WeakReference<GlimpseTarget> ref : this.targets )
+        {
+            if ( ref.get( ) == null ) this.targets.remove( ref );
+        }
+
+        this.targets.add( new WeakReference<GlimpseTarget>( target ) );
+    }
+
+    public void markDirty( )
+    {
+        for ( WeakReference<GlimpseTarget> ref : this.targets )
+        {
+            GlimpseTarget target = ref.get( );
+            if ( target instanceof GlimpseCanvas )
+            {
+                RepaintTracker.markDirty( ( GlimpseCanvas ) target );
+            }
+            else if ( target instanceof CachedTarget )
+            {
+                // checked now rather than when recorded, since caching may have been switched on since
+                CachedTarget cachedTarget = ( CachedTarget ) target;
+                if ( cachedTarget.isCached( ) ) cachedTarget.invalidateCache( );
+            }
+        }
+    }
+}
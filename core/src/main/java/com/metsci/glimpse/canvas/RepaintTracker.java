@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.canvas;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.media.opengl.GLAutoDrawable;
+
+import com.google.common.collect.MapMaker;
+import com.metsci.glimpse.axis.Axis1D;
+import com.metsci.glimpse.axis.listener.AxisListener1D;
+import com.metsci.glimpse.context.GlimpseContext;
+import com.metsci.glimpse.context.GlimpseTarget;
+import com.metsci.glimpse.context.GlimpseTargetStack;
+
+/**
+ * Keeps track of which canvases have changed since they were last painted.
+ *
+ * <p>Painters, textures, axes and mouse input mark their canvas dirty when something
+ * visible changes. An on-demand animator, such as
+ * {@link com.metsci.glimpse.support.swing.SwingEDTOnDemandAnimator}, then repaints
+ * only the dirty canvases, instead of repainting every canvas at a fixed rate.</p>
+ *
+ * <p>Dirty flags are kept per {@link GLAutoDrawable}, and are held weakly. Marking
+ * a canvas dirty is cheap and thread-safe, and has no effect unless an on-demand
+ * animator is driving that canvas.</p>
+ *
+ * @see RepaintTargets
+ */
+public class RepaintTracker
+{
+    protected static final ConcurrentMap<GLAutoDrawable, Boolean> dirty = new MapMaker( ).weakKeys( ).makeMap( );
+
+    public static void markDirty( GLAutoDrawable drawable )
+    {
+        if ( drawable != null ) dirty.put( drawable, Boolean.TRUE );
+    }
+
+    public static void markDirty( GlimpseCanvas canvas )
+    {
+        if ( canvas != null && !canvas.isDestroyed( ) ) markDirty( canvas.getGLDrawable( ) );
+    }
+
+    public static boolean isDirty( GLAutoDrawable drawable )
+    {
+        return dirty.containsKey( drawable );
+    }
+
+    /**
+     * Clears the dirty flag for the given drawable.
+     *
+     * @return whether the drawable was dirty
+     */
+    public static boolean clearDirty( GLAutoDrawable drawable )
+    {
+        return dirty.remove( drawable ) != null;
+    }
+
+    /**
+     * @return the canvas at the bottom of the context's target stack, or null if there is none
+     */
+    public static GlimpseCanvas getCanvas( GlimpseContext context )
+    {
+        return getCanvas( context.getTargetStack( ) );
+    }
+
+    /**
+     * @return the canvas at the bottom of the target stack, or null if there is none
+     */
+    public static GlimpseCanvas getCanvas( GlimpseTargetStack stack )
+    {
+        // the target list runs from the top of the stack down to the canvas
+        List<GlimpseTarget> targets = stack.getTargetList( );
+        if ( targets.isEmpty( ) ) return null;
+
+        GlimpseTarget root = targets.get( targets.size( ) - 1 );
+        return root instanceof GlimpseCanvas ? ( GlimpseCanvas ) root : null;
+    }
+
+    /**
+     * Returns a listener which marks the canvas at the bottom of the stack dirty whenever an
+     * axis changes, and invalidates any cached targets below the top of the stack. (The layout
+     * at the top owns the axis, and if it is cached, it compares axis bounds itself.) Whether
+     * a target is caching is checked when the axis changes, so targets which start caching
+     * after the axis was created are still invalidated. The listener only holds weak references,
+     * so it may be left attached to a long-lived axis.
+     */
+    public static AxisListener1D newRepaintListener( GlimpseTargetStack stack )
+    {
+        final RepaintTargets targets = new RepaintTargets( );
+        targets.addAll( stack, false );
+        return new AxisListener1D( )
+        {
+            @Override
+            public void axisUpdated( Axis1D axis )
+            {
+                targets.markDirty( );
+            }
+        };
+    }
+}
@@ -57,6 +57,7 @@ import com.metsci.glimpse.event.mouse.swing.MouseWrapperSwing;
 import com.metsci.glimpse.gl.util.GLUtils;
 import com.metsci.glimpse.layout.GlimpseLayout;
 import com.metsci.glimpse.painter.base.GlimpsePainter;
+import com.metsci.glimpse.support.profile.PainterProfiler;
 import com.metsci.glimpse.support.settings.LookAndFeel;
 
 /**
@@ -226,6 +227,8 @@ public class SwingLightweightGlimpseCanvas extends JPanel implements GlimpseCanv
                 {
                     runnable.run( drawable );
                 }
+
+                PainterProfiler.getInstance( ).disposeGpuTimer( drawable.getContext( ), drawable.getGL( ) );
             }
         };
     }
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.gl;
+
+import static com.jogamp.common.nio.Buffers.*;
+import static com.metsci.glimpse.gl.util.GLUtils.*;
+import static java.lang.Math.*;
+import static javax.media.opengl.GL.*;
+
+import java.nio.FloatBuffer;
+
+import javax.media.opengl.GL;
+
+import com.metsci.glimpse.util.primitives.rangeset.IntRangeSetModifiable;
+import com.metsci.glimpse.util.primitives.sorted.SortedInts;
+
+/**
+ * A persistent device buffer that mirrors a host {@link FloatBuffer} owned by the caller.
+ * The host buffer is divided into fixed-size elements (e.g. 2 floats per xy vertex), and
+ * the caller reports which elements it has modified using {@link #markDirty(int, int)}.
+ * <p>
+ * When {@link #deviceBuffer(GL, FloatBuffer, int)} is called, only the dirty elements
+ * are uploaded, using {@code glBufferSubData}. If more than a threshold fraction of the
+ * live elements are dirty, the whole live region is uploaded at once instead, which is
+ * cheaper than many small uploads. Unlike {@link GLEditableBuffer}, the host data does
+ * not need to live in a direct buffer.
+ */
+public class GLMirroredBuffer
+{
+
+    public static final float DEFAULT_FULL_UPLOAD_FRACTION = 0.5f;
+
+    // Dirty ranges closer together than this are merged into
+    // a single upload, to cut down on the number of glBufferSubData calls
+    protected static final int COALESCE_TOLERANCE_BYTES = 1024;
+
+    public final int usage;
+    public final int floatsPerElement;
+
+    protected float fullUploadFraction;
+
+    protected int dBuffer;
+    protected int dCapacityFloats;
+
+    protected final IntRangeSetModifiable dirtyRanges;
+    protected boolean allDirty;
+
+
+    public GLMirroredBuffer( int usage, int floatsPerElement )
+    {
+        this( usage, floatsPerElement, DEFAULT_FULL_UPLOAD_FRACTION );
+    }
+
+    public GLMirroredBuffer( int usage, int floatsPerElement, float fullUploadFraction )
+    {
+        this.usage = usage;
+        this.floatsPerElement = floatsPerElement;
+        this.fullUploadFraction = fullUploadFraction;
+
+        this.dBuffer = 0;
+        this.dCapacityFloats = 0;
+
+        this.dirtyRanges = new IntRangeSetModifiable( );
+        this.allDirty = true;
+    }
+
+    /**
+     * Sets the fraction of live elements which, once dirty, causes the next upload to
+     * re-send the whole live region instead of individual ranges.
+     */
+    public void setFullUploadFraction( float fullUploadFraction )
+    {
+        this.fullUploadFraction = fullUploadFraction;
+    }
+
+    public float getFullUploadFraction( )
+    {
+        return this.fullUploadFraction;
+    }
+
+    public void markDirty( int firstElement, int countElements )
+    {
+        if ( !this.allDirty )
+        {
+            this.dirtyRanges.add( firstElement, countElements );
+        }
+    }
+
+    public void markAllDirty( )
+    {
+        this.allDirty = true;
+        this.dirtyRanges.clear( );
+    }
+
+    public boolean isDirty( )
+    {
+        return this.allDirty || this.dirtyRanges.ranges( ).n( ) > 0;
+    }
+
+    /**
+     * Binds the device buffer to {@code GL_ARRAY_BUFFER}, uploads any dirty elements in
+     * the range [0, sizeElements), and returns the device buffer handle.
+     * <p>
+     * The position and limit of {@code host} are not modified.
+     */
+    public int deviceBuffer( GL gl, FloatBuffer host, int sizeElements )
+    {
+        if ( this.dBuffer == 0 )
+        {
+            this.dBuffer = genBuffer( gl );
+            this.allDirty = true;
+        }
+        gl.glBindBuffer( GL_ARRAY_BUFFER, this.dBuffer );
+
+        int hCapacityFloats = host.capacity( );
+        if ( this.dCapacityFloats != hCapacityFloats )
+        {
+            this.dCapacityFloats = hCapacityFloats;
+            this.allDirty = true;
+        }
+
+        if ( !this.allDirty )
+        {
+            int coalesceTolerance = max( 1, COALESCE_TOLERANCE_BYTES / ( this.floatsPerElement * SIZEOF_FLOAT ) );
+            this.dirtyRanges.coalesce( coalesceTolerance );
+
+            long dirtyElements = 0;
+            SortedInts ranges = this.dirtyRanges.ranges( );
+            for ( int i = 0; i < ranges.n( ); i += 2 )
+            {
+                dirtyElements += min( ranges.v( i + 1 ), sizeElements ) - min( ranges.v( i ), sizeElements );
+            }
+
+            if ( dirtyElements > this.fullUploadFraction * sizeElements )
+            {
+                this.allDirty = true;
+            }
+        }
+
+        if ( this.allDirty )
+        {
+            // Orphan the old storage rather than overwriting it, so the driver
+            // does not have to wait for pending draws to finish reading it
+            gl.glBufferData( GL_ARRAY_BUFFER, ( ( long ) this.dCapacityFloats ) * SIZEOF_FLOAT, null, this.usage );
+            this.upload( gl, host, 0, sizeElements );
+        }
+        else
+        {
+            SortedInts ranges = this.dirtyRanges.ranges( );
+            for ( int i = 0; i < ranges.n( ); i += 2 )
+            {
+                int first = min( ranges.v( i + 0 ), sizeElements );
+                int end = min( ranges.v( i + 1 ), sizeElements );
+                this.upload( gl, host, first, end - first );
+            }
+        }
+
+        this.dirtyRanges.clear( );
+        this.allDirty = false;
+
+        return this.dBuffer;
+    }
+
+    protected void upload( GL gl, FloatBuffer host, int firstElement, int countElements )
+    {
+        if ( countElements <= 0 ) return;
+
+        int firstFloat = firstElement * this.floatsPerElement;
+        int countFloats = countElements * this.floatsPerElement;
+
+        FloatBuffer hRange = host.duplicate( );
+        hRange.limit( firstFloat + countFloats );
+        hRange.position( firstFloat );
+
+        gl.glBufferSubData( GL_ARRAY_BUFFER, ( ( long ) firstFloat ) * SIZEOF_FLOAT, ( ( long ) countFloats ) * SIZEOF_FLOAT, hRange );
+    }
+
+    public void dispose( GL gl )
+    {
+        if ( this.dBuffer != 0 )
+        {
+            deleteBuffers( gl, this.dBuffer );
+            this.dBuffer = 0;
+        }
+
+        this.dCapacityFloats = 0;
+        this.dirtyRanges.clear( );
+        this.allDirty = true;
+    }
+
+}
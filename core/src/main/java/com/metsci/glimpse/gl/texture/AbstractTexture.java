@@ -33,6 +33,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import javax.media.opengl.GL;
 import javax.media.opengl.GLContext;
 
+import com.metsci.glimpse.canvas.RepaintTargets;
 import com.metsci.glimpse.context.GlimpseContext;
 
 /**
@@ -51,6 +52,9 @@ public abstract class AbstractTexture implements Texture
 
     protected boolean dirty;
 
+    // canvases to repaint when the texture changes
+    protected final RepaintTargets repaintTargets = new RepaintTargets( );
+
     protected int[] dim;
 
     public AbstractTexture( int n0 )
@@ -84,6 +88,7 @@ public abstract class AbstractTexture implements Texture
     public void makeDirty( )
     {
         dirty = true;
+        repaintTargets.markDirty( );
     }
 
     @Override
@@ -108,6 +113,7 @@ public abstract class AbstractTexture implements Texture
     public boolean prepare( GlimpseContext context, int texUnit )
     {
         GL gl = context.getGL( );
+        repaintTargets.add( context );
 
         // should we check for dirtiness and allocation before lock to speed up?
         lock.lock( );
@@ -26,6 +26,8 @@
  */
 package com.metsci.glimpse.layout;
 
+import static com.metsci.glimpse.canvas.RepaintTracker.newRepaintListener;
+
 import java.util.Collection;
 
 import com.metsci.glimpse.axis.Axis1D;
@@ -261,6 +263,9 @@ public abstract class GlimpseAxisLayout1D extends GlimpseLayout
             newAxis = getNewAxis0( parent_axis, factory, stack );
             newAxis.setSizePixels( getSize( stack.getBounds( ) ) );
             cache.setValue( stack, newAxis );
+
+            // repaint on-demand canvases when the axis changes
+            newAxis.addAxisListener( newRepaintListener( stack ) );
         }
 
         return newAxis;
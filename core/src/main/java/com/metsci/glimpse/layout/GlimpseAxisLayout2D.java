@@ -26,12 +26,15 @@
  */
 package com.metsci.glimpse.layout;
 
+import static com.metsci.glimpse.canvas.RepaintTracker.newRepaintListener;
+
 import java.util.Collection;
 
 import com.metsci.glimpse.axis.Axis1D;
 import com.metsci.glimpse.axis.Axis2D;
 import com.metsci.glimpse.axis.AxisNotSetException;
 import com.metsci.glimpse.axis.factory.AxisFactory2D;
+import com.metsci.glimpse.axis.listener.AxisListener1D;
 import com.metsci.glimpse.axis.factory.DefaultAxisFactory2D;
 import com.metsci.glimpse.context.GlimpseBounds;
 import com.metsci.glimpse.context.GlimpseContext;
@@ -252,6 +255,11 @@ public class GlimpseAxisLayout2D extends GlimpseLayout
             newAxis = getNewAxis0( parent_axis, factory, stack );
             newAxis.setSizePixels( stack.getBounds( ) );
             cache.setValue( stack, newAxis );
+
+            // repaint on-demand canvases when the axis changes
+            AxisListener1D repaintListener = newRepaintListener( stack );
+            newAxis.getAxisX( ).addAxisListener( repaintListener );
+            newAxis.getAxisY( ).addAxisListener( repaintListener );
         }
 
         return newAxis;
@@ -33,6 +33,7 @@ import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.metsci.glimpse.canvas.CachedTarget;
 import com.metsci.glimpse.canvas.LayoutManager;
 import com.metsci.glimpse.context.GlimpseBounds;
 import com.metsci.glimpse.context.GlimpseContext;
@@ -65,7 +66,7 @@ import com.metsci.glimpse.support.settings.LookAndFeel;
  * @author ulman
  * @see GlimpseLayoutDelegate
  */
-public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable
+public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, CachedTarget, Mouseable
 {
     protected String name = "";
 
@@ -105,6 +106,10 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable
     protected boolean isEventConsumer = true;
     protected boolean isVisible = true;
 
+    // offscreen cache of the painted layout, created when caching is first enabled
+    protected volatile boolean isCached = false;
+    protected volatile LayerCache layerCache;
+
     public GlimpseLayout( GlimpseLayout parent, String name )
     {
         this.layoutClean = new GlimpseLayoutCache<Boolean>( );
@@ -262,6 +267,7 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable
         {
             manager.setZOrder( layout, zOrder );
             layoutDelegate.setZOrder( layout, zOrder );
+            invalidateCache( );
         }
         finally
         {
@@ -296,6 +302,7 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable
             try
             {
                 layoutDelegate.setZOrder( painter, zOrder );
+                invalidateCache( );
             }
             finally
             {
@@ -398,6 +405,7 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable
         {
             layoutClean.clear( );
             layoutDelegate.invalidateLayout( );
+            invalidateCache( );
         }
         finally
         {
@@ -405,6 +413,54 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable
         }
     }
 
+    /**
+     * Enables or disables caching of this layout's painted image.
+     *
+     * <p>A cached layout is painted into an offscreen texture, and the texture is drawn in
+     * place of the layout on later frames, until something in the layout changes. This suits
+     * layouts full of slow-changing painters, such as basemaps, underneath layouts which
+     * change often.</p>
+     *
+     * @see LayerCache
+     */
+    public void setCached( boolean cached )
+    {
+        lock.lock( );
+        try
+        {
+            if ( cached && this.layerCache == null ) this.layerCache = new LayerCache( this );
+            this.isCached = cached;
+            invalidateCache( );
+        }
+        finally
+        {
+            lock.unlock( );
+        }
+    }
+
+    public boolean isCached( )
+    {
+        return this.isCached;
+    }
+
+    /**
+     * @return the layer cache, or null if caching has never been enabled
+     */
+    public LayerCache getLayerCache( )
+    {
+        return this.layerCache;
+    }
+
+    /**
+     * Forces a cached layout to repaint its children on the next frame. Does nothing
+     * if the layout is not cached.
+     */
+    public void invalidateCache( )
+    {
+        LayerCache cache = this.layerCache;
+        if ( cache != null ) cache.invalidate( );
+    }
+
     public GlimpseBounds layoutTo( GlimpseTargetStack stack )
     {
         lock.lock( );
@@ -459,7 +515,14 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable
             context.getTargetStack( ).push( this, bounds );
 
             // paint our children with our bounds on top of the layout stack
-            layoutDelegate.paintTo( context );
+            if ( isCached )
+            {
+                layerCache.paintTo( context, layoutDelegate );
+            }
+            else
+            {
+                layoutDelegate.paintTo( context );
+            }
 
             // once our children (and their children recursively) have finished
             // painting remove our bounds from the layout stack
@@ -511,6 +574,7 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable
         try
         {
             layoutDelegate.dispose( context );
+            if ( layerCache != null ) layerCache.dispose( context );
         }
         finally
         {
@@ -753,6 +817,7 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable
         try
         {
             layoutDelegate.setLookAndFeel( laf );
+            invalidateCache( );
         }
         finally
         {
@@ -41,6 +41,7 @@ import com.metsci.glimpse.context.GlimpseTargetStack;
 import com.metsci.glimpse.gl.util.GLUtils;
 import com.metsci.glimpse.painter.base.GlimpsePainter;
 import com.metsci.glimpse.painter.base.GlimpsePainterCallback;
+import com.metsci.glimpse.support.profile.PainterProfiler;
 import com.metsci.glimpse.support.settings.LookAndFeel;
 
 import net.miginfocom.layout.ComponentWrapper;
@@ -142,6 +143,8 @@ public class GlimpseLayoutDelegate implements ComponentWrapper, ContainerWrapper
 
         if ( !clippedBounds.isValid( ) ) return;
 
+        PainterProfiler.getInstance( ).releaseGpuTimerIfDisabled( context );
+
         for ( Member m : memberList )
         {
             try
@@ -162,7 +165,26 @@ public class GlimpseLayoutDelegate implements ComponentWrapper, ContainerWrapper
                     gl.glScissor( clippedBounds.getX( ) * scaleX, clippedBounds.getY( ) * scaleY, clippedBounds.getWidth( ) * scaleX, clippedBounds.getHeight( ) * scaleY );
 
                     if ( m.callback != null ) m.callback.prePaint( m.painter, context );
-                    m.painter.paintTo( context );
+
+                    // child layouts are not profiled themselves, only the painters inside them
+                    if ( !isLayout && PainterProfiler.isEnabled( ) )
+                    {
+                        PainterProfiler profiler = PainterProfiler.getInstance( );
+                        profiler.prePaint( m.painter, context );
+                        try
+                        {
+                            m.painter.paintTo( context );
+                        }
+                        finally
+                        {
+                            profiler.postPaint( m.painter, context );
+                        }
+                    }
+                    else
+                    {
+                        m.painter.paintTo( context );
+                    }
+
                     if ( m.callback != null ) m.callback.postPaint( m.painter, context );
                 }
                 else if ( isLayout )
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.layout;
+
+import static com.metsci.glimpse.gl.util.GLUtils.disableBlending;
+import static com.metsci.glimpse.gl.util.GLUtils.getClippedBounds;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL3;
+import javax.media.opengl.GLContext;
+
+import com.metsci.glimpse.axis.Axis1D;
+import com.metsci.glimpse.axis.Axis2D;
+import com.metsci.glimpse.canvas.RepaintTracker;
+import com.metsci.glimpse.context.GlimpseBounds;
+import com.metsci.glimpse.context.GlimpseContext;
+import com.metsci.glimpse.gl.GLEditableBuffer;
+import com.metsci.glimpse.gl.GLSimpleFrameBufferObject;
+import com.metsci.glimpse.support.shader.triangle.ColorTexture2DProgram;
+
+/**
+ * Paints a {@link GlimpseLayout} and its children into an offscreen texture, then draws
+ * that texture in place of the layout, until something in the layout changes.
+ *
+ * <p>The cached image is repainted when:
+ * <ul>
+ * <li>the layout's size or position changes,
+ * <li>the axis of the layout (if it is a {@link GlimpseAxisLayout2D} or {@link GlimpseAxisLayout1D})
+ *     changes, other than by a small pan,
+ * <li>the axis of a nested axis layout changes,
+ * <li>a painter in the layout reports a change through a {@link com.metsci.glimpse.canvas.RepaintTargets},
+ *     as {@link com.metsci.glimpse.painter.base.GlimpsePainterBase#invalidate()} does, or a texture it draws changes,
+ * <li>{@link #invalidate()} is called,
+ * <li>the cached image is older than {@link #setMaxAge(long) the max age}.
+ * </ul>
+ * While the layout's own axis is being panned, the cached image is shifted rather than
+ * repainted, as long as the pan stays within {@link #setMaxTranslateFraction(double) a fraction}
+ * of the layout's size. The image is repainted once the axis stops moving, which fills in the
+ * newly exposed edges.</p>
+ *
+ * <p>Caching suits layouts whose painters change much less often than the canvas repaints,
+ * such as basemaps and grids under frequently updated overlays. It is not suitable for painters
+ * which react to the mouse directly. Painters which never report their changes only update
+ * when the max age runs out, so the max age bounds how stale the cached image can get.
+ * Adding or removing painters on nested layouts does not invalidate the cache; call
+ * {@link GlimpseLayout#invalidateCache()} on the cached layout after doing so.</p>
+ *
+ * <p>Painters draw into the offscreen texture with the usual blending, which leaves it holding
+ * premultiplied colors, so it is drawn onto the canvas with premultiplied blending.</p>
+ *
+ * @see GlimpseLayout#setCached(boolean)
+ */
+@SuppressWarnings( "deprecation" )
+public class LayerCache
+{
+    protected final GlimpseLayout layout;
+
+    // incremented whenever the cached images become stale
+    protected final AtomicLong version;
+
+    protected final GlimpseLayoutCache<Layer> layers;
+
+    protected volatile double maxTranslateFraction;
+    protected volatile long maxAgeMillis;
+
+    protected ColorTexture2DProgram prog;
+    protected GLEditableBuffer xyBuffer;
+    protected GLEditableBuffer sBuffer;
+
+    protected final int[] scratchInt;
+    protected final float[] scratchFloat;
+
+    public LayerCache( GlimpseLayout layout )
+    {
+        this.layout = layout;
+        this.version = new AtomicLong( 0 );
+        this.layers = new GlimpseLayoutCache<Layer>( );
+        this.maxTranslateFraction = 0.25;
+        this.maxAgeMillis = 1000;
+
+        this.prog = new ColorTexture2DProgram( );
+        this.xyBuffer = new GLEditableBuffer( GL.GL_STATIC_DRAW, 0 );
+        this.sBuffer = new GLEditableBuffer( GL.GL_STATIC_DRAW, 0 );
+
+        this.scratchInt = new int[1];
+        this.scratchFloat = new float[4];
+    }
+
+    /**
+     * Marks the cached image stale, so that the layout is repainted in full next frame.
+     */
+    public void invalidate( )
+    {
+        this.version.incrementAndGet( );
+    }
+
+    /**
+     * Sets how far (as a fraction of the layout's width or height) the cached image may be shifted
+     * to follow a pan before it is repainted. Zero disables shifting.
+     */
+    public void setMaxTranslateFraction( double fraction )
+    {
+        this.maxTranslateFraction = fraction;
+    }
+
+    public double getMaxTranslateFraction( )
+    {
+        return this.maxTranslateFraction;
+    }
+
+    /**
+     * Sets how long a cached image may be drawn before the layout is repainted in full, even if
+     * nothing has reported a change. This catches painters which change without invalidating.
+     * Zero or less disables the limit.
+     */
+    public void setMaxAge( long maxAgeMillis )
+    {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public long getMaxAge( )
+    {
+        return this.maxAgeMillis;
+    }
+
+    /**
+     * Paints the layout's children, through the cache. Must be called with the layout already
+     * on top of the context's target stack.
+     */
+    public void paintTo( GlimpseContext context, GlimpseLayoutDelegate delegate )
+    {
+        GlimpseBounds bounds = context.getTargetStack( ).getBounds( );
+        GlimpseBounds clippedBounds = getClippedBounds( context );
+        if ( !clippedBounds.isValid( ) ) return;
+
+        // the offscreen buffer covers the canvas up to the layout, so that children can
+        // keep painting in canvas coordinates
+        int[] scale = context.getSurfaceScale( );
+        int fboWidth = ( bounds.getX( ) + bounds.getWidth( ) ) * scale[0];
+        int fboHeight = ( bounds.getY( ) + bounds.getHeight( ) ) * scale[1];
+
+        Layer layer = this.layers.getValueNoBoundsCheck( context );
+        if ( layer == null )
+        {
+            layer = new Layer( );
+            this.layers.setValue( context, layer );
+        }
+
+        long version = this.version.get( );
+        long nowMillis = System.currentTimeMillis( );
+        double[] axisBounds = getAxisBounds( context );
+
+        boolean axisMoving = !Arrays.equals( axisBounds, layer.lastAxisBounds );
+        layer.lastAxisBounds = axisBounds;
+
+        if ( layer.isCurrent( version, bounds, fboWidth, fboHeight ) && !isExpired( layer, nowMillis ) )
+        {
+            if ( Arrays.equals( axisBounds, layer.axisBounds ) )
+            {
+                composite( context, layer, bounds, clippedBounds, 0, 0 );
+                return;
+            }
+
+            float[] shift = axisMoving ? getShift( layer.axisBounds, axisBounds, bounds, scale ) : null;
+            if ( shift != null )
+            {
+                composite( context, layer, bounds, clippedBounds, shift[0], shift[1] );
+
+                // come back next frame, and repaint properly if the axis has stopped moving
+                RepaintTracker.markDirty( RepaintTracker.getCanvas( context ) );
+                return;
+            }
+        }
+
+        render( context, delegate, layer, version, nowMillis, axisBounds, bounds, fboWidth, fboHeight );
+        composite( context, layer, bounds, clippedBounds, 0, 0 );
+    }
+
+    protected boolean isExpired( Layer layer, long nowMillis )
+    {
+        long maxAgeMillis = this.maxAgeMillis;
+        return maxAgeMillis > 0 && nowMillis - layer.renderTimeMillis > maxAgeMillis;
+    }
+
+    protected double[] getAxisBounds( GlimpseContext context )
+    {
+        if ( this.layout instanceof GlimpseAxisLayout2D )
+        {
+            Axis2D axis = ( ( GlimpseAxisLayout2D ) this.layout ).getAxis( context );
+            return axis == null ? null : new double[] { axis.getMinX( ), axis.getMaxX( ), axis.getMinY( ), axis.getMaxY( ) };
+        }
+        else if ( this.layout instanceof GlimpseAxisLayout1D )
+        {
+            GlimpseAxisLayout1D layout1D = ( GlimpseAxisLayout1D ) this.layout;
+            Axis1D axis = layout1D.getAxis( context );
+            if ( axis == null ) return null;
+
+            // keep the { x, x, y, y } shape of the 2D case
+            double min = axis.getMin( );
+            double max = axis.getMax( );
+            return layout1D.isHorizontal( ) ? new double[] { min, max, 0, 1 } : new double[] { 0, 1, min, max };
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return the shift in pixels which takes the cached image from the old axis bounds to the new,
+     *         or null if the change is not a small pure translation
+     */
+    protected float[] getShift( double[] oldBounds, double[] newBounds, GlimpseBounds bounds, int[] scale )
+    {
+        if ( oldBounds == null || newBounds == null || this.maxTranslateFraction <= 0 ) return null;
+
+        double oldSpanX = oldBounds[1] - oldBounds[0];
+        double oldSpanY = oldBounds[3] - oldBounds[2];
+        double newSpanX = newBounds[1] - newBounds[0];
+        double newSpanY = newBounds[3] - newBounds[2];
+        if ( !isClose( oldSpanX, newSpanX ) || !isClose( oldSpanY, newSpanY ) ) return null;
+
+        double dx = ( oldBounds[0] - newBounds[0] ) / oldSpanX * bounds.getWidth( );
+        double dy = ( oldBounds[2] - newBounds[2] ) / oldSpanY * bounds.getHeight( );
+        if ( Math.abs( dx ) > this.maxTranslateFraction * bounds.getWidth( ) || Math.abs( dy ) > this.maxTranslateFraction * bounds.getHeight( ) ) return null;
+
+        // shift by whole device pixels, so the image stays sharp
+        return new float[] { Math.round( dx * scale[0] ) / ( float ) scale[0], Math.round( dy * scale[1] ) / ( float ) scale[1] };
+    }
+
+    protected static boolean isClose( double a, double b )
+    {
+        return Math.abs( a - b ) <= 1e-9 * Math.max( Math.abs( a ), Math.abs( b ) );
+    }
+
+    protected void render( GlimpseContext context, GlimpseLayoutDelegate delegate, Layer layer, long version, long nowMillis, double[] axisBounds, GlimpseBounds bounds, int fboWidth, int fboHeight )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+        GLContext glContext = context.getGLContext( );
+
+        if ( layer.fbo == null )
+        {
+            layer.fbo = new GLSimpleFrameBufferObject( fboWidth, fboHeight, false, false, glContext );
+        }
+        else if ( layer.fboWidth != fboWidth || layer.fboHeight != fboHeight )
+        {
+            layer.fbo.resize( fboWidth, fboHeight );
+        }
+
+        // record what we are about to paint first, so that changes made while painting are not lost
+        layer.version = version;
+        layer.renderTimeMillis = nowMillis;
+        layer.axisBounds = axisBounds;
+        layer.bounds = bounds;
+        layer.fboWidth = fboWidth;
+        layer.fboHeight = fboHeight;
+
+        // the canvas itself may be drawing into a framebuffer object
+        gl.glGetIntegerv( GL.GL_FRAMEBUFFER_BINDING, this.scratchInt, 0 );
+        int previousFbo = this.scratchInt[0];
+        gl.glGetFloatv( GL.GL_COLOR_CLEAR_VALUE, this.scratchFloat, 0 );
+
+        layer.fbo.bind( glContext );
+        try
+        {
+            gl.glDisable( GL.GL_SCISSOR_TEST );
+            gl.glClearColor( 0, 0, 0, 0 );
+            gl.glClear( GL.GL_COLOR_BUFFER_BIT );
+
+            delegate.paintTo( context );
+        }
+        finally
+        {
+            layer.fbo.unbind( glContext );
+            gl.glBindFramebuffer( GL.GL_FRAMEBUFFER, previousFbo );
+            gl.glClearColor( this.scratchFloat[0], this.scratchFloat[1], this.scratchFloat[2], this.scratchFloat[3] );
+        }
+    }
+
+    protected void composite( GlimpseContext context, Layer layer, GlimpseBounds bounds, GlimpseBounds clippedBounds, float dx, float dy )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+        int[] scale = context.getSurfaceScale( );
+
+        int width = bounds.getWidth( );
+        int height = bounds.getHeight( );
+
+        float s0 = bounds.getX( ) * scale[0] / ( float ) layer.fboWidth;
+        float t0 = bounds.getY( ) * scale[1] / ( float ) layer.fboHeight;
+
+        this.xyBuffer.clear( );
+        this.xyBuffer.growQuad2f( dx, dy, dx + width, dy + height );
+
+        this.sBuffer.clear( );
+        this.sBuffer.growQuad2f( s0, t0, 1, 1 );
+
+        gl.glViewport( bounds.getX( ) * scale[0], bounds.getY( ) * scale[1], width * scale[0], height * scale[1] );
+        gl.glScissor( clippedBounds.getX( ) * scale[0], clippedBounds.getY( ) * scale[1], clippedBounds.getWidth( ) * scale[0], clippedBounds.getHeight( ) * scale[1] );
+        gl.glEnable( GL.GL_SCISSOR_TEST );
+
+        gl.glBlendFunc( GL.GL_ONE, GL.GL_ONE_MINUS_SRC_ALPHA );
+        gl.glEnable( GL.GL_BLEND );
+
+        this.prog.begin( context );
+        try
+        {
+            this.prog.setPixelOrtho( context, bounds );
+            this.prog.setTexture( context, 0 );
+
+            gl.glActiveTexture( GL.GL_TEXTURE0 );
+            gl.glBindTexture( GL.GL_TEXTURE_2D, layer.fbo.getTextureId( ) );
+
+            this.prog.draw( context, GL.GL_TRIANGLES, this.xyBuffer, this.sBuffer, 0, 6 );
+        }
+        finally
+        {
+            this.prog.end( context );
+            gl.glBindTexture( GL.GL_TEXTURE_2D, 0 );
+            disableBlending( gl );
+            gl.glDisable( GL.GL_SCISSOR_TEST );
+        }
+    }
+
+    public void dispose( GlimpseContext context )
+    {
+        GL gl = context.getGL( );
+        GLContext glContext = context.getGLContext( );
+
+        for ( Layer layer : this.layers.getValues( ) )
+        {
+            if ( layer.fbo != null && layer.fbo.isInitialized( ) ) layer.fbo.dispose( glContext );
+        }
+        this.layers.clear( );
+
+        this.prog.dispose( context );
+        this.xyBuffer.dispose( gl );
+        this.sBuffer.dispose( gl );
+    }
+
+    /**
+     * The cached image for one target stack.
+     */
+    protected static class Layer
+    {
+        public GLSimpleFrameBufferObject fbo;
+        public int fboWidth;
+        public int fboHeight;
+
+        // what the cached image shows
+        public long version = -1;
+        public long renderTimeMillis;
+        public GlimpseBounds bounds;
+        public double[] axisBounds;
+
+        // axis bounds as of the previous frame, to tell whether the axis is still moving
+        public double[] lastAxisBounds;
+
+        public boolean isCurrent( long version, GlimpseBounds bounds, int fboWidth, int fboHeight )
+        {
+            return this.fbo != null && this.version == version && bounds.equals( this.bounds ) && this.fboWidth == fboWidth && this.fboHeight == fboHeight;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import javax.media.opengl.GL3;
 import com.metsci.glimpse.axis.Axis1D;
 import com.metsci.glimpse.axis.Axis2D;
 import com.metsci.glimpse.axis.AxisNotSetException;
+import com.metsci.glimpse.canvas.RepaintTargets;
 import com.metsci.glimpse.context.GlimpseBounds;
 import com.metsci.glimpse.context.GlimpseContext;
 import com.metsci.glimpse.context.GlimpseTarget;
@@ -47,9 +48,13 @@ public abstract class GlimpsePainterBase implements GlimpsePainter
 
     protected volatile boolean displayOn = true;
 
+    protected final RepaintTargets repaintTargets;
+    protected volatile boolean continuousRepaint = false;
+
     public GlimpsePainterBase( )
     {
         this.painterLock = new ReentrantLock( );
+        this.repaintTargets = new RepaintTargets( );
     }
 
     protected abstract void doDispose( GlimpseContext context );
@@ -126,10 +131,39 @@ public abstract class GlimpsePainterBase implements GlimpsePainter
         return context.getTargetStack( ).getBounds( );
     }
 
+    /**
+     * Asks for the canvases this painter has been painted to to be repainted. Subclasses
+     * should call this whenever their data or appearance changes, so that canvases driven
+     * by an on-demand animator pick up the change.
+     *
+     * @see com.metsci.glimpse.canvas.RepaintTracker
+     */
+    public void invalidate( )
+    {
+        this.repaintTargets.markDirty( );
+    }
+
+    /**
+     * For painters which animate on their own (based on the current time, for example),
+     * rather than in response to data changes. While enabled, the painter's canvases are
+     * marked dirty every time it paints, so on-demand animators repaint them continuously.
+     */
+    public void setContinuousRepaint( boolean continuous )
+    {
+        this.continuousRepaint = continuous;
+        if ( continuous ) invalidate( );
+    }
+
+    public boolean isContinuousRepaint( )
+    {
+        return this.continuousRepaint;
+    }
+
     @Override
     public void setVisible( boolean show )
     {
         this.displayOn = show;
+        invalidate( );
     }
 
     @Override
@@ -177,6 +211,9 @@ public abstract class GlimpsePainterBase implements GlimpsePainter
     {
         if ( !this.isVisible( ) || this.isDisposed( ) ) return;
 
+        this.repaintTargets.add( context );
+        if ( this.continuousRepaint ) this.repaintTargets.markDirty( );
+
         this.painterLock.lock( );
         try
         {
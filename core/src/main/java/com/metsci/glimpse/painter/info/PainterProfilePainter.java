@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.painter.info;
+
+import java.awt.Font;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL3;
+
+import com.metsci.glimpse.com.jogamp.opengl.util.awt.TextRenderer;
+import com.metsci.glimpse.context.GlimpseBounds;
+import com.metsci.glimpse.context.GlimpseContext;
+import com.metsci.glimpse.gl.GLEditableBuffer;
+import com.metsci.glimpse.gl.util.GLUtils;
+import com.metsci.glimpse.painter.base.GlimpsePainterBase;
+import com.metsci.glimpse.support.color.GlimpseColor;
+import com.metsci.glimpse.support.profile.PainterProfile;
+import com.metsci.glimpse.support.profile.PainterProfiler;
+import com.metsci.glimpse.support.shader.triangle.FlatColorProgram;
+
+/**
+ * Displays the most expensive painters, as measured by {@link PainterProfiler}, in
+ * the top-left corner of its layout. Each row shows CPU and GPU paint time (median
+ * and 99th percentile, in milliseconds), the total milliseconds per second the painter
+ * used, its class, and the path of the layout it paints in.
+ *
+ * <p>Adding this painter does not turn profiling on by itself; see
+ * {@link PainterProfiler#setEnabled(boolean)}. Painting is cheap, but this painter
+ * is profiled like any other, and will usually show up near the bottom of its own list.</p>
+ */
+public class PainterProfilePainter extends GlimpsePainterBase
+{
+    protected static final String header = String.format( "%-15s  %-15s  %6s  %s", "cpu p50/p99", "gpu p50/p99", "ms/s", "painter @ layout" );
+
+    protected int maxRows;
+    protected long refreshMillis;
+
+    protected int padding;
+    protected float[] textColor;
+    protected float[] backgroundColor;
+
+    protected volatile Font newFont;
+    protected TextRenderer textRenderer;
+
+    protected FlatColorProgram fillProg;
+    protected GLEditableBuffer fillBuffer;
+
+    protected List<String> lines;
+    protected long lastRefreshMillis;
+
+    public PainterProfilePainter( )
+    {
+        this.maxRows = 10;
+        this.refreshMillis = 500;
+
+        this.padding = 5;
+        this.textColor = GlimpseColor.getWhite( );
+        this.backgroundColor = GlimpseColor.getBlack( 0.7f );
+
+        this.newFont = new Font( Font.MONOSPACED, Font.PLAIN, 12 );
+
+        this.fillProg = new FlatColorProgram( );
+        this.fillBuffer = new GLEditableBuffer( GL.GL_STATIC_DRAW, 0 );
+
+        this.lines = new ArrayList<>( );
+        this.lastRefreshMillis = Long.MIN_VALUE;
+    }
+
+    public PainterProfilePainter setMaxRows( int maxRows )
+    {
+        this.maxRows = maxRows;
+        return this;
+    }
+
+    public PainterProfilePainter setRefreshMillis( long refreshMillis )
+    {
+        this.refreshMillis = refreshMillis;
+        return this;
+    }
+
+    public PainterProfilePainter setFont( Font font )
+    {
+        this.newFont = font;
+        return this;
+    }
+
+    public PainterProfilePainter setTextColor( float[] rgba )
+    {
+        this.textColor = rgba;
+        return this;
+    }
+
+    public PainterProfilePainter setBackgroundColor( float[] rgba )
+    {
+        this.backgroundColor = rgba;
+        return this;
+    }
+
+    protected void refreshLines( )
+    {
+        List<PainterProfile.Snapshot> snapshots = PainterProfiler.getInstance( ).snapshot( );
+
+        this.lines.clear( );
+        this.lines.add( header );
+        for ( int i = 0; i < Math.min( this.maxRows, snapshots.size( ) ); i++ )
+        {
+            PainterProfile.Snapshot s = snapshots.get( i );
+
+            String className = s.painterClass.substring( s.painterClass.lastIndexOf( '.' ) + 1 );
+            String gpu = s.gpu.count == 0 ? "-" : String.format( "%6.2f/%-6.2f", s.gpu.p50Millis, s.gpu.p99Millis );
+
+            this.lines.add( String.format( "%6.2f/%-6.2f    %-15s  %6.1f  %s @ %s", s.cpu.p50Millis, s.cpu.p99Millis, gpu, s.getMillisPerSecond( ), className, s.layoutPath ) );
+        }
+
+        if ( !PainterProfiler.isEnabled( ) )
+        {
+            this.lines.add( "(profiling disabled)" );
+        }
+    }
+
+    @Override
+    protected void doPaintTo( GlimpseContext context )
+    {
+        if ( this.newFont != null )
+        {
+            if ( this.textRenderer != null ) this.textRenderer.dispose( );
+            this.textRenderer = new TextRenderer( this.newFont, true, false );
+            this.newFont = null;
+        }
+
+        long now = System.currentTimeMillis( );
+        if ( now - this.lastRefreshMillis >= this.refreshMillis )
+        {
+            refreshLines( );
+            this.lastRefreshMillis = now;
+        }
+
+        GlimpseBounds bounds = getBounds( context );
+        GL3 gl = context.getGL( ).getGL3( );
+
+        int width = bounds.getWidth( );
+        int height = bounds.getHeight( );
+
+        int lineHeight = ( int ) Math.ceil( this.textRenderer.getBounds( header ).getHeight( ) ) + 2;
+        int textWidth = 0;
+        for ( String line : this.lines )
+        {
+            textWidth = Math.max( textWidth, ( int ) Math.ceil( this.textRenderer.getBounds( line ).getWidth( ) ) );
+        }
+
+        int yTop = height - this.padding;
+        int yBottom = yTop - lineHeight * this.lines.size( ) - this.padding;
+
+        GLUtils.enableStandardBlending( gl );
+        try
+        {
+            this.fillBuffer.clear( );
+            this.fillBuffer.growQuad2f( 0, yBottom, textWidth + 2 * this.padding, height );
+
+            this.fillProg.begin( gl );
+            try
+            {
+                this.fillProg.setPixelOrtho( gl, bounds );
+                this.fillProg.draw( gl, this.fillBuffer, this.backgroundColor );
+            }
+            finally
+            {
+                this.fillProg.end( gl );
+            }
+
+            this.textRenderer.beginRendering( width, height );
+            try
+            {
+                GlimpseColor.setColor( this.textRenderer, this.textColor );
+
+                int y = yTop;
+                for ( String line : this.lines )
+                {
+                    y -= lineHeight;
+                    this.textRenderer.draw( line, this.padding, y );
+                }
+            }
+            finally
+            {
+                this.textRenderer.endRendering( );
+            }
+        }
+        finally
+        {
+            GLUtils.disableBlending( gl );
+        }
+    }
+
+    @Override
+    protected void doDispose( GlimpseContext context )
+    {
+        if ( this.textRenderer != null ) this.textRenderer.dispose( );
+        this.textRenderer = null;
+
+        this.fillProg.dispose( context.getGL( ).getGL3( ) );
+        this.fillBuffer.dispose( context.getGL( ) );
+    }
+}
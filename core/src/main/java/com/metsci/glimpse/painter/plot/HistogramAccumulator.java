@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.painter.plot;
+
+import static com.metsci.glimpse.util.concurrent.ConcurrencyUtils.getSharedForkJoinPool;
+
+import java.util.concurrent.RecursiveTask;
+
+import it.unimi.dsi.fastutil.floats.Float2IntMap;
+import it.unimi.dsi.fastutil.floats.Float2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+/**
+ * Fixed-bin-width histogram counts, stored sparsely: only non-empty bins take up space, so
+ * outliers or widely spread values cost no more than clustered ones.
+ * <p>
+ * Large inputs are binned in parallel: the values are split into chunks with a fork-join
+ * task, each chunk is binned on its own, and the partial histograms are merged. A chunk whose
+ * values span few bins (relative to the number of values) is counted into a dense array, which
+ * is much faster than hashing each value; other chunks are counted into a hash map.
+ * Values can be added with {@link #append(float[])} and taken away with {@link #remove(float[])},
+ * so a sliding window can be maintained without re-binning the whole window. Bins whose counts
+ * drop to zero are removed, so a drifting window does not accumulate empty bins. Non-finite
+ * values are ignored.
+ * <p>
+ * The bin containing value {@code v} has index {@code floor( ( v - binStart ) / binSize )} and
+ * left edge {@code index * binSize + binStart}. {@link #getVersion()} changes whenever any count
+ * changes, which lets painters skip rebuilding their geometry when nothing changed.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class HistogramAccumulator
+{
+    // values binned per fork-join task before splitting further
+    protected static final int PARALLEL_CHUNK_SIZE = 1 << 20;
+
+    // a chunk of values is counted into a dense array if it spans at most this many bins per value
+    // (or at most MIN_DENSE_SPAN bins, however few values there are)
+    protected static final int DENSE_BINS_PER_VALUE = 4;
+    protected static final int MIN_DENSE_SPAN = 1 << 16;
+
+    protected final double binSize;
+    protected final double binStart;
+
+    // map from bin index to count, containing only non-empty bins
+    protected final Long2IntOpenHashMap counts;
+
+    protected long totalCount;
+    protected long version;
+
+    public HistogramAccumulator( double binSize, double binStart )
+    {
+        if ( !( binSize > 0 ) ) throw new IllegalArgumentException( "Bin size must be positive: " + binSize );
+
+        this.binSize = binSize;
+        this.binStart = binStart;
+
+        this.counts = new Long2IntOpenHashMap( );
+        this.totalCount = 0;
+        this.version = 0;
+    }
+
+    public double getBinSize( )
+    {
+        return this.binSize;
+    }
+
+    public double getBinStart( )
+    {
+        return this.binStart;
+    }
+
+    /**
+     * @return a value which changes whenever any bin count changes
+     */
+    public long getVersion( )
+    {
+        return this.version;
+    }
+
+    public long getTotalCount( )
+    {
+        return this.totalCount;
+    }
+
+    public int getNumNonEmptyBins( )
+    {
+        return this.counts.size( );
+    }
+
+    /**
+     * @return an unmodifiable view of the map from bin index to count, containing only non-empty bins
+     */
+    public Long2IntMap getCounts( )
+    {
+        return Long2IntMaps.unmodifiable( this.counts );
+    }
+
+    public int getCount( long bin )
+    {
+        return this.counts.get( bin );
+    }
+
+    public float getBinLeftEdge( long bin )
+    {
+        return ( float ) ( bin * this.binSize + this.binStart );
+    }
+
+    public long getBin( double value )
+    {
+        return ( long ) Math.floor( ( value - this.binStart ) / this.binSize );
+    }
+
+    /**
+     * @return a map from bin left edge to count, containing only non-empty bins
+     */
+    public Float2IntMap toMap( )
+    {
+        Float2IntMap map = new Float2IntOpenHashMap( this.counts.size( ) );
+        for ( Long2IntMap.Entry entry : this.counts.long2IntEntrySet( ) )
+        {
+            map.put( this.getBinLeftEdge( entry.getLongKey( ) ), entry.getIntValue( ) );
+        }
+        return map;
+    }
+
+    public void clear( )
+    {
+        if ( this.totalCount != 0 ) this.version++;
+
+        this.counts.clear( );
+        this.totalCount = 0;
+    }
+
+    public void append( float[] values )
+    {
+        this.append( values, 0, values.length );
+    }
+
+    public void append( float[] values, int from, int to )
+    {
+        this.merge( bin( new BinTask( values, null, from, to ) ), 1 );
+    }
+
+    public void append( double[] values )
+    {
+        this.append( values, 0, values.length );
+    }
+
+    public void append( double[] values, int from, int to )
+    {
+        this.merge( bin( new BinTask( null, values, from, to ) ), 1 );
+    }
+
+    /**
+     * Removes values which were previously appended.
+     *
+     * @throws IllegalArgumentException if any bin would end up with a negative count; in that case
+     *                                  the histogram is left unchanged
+     */
+    public void remove( float[] values )
+    {
+        this.remove( values, 0, values.length );
+    }
+
+    public void remove( float[] values, int from, int to )
+    {
+        this.merge( bin( new BinTask( values, null, from, to ) ), -1 );
+    }
+
+    public void remove( double[] values )
+    {
+        this.remove( values, 0, values.length );
+    }
+
+    public void remove( double[] values, int from, int to )
+    {
+        this.merge( bin( new BinTask( null, values, from, to ) ), -1 );
+    }
+
+    protected Partial bin( BinTask task )
+    {
+        if ( task.to - task.from > PARALLEL_CHUNK_SIZE )
+        {
+            return getSharedForkJoinPool( ).invoke( task );
+        }
+        else
+        {
+            return task.compute( );
+        }
+    }
+
+    protected void merge( Partial p, int sign )
+    {
+        if ( p.total == 0 ) return;
+
+        if ( sign < 0 )
+        {
+            // validate before modifying anything
+            long bin = p.checkRemovable( this.counts );
+            if ( bin != Long.MIN_VALUE )
+            {
+                throw new IllegalArgumentException( "Cannot remove values which were not added: bin " + this.getBinLeftEdge( bin ) );
+            }
+        }
+
+        p.addInto( this.counts, sign );
+
+        this.totalCount += sign * p.total;
+        this.version++;
+    }
+
+    protected static boolean isDenseSpan( long numBins, long numValues )
+    {
+        return numBins <= Math.max( MIN_DENSE_SPAN, DENSE_BINS_PER_VALUE * numValues );
+    }
+
+    /**
+     * Counts for part of the input values: either dense counts for a contiguous range of bins,
+     * or a sparse map from bin index to count.
+     */
+    protected static class Partial
+    {
+        protected final long firstBin;
+        protected final int[] dense;
+        protected final Long2IntOpenHashMap sparse;
+        protected final long total;
+
+        protected Partial( long firstBin, int[] dense, long total )
+        {
+            this.firstBin = firstBin;
+            this.dense = dense;
+            this.sparse = null;
+            this.total = total;
+        }
+
+        protected Partial( Long2IntOpenHashMap sparse, long total )
+        {
+            this.firstBin = 0;
+            this.dense = null;
+            this.sparse = sparse;
+            this.total = total;
+        }
+
+        protected static Partial merge( Partial a, Partial b )
+        {
+            if ( a.total == 0 ) return b;
+            if ( b.total == 0 ) return a;
+
+            if ( a.dense != null && b.dense != null )
+            {
+                long from = Math.min( a.firstBin, b.firstBin );
+                long to = Math.max( a.firstBin + a.dense.length, b.firstBin + b.dense.length );
+                if ( isDenseSpan( to - from, a.total + b.total ) )
+                {
+                    int[] dense = new int[( int ) ( to - from )];
+                    a.addInto( dense, from );
+                    b.addInto( dense, from );
+                    return new Partial( from, dense, a.total + b.total );
+                }
+            }
+
+            Long2IntOpenHashMap sparse;
+            if ( a.sparse != null )
+            {
+                sparse = a.sparse;
+                b.addInto( sparse, 1 );
+            }
+            else if ( b.sparse != null )
+            {
+                sparse = b.sparse;
+                a.addInto( sparse, 1 );
+            }
+            else
+            {
+                sparse = new Long2IntOpenHashMap( );
+                a.addInto( sparse, 1 );
+                b.addInto( sparse, 1 );
+            }
+            return new Partial( sparse, a.total + b.total );
+        }
+
+        protected void addInto( int[] counts, long from )
+        {
+            int offset = ( int ) ( this.firstBin - from );
+            for ( int i = 0; i < this.dense.length; i++ )
+            {
+                counts[offset + i] += this.dense[i];
+            }
+        }
+
+        // adds ( sign * count ) to each bin, removing bins whose counts drop to zero
+        protected void addInto( Long2IntOpenHashMap counts, int sign )
+        {
+            if ( this.dense != null )
+            {
+                for ( int i = 0; i < this.dense.length; i++ )
+                {
+                    if ( this.dense[i] != 0 ) addTo( counts, this.firstBin + i, sign * this.dense[i] );
+                }
+            }
+            else
+            {
+                for ( Long2IntMap.Entry entry : this.sparse.long2IntEntrySet( ) )
+                {
+                    addTo( counts, entry.getLongKey( ), sign * entry.getIntValue( ) );
+                }
+            }
+        }
+
+        protected static void addTo( Long2IntOpenHashMap counts, long bin, int delta )
+        {
+            if ( counts.addTo( bin, delta ) + delta == 0 ) counts.remove( bin );
+        }
+
+        // returns a bin which has fewer values in counts than in this partial, or Long.MIN_VALUE if there are none
+        protected long checkRemovable( Long2IntOpenHashMap counts )
+        {
+            if ( this.dense != null )
+            {
+                for ( int i = 0; i < this.dense.length; i++ )
+                {
+                    if ( this.dense[i] != 0 && counts.get( this.firstBin + i ) < this.dense[i] ) return this.firstBin + i;
+                }
+            }
+            else
+            {
+                for ( Long2IntMap.Entry entry : this.sparse.long2IntEntrySet( ) )
+                {
+                    if ( counts.get( entry.getLongKey( ) ) < entry.getIntValue( ) ) return entry.getLongKey( );
+                }
+            }
+            return Long.MIN_VALUE;
+        }
+    }
+
+    protected class BinTask extends RecursiveTask<Partial>
+    {
+        private static final long serialVersionUID = 1L;
+
+        protected final float[] floats;
+        protected final double[] doubles;
+        protected final int from;
+        protected final int to;
+
+        protected BinTask( float[] floats, double[] doubles, int from, int to )
+        {
+            this.floats = floats;
+            this.doubles = doubles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute( )
+        {
+            if ( this.to - this.from > PARALLEL_CHUNK_SIZE )
+            {
+                int mid = ( this.from + this.to ) >>> 1;
+                BinTask left = new BinTask( this.floats, this.doubles, this.from, mid );
+                BinTask right = new BinTask( this.floats, this.doubles, mid, this.to );
+                left.fork( );
+                Partial rightResult = right.compute( );
+                return Partial.merge( left.join( ), rightResult );
+            }
+
+            // first pass finds the bin range, to decide whether the values can be counted into a dense array
+            long minBin = Long.MAX_VALUE;
+            long maxBin = Long.MIN_VALUE;
+            for ( int i = this.from; i < this.to; i++ )
+            {
+                double v = this.value( i );
+                if ( Double.isNaN( v ) || Double.isInfinite( v ) ) continue;
+
+                long bin = getBin( v );
+                if ( bin < minBin ) minBin = bin;
+                if ( bin > maxBin ) maxBin = bin;
+            }
+
+            if ( minBin > maxBin ) return new Partial( 0, new int[0], 0 );
+
+            // maxBin - minBin can overflow for extreme values, in which case the span is certainly not dense
+            long span = maxBin - minBin + 1;
+            if ( span > 0 && isDenseSpan( span, this.to - this.from ) )
+            {
+                int[] dense = new int[( int ) span];
+                long total = 0;
+                for ( int i = this.from; i < this.to; i++ )
+                {
+                    double v = this.value( i );
+                    if ( Double.isNaN( v ) || Double.isInfinite( v ) ) continue;
+
+                    dense[( int ) ( getBin( v ) - minBin )]++;
+                    total++;
+                }
+                return new Partial( minBin, dense, total );
+            }
+            else
+            {
+                Long2IntOpenHashMap sparse = new Long2IntOpenHashMap( );
+                long total = 0;
+                for ( int i = this.from; i < this.to; i++ )
+                {
+                    double v = this.value( i );
+                    if ( Double.isNaN( v ) || Double.isInfinite( v ) ) continue;
+
+                    sparse.addTo( getBin( v ), 1 );
+                    total++;
+                }
+                return new Partial( sparse, total );
+            }
+        }
+
+        protected double value( int i )
+        {
+            return this.floats != null ? this.floats[i] : this.doubles[i];
+        }
+    }
+}
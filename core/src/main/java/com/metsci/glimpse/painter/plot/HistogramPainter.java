@@ -42,7 +42,7 @@ import com.metsci.glimpse.painter.base.GlimpsePainterBase;
 import com.metsci.glimpse.support.shader.triangle.FlatColorProgram;
 
 import it.unimi.dsi.fastutil.floats.Float2IntMap;
-import it.unimi.dsi.fastutil.floats.Float2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
 
 /**
  * Plots a simple frequency histogram. Binning of
@@ -51,6 +51,11 @@ import it.unimi.dsi.fastutil.floats.Float2IntOpenHashMap;
  * Construct with asDensity = true to scale as a density
  * estimate instead of as a frequency histogram.
  *
+ * Binning is done by a {@link HistogramAccumulator}, in parallel
+ * for large inputs. Values can be added or removed incrementally
+ * with {@link #appendData(float[])} and {@link #removeData(float[])},
+ * and bar geometry is only rebuilt when bin counts change.
+ *
  * @author ulman
  */
 public class HistogramPainter extends GlimpsePainterBase
@@ -79,6 +84,10 @@ public class HistogramPainter extends GlimpsePainterBase
 
     protected final boolean asDensity;
 
+    // source of the current bars, or null if they were set from a Float2IntMap
+    protected HistogramAccumulator accumulator;
+    protected long accumulatorVersion;
+
     protected FlatColorProgram fillProg;
 
     public HistogramPainter( boolean asDensity )
@@ -97,6 +106,7 @@ public class HistogramPainter extends GlimpsePainterBase
     public void setColor( float[] rgba )
     {
         this.barColor = rgba;
+        invalidate( );
     }
 
     public void setColor( float r, float g, float b, float a )
@@ -105,6 +115,7 @@ public class HistogramPainter extends GlimpsePainterBase
         this.barColor[1] = g;
         this.barColor[2] = b;
         this.barColor[3] = a;
+        invalidate( );
     }
 
     public void autoAdjustAxisBounds( Axis2D axis )
@@ -172,27 +183,10 @@ public class HistogramPainter extends GlimpsePainterBase
 
     public void setData( double[] data, int size, double binSize, double binStart )
     {
-        this.binStart = ( float ) binStart;
-
-        Float2IntMap counts = new Float2IntOpenHashMap( );
+        HistogramAccumulator accumulator = new HistogramAccumulator( binSize, binStart );
+        accumulator.append( data, 0, size );
 
-        for ( int i = 0; i < size; i++ )
-        {
-            double value = data[i];
-
-            float bin = getBin( value, binSize, binStart );
-
-            if ( !counts.containsKey( bin ) )
-            {
-                counts.put( bin, 1 );
-            }
-            else
-            {
-                counts.put( bin, counts.get( bin ) + 1 );
-            }
-        }
-
-        setData( counts, size, ( float ) binSize );
+        setData( accumulator );
     }
 
     /**
@@ -223,81 +217,213 @@ public class HistogramPainter extends GlimpsePainterBase
         dataBufferLock.lock( );
         try
         {
-            newData = true;
-
-            this.binSize = binSize;
+            this.accumulator = null;
 
-            minY = 0;
-            maxY = 0;
+            prepareBars( counts.size( ), binSize );
 
-            minX = Float.POSITIVE_INFINITY;
-            maxX = Float.NEGATIVE_INFINITY;
-
-            dataSize = counts.size( );
+            final float denom = ( asDensity ) ? ( binSize * totalCount ) : totalCount;
 
-            if ( dataBuffer == null || dataBuffer.rewind( ).capacity( ) < dataSize * FLOATS_PER_BAR )
+            for ( Float2IntMap.Entry entry : counts.float2IntEntrySet( ) )
             {
-                dataBuffer = Buffers.newDirectFloatBuffer( dataSize * FLOATS_PER_BAR );
+                putBar( entry.getFloatKey( ), entry.getIntValue( ) / denom );
             }
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
 
-            final float denom = ( asDensity ) ? ( binSize * totalCount ) : totalCount;
+        invalidate( );
+    }
 
-            for ( Float2IntMap.Entry entry : counts.float2IntEntrySet( ) )
-            {
-                float bin = entry.getFloatKey( );
-                int count = entry.getIntValue( );
+    /**
+     * Sets the histogram data from pre-binned counts. The accumulator is retained, and bars are
+     * only rebuilt if its counts have changed since they were last built (so calling this again
+     * with the same, unmodified accumulator does nothing).
+     */
+    public void setData( HistogramAccumulator accumulator )
+    {
+        dataBufferLock.lock( );
+        try
+        {
+            if ( accumulator == this.accumulator && accumulator.getVersion( ) == this.accumulatorVersion ) return;
 
-                float freq = count / denom;
+            if ( accumulator != this.accumulator ) this.accumulatorVersion = -1;
 
-                if ( freq > maxY ) maxY = freq;
+            this.accumulator = accumulator;
+            this.binStart = ( float ) accumulator.getBinStart( );
+            updateBars( );
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
 
-                if ( bin < minX ) minX = bin;
+        invalidate( );
+    }
 
-                if ( bin > maxX ) maxX = bin;
+    /**
+     * Adds values to the current histogram, without re-binning existing values.
+     *
+     * @throws IllegalStateException if the current data was not set from values or a {@link HistogramAccumulator}
+     */
+    public void appendData( float[] values )
+    {
+        dataBufferLock.lock( );
+        try
+        {
+            requireAccumulator( ).append( values );
+            updateBars( );
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
 
-                dataBuffer.put( bin ).put( 0 );
-                dataBuffer.put( bin ).put( freq );
-                dataBuffer.put( bin + this.binSize ).put( freq );
+        invalidate( );
+    }
 
-                dataBuffer.put( bin + this.binSize ).put( freq );
-                dataBuffer.put( bin + this.binSize ).put( 0 );
-                dataBuffer.put( bin ).put( 0 );
-            }
+    public void appendData( double[] values )
+    {
+        dataBufferLock.lock( );
+        try
+        {
+            requireAccumulator( ).append( values );
+            updateBars( );
         }
         finally
         {
             dataBufferLock.unlock( );
         }
+
+        invalidate( );
     }
 
-    public void setData( double[] data, float binSize, float binStart )
+    /**
+     * Removes previously added values from the current histogram, e.g. values sliding
+     * out of a time window.
+     *
+     * @see HistogramAccumulator#remove(float[])
+     */
+    public void removeData( float[] values )
     {
-        setData( data, data.length, binSize, binStart );
+        dataBufferLock.lock( );
+        try
+        {
+            requireAccumulator( ).remove( values );
+            updateBars( );
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
+
+        invalidate( );
     }
 
-    public void setData( float[] data, int size, float binSize, float binStart )
+    public void removeData( double[] values )
     {
-        this.binStart = binStart;
+        dataBufferLock.lock( );
+        try
+        {
+            requireAccumulator( ).remove( values );
+            updateBars( );
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
 
-        Float2IntMap counts = new Float2IntOpenHashMap( );
+        invalidate( );
+    }
 
-        for ( int i = 0; i < size; i++ )
+    public HistogramAccumulator getAccumulator( )
+    {
+        return this.accumulator;
+    }
+
+    protected HistogramAccumulator requireAccumulator( )
+    {
+        if ( this.accumulator == null )
         {
-            float value = data[i];
+            throw new IllegalStateException( "Histogram data was not set from values or a HistogramAccumulator" );
+        }
 
-            float bin = getBin( value, binSize, binStart );
+        return this.accumulator;
+    }
 
-            if ( !counts.containsKey( bin ) )
-            {
-                counts.put( bin, 1 );
-            }
-            else
-            {
-                counts.put( bin, counts.get( bin ) + 1 );
-            }
+    /**
+     * Rebuilds the bars from {@link #accumulator}, if its counts have changed. Must be
+     * called while holding {@link #dataBufferLock}.
+     */
+    protected void updateBars( )
+    {
+        HistogramAccumulator accum = this.accumulator;
+        if ( accum.getVersion( ) == this.accumulatorVersion ) return;
+
+        float binSize = ( float ) accum.getBinSize( );
+        long totalCount = accum.getTotalCount( );
+
+        prepareBars( accum.getNumNonEmptyBins( ), binSize );
+
+        final float denom = ( asDensity ) ? ( binSize * totalCount ) : totalCount;
+
+        for ( Long2IntMap.Entry entry : accum.getCounts( ).long2IntEntrySet( ) )
+        {
+            putBar( accum.getBinLeftEdge( entry.getLongKey( ) ), entry.getIntValue( ) / denom );
+        }
+
+        this.accumulatorVersion = accum.getVersion( );
+    }
+
+    protected void prepareBars( int numBars, float binSize )
+    {
+        newData = true;
+
+        this.binSize = binSize;
+
+        minY = 0;
+        maxY = 0;
+
+        minX = Float.POSITIVE_INFINITY;
+        maxX = Float.NEGATIVE_INFINITY;
+
+        dataSize = numBars;
+
+        if ( dataBuffer == null || dataBuffer.rewind( ).capacity( ) < dataSize * FLOATS_PER_BAR )
+        {
+            dataBuffer = Buffers.newDirectFloatBuffer( dataSize * FLOATS_PER_BAR );
         }
+    }
+
+    protected void putBar( float bin, float freq )
+    {
+        if ( freq > maxY ) maxY = freq;
+
+        if ( bin < minX ) minX = bin;
+
+        if ( bin > maxX ) maxX = bin;
+
+        dataBuffer.put( bin ).put( 0 );
+        dataBuffer.put( bin ).put( freq );
+        dataBuffer.put( bin + this.binSize ).put( freq );
+
+        dataBuffer.put( bin + this.binSize ).put( freq );
+        dataBuffer.put( bin + this.binSize ).put( 0 );
+        dataBuffer.put( bin ).put( 0 );
+    }
+
+    public void setData( double[] data, float binSize, float binStart )
+    {
+        setData( data, data.length, binSize, binStart );
+    }
+
+    public void setData( float[] data, int size, float binSize, float binStart )
+    {
+        HistogramAccumulator accumulator = new HistogramAccumulator( binSize, binStart );
+        accumulator.append( data, 0, size );
 
-        setData( counts, size, binSize );
+        setData( accumulator );
     }
 
     public float getBinSize( )
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.painter.plot;
+
+import static com.metsci.glimpse.util.concurrent.ConcurrencyUtils.getSharedForkJoinPool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import com.metsci.glimpse.util.primitives.FloatsArray;
+
+/**
+ * A min/max decimation pyramid over a series whose x values are sorted in non-decreasing order.
+ * <p>
+ * Level 0 divides the samples into buckets of {@link #BASE_BUCKET_SIZE} consecutive samples, and
+ * each level above it has buckets twice as large. For every bucket the pyramid stores the index of
+ * its minimum-y and maximum-y samples. Drawing the first, min, max, and last sample of each bucket
+ * (M4 decimation) reproduces the pixel-level appearance of the full series, so when one bucket spans
+ * about one pixel column the vertex count depends only on the width of the plot.
+ * <p>
+ * The pyramid is built in parallel. Samples may be appended at the tail with {@link #append(float[], float[], int, int)},
+ * which only recomputes the buckets that the new samples fall into.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class MinMaxPyramid
+{
+    public static final int BASE_BUCKET_SIZE = 4;
+
+    // buckets computed per fork-join task before splitting further
+    protected static final int PARALLEL_CHUNK_SIZE = 64 * 1024;
+
+    protected static class Level
+    {
+        protected final int bucketSize;
+        protected int[] minIndex;
+        protected int[] maxIndex;
+        protected int numBuckets;
+
+        protected Level( int bucketSize, int capacity )
+        {
+            this.bucketSize = bucketSize;
+            this.minIndex = new int[Math.max( 1, capacity )];
+            this.maxIndex = new int[Math.max( 1, capacity )];
+            this.numBuckets = 0;
+        }
+
+        protected void ensureCapacity( int minCapacity )
+        {
+            if ( this.minIndex.length < minCapacity )
+            {
+                int capacity = Math.max( minCapacity, this.minIndex.length * 2 );
+                this.minIndex = Arrays.copyOf( this.minIndex, capacity );
+                this.maxIndex = Arrays.copyOf( this.maxIndex, capacity );
+            }
+        }
+    }
+
+    protected float[] x;
+    protected float[] y;
+    protected int n;
+
+    protected final List<Level> levels;
+
+    /**
+     * Copies the first {@code n} samples of {@code x} and {@code y} and builds the pyramid.
+     * The x values must be sorted in non-decreasing order.
+     */
+    public MinMaxPyramid( float[] x, float[] y, int n )
+    {
+        this.x = Arrays.copyOf( x, Math.max( 1, n ) );
+        this.y = Arrays.copyOf( y, Math.max( 1, n ) );
+        this.n = n;
+        this.levels = new ArrayList<Level>( );
+
+        this.updateLevels( 0 );
+    }
+
+    public MinMaxPyramid( float[] x, float[] y )
+    {
+        this( x, y, Math.min( x.length, y.length ) );
+    }
+
+    public int size( )
+    {
+        return this.n;
+    }
+
+    public int numLevels( )
+    {
+        return this.levels.size( );
+    }
+
+    public int bucketSize( int level )
+    {
+        return this.levels.get( level ).bucketSize;
+    }
+
+    public float x( int i )
+    {
+        return this.x[i];
+    }
+
+    public float y( int i )
+    {
+        return this.y[i];
+    }
+
+    /**
+     * Appends samples to the tail of the series. The first appended x value must not be
+     * less than the current last x value, and the appended x values must be sorted.
+     */
+    public void append( float[] xs, float[] ys, int from, int count )
+    {
+        if ( count <= 0 ) return;
+
+        if ( this.n > 0 && xs[from] < this.x[this.n - 1] )
+        {
+            throw new IllegalArgumentException( "Appended x values must not be less than the current last x value: " + xs[from] + " < " + this.x[this.n - 1] );
+        }
+
+        int oldN = this.n;
+        int newN = oldN + count;
+        if ( this.x.length < newN )
+        {
+            int capacity = Math.max( newN, ( int ) Math.min( Integer.MAX_VALUE, this.x.length * 2L ) );
+            this.x = Arrays.copyOf( this.x, capacity );
+            this.y = Arrays.copyOf( this.y, capacity );
+        }
+
+        System.arraycopy( xs, from, this.x, oldN, count );
+        System.arraycopy( ys, from, this.y, oldN, count );
+        this.n = newN;
+
+        this.updateLevels( oldN );
+    }
+
+    public void append( float[] xs, float[] ys )
+    {
+        this.append( xs, ys, 0, Math.min( xs.length, ys.length ) );
+    }
+
+    /**
+     * Recomputes every bucket containing samples at or after {@code firstChanged}, and adds
+     * levels at the top until the top level has a single bucket.
+     */
+    protected void updateLevels( int firstChanged )
+    {
+        int bucketSize = BASE_BUCKET_SIZE;
+        for ( int k = 0; this.n > 0; k++ )
+        {
+            Level level;
+            if ( k < this.levels.size( ) )
+            {
+                level = this.levels.get( k );
+            }
+            else
+            {
+                level = new Level( bucketSize, numBuckets( this.n, bucketSize ) );
+                this.levels.add( level );
+            }
+
+            int newNumBuckets = numBuckets( this.n, bucketSize );
+            level.ensureCapacity( newNumBuckets );
+            level.numBuckets = newNumBuckets;
+
+            int firstBucket = firstChanged / bucketSize;
+            int count = newNumBuckets - firstBucket;
+            if ( count > PARALLEL_CHUNK_SIZE )
+            {
+                getSharedForkJoinPool( ).invoke( new BuildTask( k, firstBucket, newNumBuckets ) );
+            }
+            else
+            {
+                this.computeBuckets( k, firstBucket, newNumBuckets );
+            }
+
+            if ( newNumBuckets <= 1 ) break;
+
+            bucketSize *= 2;
+        }
+    }
+
+    protected static int numBuckets( int n, int bucketSize )
+    {
+        return ( int ) ( ( n + ( long ) bucketSize - 1 ) / bucketSize );
+    }
+
+    protected void computeBuckets( int k, int fromBucket, int toBucket )
+    {
+        Level level = this.levels.get( k );
+        float[] y = this.y;
+
+        if ( k == 0 )
+        {
+            for ( int b = fromBucket; b < toBucket; b++ )
+            {
+                int start = b * level.bucketSize;
+                int end = Math.min( this.n, start + level.bucketSize );
+
+                int iMin = start;
+                int iMax = start;
+                for ( int i = start + 1; i < end; i++ )
+                {
+                    if ( y[i] < y[iMin] ) iMin = i;
+                    if ( y[i] > y[iMax] ) iMax = i;
+                }
+
+                level.minIndex[b] = iMin;
+                level.maxIndex[b] = iMax;
+            }
+        }
+        else
+        {
+            Level child = this.levels.get( k - 1 );
+            for ( int b = fromBucket; b < toBucket; b++ )
+            {
+                int c0 = 2 * b;
+                int c1 = c0 + 1;
+
+                int iMin = child.minIndex[c0];
+                int iMax = child.maxIndex[c0];
+                if ( c1 < child.numBuckets )
+                {
+                    if ( y[child.minIndex[c1]] < y[iMin] ) iMin = child.minIndex[c1];
+                    if ( y[child.maxIndex[c1]] > y[iMax] ) iMax = child.maxIndex[c1];
+                }
+
+                level.minIndex[b] = iMin;
+                level.maxIndex[b] = iMax;
+            }
+        }
+    }
+
+    protected class BuildTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        protected final int k;
+        protected final int fromBucket;
+        protected final int toBucket;
+
+        protected BuildTask( int k, int fromBucket, int toBucket )
+        {
+            this.k = k;
+            this.fromBucket = fromBucket;
+            this.toBucket = toBucket;
+        }
+
+        @Override
+        protected void compute( )
+        {
+            if ( this.toBucket - this.fromBucket <= PARALLEL_CHUNK_SIZE )
+            {
+                computeBuckets( this.k, this.fromBucket, this.toBucket );
+            }
+            else
+            {
+                int mid = ( this.fromBucket + this.toBucket ) >>> 1;
+                invokeAll( new BuildTask( this.k, this.fromBucket, mid ), new BuildTask( this.k, mid, this.toBucket ) );
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first sample with x greater than or equal to {@code value}
+     */
+    public int indexAtOrAfter( double value )
+    {
+        int lo = 0;
+        int hi = this.n;
+        while ( lo < hi )
+        {
+            int mid = ( lo + hi ) >>> 1;
+            if ( this.x[mid] < value )
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @return the index of the last sample with x less than or equal to {@code value}, or -1
+     */
+    public int indexAtOrBefore( double value )
+    {
+        int lo = 0;
+        int hi = this.n;
+        while ( lo < hi )
+        {
+            int mid = ( lo + hi ) >>> 1;
+            if ( this.x[mid] <= value )
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo - 1;
+    }
+
+    /**
+     * Chooses the coarsest level whose buckets hold no more than {@code samplesPerBucket} samples.
+     *
+     * @return the level index, or -1 if the raw samples should be drawn
+     */
+    public int selectLevel( double samplesPerBucket )
+    {
+        int selected = -1;
+        for ( int k = 0; k < this.levels.size( ); k++ )
+        {
+            if ( this.levels.get( k ).bucketSize > samplesPerBucket ) break;
+            selected = k;
+        }
+        return selected;
+    }
+
+    /**
+     * Appends the interleaved x,y vertices that represent samples {@code first} through {@code last}
+     * (inclusive) at the given level. The range is widened to whole buckets. Level -1 emits the raw samples.
+     */
+    public void appendVertices( int level, int first, int last, FloatsArray xyOut )
+    {
+        if ( this.n == 0 || last < first ) return;
+
+        first = Math.max( 0, first );
+        last = Math.min( this.n - 1, last );
+
+        if ( level < 0 )
+        {
+            xyOut.ensureCapacity( xyOut.n + 2 * ( last - first + 1 ) );
+            for ( int i = first; i <= last; i++ )
+            {
+                this.appendVertex( i, xyOut );
+            }
+            return;
+        }
+
+        Level lev = this.levels.get( level );
+        int firstBucket = first / lev.bucketSize;
+        int lastBucket = last / lev.bucketSize;
+
+        xyOut.ensureCapacity( xyOut.n + 8 * ( lastBucket - firstBucket + 1 ) );
+        for ( int b = firstBucket; b <= lastBucket; b++ )
+        {
+            int start = b * lev.bucketSize;
+            int end = Math.min( this.n, start + lev.bucketSize ) - 1;
+            int iMin = lev.minIndex[b];
+            int iMax = lev.maxIndex[b];
+
+            // first, min and max in sample order, then last
+            int iLo = Math.min( iMin, iMax );
+            int iHi = Math.max( iMin, iMax );
+
+            this.appendVertex( start, xyOut );
+            if ( iLo != start ) this.appendVertex( iLo, xyOut );
+            if ( iHi != iLo && iHi != start ) this.appendVertex( iHi, xyOut );
+            if ( end != iHi && end != start ) this.appendVertex( end, xyOut );
+        }
+    }
+
+    protected void appendVertex( int i, FloatsArray xyOut )
+    {
+        xyOut.append( this.x[i] );
+        xyOut.append( this.y[i] );
+    }
+}
@@ -41,9 +41,15 @@ import com.metsci.glimpse.support.shader.line.LineJoinType;
 import com.metsci.glimpse.support.shader.line.LineStyle;
 import com.metsci.glimpse.support.shader.line.LineUtils;
 import com.metsci.glimpse.support.shader.point.PointArrayColorProgram;
+import com.metsci.glimpse.util.primitives.FloatsArray;
 
 /**
  * Plots a simple x-y lineplot. Provides options for modifying line thickness and color.
+ * <p>
+ * Very large series with sorted x values can be set with {@link #setDecimatedData(float[], float[], float[])}.
+ * A {@link MinMaxPyramid} is built over the samples, and on each paint only the vertices of the level
+ * whose buckets are about one pixel wide are uploaded, so rendering cost tracks the plot width rather
+ * than the number of samples.
  *
  * @author ulman
  */
@@ -63,6 +69,17 @@ public class XYLinePainter extends GlimpsePainterBase
     protected boolean showPoints = true;
     protected boolean showLines = true;
 
+    // decimated series mode: null unless setDecimatedData has been called
+    protected MinMaxPyramid pyramid;
+    protected float[] decimatedColor;
+    protected FloatsArray decimatedXy;
+
+    // describes the vertices currently in path, so they are only rebuilt when the view changes
+    protected int pathLevel;
+    protected int pathFirstBucket;
+    protected int pathLastBucket;
+    protected int pathDataSize;
+
     public XYLinePainter( )
     {
         this.path = new ColorLinePath( );
@@ -72,6 +89,9 @@ public class XYLinePainter extends GlimpsePainterBase
         this.style.joinType = LineJoinType.JOIN_BEVEL;
         
         this.pointProg = new PointArrayColorProgram( );
+
+        this.decimatedXy = new FloatsArray( );
+        this.pyramid = null;
     }
 
     public void setDataAndColor( double[] dataX, double[] dataY, double[] dataZ, ColorMap scale )
@@ -81,6 +101,7 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             int dataSize = Math.min( dataX.length, dataY.length );
 
+            this.pyramid = null;
             this.path.clear( );
 
             float[] rgba = new float[4];
@@ -99,6 +120,8 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             this.painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void setDataAndColor( float[] dataX, float[] dataY, float[] dataZ, ColorMap scale )
@@ -108,6 +131,7 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             int dataSize = Math.min( dataX.length, dataY.length );
 
+            this.pyramid = null;
             this.path.clear( );
 
             float[] rgba = new float[4];
@@ -126,6 +150,8 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             this.painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void setDataAndColor( float[] dataX, float[] dataY, float[][] rgba )
@@ -135,6 +161,7 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             int dataSize = Math.min( dataX.length, dataY.length );
 
+            this.pyramid = null;
             this.path.clear( );
 
             for ( int i = 0; i < dataSize; i++ )
@@ -149,6 +176,8 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             this.painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void setData( float[] dataX, float[] dataY )
@@ -163,6 +192,7 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             int dataSize = Math.min( dataX.length, dataY.length );
 
+            this.pyramid = null;
             this.path.clear( );
 
             for ( int i = 0; i < dataSize; i++ )
@@ -177,11 +207,76 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             this.painterLock.unlock( );
         }
+
+        invalidate( );
+    }
+
+    public void setDecimatedData( float[] dataX, float[] dataY )
+    {
+        this.setDecimatedData( dataX, dataY, defaultColor );
+    }
+
+    /**
+     * Sets a series to be drawn with min/max decimation. The x values must be sorted in
+     * non-decreasing order. The data is copied, and the decimation pyramid is built (in parallel)
+     * on the calling thread, before the painter lock is taken.
+     *
+     * @see #appendDecimatedData(float[], float[])
+     */
+    public void setDecimatedData( float[] dataX, float[] dataY, float[] color )
+    {
+        MinMaxPyramid newPyramid = new MinMaxPyramid( dataX, dataY );
+
+        this.painterLock.lock( );
+        try
+        {
+            this.pyramid = newPyramid;
+            this.decimatedColor = color.clone( );
+            this.pathDataSize = -1;
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+
+        invalidate( );
+    }
+
+    /**
+     * Appends samples to the tail of the decimated series, updating only the affected buckets
+     * of the pyramid. The appended x values must be sorted, and must not be less than the last
+     * existing x value. If no decimated series has been set, one is started.
+     */
+    public void appendDecimatedData( float[] dataX, float[] dataY )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            if ( this.pyramid == null )
+            {
+                this.pyramid = new MinMaxPyramid( dataX, dataY );
+                this.decimatedColor = defaultColor;
+                this.path.clear( );
+            }
+            else
+            {
+                this.pyramid.append( dataX, dataY );
+            }
+
+            this.pathDataSize = -1;
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+
+        invalidate( );
     }
 
     public void setLineStipple( boolean activate )
     {
         this.style.stippleEnable = activate;
+        invalidate( );
     }
 
     public void setLineStipple( int stippleFactor, short stipplePattern )
@@ -189,36 +284,43 @@ public class XYLinePainter extends GlimpsePainterBase
         this.style.stippleEnable = true;
         this.style.stippleScale = stippleFactor;
         this.style.stipplePattern = stipplePattern;
+        invalidate( );
     }
 
     public void setLineThickness( float lineThickness )
     {
         this.style.thickness_PX = lineThickness;
+        invalidate( );
     }
 
     public void setLineStyle( LineStyle style )
     {
         this.style = style;
+        invalidate( );
     }
 
     public void setPointSize( float pointSize )
     {
         this.pointSize = pointSize;
+        invalidate( );
     }
     
     public void setPointFeather( float pointFeather )
     {
         this.pointFeather = pointFeather;
+        invalidate( );
     }
 
     public void showPoints( boolean show )
     {
         this.showPoints = show;
+        invalidate( );
     }
 
     public void showLines( boolean show )
     {
         this.showLines = show;
+        invalidate( );
     }
 
     @Override
@@ -236,6 +338,11 @@ public class XYLinePainter extends GlimpsePainterBase
         Axis2D axis = requireAxis2D( context );
         double ppvAspectRatio = LineUtils.ppvAspectRatio( axis );
 
+        if ( this.pyramid != null )
+        {
+            this.updateDecimatedPath( axis, bounds );
+        }
+
         GLUtils.enableStandardBlending( gl );
         try
         {
@@ -278,4 +385,47 @@ public class XYLinePainter extends GlimpsePainterBase
             GLUtils.disableBlending( gl );
         }
     }
+
+    /**
+     * Refills {@link #path} with the visible portion of the decimated series, at the pyramid level
+     * whose buckets are closest to one pixel wide. Does nothing if the same buckets are already loaded.
+     */
+    protected void updateDecimatedPath( Axis2D axis, GlimpseBounds bounds )
+    {
+        MinMaxPyramid pyramid = this.pyramid;
+        int size = pyramid.size( );
+
+        // include one sample beyond each edge, so the line continues off-screen
+        int first = Math.max( 0, pyramid.indexAtOrAfter( axis.getMinX( ) ) - 1 );
+        int last = Math.min( size - 1, pyramid.indexAtOrBefore( axis.getMaxX( ) ) + 1 );
+
+        int pixels = Math.max( 1, bounds.getWidth( ) );
+        int level = pyramid.selectLevel( ( last - first + 1 ) / ( double ) pixels );
+        int bucketSize = level < 0 ? 1 : pyramid.bucketSize( level );
+        int firstBucket = first / bucketSize;
+        int lastBucket = last / bucketSize;
+
+        if ( level == this.pathLevel && firstBucket == this.pathFirstBucket && lastBucket == this.pathLastBucket && size == this.pathDataSize )
+        {
+            return;
+        }
+
+        this.decimatedXy.n = 0;
+        pyramid.appendVertices( level, first, last, this.decimatedXy );
+
+        this.path.clear( );
+        float[] xy = this.decimatedXy.a;
+        for ( int i = 0; i < this.decimatedXy.n; i += 2 )
+        {
+            if ( i == 0 )
+                this.path.moveTo( xy[i], xy[i + 1], this.decimatedColor );
+            else
+                this.path.lineTo( xy[i], xy[i + 1], this.decimatedColor );
+        }
+
+        this.pathLevel = level;
+        this.pathFirstBucket = firstBucket;
+        this.pathLastBucket = lastBucket;
+        this.pathDataSize = size;
+    }
 }
@@ -32,25 +32,30 @@ import static com.metsci.glimpse.gl.util.GLUtils.enableStandardBlending;
 import static com.metsci.glimpse.util.GeneralUtils.floats;
 import static javax.media.opengl.GL.GL_ARRAY_BUFFER;
 import static javax.media.opengl.GL.GL_BLEND;
+import static javax.media.opengl.GL.GL_DYNAMIC_DRAW;
 import static javax.media.opengl.GL.GL_FLOAT;
 import static javax.media.opengl.GL.GL_LINE_STRIP;
-import static javax.media.opengl.GL2ES2.GL_STREAM_DRAW;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntRBTreeSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSets;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import javax.media.opengl.GL2ES2;
 import javax.media.opengl.GL3;
 
-import com.google.common.collect.Sets;
 import com.metsci.glimpse.axis.Axis2D;
 import com.metsci.glimpse.context.GlimpseBounds;
 import com.metsci.glimpse.context.GlimpseContext;
+import com.metsci.glimpse.gl.GLMirroredBuffer;
 import com.metsci.glimpse.gl.GLStreamingBuffer;
 import com.metsci.glimpse.gl.util.GLUtils;
 import com.metsci.glimpse.painter.base.GlimpsePainterBase;
@@ -63,6 +68,9 @@ import com.metsci.glimpse.util.primitives.FloatsArray;
  * Efficiently paints dynamically changing groups of colored lines. Support is provided
  * for very efficiently changing the color of existing lines, as well as for adding
  * to existing sets of lines.
+ * <p>
+ * Host-side changes are tracked as dirty line ranges, and only those ranges are
+ * uploaded to the persistent device buffers on the next paint (see {@link GLMirroredBuffer}).
  *
  * @author ulman
  * @see com.metsci.glimpse.examples.misc.DynamicLinePainterExample
@@ -75,20 +83,17 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
     protected static final int DEFAULT_INITIAL_SIZE = 2000;
     protected static final float[] DEFAULT_COLOR = GlimpseColor.getBlack( );
 
-    protected boolean rgbaBufferDirty = false;
-    protected boolean xyBufferDirty = false;
-
     protected FloatBuffer rgbaBuffer;
     protected FloatBuffer xyBuffer;
 
-    protected GLStreamingBuffer rgbaStreamingBuffer;
-    protected GLStreamingBuffer xyStreamingBuffer;
+    // device copies of rgbaBuffer and xyBuffer (one element per line)
+    protected GLMirroredBuffer rgbaDeviceBuffer;
+    protected GLMirroredBuffer xyDeviceBuffer;
     protected FloatBuffer tempBuffer;
 
-    // point id (which can be any object) -> index into pointBuffer
-    // good place for Guava BiMap here...
-    protected Map<Object, Integer> idMap;
-    protected Map<Integer, Object> indexMap;
+    // line id (which can be any object) -> index into xyBuffer and rgbaBuffer
+    protected Object2IntMap<Object> idMap;
+    protected Int2ObjectMap<Object> indexMap;
 
     protected int initialSize;
 
@@ -104,14 +109,15 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
     {
         this.initialSize = initialSize;
 
-        this.idMap = new LinkedHashMap<Object, Integer>( );
-        this.indexMap = new LinkedHashMap<Integer, Object>( );
+        this.idMap = new Object2IntOpenHashMap<Object>( );
+        this.idMap.defaultReturnValue( -1 );
+        this.indexMap = new Int2ObjectOpenHashMap<Object>( );
 
         this.xyBuffer = FloatBuffer.allocate( initialSize * 2 * 2 );
         this.rgbaBuffer = FloatBuffer.allocate( initialSize * 2 * 4 );
 
-        this.xyStreamingBuffer = new GLStreamingBuffer( GL_STREAM_DRAW, 20 );
-        this.rgbaStreamingBuffer = new GLStreamingBuffer( GL_STREAM_DRAW, 20 );
+        this.xyDeviceBuffer = new GLMirroredBuffer( GL_DYNAMIC_DRAW, 2 * 2 );
+        this.rgbaDeviceBuffer = new GLMirroredBuffer( GL_DYNAMIC_DRAW, 2 * 4 );
 
         this.style = new LineStyle( );
 
@@ -152,6 +158,24 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         }
     }
 
+    /**
+     * Sets the fraction of lines which, once modified, causes the next paint to re-upload
+     * all lines rather than only the modified ranges.
+     */
+    public void setFullUploadFraction( float fraction )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            this.xyDeviceBuffer.setFullUploadFraction( fraction );
+            this.rgbaDeviceBuffer.setFullUploadFraction( fraction );
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
     public void setLineWidth( float size )
     {
         this.painterLock.lock( );
@@ -180,9 +204,6 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             deletePositions( accumulator );
 
             mutatePositions( accumulator );
-
-            this.xyBufferDirty = true;
-            this.rgbaBufferDirty = true;
         }
         finally
         {
@@ -196,8 +217,6 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         try
         {
             mutateColors( accumulator );
-
-            this.rgbaBufferDirty = true;
         }
         finally
         {
@@ -224,9 +243,6 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             int index = getIndex( id, true );
             mutatePosition( index, posX1, posY1, posX2, posY2 );
             mutateColor( index, color );
-
-            this.xyBufferDirty = true;
-            this.rgbaBufferDirty = true;
         }
         finally
         {
@@ -241,8 +257,6 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         {
             int index = getIndex( id, false );
             mutateColor( index, color );
-
-            this.rgbaBufferDirty = true;
         }
         finally
         {
@@ -259,6 +273,9 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             this.indexMap.clear( );
             this.xyBuffer = FloatBuffer.allocate( initialSize * 2 * 2 );
             this.rgbaBuffer = FloatBuffer.allocate( initialSize * 2 * 4 );
+
+            this.xyDeviceBuffer.markAllDirty( );
+            this.rgbaDeviceBuffer.markAllDirty( );
         }
         finally
         {
@@ -274,9 +291,6 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             int index = getIndex( id, false );
             if ( index == -1 ) return; // nothing to remove, the point does not exist
             deletePosition( index );
-
-            this.xyBufferDirty = true;
-            this.rgbaBufferDirty = true;
         }
         finally
         {
@@ -298,21 +312,9 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
 
             if ( lineCount == 0 ) return;
 
-            if ( this.rgbaBufferDirty )
-            {
-                this.rgbaBuffer.position( 0 );
-                this.rgbaBuffer.limit( lineCount * 2 * 4 );
-                this.rgbaStreamingBuffer.setFloats( gl, rgbaBuffer );
-                this.rgbaBuffer.clear( ); // doesn't actually erase data, just resets position/limit/mark
-            }
-
-            if ( this.xyBufferDirty )
-            {
-                this.xyBuffer.position( 0 );
-                this.xyBuffer.limit( lineCount * 2 * 2 );
-                this.xyStreamingBuffer.setFloats( gl, xyBuffer );
-                this.xyBuffer.clear( ); // doesn't actually erase data, just resets position/limit/mark
-            }
+            // uploads only the line ranges modified since the last paint
+            int rgbaVbo = this.rgbaDeviceBuffer.deviceBuffer( gl, this.rgbaBuffer, lineCount );
+            int xyVbo = this.xyDeviceBuffer.deviceBuffer( gl, this.xyBuffer, lineCount );
 
             this.prog.begin( gl );
             try
@@ -321,7 +323,7 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
                 this.prog.setAxisOrtho( gl, axis );
                 this.prog.setStyle( gl, style );
 
-                this.prog.draw( gl, xyStreamingBuffer, rgbaStreamingBuffer, 0, lineCount * 2 );
+                this.prog.draw( gl, xyVbo, rgbaVbo, 0, lineCount * 2 );
             }
             finally
             {
@@ -339,8 +341,8 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
     {
         this.prog.dispose( context.getGL( ).getGL3( ) );
 
-        this.rgbaStreamingBuffer.dispose( context.getGL( ) );
-        this.xyStreamingBuffer.dispose( context.getGL( ) );
+        this.rgbaDeviceBuffer.dispose( context.getGL( ) );
+        this.xyDeviceBuffer.dispose( context.getGL( ) );
     }
 
     protected int getSize( )
@@ -355,12 +357,12 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         return this.xyBuffer.capacity( ) / ( 2 * 2 );
     }
 
-    protected static void shiftMaps( Map<Object, Integer> idMap, Map<Integer, Object> indexMap, Set<Integer> indices, int size )
+    protected static void shiftMaps( Object2IntMap<Object> idMap, Int2ObjectMap<Object> indexMap, IntSortedSet indices, int size )
     {
-        for ( Integer index : indices )
+        for ( IntIterator it = indices.iterator( ); it.hasNext( ); )
         {
-            Object id = indexMap.remove( index );
-            idMap.remove( id );
+            Object id = indexMap.remove( it.nextInt( ) );
+            idMap.removeInt( id );
         }
 
         //XXX this is inefficient for low index values
@@ -368,10 +370,10 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         int lastDelete = -1;
         int nextDelete = -1;
         int deleteCount = 0;
-        for ( Integer index : indices )
+        for ( IntIterator it = indices.iterator( ); it.hasNext( ); )
         {
             lastDelete = nextDelete;
-            nextDelete = index;
+            nextDelete = it.nextInt( );
             deleteCount += 1;
 
             if ( lastDelete == -1 ) continue;
@@ -382,7 +384,7 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         shiftMaps( idMap, indexMap, nextDelete, size, deleteCount );
     }
 
-    protected static void shiftMaps( Map<Object, Integer> idMap, Map<Integer, Object> indexMap, int lastDelete, int nextDelete, int deleteCount )
+    protected static void shiftMaps( Object2IntMap<Object> idMap, Int2ObjectMap<Object> indexMap, int lastDelete, int nextDelete, int deleteCount )
     {
         for ( int i = lastDelete + 1; i < nextDelete; i++ )
         {
@@ -392,15 +394,15 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         }
     }
 
-    protected static void shift( FloatBuffer data, FloatBuffer tempBuffer, int length, int size, Set<Integer> indices )
+    protected static void shift( FloatBuffer data, FloatBuffer tempBuffer, int length, int size, IntSortedSet indices )
     {
         int lastDelete = -1;
         int nextDelete = -1;
         int deleteCount = 0;
-        for ( Integer index : indices )
+        for ( IntIterator it = indices.iterator( ); it.hasNext( ); )
         {
             lastDelete = nextDelete;
-            nextDelete = index;
+            nextDelete = it.nextInt( );
 
             if ( lastDelete != -1 )
             {
@@ -446,27 +448,31 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         data.put( tempBuffer );
     }
 
-    protected void deletePositions( final Set<Integer> indices )
+    protected void deletePositions( final IntSortedSet indices )
     {
         if ( indices.isEmpty( ) ) return;
 
         final int size = this.getSize( );
+        final int first = indices.firstInt( );
 
         shiftMaps( idMap, indexMap, indices, size );
 
         shift( this.rgbaBuffer, tempBuffer, 4 * 2, size, indices );
         shift( this.xyBuffer, tempBuffer, 2 * 2, size, indices );
 
+        // everything above the first deleted line has moved down
+        this.rgbaDeviceBuffer.markDirty( first, size - first );
+        this.xyDeviceBuffer.markDirty( first, size - first );
     }
 
     protected void deletePositions( BulkLineAccumulator accum )
     {
-        Set<Integer> indices = Sets.newTreeSet( );
+        IntSortedSet indices = new IntRBTreeSet( );
 
         for ( Object id : accum.getRemovedIds( ) )
         {
-            Integer index = this.idMap.get( id );
-            if ( index != null )
+            int index = this.idMap.getInt( id );
+            if ( index >= 0 )
             {
                 indices.add( index );
             }
@@ -477,7 +483,7 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
 
     protected void deletePosition( int index )
     {
-        deletePositions( Collections.singleton( index ) );
+        deletePositions( IntSortedSets.singleton( index ) );
     }
 
     protected void mutateColor( final int index, final float[] color )
@@ -491,6 +497,8 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             this.rgbaBuffer.put( color[2] );
             this.rgbaBuffer.put( color.length == 4 ? color[3] : 1.0f );
         }
+
+        this.rgbaDeviceBuffer.markDirty( index, 1 );
     }
 
     protected void mutatePosition( final int index, final float posX1, final float posY1, final float posX2, final float posY2 )
@@ -500,6 +508,8 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         this.xyBuffer.put( posY1 );
         this.xyBuffer.put( posX2 );
         this.xyBuffer.put( posY2 );
+
+        this.xyDeviceBuffer.markDirty( index, 1 );
     }
 
     protected int getIndexArray( List<Object> ids, int[] listIndex )
@@ -531,6 +541,7 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         {
             this.xyBuffer.position( indexList[i] * 2 * 2 );
             this.xyBuffer.put( v, i * stride, 2 * 2 );
+            this.xyDeviceBuffer.markDirty( indexList[i], 1 );
         }
 
         for ( int i = 0; i < size; i++ )
@@ -541,6 +552,8 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             {
                 this.rgbaBuffer.put( v, i * stride + 4, 4 );
             }
+
+            this.rgbaDeviceBuffer.markDirty( indexList[i], 1 );
         }
     }
 
@@ -562,13 +575,15 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             {
                 this.rgbaBuffer.put( v, i * stride, 4 );
             }
+
+            this.rgbaDeviceBuffer.markDirty( indexList[i], 1 );
         }
     }
 
     protected int getIndex( Object id, boolean grow )
     {
-        Integer index = this.idMap.get( id );
-        if ( index == null )
+        int index = this.idMap.getInt( id );
+        if ( index < 0 )
         {
             if ( grow )
             {
@@ -815,6 +830,17 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             gl.glDrawArrays( GL_LINE_STRIP, first, count );
         }
 
+        public void draw( GL2ES2 gl, int xyVbo, int rgbaVbo, int first, int count )
+        {
+            gl.glBindBuffer( GL_ARRAY_BUFFER, xyVbo );
+            gl.glVertexAttribPointer( this.handles.inXy, 2, GL_FLOAT, false, 0, 0 );
+
+            gl.glBindBuffer( GL_ARRAY_BUFFER, rgbaVbo );
+            gl.glVertexAttribPointer( this.handles.inRgba, 4, GL_FLOAT, false, 0, 0 );
+
+            gl.glDrawArrays( GL_LINE_STRIP, first, count );
+        }
+
         public void end( GL2ES2 gl )
         {
             gl.glDisableVertexAttribArray( this.handles.inXy );
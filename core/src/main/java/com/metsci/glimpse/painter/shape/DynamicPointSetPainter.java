@@ -29,35 +29,43 @@ package com.metsci.glimpse.painter.shape;
 import static com.metsci.glimpse.painter.shape.DynamicLineSetPainter.*;
 import static javax.media.opengl.GL.*;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntRBTreeSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSets;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import javax.media.opengl.GL;
 import javax.media.opengl.GL3;
 
-import com.google.common.collect.Sets;
 import com.metsci.glimpse.axis.Axis2D;
 import com.metsci.glimpse.context.GlimpseContext;
-import com.metsci.glimpse.gl.GLStreamingBuffer;
+import com.metsci.glimpse.gl.GLMirroredBuffer;
 import com.metsci.glimpse.gl.util.GLUtils;
 import com.metsci.glimpse.painter.base.GlimpsePainterBase;
 import com.metsci.glimpse.support.color.GlimpseColor;
 import com.metsci.glimpse.support.selection.QuadTreeFloatBuffer;
 import com.metsci.glimpse.support.shader.point.PointArrayColorProgram;
 import com.metsci.glimpse.util.primitives.FloatsArray;
+import com.metsci.glimpse.util.primitives.Ints;
 import com.metsci.glimpse.util.primitives.IntsArray;
+import com.metsci.glimpse.util.quadtree.FilterInt;
 
 /**
  * Efficiently paints dynamically changing groups of colored points. Support is provided
  * for very efficiently changing the color of existing points, as well as for adding
  * to existing sets of points.
+ * <p>
+ * Host-side changes are tracked as dirty point ranges, and only those ranges are
+ * uploaded to the persistent device buffers on the next paint (see {@link GLMirroredBuffer}).
  *
  * @author ulman
  * @see com.metsci.glimpse.examples.misc.DynamicPointPainterExample
@@ -80,14 +88,13 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
     protected FloatBuffer xyBuffer;
     protected FloatBuffer tempBuffer;
 
-    protected GLStreamingBuffer rgbaStreamingBuffer;
-    protected GLStreamingBuffer xyStreamingBuffer;
-    protected boolean bufferDirty = false;
+    // device copies of rgbaBuffer and xyBuffer (one element per point)
+    protected GLMirroredBuffer rgbaDeviceBuffer;
+    protected GLMirroredBuffer xyDeviceBuffer;
 
-    // point id (which can be any object) -> index into pointBuffer
-    // good place for Guava BiMap here...
-    protected Map<Object, Integer> idMap;
-    protected Map<Integer, Object> indexMap;
+    // point id (which can be any object) -> index into xyBuffer and rgbaBuffer
+    protected Object2IntMap<Object> idMap;
+    protected Int2ObjectMap<Object> indexMap;
 
     protected IntsArray searchResults;
 
@@ -106,8 +113,9 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         this.pointSize = DEFAULT_POINT_SIZE;
         this.featherSize = DEFAULT_FEATHER_SIZE;
 
-        this.idMap = new LinkedHashMap<Object, Integer>( );
-        this.indexMap = new LinkedHashMap<Integer, Object>( );
+        this.idMap = new Object2IntOpenHashMap<Object>( );
+        this.idMap.defaultReturnValue( -1 );
+        this.indexMap = new Int2ObjectOpenHashMap<Object>( );
 
         this.xyBuffer = FloatBuffer.allocate( initialSize * 2 );
         this.rgbaBuffer = FloatBuffer.allocate( initialSize * 4 );
@@ -116,8 +124,8 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         this.searchResults = new IntsArray( );
 
         this.prog = new PointArrayColorProgram( );
-        this.rgbaStreamingBuffer = new GLStreamingBuffer( GL_DYNAMIC_DRAW, 5 );
-        this.xyStreamingBuffer = new GLStreamingBuffer( GL_DYNAMIC_DRAW, 5 );
+        this.rgbaDeviceBuffer = new GLMirroredBuffer( GL_DYNAMIC_DRAW, 4 );
+        this.xyDeviceBuffer = new GLMirroredBuffer( GL_DYNAMIC_DRAW, 2 );
     }
 
     public Collection<Object> getGeoRange( double minX, double maxX, double minY, double maxY )
@@ -147,6 +155,54 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         }
     }
 
+    /**
+     * Returns the id of the point closest to the given location, or null if no point
+     * is within maxPixelDistance. Distance is measured in pixels, using the scale of
+     * the provided axis, but the location is specified in axis coordinates.
+     */
+    public Object getNearestPoint( Axis2D axis, double x, double y, double maxPixelDistance )
+    {
+        List<Object> nearest = getNearestPoints( axis, x, y, 1, maxPixelDistance );
+        return nearest.isEmpty( ) ? null : nearest.get( 0 );
+    }
+
+    /**
+     * Returns the ids of the k points closest to the given location (and within
+     * maxPixelDistance), in order of increasing distance.
+     *
+     * @see #getNearestPoint(Axis2D, double, double, double)
+     */
+    public List<Object> getNearestPoints( Axis2D axis, double x, double y, int k, double maxPixelDistance )
+    {
+        double xScale = axis.getAxisX( ).getPixelsPerValue( );
+        double yScale = axis.getAxisY( ).getPixelsPerValue( );
+
+        painterLock.lock( );
+        try
+        {
+            Ints nearest = this.quadTree.nearest( ( float ) x, ( float ) y, xScale, yScale, k, maxPixelDistance, new FilterInt( )
+            {
+                @Override
+                public boolean include( int index )
+                {
+                    return indexMap.containsKey( index );
+                }
+            } );
+
+            List<Object> resultList = new ArrayList<Object>( nearest.n( ) );
+            for ( int i = 0; i < nearest.n( ); i++ )
+            {
+                resultList.add( this.indexMap.get( nearest.v( i ) ) );
+            }
+
+            return resultList;
+        }
+        finally
+        {
+            painterLock.unlock( );
+        }
+    }
+
     public void setFeatherSize( float size )
     {
         painterLock.lock( );
@@ -158,6 +214,26 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
+    }
+
+    /**
+     * Sets the fraction of points which, once modified, causes the next paint to re-upload
+     * all points rather than only the modified ranges.
+     */
+    public void setFullUploadFraction( float fraction )
+    {
+        painterLock.lock( );
+        try
+        {
+            this.xyDeviceBuffer.setFullUploadFraction( fraction );
+            this.rgbaDeviceBuffer.setFullUploadFraction( fraction );
+        }
+        finally
+        {
+            painterLock.unlock( );
+        }
     }
 
     public void setPointSize( float size )
@@ -171,6 +247,8 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void putPoints( BulkPointAccumulator accumulator )
@@ -188,13 +266,13 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
             deletePositions( accumulator );
 
             mutatePositions( accumulator );
-
-            bufferDirty = true;
         }
         finally
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void putColors( BulkColorAccumulator accumulator )
@@ -203,13 +281,13 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         try
         {
             mutateColors( accumulator );
-
-            bufferDirty = true;
         }
         finally
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void putPoint( Object id, float posX, float posY )
@@ -231,13 +309,13 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
             int index = getIndex( id, true );
             mutatePosition( index, posX, posY );
             mutateColor( index, color );
-
-            bufferDirty = true;
         }
         finally
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void putColor( Object id, float[] color )
@@ -247,13 +325,13 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         {
             int index = getIndex( id, false );
             mutateColor( index, color );
-
-            bufferDirty = true;
         }
         finally
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void removeAll( )
@@ -267,12 +345,15 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
             this.rgbaBuffer = FloatBuffer.allocate( initialSize * 4 );
             this.quadTree.setBuffer( this.xyBuffer );
 
-            this.bufferDirty = true;
+            this.xyDeviceBuffer.markAllDirty( );
+            this.rgbaDeviceBuffer.markAllDirty( );
         }
         finally
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void removePoint( Object id )
@@ -283,13 +364,13 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
             int index = getIndex( id, false );
             if ( index == -1 ) return; // nothing to remove, the point does not exist
             deletePosition( index );
-
-            bufferDirty = true;
         }
         finally
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     protected int getSize( )
@@ -304,12 +385,12 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         return this.xyBuffer.limit( ) / 2;
     }
 
-    protected void deletePositions( final Set<Integer> indices )
+    protected void deletePositions( final IntSortedSet indices )
     {
         if ( indices.isEmpty( ) ) return;
 
         final int size = this.getSize( );
-        final int first = indices.iterator( ).next( );
+        final int first = indices.firstInt( );
 
         shiftMaps( idMap, indexMap, indices, size );
 
@@ -318,16 +399,20 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         this.quadTree.removeIndex( first );
         shift( this.xyBuffer, tempBuffer, 2, size, indices );
         this.quadTree.addIndex( first );
+
+        // everything above the first deleted point has moved down
+        this.rgbaDeviceBuffer.markDirty( first, size - first );
+        this.xyDeviceBuffer.markDirty( first, size - first );
     }
 
     protected void deletePositions( BulkPointAccumulator accum )
     {
-        Set<Integer> indices = Sets.newTreeSet( );
+        IntSortedSet indices = new IntRBTreeSet( );
 
         for ( Object id : accum.getRemovedIds( ) )
         {
-            Integer index = this.idMap.get( id );
-            if ( index != null )
+            int index = this.idMap.getInt( id );
+            if ( index >= 0 )
             {
                 indices.add( index );
             }
@@ -338,7 +423,7 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
 
     protected void deletePosition( int index )
     {
-        deletePositions( Collections.singleton( index ) );
+        deletePositions( IntSortedSets.singleton( index ) );
     }
 
     protected void mutateColor( final int index, final float[] color )
@@ -348,6 +433,8 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         this.rgbaBuffer.put( color[1] );
         this.rgbaBuffer.put( color[2] );
         this.rgbaBuffer.put( color.length == 4 ? color[3] : 1.0f );
+
+        this.rgbaDeviceBuffer.markDirty( index, 1 );
     }
 
     protected void mutatePosition( final int index, final float posX, final float posY )
@@ -357,6 +444,8 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         this.xyBuffer.put( posX );
         this.xyBuffer.put( posY );
         this.quadTree.addIndex( index, index + 1 );
+
+        this.xyDeviceBuffer.markDirty( index, 1 );
     }
 
     protected int getIndexArray( List<Object> ids, boolean grow, int[] listIndex )
@@ -401,6 +490,7 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
 
             this.xyBuffer.position( index * 2 );
             this.xyBuffer.put( v, i * stride, 2 );
+            this.xyDeviceBuffer.markDirty( index, 1 );
         }
         this.quadTree.addIndices( indexList );
 
@@ -408,6 +498,7 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         {
             this.rgbaBuffer.position( indexList[i] * 4 );
             this.rgbaBuffer.put( v, i * stride + 2, 4 );
+            this.rgbaDeviceBuffer.markDirty( indexList[i], 1 );
         }
     }
 
@@ -425,13 +516,14 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         {
             this.rgbaBuffer.position( indexList[i] * 4 );
             this.rgbaBuffer.put( v, i * stride, 4 );
+            this.rgbaDeviceBuffer.markDirty( indexList[i], 1 );
         }
     }
 
     protected int getIndex( Object id, boolean grow )
     {
-        Integer index = this.idMap.get( id );
-        if ( index == null )
+        int index = this.idMap.getInt( id );
+        if ( index < 0 )
         {
             if ( grow )
             {
@@ -582,8 +674,8 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
     {
         GL3 gl = getGL3( context );
 
-        this.rgbaStreamingBuffer.dispose( gl );
-        this.xyStreamingBuffer.dispose( gl );
+        this.rgbaDeviceBuffer.dispose( gl );
+        this.xyDeviceBuffer.dispose( gl );
         this.prog.dispose( gl );
     }
 
@@ -597,18 +689,9 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
 
         if ( size == 0 ) return;
 
-        if ( bufferDirty )
-        {
-            rgbaBuffer.position( 0 );
-            rgbaBuffer.limit( size * 4 );
-            rgbaStreamingBuffer.setFloats( gl, rgbaBuffer );
-            rgbaBuffer.clear( ); // doesn't actually erase data, just resets position/limit/mark
-
-            xyBuffer.position( 0 );
-            xyBuffer.limit( size * 2 );
-            xyStreamingBuffer.setFloats( gl, xyBuffer );
-            xyBuffer.clear( ); // doesn't actually erase data, just resets position/limit/mark
-        }
+        // uploads only the point ranges modified since the last paint
+        int rgbaVbo = rgbaDeviceBuffer.deviceBuffer( gl, rgbaBuffer, size );
+        int xyVbo = xyDeviceBuffer.deviceBuffer( gl, xyBuffer, size );
 
         GLUtils.enableStandardBlending( gl );
         prog.begin( gl );
@@ -618,7 +701,7 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
             prog.setPointSize( gl, pointSize );
             prog.setFeatherThickness( gl, featherSize );
 
-            prog.draw( gl, GL.GL_POINTS, xyStreamingBuffer, rgbaStreamingBuffer, 0, size );
+            prog.draw( gl, GL.GL_POINTS, xyVbo, rgbaVbo, 0, size );
         }
         finally
         {
@@ -136,6 +136,8 @@ public class PointSetPainter extends GlimpsePainterBase
         {
             this.painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void setColor( float[] dataZ, ColorMap scale )
@@ -164,6 +166,8 @@ public class PointSetPainter extends GlimpsePainterBase
         {
             this.painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public Collection<IdXy> selectGeoRange( double minX, double maxX, double minY, double maxY )
@@ -194,6 +198,7 @@ public class PointSetPainter extends GlimpsePainterBase
         this.pointColor[1] = rgba[1];
         this.pointColor[2] = rgba[2];
         this.pointColor[3] = rgba[3];
+        invalidate( );
     }
 
     public void setPointColor( float r, float g, float b, float a )
@@ -202,16 +207,19 @@ public class PointSetPainter extends GlimpsePainterBase
         this.pointColor[1] = g;
         this.pointColor[2] = b;
         this.pointColor[3] = a;
+        invalidate( );
     }
 
     public void setFeatherSize( float featherSize )
     {
         this.featherSize = featherSize;
+        invalidate( );
     }
 
     public void setPointSize( float pointSize )
     {
         this.pointSize = pointSize;
+        invalidate( );
     }
 
     @Override
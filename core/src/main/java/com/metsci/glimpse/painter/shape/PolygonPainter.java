@@ -45,13 +45,16 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
@@ -80,12 +83,22 @@ import com.metsci.glimpse.support.shader.line.LinePath;
 import com.metsci.glimpse.support.shader.line.LineStyle;
 import com.metsci.glimpse.support.shader.line.LineUtils;
 import com.metsci.glimpse.support.shader.line.StreamingLinePath;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 /**
  * Paints large collections of arbitrary polygons (including concave polygons).
  * Polygons can have timestamps associated with them, and can be efficiently filtered
  * by time (only drawing those polygons which fall within a particular time window.
  *
+ * <p>By default, polygons are tessellated on the thread which calls {@code addPolygon}.
+ * If a tessellation executor is provided (see {@link #setTessellationExecutor(Executor)}),
+ * {@code addPolygon} returns immediately and polygons are tessellated on the executor's
+ * threads, each task using a {@link PolygonTessellator} which no other thread holds. Polygons become visible
+ * as their tessellation completes. {@link #getTessellationFuture()} can be used to wait
+ * for all pending tessellation to finish.</p>
+ *
  * @author ulman
  */
 public class PolygonPainter extends GlimpsePainterBase
@@ -130,6 +143,22 @@ public class PolygonPainter extends GlimpsePainterBase
 
     protected PolygonTessellator tessellator;
 
+    // if non-null, polygons are tessellated asynchronously using this executor
+    protected volatile Executor tessellationExecutor;
+    // idle tessellators for tessellationExecutor tasks (GLU tessellators are not thread safe, so each
+    // task takes one for its own use and returns it when done); guarded by synchronizing on the deque
+    protected Deque<PolygonTessellator> idleWorkerTessellators;
+    // true once the painter has been disposed (tessellators returned afterwards are destroyed immediately)
+    protected boolean workerTessellatorsDisposed;
+    // polygons submitted to tessellationExecutor which have not yet been added to their Group,
+    // keyed by groupId then polygonId (so a newer polygon with the same ids replaces a pending one)
+    protected Map<Object, Map<Object, IdPolygon>> pendingPolygons;
+    protected int pendingPolygonCount;
+    // completed when pendingPolygonCount drops to zero (null when nothing is pending)
+    protected SettableFuture<Void> pendingFuture;
+    // first tessellation failure since pendingFuture was created, reported through pendingFuture
+    protected RuntimeException pendingFailure;
+
     protected int tempBufferSize = 0;
     protected FloatBuffer xyTempBuffer = null;
     protected ByteBuffer flagTempBuffer = null;
@@ -164,88 +193,41 @@ public class PolygonPainter extends GlimpsePainterBase
 
         this.updateLock = new ReentrantLock( );
 
+        this.idleWorkerTessellators = new ArrayDeque<PolygonTessellator>( );
+        this.pendingPolygons = new HashMap<Object, Map<Object, IdPolygon>>( );
+
         this.triangleFlatProg = new PolygonPainterFlatColorProgram( );
         this.lineProg = new PolygonPainterLineProgram( );
     }
 
     public void addPolygon( Object groupId, Object polygonId, float[] dataX, float[] dataY, float z )
     {
-        this.updateLock.lock( );
-        try
-        {
-            addPolygon( groupId, new IdPolygon( groupId, polygonId, buildPolygon( dataX, dataY ), z ) );
-        }
-        finally
-        {
-            this.updateLock.unlock( );
-        }
+        addPolygon( groupId, new IdPolygon( groupId, polygonId, buildPolygon( dataX, dataY ), z ) );
     }
 
     public void addPolygon( Object groupId, Object polygonId, Polygon geometry, float z )
     {
-        this.updateLock.lock( );
-        try
-        {
-            addPolygon( groupId, new IdPolygon( groupId, polygonId, geometry, z ) );
-
-        }
-        finally
-        {
-            this.updateLock.unlock( );
-        }
+        addPolygon( groupId, new IdPolygon( groupId, polygonId, geometry, z ) );
     }
 
     public void addPolygon( Object groupId, Object polygonId, Shape shape, float z )
     {
-        this.updateLock.lock( );
-        try
-        {
-            addPolygon( groupId, new IdPolygon( groupId, polygonId, buildPolygon( shape ), z ) );
-
-        }
-        finally
-        {
-            this.updateLock.unlock( );
-        }
+        addPolygon( groupId, new IdPolygon( groupId, polygonId, buildPolygon( shape ), z ) );
     }
 
     public void addPolygon( Object groupId, Object polygonId, long startTime, long endTime, float[] dataX, float[] dataY, float z )
     {
-        this.updateLock.lock( );
-        try
-        {
-            addPolygon( groupId, new IdPolygon( groupId, polygonId, startTime, endTime, buildPolygon( dataX, dataY ), z ) );
-        }
-        finally
-        {
-            this.updateLock.unlock( );
-        }
+        addPolygon( groupId, new IdPolygon( groupId, polygonId, startTime, endTime, buildPolygon( dataX, dataY ), z ) );
     }
 
     public void addPolygon( Object groupId, Object polygonId, long startTime, long endTime, Polygon geometry, float z )
     {
-        this.updateLock.lock( );
-        try
-        {
-            addPolygon( groupId, new IdPolygon( groupId, polygonId, startTime, endTime, geometry, z ) );
-        }
-        finally
-        {
-            this.updateLock.unlock( );
-        }
+        addPolygon( groupId, new IdPolygon( groupId, polygonId, startTime, endTime, geometry, z ) );
     }
 
     public void addPolygon( Object groupId, Object polygonId, long startTime, long endTime, Shape shape, float z )
     {
-        this.updateLock.lock( );
-        try
-        {
-            addPolygon( groupId, new IdPolygon( groupId, polygonId, startTime, endTime, buildPolygon( shape ), z ) );
-        }
-        finally
-        {
-            this.updateLock.unlock( );
-        }
+        addPolygon( groupId, new IdPolygon( groupId, polygonId, startTime, endTime, buildPolygon( shape ), z ) );
     }
 
     public void displayTimeRange( Object groupId, double startTime, double endTime )
@@ -269,6 +251,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -291,6 +274,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.addAll( groups.values( ) );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -309,6 +293,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -327,6 +312,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -345,6 +331,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -363,6 +350,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -382,6 +370,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -400,6 +389,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -418,6 +408,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -437,6 +428,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -455,6 +447,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -473,6 +466,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -491,6 +485,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -509,6 +504,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -524,6 +520,8 @@ public class PolygonPainter extends GlimpsePainterBase
         this.updateLock.lock( );
         try
         {
+            cancelAllPendingPolygons( );
+
             for ( Group group : groups.values( ) )
             {
                 group.deleteGroup( );
@@ -531,6 +529,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.addAll( groups.values( ) );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -547,6 +546,8 @@ public class PolygonPainter extends GlimpsePainterBase
         this.updateLock.lock( );
         try
         {
+            cancelPendingPolygons( groupId );
+
             if ( !groups.containsKey( groupId ) ) return;
 
             Group group = groups.get( groupId );
@@ -555,6 +556,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -572,6 +574,8 @@ public class PolygonPainter extends GlimpsePainterBase
         this.updateLock.lock( );
         try
         {
+            cancelPendingPolygons( groupId );
+
             if ( !groups.containsKey( groupId ) ) return;
 
             Group group = groups.get( groupId );
@@ -580,6 +584,7 @@ public class PolygonPainter extends GlimpsePainterBase
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -592,12 +597,15 @@ public class PolygonPainter extends GlimpsePainterBase
         this.updateLock.lock( );
         try
         {
+            cancelPendingPolygon( groupId, polygonId );
+
             Group group = getOrCreateGroup( groupId );
 
             group.deletePolygon( polygonId );
 
             this.updatedGroups.add( group );
             this.newData = true;
+            invalidate( );
         }
         finally
         {
@@ -605,17 +613,138 @@ public class PolygonPainter extends GlimpsePainterBase
         }
     }
 
-    protected void addPolygon( Object groupId, IdPolygon polygon )
+    /**
+     * Sets the executor used to tessellate polygons. If null (the default), polygons
+     * are tessellated synchronously by {@code addPolygon}. Otherwise, {@code addPolygon}
+     * returns immediately and the polygon is added to its group once tessellation
+     * completes. A {@link java.util.concurrent.ForkJoinPool} is a good choice when
+     * loading large numbers of polygons.
+     */
+    public void setTessellationExecutor( Executor executor )
+    {
+        this.tessellationExecutor = executor;
+    }
+
+    public Executor getTessellationExecutor( )
+    {
+        return this.tessellationExecutor;
+    }
+
+    /**
+     * @return a future which completes when all polygons submitted for tessellation
+     *         so far have been tessellated and added to their groups, or fails with
+     *         the first exception thrown while tessellating one of them
+     */
+    public ListenableFuture<Void> getTessellationFuture( )
     {
         this.updateLock.lock( );
         try
         {
-            Group group = getOrCreateGroup( groupId );
+            return this.pendingFuture == null ? Futures.<Void> immediateFuture( null ) : this.pendingFuture;
+        }
+        finally
+        {
+            this.updateLock.unlock( );
+        }
+    }
 
-            group.addPolygon( polygon );
+    protected void addPolygon( final Object groupId, final IdPolygon polygon )
+    {
+        Executor executor = this.tessellationExecutor;
 
-            this.updatedGroups.add( group );
-            this.newData = true;
+        if ( executor == null )
+        {
+            this.updateLock.lock( );
+            try
+            {
+                // a newer polygon with the same id replaces any which are still pending
+                cancelPendingPolygon( groupId, polygon.polygonId );
+
+                polygon.calculateCounts( this.tessellator );
+                addTessellatedPolygon( groupId, polygon );
+            }
+            finally
+            {
+                this.updateLock.unlock( );
+            }
+        }
+        else
+        {
+            this.updateLock.lock( );
+            try
+            {
+                // a newer polygon with the same id replaces any which is still pending
+                addPendingPolygon( groupId, polygon );
+                if ( this.pendingFuture == null ) this.pendingFuture = SettableFuture.create( );
+            }
+            finally
+            {
+                this.updateLock.unlock( );
+            }
+
+            try
+            {
+                executor.execute( new Runnable( )
+                {
+                    @Override
+                    public void run( )
+                    {
+                        PolygonTessellator workerTessellator = acquireWorkerTessellator( );
+                        try
+                        {
+                            polygon.calculateCounts( workerTessellator );
+                        }
+                        catch ( RuntimeException e )
+                        {
+                            logWarning( logger, "Problem tessellating polygon.", e );
+                            failPendingPolygon( polygon, e );
+                        }
+                        finally
+                        {
+                            releaseWorkerTessellator( workerTessellator );
+                            completePendingPolygon( groupId, polygon );
+                        }
+                    }
+                } );
+            }
+            catch ( RuntimeException e )
+            {
+                // the polygon was never tessellated, so this just clears its pending status
+                completePendingPolygon( groupId, polygon );
+                throw e;
+            }
+        }
+    }
+
+    protected void completePendingPolygon( Object groupId, IdPolygon polygon )
+    {
+        this.updateLock.lock( );
+        try
+        {
+            // polygons deleted while they were being tessellated are no longer pending
+            if ( removePendingPolygon( groupId, polygon ) && polygon.geometryCalculated )
+            {
+                addTessellatedPolygon( groupId, polygon );
+            }
+
+            completePendingFuture( );
+        }
+        finally
+        {
+            this.updateLock.unlock( );
+        }
+    }
+
+    protected void failPendingPolygon( IdPolygon polygon, RuntimeException e )
+    {
+        this.updateLock.lock( );
+        try
+        {
+            // failures of polygons which were deleted or replaced in the meantime don't matter
+            if ( isPendingPolygon( polygon ) && this.pendingFailure == null )
+            {
+                this.pendingFailure = e;
+            }
         }
         finally
         {
@@ -623,6 +752,135 @@ public class PolygonPainter extends GlimpsePainterBase
         }
     }
 
+    // must be called while holding updateLock
+    protected void completePendingFuture( )
+    {
+        if ( this.pendingPolygonCount == 0 && this.pendingFuture != null )
+        {
+            if ( this.pendingFailure == null )
+            {
+                this.pendingFuture.set( null );
+            }
+            else
+            {
+                this.pendingFuture.setException( this.pendingFailure );
+            }
+
+            this.pendingFuture = null;
+            this.pendingFailure = null;
+        }
+    }
+
+    // must be called while holding updateLock
+    protected void addPendingPolygon( Object groupId, IdPolygon polygon )
+    {
+        Map<Object, IdPolygon> groupPending = this.pendingPolygons.get( groupId );
+        if ( groupPending == null )
+        {
+            groupPending = new HashMap<Object, IdPolygon>( );
+            this.pendingPolygons.put( groupId, groupPending );
+        }
+
+        if ( groupPending.put( polygon.polygonId, polygon ) == null )
+        {
+            this.pendingPolygonCount++;
+        }
+    }
+
+    // must be called while holding updateLock
+    protected boolean isPendingPolygon( IdPolygon polygon )
+    {
+        Map<Object, IdPolygon> groupPending = this.pendingPolygons.get( polygon.groupId );
+        return groupPending != null && groupPending.get( polygon.polygonId ) == polygon;
+    }
+
+    // must be called while holding updateLock
+    // returns false if the polygon was cancelled or replaced by a newer polygon with the same id
+    protected boolean removePendingPolygon( Object groupId, IdPolygon polygon )
+    {
+        if ( !isPendingPolygon( polygon ) ) return false;
+
+        Map<Object, IdPolygon> groupPending = this.pendingPolygons.get( groupId );
+        groupPending.remove( polygon.polygonId );
+        if ( groupPending.isEmpty( ) ) this.pendingPolygons.remove( groupId );
+        this.pendingPolygonCount--;
+
+        return true;
+    }
+
+    // must be called while holding updateLock
+    protected void cancelPendingPolygon( Object groupId, Object polygonId )
+    {
+        Map<Object, IdPolygon> groupPending = this.pendingPolygons.get( groupId );
+        if ( groupPending == null || !groupPending.containsKey( polygonId ) ) return;
+
+        groupPending.remove( polygonId );
+        if ( groupPending.isEmpty( ) ) this.pendingPolygons.remove( groupId );
+        this.pendingPolygonCount--;
+
+        // the future must still complete if nothing is left pending; in-flight tasks will
+        // find their polygon missing from pendingPolygons and skip adding it
+        completePendingFuture( );
+    }
+
+    // must be called while holding updateLock
+    protected void cancelPendingPolygons( Object groupId )
+    {
+        Map<Object, IdPolygon> groupPending = this.pendingPolygons.remove( groupId );
+        if ( groupPending == null ) return;
+
+        this.pendingPolygonCount -= groupPending.size( );
+        completePendingFuture( );
+    }
+
+    // must be called while holding updateLock
+    protected void cancelAllPendingPolygons( )
+    {
+        if ( this.pendingPolygonCount == 0 ) return;
+
+        this.pendingPolygons.clear( );
+        this.pendingPolygonCount = 0;
+        completePendingFuture( );
+    }
+
+    protected PolygonTessellator acquireWorkerTessellator( )
+    {
+        synchronized ( this.idleWorkerTessellators )
+        {
+            PolygonTessellator tessellator = this.idleWorkerTessellators.pollFirst( );
+            if ( tessellator != null ) return tessellator;
+        }
+
+        return new PolygonTessellator( );
+    }
+
+    protected void releaseWorkerTessellator( PolygonTessellator tessellator )
+    {
+        synchronized ( this.idleWorkerTessellators )
+        {
+            if ( !this.workerTessellatorsDisposed )
+            {
+                this.idleWorkerTessellators.addFirst( tessellator );
+                return;
+            }
+        }
+
+        // the painter was disposed while this task was running, and no other thread holds this tessellator
+        tessellator.destroy( );
+    }
+
+    // must be called while holding updateLock
+    protected void addTessellatedPolygon( Object groupId, IdPolygon polygon )
+    {
+        Group group = getOrCreateGroup( groupId );
+
+        group.addPolygon( polygon );
+
+        this.updatedGroups.add( group );
+        this.newData = true;
+        invalidate( );
+    }
+
     // must be called while holding trackUpdateLock
     protected Group getOrCreateGroup( Object groupId )
     {
@@ -1149,6 +1407,18 @@ public class PolygonPainter extends GlimpsePainterBase
         }
 
         tessellator.destroy( );
+
+        // only idle tessellators are destroyed here; tasks still running destroy their own when they finish
+        synchronized ( this.idleWorkerTessellators )
+        {
+            for ( PolygonTessellator workerTessellator : this.idleWorkerTessellators )
+            {
+                workerTessellator.destroy( );
+            }
+
+            this.idleWorkerTessellators.clear( );
+            this.workerTessellatorsDisposed = true;
+        }
     }
 
     /**
@@ -1181,6 +1451,9 @@ public class PolygonPainter extends GlimpsePainterBase
         int[] fillOffsets;
         int[] fillSizes;
 
+        // true once calculateCounts( ) has been called
+        volatile boolean geometryCalculated = false;
+
         protected IdPolygon( Object groupId, Object polygonId, long startTime, long endTime, Polygon geometry, float depth )
         {
             this.groupId = groupId;
@@ -1189,22 +1462,32 @@ public class PolygonPainter extends GlimpsePainterBase
             this.endTime = endTime;
             this.geometry = geometry;
             this.depth = depth;
+        }
 
+        protected IdPolygon( Object groupId, Object polygonId, Polygon geometry, float z )
+        {
+            this( groupId, polygonId, Long.MIN_VALUE, Long.MAX_VALUE, geometry, z );
+        }
+
+        /**
+         * Tessellates the polygon and computes its vertex and primitive counts. Must be
+         * called before the polygon is added to a Group. The provided tessellator must not
+         * be used concurrently by any other thread.
+         */
+        protected void calculateCounts( PolygonTessellator tessellator )
+        {
             if ( this.geometry != null )
             {
                 this.calculateLineCounts( );
-                this.calculateFillCounts( );
+                this.calculateFillCounts( tessellator );
 
                 this.lineOffsets = new int[linePrimitiveCount];
                 this.lineSizes = new int[linePrimitiveCount];
                 this.fillOffsets = new int[fillPrimitiveCount];
                 this.fillSizes = new int[fillPrimitiveCount];
             }
-        }
 
-        protected IdPolygon( Object groupId, Object polygonId, Polygon geometry, float z )
-        {
-            this( groupId, polygonId, Long.MIN_VALUE, Long.MAX_VALUE, geometry, z );
+            this.geometryCalculated = true;
         }
 
         protected void calculateLineCounts( )
@@ -1227,9 +1510,9 @@ public class PolygonPainter extends GlimpsePainterBase
             linePrimitiveCount = primitiveCount;
         }
 
-        protected void calculateFillCounts( )
+        protected void calculateFillCounts( PolygonTessellator tessellator )
         {
-            fillVertices = tessellate( );
+            fillVertices = tessellate( tessellator );
             fillVertexCount = fillVertices.length / 2;
             fillPrimitiveCount = 1;
         }
@@ -1341,7 +1624,7 @@ public class PolygonPainter extends GlimpsePainterBase
             sizeBuffer.put( fillSizes[0] );
         }
 
-        protected float[] tessellate( )
+        protected float[] tessellate( PolygonTessellator tessellator )
         {
             try
             {
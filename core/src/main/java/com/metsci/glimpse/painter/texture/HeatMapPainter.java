@@ -89,6 +89,8 @@ public class HeatMapPainter extends ShadedTexturePainter
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void setAlpha( float alpha )
@@ -102,6 +104,8 @@ public class HeatMapPainter extends ShadedTexturePainter
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void setData( FloatTextureProjected2D texture )
@@ -118,6 +122,7 @@ public class HeatMapPainter extends ShadedTexturePainter
             painterLock.unlock( );
         }
 
+        invalidate( );
     }
 
     public void setColorScale( ColorTexture1D texture )
@@ -133,6 +138,8 @@ public class HeatMapPainter extends ShadedTexturePainter
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public ColorTexture1D getColorScale( )
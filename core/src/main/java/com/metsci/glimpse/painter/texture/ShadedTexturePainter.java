@@ -81,6 +81,8 @@ public class ShadedTexturePainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void addDrawableTexture( DrawableTexture texture )
@@ -99,6 +101,8 @@ public class ShadedTexturePainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void removeDrawableTexture( DrawableTexture texture )
@@ -112,6 +116,8 @@ public class ShadedTexturePainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void removeAllDrawableTextures( )
@@ -125,6 +131,8 @@ public class ShadedTexturePainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void addNonDrawableTexture( Texture drawableTexture, Texture nonDrawableTexture, int textureUnit )
@@ -139,6 +147,8 @@ public class ShadedTexturePainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void removeNonDrawableTexture( Texture drawableTexture, Texture nonDrawableTexture )
@@ -153,6 +163,8 @@ public class ShadedTexturePainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void addNonDrawableTexture( Texture texture )
@@ -171,6 +183,8 @@ public class ShadedTexturePainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void removeNonDrawableTexture( Texture texture )
@@ -184,6 +198,8 @@ public class ShadedTexturePainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     public void removeAllNonDrawableTextures( )
@@ -197,6 +213,8 @@ public class ShadedTexturePainter extends GlimpsePainterBase
         {
             painterLock.unlock( );
         }
+
+        invalidate( );
     }
 
     @Override
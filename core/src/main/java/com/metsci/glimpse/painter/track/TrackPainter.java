@@ -34,6 +34,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -42,8 +43,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
@@ -71,7 +75,16 @@ import com.metsci.glimpse.support.shader.line.LineStyle;
 import com.metsci.glimpse.support.shader.line.LineUtils;
 import com.metsci.glimpse.support.shader.point.PointArrayColorSizeProgram;
 import com.metsci.glimpse.support.shader.point.PointFlatColorProgram;
-import com.metsci.glimpse.util.quadtree.QuadTreeXys;
+import com.metsci.glimpse.util.primitives.FloatsArray;
+import com.metsci.glimpse.util.primitives.IntsArray;
+import com.metsci.glimpse.util.primitives.Longs;
+import com.metsci.glimpse.util.primitives.LongsArray;
+import com.metsci.glimpse.util.primitives.ObjectsArray;
+import com.metsci.glimpse.util.quadtree.FilterLong;
+import com.metsci.glimpse.util.quadtree.QuadTreeLongs;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 /**
  * Paints groups of line segments of points with associated timestamps.
@@ -80,6 +93,19 @@ import com.metsci.glimpse.util.quadtree.QuadTreeXys;
  * selection of specified time segments within the set of tracks, hiding
  * all segments outside this time window.
  *
+ * <p>Track posits are stored in primitive columns rather than as individual
+ * {@link Point} objects. {@code Point} instances are only created when they
+ * are handed back to the caller (track heads and selection queries). Large
+ * volumes of posits can be ingested without allocating any {@code Point}s
+ * using {@link #addPoints(Object, long[], float[], float[])}.</p>
+ *
+ * <p>By default every mutator acquires the same lock which is held by the render
+ * thread while new posits are copied to the GPU. When data arrives at high rates,
+ * {@link #setStagedIngest(boolean)} may be used to have mutators instead append
+ * to a lock-free queue which is drained by the render thread at the start of each
+ * frame, subject to a per-frame time budget. The queue is bounded: if it fills up,
+ * the mutator which finds it full applies the backlog itself.</p>
+ *
  * @author ulman
  * @see com.metsci.glimpse.examples.animated.AnimatedGeoPlotExample
  */
@@ -94,6 +120,10 @@ public class TrackPainter extends GlimpsePainterBase
     public static final long SPATIAL_SELECTION_UPDATE_RATE = 50;
 
     public static final int TRACK_SIZE_ESTIMATE = 100;
+
+    public static final long DEFAULT_DRAIN_BUDGET_NANOS = 5000000L;
+    public static final int DRAIN_BUDGET_CHECK_INTERVAL = 64;
+    public static final int DEFAULT_STAGED_CAPACITY = 1 << 20;
     public static final int TRACK_LABEL_OFFSET_X = 8;
     public static final int TRACK_LABEL_OFFSET_Y = 8;
 
@@ -110,16 +140,30 @@ public class TrackPainter extends GlimpsePainterBase
 
     protected ReentrantLock trackUpdateLock = null;
 
+    // if true, mutators queue updates which are applied at the start of doPaintTo
+    protected volatile boolean stagedIngest = false;
+    protected Queue<Update> stagedUpdates;
+    protected AtomicInteger stagedQueueDepth;
+    protected volatile long drainBudgetNanos = DEFAULT_DRAIN_BUDGET_NANOS;
+    protected volatile int stagedCapacity = DEFAULT_STAGED_CAPACITY;
+    // statistics from the most recent drain of stagedUpdates
+    protected volatile int lastDrainCount = 0;
+    protected volatile long lastDrainNanos = 0;
+
     // mapping from id to Track
     protected Map<Object, Track> tracks;
+    // mapping from Track serial number to Track (used to resolve spatial index keys)
+    protected Int2ObjectMap<Track> tracksBySerial;
+    // the serial number to assign to the next created Track
+    protected int nextTrackSerial = 0;
     // true indicates that new data must be loaded onto the GPU
     protected volatile boolean newData = false;
     // tracks with new data which must be loaded onto the GPU
     protected Set<Track> updatedTracks;
     // mapping from id to LoadedTrack (GPU-side track information)
     protected Map<Object, LoadedTrack> loadedTracks;
-    // spatial index on Points
-    protected QuadTreeXys<Point> spatialIndex;
+    // spatial index on track posits, see #spatialKey( int, int )
+    protected TrackSpatialIndex spatialIndex;
 
     // the overall start and end times set by displayTimeRange
     // when new tracks are created, they inherit these time bounds
@@ -152,14 +196,17 @@ public class TrackPainter extends GlimpsePainterBase
 
     public TrackPainter( boolean enableSpatialIndex )
     {
-        if ( enableSpatialIndex ) this.spatialIndex = new QuadTreeXys<Point>( QUAD_TREE_BIN_MAX );
+        if ( enableSpatialIndex ) this.spatialIndex = new TrackSpatialIndex( QUAD_TREE_BIN_MAX );
 
         this.temporalSelectionListeners = new CopyOnWriteArrayList<TemporalSelectionListener<Point>>( );
 
         this.tracks = new HashMap<>( );
+        this.tracksBySerial = new Int2ObjectOpenHashMap<>( );
         this.updatedTracks = new HashSet<>( );
         this.loadedTracks = new HashMap<>( );
         this.trackUpdateLock = new ReentrantLock( );
+        this.stagedUpdates = new ConcurrentLinkedQueue<>( );
+        this.stagedQueueDepth = new AtomicInteger( 0 );
 
         this.fontRenderer = new TextRenderer( textFont );
 
@@ -176,6 +223,95 @@ public class TrackPainter extends GlimpsePainterBase
         this.labelLineStyle = new LineStyle( );
     }
 
+    /**
+     * If true, mutators do not acquire the painter's lock. Instead, updates are queued
+     * and applied on the render thread at the start of each frame, until the queue is
+     * empty or the drain budget (see {@link #setDrainBudgetNanos(long)}) is exhausted.
+     * Updates which do not fit in a frame's budget remain queued for the next frame.
+     * Queries (such as {@link #getGeoRange(double, double, double, double)}) only
+     * reflect updates which have been drained.
+     *
+     * When staged ingest is turned off, any queued updates are applied immediately.
+     */
+    public void setStagedIngest( boolean staged )
+    {
+        this.trackUpdateLock.lock( );
+        try
+        {
+            this.stagedIngest = staged;
+
+            // updates queued by mutators racing with this call are applied either here, or
+            // by the mutator itself once it sees that staged ingest is off (see submit)
+            if ( !staged ) applyStagedUpdates( Long.MAX_VALUE, Integer.MAX_VALUE );
+        }
+        finally
+        {
+            this.trackUpdateLock.unlock( );
+        }
+    }
+
+    public boolean isStagedIngest( )
+    {
+        return this.stagedIngest;
+    }
+
+    /**
+     * Sets the maximum time the render thread will spend applying queued updates each frame
+     * when staged ingest is enabled. The budget is checked every {@value #DRAIN_BUDGET_CHECK_INTERVAL}
+     * updates, so it may be exceeded slightly.
+     */
+    public void setDrainBudgetNanos( long budgetNanos )
+    {
+        this.drainBudgetNanos = budgetNanos;
+    }
+
+    public long getDrainBudgetNanos( )
+    {
+        return this.drainBudgetNanos;
+    }
+
+    /**
+     * Sets the maximum number of queued updates when staged ingest is enabled. A mutator
+     * which finds the queue full (because updates arrive faster than the render thread
+     * drains them, or because the canvas is not being painted) applies the queued updates
+     * itself, as if staged ingest were disabled, so the queue cannot grow without bound.
+     */
+    public void setStagedCapacity( int capacity )
+    {
+        if ( capacity <= 0 ) throw new IllegalArgumentException( "Staged capacity must be positive: " + capacity );
+
+        this.stagedCapacity = capacity;
+    }
+
+    public int getStagedCapacity( )
+    {
+        return this.stagedCapacity;
+    }
+
+    /**
+     * @return the number of queued updates which have not yet been applied
+     */
+    public int getStagedQueueDepth( )
+    {
+        return this.stagedQueueDepth.get( );
+    }
+
+    /**
+     * @return the number of queued updates applied during the most recent frame
+     */
+    public int getLastDrainCount( )
+    {
+        return this.lastDrainCount;
+    }
+
+    /**
+     * @return the time spent applying queued updates during the most recent frame
+     */
+    public long getLastDrainNanos( )
+    {
+        return this.lastDrainNanos;
+    }
+
     public void addTemporalSelectionListener( TemporalSelectionListener<Point> listener )
     {
         this.temporalSelectionListeners.add( listener );
@@ -238,79 +374,60 @@ public class TrackPainter extends GlimpsePainterBase
 
     public void deleteAll( )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new Update( )
         {
-            for ( Track track : tracks.values( ) )
+            @Override
+            public void apply( )
             {
-                track.delete( );
-            }
+                for ( Track track : tracks.values( ) )
+                {
+                    track.delete( );
+                }
 
-            if ( this.spatialIndex != null ) this.spatialIndex = new QuadTreeXys<Point>( QUAD_TREE_BIN_MAX );
+                if ( spatialIndex != null ) spatialIndex = new TrackSpatialIndex( QUAD_TREE_BIN_MAX );
 
-            this.updatedTracks.addAll( tracks.values( ) );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+                updatedTracks.addAll( tracks.values( ) );
+                newData = true;
+            }
+        } );
     }
 
-    public void deleteTrack( Object trackId )
+    public void deleteTrack( final Object trackId )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new Update( )
         {
-            if ( !tracks.containsKey( trackId ) ) return;
-
-            Track track = tracks.get( trackId );
-
-            if ( this.spatialIndex != null )
+            @Override
+            public void apply( )
             {
-                for ( Point p : track.points )
-                {
-                    this.spatialIndex.remove( p );
-                }
-            }
+                Track track = tracks.get( trackId );
+                if ( track == null ) return;
 
-            track.delete( );
+                track.removeFromSpatialIndex( );
+                track.delete( );
 
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+                updatedTracks.add( track );
+                newData = true;
+            }
+        } );
     }
 
-    public void clearTrack( Object trackId )
+    public void clearTrack( final Object trackId )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new Update( )
         {
-            if ( !tracks.containsKey( trackId ) ) return;
-
-            Track track = tracks.get( trackId );
-
-            if ( this.spatialIndex != null )
+            @Override
+            public void apply( )
             {
-                for ( Point p : track.points )
-                {
-                    this.spatialIndex.remove( p );
-                }
-            }
+                Track track = tracks.get( trackId );
+                if ( track == null ) return;
 
-            track.clear( );
+                track.removeFromSpatialIndex( );
+                track.clear( );
 
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+                updatedTracks.add( track );
+                newData = true;
+            }
+        } );
     }
 
     public void addPoint( Object trackId, Object pointId, double x, double y, long time )
@@ -320,79 +437,109 @@ public class TrackPainter extends GlimpsePainterBase
 
     public void addPoints( Object trackId, List<Point> points )
     {
-        this.trackUpdateLock.lock( );
-        try
-        {
-            Track track = getOrCreateTrack( trackId );
+        // in staged mode the caller may modify the list before the update is drained
+        final List<Point> _points = stagedIngest ? new ArrayList<Point>( points ) : points;
 
-            track.add( points );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
+        submit( new TrackUpdate( trackId )
         {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.add( _points );
+            }
+        } );
     }
 
-    public void setLineColor( Object trackId, float[] color )
+    /**
+     * Adds a block of posits to the given track without allocating a {@link Point}
+     * for each posit. The posits are assigned {@code null} point ids.
+     *
+     * @see #addPoints(Object, Object[], long[], float[], float[])
+     */
+    public void addPoints( Object trackId, long[] times, float[] xs, float[] ys )
     {
-        setLineColor( trackId, color[0], color[1], color[2], color[3] );
+        addPoints( trackId, null, times, xs, ys );
     }
 
-    public void setLineColor( Object trackId, float r, float g, float b, float a )
+    /**
+     * Adds a block of posits to the given track without allocating a {@link Point}
+     * for each posit. The input arrays are copied into the track's primitive columns,
+     * so they may be reused by the caller once this method returns. Posits are appended
+     * most efficiently when they are sorted by time and come after the existing posits
+     * in the track.
+     *
+     * @param trackId the track to add posits to
+     * @param pointIds the point id for each posit, or null if the posits have no ids
+     * @param times the time of each posit
+     * @param xs the x coordinate of each posit
+     * @param ys the y coordinate of each posit
+     */
+    public void addPoints( Object trackId, Object[] pointIds, long[] times, float[] xs, float[] ys )
     {
-        this.trackUpdateLock.lock( );
-        try
+        final int count = times.length;
+        if ( xs.length != count || ys.length != count || ( pointIds != null && pointIds.length != count ) )
         {
-            Track track = getOrCreateTrack( trackId );
+            throw new IllegalArgumentException( "Posit arrays must all have the same length" );
+        }
 
-            track.setLineColor( r, g, b, a );
+        // in staged mode the caller may reuse the arrays before the update is drained
+        boolean copy = stagedIngest;
+        final Object[] _pointIds = copy && pointIds != null ? pointIds.clone( ) : pointIds;
+        final long[] _times = copy ? times.clone( ) : times;
+        final float[] _xs = copy ? xs.clone( ) : xs;
+        final float[] _ys = copy ? ys.clone( ) : ys;
 
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
+        submit( new TrackUpdate( trackId )
         {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.add( _pointIds, _times, _xs, _ys, count );
+            }
+        } );
     }
 
-    public void setLineWidth( Object trackId, float width )
+    public void setLineColor( Object trackId, float[] color )
     {
-        this.trackUpdateLock.lock( );
-        try
-        {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setLineWidth( width );
+        setLineColor( trackId, color[0], color[1], color[2], color[3] );
+    }
 
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
+    public void setLineColor( Object trackId, final float r, final float g, final float b, final float a )
+    {
+        submit( new TrackUpdate( trackId )
         {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setLineColor( r, g, b, a );
+            }
+        } );
     }
 
-    public void setLineStyle( Object trackId, LineStyle style )
+    public void setLineWidth( Object trackId, final float width )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new TrackUpdate( trackId )
         {
-            Track track = getOrCreateTrack( trackId );
+            @Override
+            protected void apply( Track track )
+            {
+                track.setLineWidth( width );
+            }
+        } );
+    }
 
-            track.setLineStyle( style );
+    public void setLineStyle( Object trackId, LineStyle style )
+    {
+        final LineStyle _style = new LineStyle( style );
 
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
+        submit( new TrackUpdate( trackId )
         {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setLineStyle( _style );
+            }
+        } );
     }
 
     public void setPointColor( Object trackId, float[] color )
@@ -400,58 +547,40 @@ public class TrackPainter extends GlimpsePainterBase
         setPointColor( trackId, color[0], color[1], color[2], color[3] );
     }
 
-    public void setPointColor( Object trackId, float r, float g, float b, float a )
+    public void setPointColor( Object trackId, final float r, final float g, final float b, final float a )
     {
-        this.trackUpdateLock.lock( );
-        try
-        {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setPointColor( r, g, b, a );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
+        submit( new TrackUpdate( trackId )
         {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setPointColor( r, g, b, a );
+            }
+        } );
     }
 
-    public void setPointSize( Object trackId, float size )
+    public void setPointSize( Object trackId, final float size )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new TrackUpdate( trackId )
         {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setPointSize( size );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setPointSize( size );
+            }
+        } );
     }
 
-    public void setShowPoints( Object trackId, boolean show )
+    public void setShowPoints( Object trackId, final boolean show )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new TrackUpdate( trackId )
         {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setShowPoints( show );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setShowPoints( show );
+            }
+        } );
     }
 
     public void setHeadPointColor( Object trackId, float[] color )
@@ -459,113 +588,77 @@ public class TrackPainter extends GlimpsePainterBase
         setHeadPointColor( trackId, color[0], color[1], color[2], color[3] );
     }
 
-    public void setHeadPointColor( Object trackId, float r, float g, float b, float a )
+    public void setHeadPointColor( Object trackId, final float r, final float g, final float b, final float a )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new TrackUpdate( trackId )
         {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setHeadPointColor( r, g, b, a );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setHeadPointColor( r, g, b, a );
+            }
+        } );
     }
 
-    public void setHeadPointSize( Object trackId, float size )
+    public void setHeadPointSize( Object trackId, final float size )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new TrackUpdate( trackId )
         {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setHeadPointSize( size );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setHeadPointSize( size );
+            }
+        } );
     }
 
-    public void setShowHeadPoint( Object trackId, boolean show )
+    public void setShowHeadPoint( Object trackId, final boolean show )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new TrackUpdate( trackId )
         {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setShowHeadPoint( show );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setShowHeadPoint( show );
+            }
+        } );
     }
 
-    public void setShowLines( Object trackId, boolean show )
+    public void setShowLines( Object trackId, final boolean show )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new TrackUpdate( trackId )
         {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setShowLines( show );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setShowLines( show );
+            }
+        } );
     }
 
-    public void setDotted( Object trackId, boolean dotted )
+    public void setDotted( Object trackId, final boolean dotted )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new TrackUpdate( trackId )
         {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setTrackStipple( dotted );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setTrackStipple( dotted );
+            }
+        } );
     }
 
-    public void setDotted( Object trackId, int stippleFactor, short stipplePattern )
+    public void setDotted( Object trackId, final int stippleFactor, final short stipplePattern )
     {
-        this.trackUpdateLock.lock( );
-        try
-        {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setTrackStipple( true );
-            track.setTrackStipple( stippleFactor, stipplePattern );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
+        submit( new TrackUpdate( trackId )
         {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setTrackStipple( true );
+                track.setTrackStipple( stippleFactor, stipplePattern );
+            }
+        } );
     }
 
     public void setLabelColor( Object trackId, float[] color )
@@ -573,100 +666,70 @@ public class TrackPainter extends GlimpsePainterBase
         setLabelColor( trackId, color[0], color[1], color[2], color[3] );
     }
 
-    public void setLabelColor( Object trackId, float r, float g, float b, float a )
-    {
-        this.trackUpdateLock.lock( );
-        try
-        {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setLabelColor( r, g, b, a );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
-    }
-
-    public void setLabelLineColor( Object trackId, float[] color )
+    public void setLabelColor( Object trackId, final float r, final float g, final float b, final float a )
     {
-        setLabelLineColor( trackId, color[0], color[1], color[2], color[3] );
-    }
-
-    public void setLabelLineColor( Object trackId, float r, float g, float b, float a )
-    {
-        this.trackUpdateLock.lock( );
-        try
-        {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setLabelLineColor( r, g, b, a );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
+        submit( new TrackUpdate( trackId )
         {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setLabelColor( r, g, b, a );
+            }
+        } );
     }
-
-    public void setShowLabelLine( Object trackId, boolean show )
-    {
-        this.trackUpdateLock.lock( );
-        try
-        {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setShowLabelLine( show );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+
+    public void setLabelLineColor( Object trackId, float[] color )
+    {
+        setLabelLineColor( trackId, color[0], color[1], color[2], color[3] );
     }
 
-    public void setLabel( Object trackId, String label )
+    public void setLabelLineColor( Object trackId, final float r, final float g, final float b, final float a )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new TrackUpdate( trackId )
         {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setShowLabel( true );
-            track.setLabel( label );
+            @Override
+            protected void apply( Track track )
+            {
+                track.setLabelLineColor( r, g, b, a );
+            }
+        } );
+    }
 
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
+    public void setShowLabelLine( Object trackId, final boolean show )
+    {
+        submit( new TrackUpdate( trackId )
         {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setShowLabelLine( show );
+            }
+        } );
     }
 
-    public void setShowLabel( Object trackId, boolean show )
+    public void setLabel( Object trackId, final String label )
     {
-        this.trackUpdateLock.lock( );
-        try
+        submit( new TrackUpdate( trackId )
         {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setShowLabel( show );
+            @Override
+            protected void apply( Track track )
+            {
+                track.setShowLabel( true );
+                track.setLabel( label );
+            }
+        } );
+    }
 
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
+    public void setShowLabel( Object trackId, final boolean show )
+    {
+        submit( new TrackUpdate( trackId )
         {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setShowLabel( show );
+            }
+        } );
     }
 
     public void displayTimeRange( Object trackId, double startTime, double endTime )
@@ -686,24 +749,18 @@ public class TrackPainter extends GlimpsePainterBase
 
     public void displayTimeRange( Object trackId, long startTime, long endTime, long selectedTime )
     {
-        Point startPoint = getStartPoint( startTime );
-        Point endPoint = getEndPoint( endTime );
-        Point selectedPoint = getEndPoint( selectedTime );
+        final Point startPoint = getStartPoint( startTime );
+        final Point endPoint = getEndPoint( endTime );
+        final Point selectedPoint = getEndPoint( selectedTime );
 
-        this.trackUpdateLock.lock( );
-        try
-        {
-            Track track = getOrCreateTrack( trackId );
-
-            track.setTimeRange( startPoint, endPoint, selectedPoint );
-
-            this.updatedTracks.add( track );
-            this.newData = true;
-        }
-        finally
+        submit( new TrackUpdate( trackId )
         {
-            this.trackUpdateLock.unlock( );
-        }
+            @Override
+            protected void apply( Track track )
+            {
+                track.setTimeRange( startPoint, endPoint, selectedPoint );
+            }
+        } );
     }
 
     public void displayTimeRange( long startTime, long endTime )
@@ -713,25 +770,28 @@ public class TrackPainter extends GlimpsePainterBase
 
     public void displayTimeRange( long startTime, long endTime, long selectedTime )
     {
-        startTimeRange = getStartPoint( startTime );
-        endTimeRange = getEndPoint( endTime );
-        selectedTimeRange = getEndPoint( selectedTime );
+        final Point startPoint = getStartPoint( startTime );
+        final Point endPoint = getEndPoint( endTime );
+        final Point selectedPoint = getEndPoint( selectedTime );
 
-        this.trackUpdateLock.lock( );
-        try
+        submit( new Update( )
         {
-            for ( Track track : tracks.values( ) )
+            @Override
+            public void apply( )
             {
-                track.setTimeRange( startTimeRange, endTimeRange, selectedTimeRange );
-            }
+                startTimeRange = startPoint;
+                endTimeRange = endPoint;
+                selectedTimeRange = selectedPoint;
 
-            this.updatedTracks.addAll( tracks.values( ) );
-            this.newData = true;
-        }
-        finally
-        {
-            this.trackUpdateLock.unlock( );
-        }
+                for ( Track track : tracks.values( ) )
+                {
+                    track.setTimeRange( startTimeRange, endTimeRange, selectedTimeRange );
+                }
+
+                updatedTracks.addAll( tracks.values( ) );
+                newData = true;
+            }
+        } );
     }
 
     /**
@@ -751,7 +811,7 @@ public class TrackPainter extends GlimpsePainterBase
             this.trackUpdateLock.lock( );
             try
             {
-                return spatialIndex.search( ( float ) minX, ( float ) maxX, ( float ) minY, ( float ) maxY );
+                return toPoints( spatialIndex.search( ( float ) minX, ( float ) maxX, ( float ) minY, ( float ) maxY ) );
             }
             finally
             {
@@ -769,7 +829,10 @@ public class TrackPainter extends GlimpsePainterBase
      */
     public Collection<Point> getTimePixelRange( Axis2D axis, double minTime, double maxTime, double centerX, double centerY, int pixelWidth, int pixelHeight )
     {
-        return filter( getPixelRange( axis, centerX, centerY, pixelWidth, pixelHeight ) );
+        double width = pixelWidth / axis.getAxisX( ).getPixelsPerValue( );
+        double height = pixelHeight / axis.getAxisY( ).getPixelsPerValue( );
+
+        return getTimeGeoRange( centerX - width / 2, centerX + width / 2, centerY - height / 2, centerY + height / 2 );
     }
 
     /**
@@ -853,29 +916,19 @@ public class TrackPainter extends GlimpsePainterBase
         double centerX = axisX.screenPixelToValue( centerPixelX );
         double centerY = axisY.screenPixelToValue( axisY.getSizePixels( ) - centerPixelY );
 
-        Collection<Point> points = getTimePixelRange( axis, startTimeRange.time, endTimeRange.time, centerX, centerY, maxPixelDistance * 2, maxPixelDistance * 2 );
+        if ( spatialIndex == null ) return null;
 
-        Point minPoint = null;
-        double minDistance = 0;
-
-        for ( Point point : points )
+        this.trackUpdateLock.lock( );
+        try
         {
-            double pixelX = axisX.valueToScreenPixel( point.x );
-            double pixelY = axisY.getSizePixels( ) - axisY.valueToScreenPixel( point.y );
-
-            double diffX = pixelX - centerPixelX;
-            double diffY = pixelY - centerPixelY;
-
-            double dist = Math.sqrt( diffX * diffX + diffY * diffY );
-
-            if ( minPoint == null || dist < minDistance )
-            {
-                minPoint = point;
-                minDistance = dist;
-            }
+            // best-first search of the spatial index, measuring distance in pixels
+            Longs nearest = spatialIndex.nearest( ( float ) centerX, ( float ) centerY, axisX.getPixelsPerValue( ), axisY.getPixelsPerValue( ), 1, maxPixelDistance, selectedTimeFilter( ) );
+            return nearest.isEmpty( ) ? null : toPoints( nearest ).iterator( ).next( );
+        }
+        finally
+        {
+            this.trackUpdateLock.unlock( );
         }
-
-        return minPoint;
     }
 
     public Collection<Point> getTimeGeoRange( double minTime, double maxTime, double minX, double maxX, double minY, double maxY )
@@ -893,7 +946,7 @@ public class TrackPainter extends GlimpsePainterBase
             this.trackUpdateLock.lock( );
             try
             {
-                return filter( spatialIndex.search( ( float ) minX, ( float ) maxX, ( float ) minY, ( float ) maxY ), minTime, maxTime );
+                return toPoints( spatialIndex.search( ( float ) minX, ( float ) maxX, ( float ) minY, ( float ) maxY, timeFilter( minTime, maxTime ) ) );
             }
             finally
             {
@@ -917,7 +970,7 @@ public class TrackPainter extends GlimpsePainterBase
             this.trackUpdateLock.lock( );
             try
             {
-                return filter( spatialIndex.search( ( float ) minX, ( float ) maxX, ( float ) minY, ( float ) maxY ) );
+                return toPoints( spatialIndex.search( ( float ) minX, ( float ) maxX, ( float ) minY, ( float ) maxY, selectedTimeFilter( ) ) );
             }
             finally
             {
@@ -950,6 +1003,81 @@ public class TrackPainter extends GlimpsePainterBase
         }
     }
 
+    // must be called while holding trackUpdateLock
+    protected Collection<Point> toPoints( Longs keys )
+    {
+        int n = keys.n( );
+        Collection<Point> result = new ArrayList<Point>( n );
+
+        for ( int i = 0; i < n; i++ )
+        {
+            long key = keys.v( i );
+            Track track = tracksBySerial.get( serialFromKey( key ) );
+            result.add( track.getPoint( slotFromKey( key ) ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * @return a spatial index filter accepting posits with minTime &lt; time &lt;= maxTime
+     */
+    protected FilterLong timeFilter( final long minTime, final long maxTime )
+    {
+        return new FilterLong( )
+        {
+            @Override
+            public boolean include( long key )
+            {
+                Track track = tracksBySerial.get( serialFromKey( key ) );
+                long time = track.times.a[slotFromKey( key )];
+                return minTime < time && time <= maxTime;
+            }
+        };
+    }
+
+    /**
+     * @return a spatial index filter accepting posits within the time span selected for their track
+     */
+    protected FilterLong selectedTimeFilter( )
+    {
+        return new FilterLong( )
+        {
+            @Override
+            public boolean include( long key )
+            {
+                Track track = tracksBySerial.get( serialFromKey( key ) );
+                long time = track.times.a[slotFromKey( key )];
+                return track.selectionStart.time <= time && time < track.selectionEnd.time;
+            }
+        };
+    }
+
+    protected static boolean isSorted( long[] times, int count )
+    {
+        for ( int i = 1; i < count; i++ )
+        {
+            if ( times[i] < times[i - 1] ) return false;
+        }
+
+        return true;
+    }
+
+    protected static long spatialKey( int trackSerial, int slot )
+    {
+        return ( ( ( long ) trackSerial ) << 32 ) | ( slot & 0x00000000FFFFFFFFL );
+    }
+
+    protected static int serialFromKey( long key )
+    {
+        return ( int ) ( key >>> 32 );
+    }
+
+    protected static int slotFromKey( long key )
+    {
+        return ( int ) key;
+    }
+
     protected Point getStartPoint( long time )
     {
         return new Point( Integer.MIN_VALUE, Integer.MIN_VALUE, 0, 0, time );
@@ -1001,22 +1129,102 @@ public class TrackPainter extends GlimpsePainterBase
         return result;
     }
 
-    protected void addPoint( Object trackId, Point point )
+    protected void addPoint( Object trackId, final Point point )
+    {
+        submit( new TrackUpdate( trackId )
+        {
+            @Override
+            protected void apply( Track track )
+            {
+                track.add( point );
+            }
+        } );
+    }
+
+    /**
+     * Applies the update immediately, or queues it to be applied on the render
+     * thread if staged ingest is enabled.
+     */
+    protected void submit( Update update )
+    {
+        if ( this.stagedIngest )
+        {
+            this.stagedUpdates.add( update );
+            int depth = this.stagedQueueDepth.incrementAndGet( );
+
+            if ( depth > this.stagedCapacity )
+            {
+                // backpressure: the render thread has fallen behind, so apply the backlog here
+                applyStagedUpdates( Long.MAX_VALUE, depth );
+            }
+            else if ( !this.stagedIngest )
+            {
+                // staged ingest was turned off after the check above, and its final drain may have missed this update
+                applyStagedUpdates( Long.MAX_VALUE, Integer.MAX_VALUE );
+            }
+        }
+        else
+        {
+            this.trackUpdateLock.lock( );
+            try
+            {
+                update.apply( );
+            }
+            finally
+            {
+                this.trackUpdateLock.unlock( );
+            }
+        }
+
+        invalidate( );
+    }
+
+    /**
+     * Applies queued updates until the queue is empty or the per-frame drain
+     * budget is used up. Updates left in the queue are applied on the next frame.
+     */
+    protected void drainStagedUpdates( long budgetNanos )
+    {
+        long startNanos = System.nanoTime( );
+
+        int drained = applyStagedUpdates( budgetNanos, Integer.MAX_VALUE );
+
+        this.lastDrainCount = drained;
+        this.lastDrainNanos = System.nanoTime( ) - startNanos;
+    }
+
+    /**
+     * Applies queued updates until the queue is empty, the time budget is used up,
+     * or maxCount updates have been applied.
+     *
+     * @return the number of updates applied
+     */
+    protected int applyStagedUpdates( long budgetNanos, int maxCount )
     {
+        int applied = 0;
+        long startNanos = System.nanoTime( );
+
         this.trackUpdateLock.lock( );
         try
         {
-            Track track = getOrCreateTrack( trackId );
+            Update update;
+            while ( applied < maxCount && ( update = this.stagedUpdates.poll( ) ) != null )
+            {
+                update.apply( );
+                applied++;
 
-            track.add( point );
+                // checking the clock is comparatively expensive, so only do it periodically
+                if ( applied % DRAIN_BUDGET_CHECK_INTERVAL == 0 && System.nanoTime( ) - startNanos >= budgetNanos ) break;
+            }
 
-            this.updatedTracks.add( track );
-            this.newData = true;
+            this.stagedQueueDepth.addAndGet( -applied );
         }
         finally
         {
             this.trackUpdateLock.unlock( );
         }
+
+        return applied;
     }
 
     // must be called while holding trackUpdateLock
@@ -1026,9 +1234,10 @@ public class TrackPainter extends GlimpsePainterBase
 
         if ( track == null )
         {
-            track = new Track( trackId );
+            track = new Track( trackId, nextTrackSerial++ );
             track.setTimeRange( startTimeRange, endTimeRange, selectedTimeRange );
             this.tracks.put( trackId, track );
+            this.tracksBySerial.put( track.serial, track );
         }
 
         return track;
@@ -1072,6 +1281,11 @@ public class TrackPainter extends GlimpsePainterBase
     @Override
     public void doPaintTo( GlimpseContext context )
     {
+        if ( this.stagedIngest || this.stagedQueueDepth.get( ) > 0 ) drainStagedUpdates( this.drainBudgetNanos );
+
+        // updates left over once the drain budget is used up need another frame
+        if ( this.stagedQueueDepth.get( ) > 0 ) invalidate( );
+
         GL3 gl = context.getGL( ).getGL3( );
         GlimpseBounds bounds = getBounds( context );
         Axis2D axis = requireAxis2D( context );
@@ -1107,6 +1321,7 @@ public class TrackPainter extends GlimpsePainterBase
                         if ( track.isDeletePending( ) && !track.isDataInserted( ) )
                         {
                             tracks.remove( id );
+                            tracksBySerial.remove( track.serial );
                             continue;
                         }
                     }
@@ -1417,6 +1632,37 @@ public class TrackPainter extends GlimpsePainterBase
         this.labelLinePath.dispose( gl3 );
     }
 
+    // A modification of the painter state, applied while holding trackUpdateLock
+    protected interface Update
+    {
+        void apply( );
+    }
+
+    // A modification of a single Track, which creates the Track if necessary
+    // and flags it for upload to the GPU
+    protected abstract class TrackUpdate implements Update
+    {
+        protected final Object trackId;
+
+        public TrackUpdate( Object trackId )
+        {
+            this.trackId = trackId;
+        }
+
+        @Override
+        public void apply( )
+        {
+            Track track = getOrCreateTrack( trackId );
+
+            apply( track );
+
+            updatedTracks.add( track );
+            newData = true;
+        }
+
+        protected abstract void apply( Track track );
+    }
+
     ////////////////////////////////////////
     ///// Internal Data Structures     /////
     ///// not intended for use outside /////
@@ -1563,8 +1809,18 @@ public class TrackPainter extends GlimpsePainterBase
     {
         // the unique identifier of the track
         protected Object trackId;
-        // the points making up the track
-        protected List<Point> points;
+        // identifies the track within spatial index keys
+        protected int serial;
+
+        // the posits making up the track, stored in insertion order (indexed by slot)
+        // slots are never reordered, so spatial index keys remain valid as posits are added
+        protected LongsArray times;
+        protected FloatsArray xs;
+        protected FloatsArray ys;
+        protected ObjectsArray pointIds;
+        // the slots of the track posits, sorted by time
+        protected IntsArray order;
+
         // the lowest index of the last change made to the track
         // when the track data is copied to a device buffer, all
         // data from here to the end of the track must be copied
@@ -1586,6 +1842,7 @@ public class TrackPainter extends GlimpsePainterBase
         protected Point selectionCurrent;
 
         protected Point trackHead;
+        protected int trackHeadSlot = -1;
 
         // track display attributes
         protected float[] lineColor = new float[] { 1.0f, 1.0f, 0.0f, 1.0f };
@@ -1617,10 +1874,15 @@ public class TrackPainter extends GlimpsePainterBase
         protected double endMileage;
 
         // Track isn't intended to be used outside of TrackPainter
-        protected Track( Object trackId )
+        protected Track( Object trackId, int serial )
         {
             this.trackId = trackId;
-            this.points = new ArrayList<Point>( TRACK_SIZE_ESTIMATE );
+            this.serial = serial;
+            this.times = new LongsArray( TRACK_SIZE_ESTIMATE );
+            this.xs = new FloatsArray( TRACK_SIZE_ESTIMATE );
+            this.ys = new FloatsArray( TRACK_SIZE_ESTIMATE );
+            this.pointIds = new ObjectsArray( TRACK_SIZE_ESTIMATE );
+            this.order = new IntsArray( TRACK_SIZE_ESTIMATE );
             this.style = new LineStyle( );
         }
 
@@ -1637,9 +1899,9 @@ public class TrackPainter extends GlimpsePainterBase
         {
             if ( selectionStart == null || selectionEnd == null || selectionCurrent == null ) return;
 
-            int startIndex = firstIndexBeforeTime( selectionStart ) + 1;
-            int endIndex = firstIndexAfterTime( selectionEnd ) - 1;
-            int selectedIndex = firstIndexAfterTime( selectionCurrent ) - 1;
+            int startIndex = firstIndexBeforeTime( selectionStart.time ) + 1;
+            int endIndex = firstIndexAfterTime( selectionEnd.time ) - 1;
+            int selectedIndex = firstIndexAfterTime( selectionCurrent.time ) - 1;
 
             Point previousTrackHead = trackHead;
 
@@ -1649,6 +1911,7 @@ public class TrackPainter extends GlimpsePainterBase
                 selectedSize = 0;
 
                 trackHead = null;
+                trackHeadSlot = -1;
 
                 if ( previousTrackHead != null ) notifyTemporalSelectionListeners( Collections.singletonMap( trackId, trackHead ) );
             }
@@ -1660,7 +1923,14 @@ public class TrackPainter extends GlimpsePainterBase
                 if ( selectedIndex > endIndex ) selectedIndex = endIndex;
                 if ( selectedIndex < startIndex ) selectedIndex = startIndex;
 
-                trackHead = points.get( selectedIndex );
+                // only allocate a new Point when the head posit actually changes
+                int selectedSlot = order.a[selectedIndex];
+                if ( trackHead == null || selectedSlot != trackHeadSlot )
+                {
+                    trackHead = getPoint( selectedSlot );
+                    trackHeadSlot = selectedSlot;
+                }
+
                 headPosX = trackHead.getX( );
                 headPosY = trackHead.getY( );
 
@@ -1767,50 +2037,87 @@ public class TrackPainter extends GlimpsePainterBase
         {
             if ( _points == null || _points.size( ) == 0 ) return;
 
-            List<Point> sortedPoints = new ArrayList<Point>( _points );
-            Collections.sort( sortedPoints, comparator );
-            Point firstPoint = sortedPoints.get( 0 );
+            for ( Point point : _points )
+            {
+                addPosit( point.getPointId( ), point.getX( ), point.getY( ), point.getTime( ) );
+            }
+
+            // determine if the new points reside inside the selected time range
+            checkTimeRange( );
+        }
+
+        public void add( Point point )
+        {
+            addPosit( point.getPointId( ), point.getX( ), point.getY( ), point.getTime( ) );
+
+            // determine if the new point resides inside the selected time range
+            checkTimeRange( );
+        }
 
-            // add the point to the temporal and spatial indexes
-            int index = firstIndexAfterTime( firstPoint );
+        public void add( Object[] _pointIds, long[] _times, float[] _xs, float[] _ys, int count )
+        {
+            if ( count == 0 ) return;
 
-            if ( index == points.size( ) )
+            if ( isSorted( _times, count ) && ( order.n == 0 || _times[0] >= timeAt( order.n - 1 ) ) )
             {
-                points.addAll( index, sortedPoints );
+                // fast path: the new posits all belong at the end of the track
+                int firstSlot = times.n;
+                int index = order.n;
+
+                times.append( _times, 0, count );
+                xs.append( _xs, 0, count );
+                ys.append( _ys, 0, count );
+
+                if ( _pointIds != null )
+                {
+                    pointIds.append( _pointIds, 0, count );
+                }
+                else
+                {
+                    // slots past pointIds.n are always null (see clear)
+                    pointIds.prepForAppend( count );
+                }
+
+                order.prepForAppend( count );
+                for ( int i = 0; i < count; i++ )
+                {
+                    int slot = firstSlot + i;
+                    order.a[index + i] = slot;
+                    if ( spatialIndex != null ) spatialIndex.add( spatialKey( serial, slot ) );
+                }
+
+                markInserted( index );
             }
             else
             {
-                for ( Point point : sortedPoints )
+                for ( int i = 0; i < count; i++ )
                 {
-                    index = firstIndexAfterTime( firstPoint );
-                    points.add( index, point );
+                    addPosit( _pointIds == null ? null : _pointIds[i], _xs[i], _ys[i], _times[i] );
                 }
             }
 
-            if ( spatialIndex != null )
-            {
-                for ( Point point : _points )
-                    spatialIndex.add( point );
-            }
-
-            // determine if the new point resides inside the selected time range
+            // determine if the new points reside inside the selected time range
             checkTimeRange( );
-
-            // set flag indicating this track contains new data
-            insertIndex = 0;
-            dataInserted = true;
         }
 
-        public void add( Point point )
+        protected void addPosit( Object pointId, float x, float y, long time )
         {
-            // add the point to the temporal and spatial indexes
-            int index = firstIndexAfterTime( point );
-            points.add( index, point );
-            if ( spatialIndex != null ) spatialIndex.add( point );
+            int slot = times.n;
+            times.append( time );
+            xs.append( x );
+            ys.append( y );
+            pointIds.append( pointId );
 
-            // determine if the new point resides inside the selected time range
-            checkTimeRange( );
+            // add the posit to the temporal and spatial indexes
+            int index = firstIndexAfterTime( time );
+            order.insert( index, slot );
+            if ( spatialIndex != null ) spatialIndex.add( spatialKey( serial, slot ) );
+
+            markInserted( index );
+        }
 
+        protected void markInserted( int index )
+        {
             // set flag indicating this track contains new data
             if ( !dataInserted || index < insertIndex )
             {
@@ -1819,6 +2126,16 @@ public class TrackPainter extends GlimpsePainterBase
             }
         }
 
+        public void removeFromSpatialIndex( )
+        {
+            if ( spatialIndex == null ) return;
+
+            for ( int slot = 0; slot < times.n; slot++ )
+            {
+                spatialIndex.remove( spatialKey( serial, slot ) );
+            }
+        }
+
         public void delete( )
         {
             deletePending = true;
@@ -1831,35 +2148,82 @@ public class TrackPainter extends GlimpsePainterBase
 
             dataInserted = false;
             trackHead = null;
-            points.clear( );
+            trackHeadSlot = -1;
+
+            // release point id references, and keep the unused tail of the column null
+            Arrays.fill( pointIds.a, 0, pointIds.n, null );
+
+            times.clear( );
+            xs.clear( );
+            ys.clear( );
+            pointIds.clear( );
+            order.clear( );
 
             checkTimeRange( );
         }
 
-        public int firstIndexAfterTime( Point point )
+        /**
+         * @return the Point stored in the given slot, created on demand
+         */
+        public Point getPoint( int slot )
+        {
+            return new Point( trackId, pointIds.a[slot], xs.a[slot], ys.a[slot], times.a[slot] );
+        }
+
+        /**
+         * @return the time of the posit at the given (time-sorted) index
+         */
+        public long timeAt( int index )
+        {
+            return times.a[order.a[index]];
+        }
+
+        /**
+         * @return the index of the first posit with time strictly greater than the given time
+         */
+        public int firstIndexAfterTime( long time )
         {
-            int index = Collections.binarySearch( points, point, comparator );
-            if ( index < 0 ) index = - ( index + 1 );
+            int low = 0;
+            int high = order.n;
 
-            while ( index < points.size( ) && points.get( index ).time == point.time )
+            while ( low < high )
             {
-                index++;
+                int mid = ( low + high ) >>> 1;
+                if ( timeAt( mid ) <= time )
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid;
+                }
             }
 
-            return index;
+            return low;
         }
 
-        public int firstIndexBeforeTime( Point point )
+        /**
+         * @return the index of the last posit with time strictly less than the given time
+         */
+        public int firstIndexBeforeTime( long time )
         {
-            int index = Collections.binarySearch( points, point, comparator );
-            if ( index < 0 ) index = - ( index + 1 ) - 1;
+            int low = 0;
+            int high = order.n;
 
-            while ( 0 <= index && points.get( index ).time == point.time )
+            while ( low < high )
             {
-                index--;
+                int mid = ( low + high ) >>> 1;
+                if ( timeAt( mid ) < time )
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid;
+                }
             }
 
-            return index;
+            return low - 1;
         }
 
         public boolean isDataInserted( )
@@ -1896,7 +2260,7 @@ public class TrackPainter extends GlimpsePainterBase
 
         public int getSize( )
         {
-            return points.size( );
+            return order.n;
         }
 
         public Point getTrackHead( )
@@ -1916,18 +2280,22 @@ public class TrackPainter extends GlimpsePainterBase
                 mileageBuffer.put( 0 );
             }
 
+            int[] slots = order.a;
+            float[] x = xs.a;
+            float[] y = ys.a;
+
             for ( int i = offset; i < size; i++ )
             {
-                Point point = points.get( i );
+                int slot = slots[i];
 
                 if ( i > 0 )
                 {
-                    Point priorPoint = points.get( i - 1 );
+                    int priorSlot = slots[i - 1];
 
-                    mileage += LineUtils.distance( priorPoint.getX( ), priorPoint.getY( ), point.getX( ), point.getY( ), ppvAspectRatio );
+                    mileage += LineUtils.distance( x[priorSlot], y[priorSlot], x[slot], y[slot], ppvAspectRatio );
                 }
 
-                xyBuffer.put( point.getX( ) ).put( point.getY( ) );
+                xyBuffer.put( x[slot] ).put( y[slot] );
                 mileageBuffer.put( ( float ) mileage );
 
                 if ( i == 0 )
@@ -1989,6 +2357,29 @@ public class TrackPainter extends GlimpsePainterBase
         }
     }
 
+    // Spatial index over the posits of all tracks. Values are keys built by
+    // spatialKey( int, int ), which identify a Track and a slot within it.
+    // Must only be accessed while holding trackUpdateLock.
+    protected class TrackSpatialIndex extends QuadTreeLongs
+    {
+        public TrackSpatialIndex( int maxBucketSize )
+        {
+            super( maxBucketSize );
+        }
+
+        @Override
+        public float x( long key )
+        {
+            return tracksBySerial.get( serialFromKey( key ) ).xs.a[slotFromKey( key )];
+        }
+
+        @Override
+        public float y( long key )
+        {
+            return tracksBySerial.get( serialFromKey( key ) ).ys.a[slotFromKey( key )];
+        }
+    }
+
     public static class SpatialSelectionAxisListener extends RateLimitedAxisListener2D
     {
         protected TrackPainter painter;
@@ -38,9 +38,12 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.metsci.glimpse.axis.Axis1D;
@@ -62,6 +65,7 @@ public class EventManager
     protected static final double BUFFER_MULTIPLIER = 2;
     protected static final double OVERLAP_HEURISTIC = 20.0;
     protected static final int PICK_BUFFER_PIXELS = 10;
+    protected static final int MAX_AGGREGATION_LEVELS = 8;
 
     protected EventPlotInfo info;
     protected ReentrantLock lock;
@@ -89,10 +93,12 @@ public class EventManager
         // all Events in the Row
         public EventIntervalQuadTree events;
 
-        // all visible Events in the Row (some Events may be aggregated)
-        // will not be filled in if aggregation is not turned on (in that
-        // case it is unneeded because the events map can be queried instead)
-        public EventIntervalQuadTree visibleAggregateEvents;
+        // precomputed aggregate groups for the pixels-per-value scales which have
+        // been displayed recently (only filled in if aggregation is turned on)
+        protected Map<Integer, AggregationLevel> aggregationLevels;
+
+        // the aggregation level used to calculate visibleEvents
+        protected AggregationLevel visibleLevel;
 
         // all visible Events (including aggregated events, if turned on)
         // sorted by starting timestamp
@@ -101,20 +107,39 @@ public class EventManager
         public Row( int index )
         {
             this.index = index;
-            this.visibleAggregateEvents = new EventIntervalQuadTree( );
             this.events = new EventIntervalQuadTree( );
+            this.aggregationLevels = new LinkedHashMap<Integer, AggregationLevel>( 16, 0.75f, true )
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry( Map.Entry<Integer, AggregationLevel> eldest )
+                {
+                    return size( ) > MAX_AGGREGATION_LEVELS;
+                }
+            };
         }
 
         public void addEvent( Event event )
         {
             this.events.add( event );
             EventManager.this.rowMap.put( event.getId( ), this );
+
+            for ( AggregationLevel level : this.aggregationLevels.values( ) )
+            {
+                level.add( event );
+            }
         }
 
         public void removeEvent( Event event )
         {
             this.events.remove( event );
             EventManager.this.rowMap.remove( event.getId( ) );
+
+            for ( AggregationLevel level : this.aggregationLevels.values( ) )
+            {
+                level.remove( event );
+            }
         }
 
         public void calculateVisibleEvents( Axis1D axis, TimeStamp min, TimeStamp max )
@@ -131,82 +156,29 @@ public class EventManager
 
         public void calculateVisibleEventsAggregated( Axis1D axis, TimeStamp min, TimeStamp max )
         {
-            // calculate size of bin in system (time) units
-            double ppv = axis.getPixelsPerValue( );
-            double maxDuration = EventManager.this.maxAggregateSize / ppv;
-            double maxGap = EventManager.this.maxAggregateGap / ppv;
-
-            // expand the visible window slightly
-            // since we only aggregate visible Events, we don't want weird
-            // visual artifacts (aggregate groups appearing and disappearing)
-            // as Events scroll off the screen
-            TimeStamp expandedMin = min.subtract( maxDuration * BUFFER_MULTIPLIER );
-            TimeStamp expandedMax = max.add( maxDuration * BUFFER_MULTIPLIER );
-
-            List<Event> visible = calculateVisibleEventsNormal0( events, expandedMin, expandedMax );
-
-            EventIntervalQuadTree events = new EventIntervalQuadTree( );
+            AggregationLevel level = getAggregationLevel( axis.getPixelsPerValue( ) );
 
-            Set<Event> children = new HashSet<Event>( );
-            TimeStamp childrenMin = null;
-            TimeStamp childrenMax = null;
-            for ( Event event : visible )
-            {
-                // only aggregate small events
-                boolean isDurationSmall = event.getDuration( ) < maxDuration;
-
-                // only aggregate events with small gaps between them
-                double gap = childrenMax == null ? 0 : childrenMax.durationBefore( event.getStartTime( ) );
-                boolean isGapSmall = gap < maxGap;
-
-                // if the gap is large, end the current aggregate group
-                if ( !isGapSmall )
-                {
-                    addAggregateEvent( events, children, childrenMin, childrenMax, min, max );
-                    children.clear( );
-                    childrenMin = null;
-                    childrenMax = null;
-                }
-
-                // if the event is small enough to be aggregated, add it to the child list
-                if ( isDurationSmall )
-                {
-                    children.add( event );
-
-                    // events are in start time order, so this will never change after being set
-                    if ( childrenMin == null ) childrenMin = event.getStartTime( );
-
-                    if ( childrenMax == null || childrenMax.isBefore( event.getEndTime( ) ) ) childrenMax = event.getEndTime( );
-                }
-                // otherwise just add it to the result map
-                else
-                {
-                    if ( isVisible( event, min, max ) ) events.add( event );
-                }
-            }
-
-            // add any remaining child events
-            addAggregateEvent( events, children, childrenMin, childrenMax, min, max );
-
-            this.visibleAggregateEvents = events;
-            this.visibleEvents = calculateVisibleEventsNormal0( events.getAll( ) );
+            this.visibleLevel = level;
+            this.visibleEvents = calculateVisibleEventsNormal0( level.get( min, max ) );
         }
 
-        protected void addAggregateEvent( EventIntervalQuadTree events, Set<Event> children, TimeStamp childrenMin, TimeStamp childrenMax, TimeStamp min, TimeStamp max )
+        /**
+         * Returns the precomputed aggregate groups for the power-of-two scale nearest to (and no larger
+         * than) the provided pixels-per-value, building them if that scale has not been displayed recently.
+         */
+        protected AggregationLevel getAggregationLevel( double ppv )
         {
-            // if there is only one or zero events in the current group, just add a regular event
-            if ( children.size( ) <= 1 )
+            int exponent = Math.max( Double.MIN_EXPONENT, Math.min( Double.MAX_EXPONENT, Math.getExponent( ppv ) ) );
+
+            AggregationLevel level = this.aggregationLevels.get( exponent );
+            if ( level == null )
             {
-                for ( Event child : children )
-                    if ( isVisible( child, min, max ) ) events.add( child );
+                level = new AggregationLevel( Math.scalb( 1.0, exponent ) );
+                level.addAll( this.events.getAll( ) );
+                this.aggregationLevels.put( exponent, level );
             }
-            // otherwise create an aggregate group and add it to the result map
-            else
-            {
-                AggregateEvent aggregate = new AggregateEvent( children, childrenMin, childrenMax );
 
-                if ( isVisible( aggregate, min, max ) ) events.add( aggregate );
-            }
+            return level;
         }
 
         protected boolean isVisible( Event event, TimeStamp min, TimeStamp max )
@@ -239,9 +211,9 @@ public class EventManager
 
         public Collection<Event> getNearestVisibleEvents( TimeStamp timeStart, TimeStamp timeEnd )
         {
-            if ( EventManager.this.aggregateNearbyEvents )
+            if ( EventManager.this.aggregateNearbyEvents && this.visibleLevel != null )
             {
-                return this.visibleAggregateEvents.get( timeStart, timeEnd );
+                return this.visibleLevel.get( timeStart, timeEnd );
             }
             else
             {
@@ -270,6 +242,230 @@ public class EventManager
         }
     }
 
+    /**
+     * The aggregate groups of a single Row at a single pixels-per-value scale.
+     *
+     * Events which are small (in pixels) at this scale are grouped with any other small
+     * Events which are within {@link #maxAggregateGap} pixels of them. Because grouping
+     * only depends on the union of the small Events' (gap-expanded) time intervals, it
+     * does not depend on the order in which Events are added, which lets groups be merged
+     * and split incrementally as Events are added, removed and moved.
+     */
+    protected class AggregationLevel
+    {
+        // maximum duration of an aggregated Event in system (time) units
+        protected final double maxDuration;
+        // maximum gap between aggregated Events in system (time) units
+        protected final double maxGap;
+
+        // groups of small Events keyed by start time (groups never overlap)
+        protected final NavigableMap<TimeStamp, AggregateGroup> groups;
+        protected final Map<Event, AggregateGroup> groupMap;
+
+        // Events which are too large to be aggregated at this scale
+        protected final EventIntervalQuadTree largeEvents;
+
+        public AggregationLevel( double ppv )
+        {
+            this.maxDuration = EventManager.this.maxAggregateSize / ppv;
+            this.maxGap = EventManager.this.maxAggregateGap / ppv;
+
+            this.groups = new TreeMap<>( );
+            this.groupMap = new HashMap<>( );
+            this.largeEvents = new EventIntervalQuadTree( );
+        }
+
+        public void addAll( Collection<Event> events )
+        {
+            List<Event> small = new ArrayList<Event>( events.size( ) );
+            for ( Event event : events )
+            {
+                if ( isSmall( event ) )
+                {
+                    small.add( event );
+                }
+                else
+                {
+                    this.largeEvents.add( event );
+                }
+            }
+
+            addGroups( small );
+        }
+
+        public void add( Event event )
+        {
+            if ( !isSmall( event ) )
+            {
+                this.largeEvents.add( event );
+                return;
+            }
+
+            TimeStamp start = event.getStartTime( );
+            TimeStamp end = event.getEndTime( );
+
+            // find every group which is close enough to the new event to be merged with it
+            // groups are disjoint, so only the group starting at or before the event can reach back to it
+            List<AggregateGroup> near = new ArrayList<AggregateGroup>( 2 );
+            TimeStamp fromKey = this.groups.floorKey( start );
+            Collection<AggregateGroup> candidates = fromKey == null ? this.groups.values( ) : this.groups.tailMap( fromKey, true ).values( );
+            for ( AggregateGroup group : candidates )
+            {
+                if ( !isNear( end, group.start ) ) break;
+                if ( isNear( group.end, start ) ) near.add( group );
+            }
+
+            // merge everything into the largest group, so that the fewest Events change groups
+            AggregateGroup merged = null;
+            for ( AggregateGroup group : near )
+            {
+                if ( merged == null || group.children.size( ) > merged.children.size( ) ) merged = group;
+            }
+
+            if ( merged == null )
+            {
+                merged = new AggregateGroup( );
+            }
+            else
+            {
+                this.groups.remove( merged.start );
+            }
+
+            for ( AggregateGroup group : near )
+            {
+                if ( group == merged ) continue;
+
+                this.groups.remove( group.start );
+                for ( Event child : group.children )
+                {
+                    merged.add( child );
+                    this.groupMap.put( child, merged );
+                }
+            }
+
+            merged.add( event );
+            this.groupMap.put( event, merged );
+            this.groups.put( merged.start, merged );
+        }
+
+        public void remove( Event event )
+        {
+            AggregateGroup group = this.groupMap.remove( event );
+            if ( group == null )
+            {
+                this.largeEvents.remove( event );
+                return;
+            }
+
+            // the removed Event may have been the only link between other Events in
+            // the group, so regroup the remaining Events (other groups are unaffected)
+            this.groups.remove( group.start );
+            group.children.remove( event );
+            addGroups( group.children );
+        }
+
+        /**
+         * Returns the large Events and aggregate groups (represented by an {@link AggregateEvent}
+         * or, for groups of one, the Event itself) which overlap the provided time range.
+         */
+        public List<Event> get( TimeStamp min, TimeStamp max )
+        {
+            Collection<Event> large = this.largeEvents.get( min, true, max, true );
+
+            List<Event> visible = new ArrayList<Event>( large.size( ) + 16 );
+            visible.addAll( large );
+
+            TimeStamp fromKey = this.groups.floorKey( min );
+            Collection<AggregateGroup> candidates = fromKey == null ? this.groups.values( ) : this.groups.tailMap( fromKey, true ).values( );
+            for ( AggregateGroup group : candidates )
+            {
+                if ( group.start.isAfter( max ) ) break;
+                if ( !group.end.isBefore( min ) ) visible.add( group.getEvent( ) );
+            }
+
+            return visible;
+        }
+
+        // groups the provided small Events, which must not be near any existing group
+        protected void addGroups( List<Event> small )
+        {
+            Collections.sort( small, Event.getStartTimeComparator( ) );
+
+            AggregateGroup group = null;
+            for ( Event event : small )
+            {
+                if ( group != null && !isNear( group.end, event.getStartTime( ) ) )
+                {
+                    this.groups.put( group.start, group );
+                    group = null;
+                }
+
+                if ( group == null ) group = new AggregateGroup( );
+
+                group.add( event );
+                this.groupMap.put( event, group );
+            }
+
+            if ( group != null ) this.groups.put( group.start, group );
+        }
+
+        protected boolean isSmall( Event event )
+        {
+            return event.getDuration( ) < this.maxDuration;
+        }
+
+        // overlapping or touching Events are always near, even if the maximum gap is zero
+        protected boolean isNear( TimeStamp end, TimeStamp start )
+        {
+            double gap = end.durationBefore( start );
+            return gap <= 0 || gap < this.maxGap;
+        }
+    }
+
+    protected static class AggregateGroup
+    {
+        protected List<Event> children;
+        protected TimeStamp start;
+        protected TimeStamp end;
+
+        // lazily created representation of this group (cleared when the group changes)
+        protected Event event;
+
+        public AggregateGroup( )
+        {
+            this.children = new ArrayList<Event>( );
+        }
+
+        public void add( Event child )
+        {
+            TimeStamp childStart = child.getStartTime( );
+            TimeStamp childEnd = child.getEndTime( );
+
+            if ( this.start == null || childStart.isBefore( this.start ) ) this.start = childStart;
+            if ( this.end == null || childEnd.isAfter( this.end ) ) this.end = childEnd;
+
+            this.children.add( child );
+            this.event = null;
+        }
+
+        public Event getEvent( )
+        {
+            if ( this.event == null )
+            {
+                if ( this.children.size( ) == 1 )
+                {
+                    this.event = this.children.get( 0 );
+                }
+                else
+                {
+                    this.event = new AggregateEvent( new HashSet<Event>( this.children ), this.start, this.end );
+                }
+            }
+
+            return this.event;
+        }
+    }
+
     public EventManager( EventPlotInfo info )
     {
         this.info = info;
@@ -388,6 +388,41 @@ public class TextureAtlas
         }
     }
 
+    /**
+     * Like {@link #getImageData( Object )}, but also returns information about images which have been
+     * passed to loadImage( ) but not yet packed into the texture (which happens during the next
+     * {@link TextureAtlas#beginRendering( )}). Such images have null texture coordinates and no alpha
+     * mask, but their size and center are known, which is enough to pick them without an OpenGL context.
+     *
+     * @param id the unique identifier for the image
+     * @return a ImageData handle with size (and, if available, texture coordinate) information about the image
+     */
+    public ImageData peekImageData( Object id )
+    {
+        this.lock.lock( );
+        try
+        {
+            Rect rect = imageMap.get( id );
+            if ( rect != null )
+            {
+                return new ImageData( ( ImageDataInternal ) rect.getUserData( ) );
+            }
+
+            ImageDataExternal queued = additionQueue.get( id );
+            if ( queued == null )
+            {
+                throw new IllegalArgumentException( String.format( "Image id \"%s\" does not exist.", id ) );
+            }
+
+            // use the same one pixel buffer as newImage0( )
+            return new ImageData( new ImageDataInternal( id, queued.getCenterX( ), queued.getCenterY( ), 1, 1, queued.getWidth( ), queued.getHeight( ) ) );
+        }
+        finally
+        {
+            this.lock.unlock( );
+        }
+    }
+
     //////////////////////////////////////////////////////////////
     ///                Image Rendering Methods                 ///
     //////////////////////////////////////////////////////////////
@@ -810,10 +845,36 @@ public class TextureAtlas
         // reset the transform
         g.setTransform( transform );
 
+        // cache the alpha values of the image so that icons can be picked without reading back the texture
+        imageData.setAlphaMask( readAlphaMask( x, y, width, height ) );
+
         // Mark this region of the TextureRenderer as dirty
         getBackingStore( ).markDirty( rect.x( ), rect.y( ), rect.w( ), rect.h( ) );
     }
 
+    // reads the alpha values of a region of the backing store, row by row starting from the
+    // bottom row of the region (the backing store image has its origin in the upper left)
+    private byte[] readAlphaMask( int x, int y, int width, int height )
+    {
+        Image image = getBackingStore( ).getImage( );
+        if ( ! ( image instanceof BufferedImage ) || width <= 0 || height <= 0 ) return null;
+
+        int[] argb = ( ( BufferedImage ) image ).getRGB( x, y, width, height, null, 0, width );
+
+        byte[] alpha = new byte[width * height];
+        for ( int row = 0; row < height; row++ )
+        {
+            int from = ( height - 1 - row ) * width;
+            int to = row * width;
+            for ( int col = 0; col < width; col++ )
+            {
+                alpha[to + col] = ( byte ) ( argb[from + col] >>> 24 );
+            }
+        }
+
+        return alpha;
+    }
+
     private void updateTextureCoordinates( TextureRenderer backingStore, Rect rect, ImageDataInternal imageData, int width, int height )
     {
         // save the image texture coordinates for easy access off the OpenGL thread
@@ -26,9 +26,13 @@
  */
 package com.metsci.glimpse.support.atlas.painter;
 
+import static com.metsci.glimpse.gl.util.GLUtils.deleteBuffers;
+import static com.metsci.glimpse.gl.util.GLUtils.genBuffer;
+
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -67,6 +71,10 @@ import com.metsci.glimpse.support.atlas.shader.IconShader;
 import com.metsci.glimpse.support.atlas.support.ImageData;
 import com.metsci.glimpse.support.atlas.support.TextureAtlasUpdateListener;
 import com.metsci.glimpse.support.selection.SpatialSelectionListener;
+import com.metsci.glimpse.util.primitives.Ints;
+import com.metsci.glimpse.util.primitives.rangeset.IntRangeSetModifiable;
+import com.metsci.glimpse.util.primitives.sorted.SortedInts;
+import com.metsci.glimpse.util.quadtree.QuadTreeInts;
 
 /**
  * A painter for efficiently painting large numbers of fixed pixel size icons at
@@ -74,14 +82,14 @@ import com.metsci.glimpse.support.selection.SpatialSelectionListener;
  *
  * @author ulman
  */
-//TODO: GLFloatBuffer dirties the entire array whenever a change is made, this means that
-//      the addition of a single icon to the group causes the entire group to be pushed
-//      to VRAM again. Either GLFloatBuffer needs to be smarter and use glSubBuffer or we
-//      need to do things manually with FloatBuffers.
+//NOTE: Each icon group keeps its icon data in its own GL buffers and tracks which slots
+//      have changed, so adding, moving or removing a few icons only pushes those slots
+//      to VRAM (using glBufferSubData) rather than the entire group.
 //
-//TODO: Picking could also be done without OpenGL using the quadtree that GLFloatBuffer2D
-//      provides. However, this might be slower and take up more memory with lots of icons.
-//      It also doesn't easily handle not picking on transparent parts of icons.
+//NOTE: Picking can also be done without OpenGL (see setCpuPickingEnabled( )) using a quadtree
+//      of icon positions and the alpha values cached by the TextureAtlas. This takes up
+//      more memory with lots of icons, but supports picking at arbitrary locations
+//      and regions without a repaint.
 //
 //TODO: The problem with the current color-based picking approach is that it really only handles
 //      picks at one location at a time (we could draw to a larger offscreen buffer,
@@ -98,6 +106,15 @@ public class IconPainter extends GlimpsePainterBase
     private static final int WIDTH_BUFFER = 5;
     private static final int HEIGHT_BUFFER = 5;
 
+    private static final int SPATIAL_INDEX_BUCKET_SIZE = 1000;
+
+    // dirty slot ranges closer together than this are uploaded with a single glBufferSubData call
+    private static final int DIRTY_RANGE_COALESCE_SLOTS = 64;
+
+    // groups are compacted when at least this many slots, and this fraction of all slots, are free
+    private static final int COMPACTION_MIN_FREE_SLOTS = 64;
+    private static final float COMPACTION_THRESHOLD = 0.25f;
+
     protected int initialGroupSize;
 
     // shader fields
@@ -109,6 +126,9 @@ public class IconPainter extends GlimpsePainterBase
     protected Map<TextureAtlas, Set<IconGroup>> iconGroupsByAtlas;
     protected Map<TextureAtlas, TextureAtlasUpdateListener> atlasListeners;
 
+    // removed groups whose GL buffers still need to be deleted
+    protected Collection<IconGroup> disposedGroups;
+
     // fields related to picking support
     protected ByteBuffer pickResultBuffer;
     protected GLSimpleFrameBufferObject pickFrameBuffer;
@@ -119,6 +139,8 @@ public class IconPainter extends GlimpsePainterBase
     protected Collection<PickResult> pickResults;
     protected List<SpatialSelectionListener<PickResult>> pickListeners;
     protected Executor pickNotificationThread;
+    protected volatile boolean cpuPickingEnabled = false;
+    protected float globalScale = 1.0f;
 
     //@formatter:off
     public IconPainter( int initialGroupSize, boolean enablePicking )
@@ -128,6 +150,7 @@ public class IconPainter extends GlimpsePainterBase
         this.iconGroupMap = new HashMap<>( );
         this.iconGroupsByAtlas = new LinkedHashMap<>( );
         this.atlasListeners = new HashMap<>( );
+        this.disposedGroups = new ArrayList<>( );
 
         this.pickSupportEnabled = enablePicking;
         this.pickResultBuffer = Buffers.newDirectByteBuffer( Buffers.SIZEOF_BYTE * COMPONENTS_PER_COLOR * ( WIDTH_BUFFER * 2 + 1 ) * ( HEIGHT_BUFFER * 2 + 1 ) );
@@ -197,7 +220,14 @@ public class IconPainter extends GlimpsePainterBase
                 @Override
                 public void mouseMoved( GlimpseMouseEvent e )
                 {
-                    pickMouseEvent = e;
+                    if ( cpuPickingEnabled )
+                    {
+                        notifySpatialSelectionListeners( getIconsAt( e ) );
+                    }
+                    else
+                    {
+                        pickMouseEvent = e;
+                    }
                 }
             };
 
@@ -232,6 +262,38 @@ public class IconPainter extends GlimpsePainterBase
         }
     }
 
+    /**
+     * If true, picking is performed on the CPU using a spatial index of icon positions and the alpha
+     * values of icon images cached by the TextureAtlas, rather than by rendering into an offscreen
+     * buffer and reading back pixels. SpatialSelectionListeners are then notified as soon as the mouse
+     * moves, rather than on the next repaint.
+     *
+     * The spatial index for a group is built the first time the group is picked against. Icons are
+     * pickable as soon as they are added, even if the painter has never been painted.
+     *
+     * @see #getIconsAt( Axis2D, double, double, int, boolean )
+     * @see #getIconsInRegion( double, double, double, double )
+     * @see #getIconsInPolygon( double[], double[] )
+     */
+    public void setCpuPickingEnabled( boolean enabled )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            this.cpuPickingEnabled = enabled;
+            this.pickMouseEvent = null;
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    public boolean isCpuPickingEnabled( )
+    {
+        return this.cpuPickingEnabled;
+    }
+
     /**
      * Sets the global scale factor for all icons (across all groups) rendered by this IconPainter.
      * A scale of 1.0 indicates that icons should be draw at their true width and height in pixels.
@@ -240,7 +302,147 @@ public class IconPainter extends GlimpsePainterBase
      */
     public void setGlobalScale( float scale )
     {
-        this.shader.setGlobalScale( scale );
+        this.painterLock.lock( );
+        try
+        {
+            this.globalScale = scale;
+            this.shader.setGlobalScale( scale );
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    /**
+     * Finds the icons under the mouse, ignoring transparent parts of icons. Does not require an OpenGL context.
+     *
+     * @see #getIconsAt( Axis2D, double, double, int, boolean )
+     */
+    public Set<PickResult> getIconsAt( GlimpseMouseEvent e )
+    {
+        Axis2D axis = e.getAxis2D( );
+        if ( axis == null ) return new HashSet<PickResult>( );
+
+        GlimpseTargetStack stack = TargetStackUtil.newTargetStack( e.getTargetStack( ) );
+        return getIconsAt( axis, e.getAxisCoordinatesX( ), e.getAxisCoordinatesY( ), Math.max( WIDTH_BUFFER, HEIGHT_BUFFER ), true, stack );
+    }
+
+    /**
+     * Finds the icons in visible groups which cover, or come within pixelBuffer pixels of, the given
+     * location. Icon sizes are determined using the current pixel scale of the provided axis.
+     * Does not require an OpenGL context.
+     *
+     * @param axis the axis the icons are painted on
+     * @param x a position in axis space
+     * @param y a position in axis space
+     * @param pixelBuffer the distance in pixels from the location within which icons are picked
+     * @param alphaTest if true, transparent parts of icons are not pickable
+     */
+    public Set<PickResult> getIconsAt( Axis2D axis, double x, double y, int pixelBuffer, boolean alphaTest )
+    {
+        return getIconsAt( axis, x, y, pixelBuffer, alphaTest, null );
+    }
+
+    protected Set<PickResult> getIconsAt( Axis2D axis, double x, double y, int pixelBuffer, boolean alphaTest, GlimpseTargetStack stack )
+    {
+        double ppvX = axis.getAxisX( ).getPixelsPerValue( );
+        double ppvY = axis.getAxisY( ).getPixelsPerValue( );
+
+        this.painterLock.lock( );
+        try
+        {
+            Set<PickResult> results = new HashSet<PickResult>( );
+            for ( IconGroup group : this.iconGroupMap.values( ) )
+            {
+                if ( !group.isVisible( ) ) continue;
+
+                group.addQueuedIconsForPicking( );
+                group.pickIcons( x, y, ppvX, ppvY, pixelBuffer, alphaTest, stack, results );
+            }
+            return results;
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    /**
+     * Finds the icons in visible groups whose positions lie within the given rectangle (in axis space).
+     * Does not require an OpenGL context.
+     */
+    public Set<PickResult> getIconsInRegion( double minX, double maxX, double minY, double maxY )
+    {
+        return getIconsInRegion( minX, maxX, minY, maxY, null, null );
+    }
+
+    /**
+     * Finds the icons in visible groups whose positions lie within the given polygon (in axis space),
+     * for example a lasso selection. Does not require an OpenGL context.
+     *
+     * @param polygonX the x coordinates of the polygon vertices
+     * @param polygonY the y coordinates of the polygon vertices
+     */
+    public Set<PickResult> getIconsInPolygon( double[] polygonX, double[] polygonY )
+    {
+        if ( polygonX.length != polygonY.length ) throw new IllegalArgumentException( String.format( "Size of polygonX and polygonY arrays must be identical. Found: %d and %d.", polygonX.length, polygonY.length ) );
+        if ( polygonX.length < 3 ) return new HashSet<PickResult>( );
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for ( int i = 0; i < polygonX.length; i++ )
+        {
+            minX = Math.min( minX, polygonX[i] );
+            maxX = Math.max( maxX, polygonX[i] );
+            minY = Math.min( minY, polygonY[i] );
+            maxY = Math.max( maxY, polygonY[i] );
+        }
+
+        return getIconsInRegion( minX, maxX, minY, maxY, polygonX, polygonY );
+    }
+
+    protected Set<PickResult> getIconsInRegion( double minX, double maxX, double minY, double maxY, double[] polygonX, double[] polygonY )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            Set<PickResult> results = new HashSet<PickResult>( );
+            for ( IconGroup group : this.iconGroupMap.values( ) )
+            {
+                if ( !group.isVisible( ) ) continue;
+
+                group.addQueuedIconsForPicking( );
+                group.pickIcons( minX, maxX, minY, maxY, polygonX, polygonY, results );
+            }
+            return results;
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    // even-odd rule point in polygon test
+    protected static boolean containsPoint( double[] polygonX, double[] polygonY, double x, double y )
+    {
+        boolean inside = false;
+        int n = polygonX.length;
+        for ( int i = 0, j = n - 1; i < n; j = i++ )
+        {
+            double xi = polygonX[i];
+            double yi = polygonY[i];
+            double xj = polygonX[j];
+            double yj = polygonY[j];
+
+            if ( ( yi > y ) != ( yj > y ) && x < ( xj - xi ) * ( y - yi ) / ( yj - yi ) + xi )
+            {
+                inside = !inside;
+            }
+        }
+        return inside;
     }
 
     /**
@@ -353,7 +555,8 @@ public class IconPainter extends GlimpsePainterBase
      *
      * The icon must first be loaded using loadIcon( ). The iconGroupId can be any string, but efficient performance
      * from this painter will only be achieved with a small number of groups. Entire groups of icons can be
-     * deleted or made invisible, but individual icons within groups cannot be removed or hidden.
+     * deleted or made invisible, but icons added with this method cannot be individually removed or hidden
+     * (see {@link #putIcon(Object, Object, Object, float, float, float, float)} for icons which need to be).
      *
      * The scale parameter adjusts the size of the painted icon from the size stored in the TextureAtlas. A scale of
      * 1.0 indicates that the pixel size stored in the texture atlas should bed used unchanged.
@@ -448,6 +651,100 @@ public class IconPainter extends GlimpsePainterBase
         }
     }
 
+    /**
+     * Adds an icon which can later be moved, removed, or hidden using the provided instanceId. If an icon
+     * with the same instanceId already exists in the group, it is replaced (keeping its visibility).
+     *
+     * Slots freed by removed icons are reused by later calls to putIcon( ), and only the changed slots are
+     * pushed to the GPU, so frequently updated icons do not require rebuilding the whole group. When enough
+     * of the group is free space, icons are moved down to fill the gaps. This changes the icon index
+     * reported in {@link PickResult}s for icons added with putIcon( ), but not for icons added with addIcon( ).
+     *
+     * @param iconGroupId the group to add the icon to
+     * @param instanceId an identifier, unique within the group, for this particular icon
+     * @param iconId the identifier of an icon in the underlying texture atlas
+     * @param positionX a position in axis space to place the icon at
+     * @param positionY a position in axis space to place the icon at
+     * @param rotation rotation around center point of icon (CCW radians; 0 implies no rotation)
+     * @param scale a scale adjustment to the icon size
+     */
+    public void putIcon( Object iconGroupId, Object instanceId, Object iconId, float positionX, float positionY, float rotation, float scale )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            IconGroup group = this.iconGroupMap.get( iconGroupId );
+            group.putIcon( instanceId, iconId, positionX, positionY, rotation, scale );
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    /**
+     * Moves an icon previously added with putIcon( ), keeping its current scale.
+     * Does nothing if the group contains no icon with the given instanceId.
+     */
+    public void moveIcon( Object iconGroupId, Object instanceId, float positionX, float positionY, float rotation )
+    {
+        moveIcon( iconGroupId, instanceId, positionX, positionY, rotation, Float.NaN );
+    }
+
+    /**
+     * Moves an icon previously added with putIcon( ). A scale of NaN leaves the scale of the icon unchanged.
+     * Does nothing if the group contains no icon with the given instanceId.
+     */
+    public void moveIcon( Object iconGroupId, Object instanceId, float positionX, float positionY, float rotation, float scale )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            IconGroup group = this.iconGroupMap.get( iconGroupId );
+            group.moveIcon( instanceId, positionX, positionY, rotation, scale );
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    /**
+     * Removes an icon previously added with putIcon( ). Its slot in the group will be reused by later icons.
+     * Does nothing if the group contains no icon with the given instanceId.
+     */
+    public void removeIcon( Object iconGroupId, Object instanceId )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            IconGroup group = this.iconGroupMap.get( iconGroupId );
+            group.removeIcon( instanceId );
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    /**
+     * Shows or hides an icon previously added with putIcon( ). Hidden icons are not painted or picked,
+     * but keep their position. Does nothing if the group contains no icon with the given instanceId.
+     */
+    public void setIconVisible( Object iconGroupId, Object instanceId, boolean visible )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            IconGroup group = this.iconGroupMap.get( iconGroupId );
+            group.setIconVisible( instanceId, visible );
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
     /**
      * Remove all the icons from the provided group.
      *
@@ -462,6 +759,7 @@ public class IconPainter extends GlimpsePainterBase
             if ( group == null ) return;
 
             group.dispose( );
+            this.disposedGroups.add( group );
 
             TextureAtlas atlas = group.atlas;
             Set<IconGroup> groups = this.iconGroupsByAtlas.get( atlas );
@@ -541,7 +839,13 @@ public class IconPainter extends GlimpsePainterBase
     {
         GL3 gl = getGL3( context );
 
-        if ( this.pickSupportEnabled )
+        for ( IconGroup group : this.disposedGroups )
+        {
+            group.disposeBuffers( gl );
+        }
+        this.disposedGroups.clear( );
+
+        if ( this.pickSupportEnabled && !this.cpuPickingEnabled )
         {
             // allocate the offscreen pick buffer if it does not exist
             if ( this.pickFrameBuffer == null )
@@ -590,17 +894,17 @@ public class IconPainter extends GlimpsePainterBase
                     // we do this here because texture coordinates might not
                     // be known until the atlas.beginRendering( ) call
                     group.addQueuedIcons( );
-
-                    this.shader.setTexCoordData( group.getBufferTexCoords( ) );
-                    this.shader.setPixelCoordData( group.getBufferPixelCoords( ) );
-                    this.shader.setColorCoordData( group.getPickColorCoords( ) );
-                    this.shader.setVertexData( group.getBufferIconPlacement( ) );
+                    group.updatePendingTextureCoordinates( );
 
                     if ( !group.isVisible( ) || group.getCurrentSize( ) == 0 ) continue;
 
+                    // push any changed icons to the group's GL buffers
+                    int[] buffers = group.getDeviceBuffers( gl );
+
                     this.shader.useProgram( gl, true );
                     try
                     {
+                        this.shader.setVertexBuffers( gl, buffers[0], buffers[1], buffers[2], buffers[3] );
                         gl.glDrawArrays( GL3.GL_POINTS, 0, group.getCurrentSize( ) );
                     }
                     finally
@@ -650,18 +954,17 @@ public class IconPainter extends GlimpsePainterBase
                     // draw each icon group, if it is visible
                     for ( IconGroup group : groups )
                     {
-                        if ( !group.isVisible( ) ) continue;
+                        if ( !group.isVisible( ) || group.getCurrentSize( ) == 0 ) continue;
 
-                        this.shader.setTexCoordData( group.getBufferTexCoords( ) );
-                        this.shader.setPixelCoordData( group.getBufferPixelCoords( ) );
-                        this.shader.setColorCoordData( group.getPickColorCoords( ) );
-                        this.shader.setVertexData( group.getBufferIconPlacement( ) );
+                        group.updatePendingTextureCoordinates( );
+                        int[] buffers = group.getDeviceBuffers( gl );
 
                         resetPickFrameBuffer( glContext );
 
                         this.shader.useProgram( gl, true );
                         try
                         {
+                            this.shader.setVertexBuffers( gl, buffers[0], buffers[1], buffers[2], buffers[3] );
                             gl.glDrawArrays( GL3.GL_POINTS, 0, group.getCurrentSize( ) );
                         }
                         finally
@@ -735,10 +1038,13 @@ public class IconPainter extends GlimpsePainterBase
             {
                 int iconIndex = ( s2u( r ) << 16 ) | ( s2u( g ) << 8 ) | s2u( b );
 
+                if ( iconIndex >= group.getCurrentSize( ) ) continue;
+
                 Object groupId = group.getId( );
                 Object iconId = group.getIconId( iconIndex );
+                Object instanceId = group.getInstanceId( iconIndex );
 
-                resultSet.add( new PickResult( groupId, iconId, iconIndex, stack ) );
+                resultSet.add( new PickResult( groupId, iconId, instanceId, iconIndex, stack ) );
             }
         }
     }
@@ -771,11 +1077,20 @@ public class IconPainter extends GlimpsePainterBase
         //XXX who should dispose of the texture atlas?
         //XXX us if we created it, someone else if it was passed in...?
 
+        GL gl = context.getGL( );
+
         for ( IconGroup group : iconGroupMap.values( ) )
         {
             group.dispose( );
+            group.disposeBuffers( gl );
         }
 
+        for ( IconGroup group : disposedGroups )
+        {
+            group.disposeBuffers( gl );
+        }
+        disposedGroups.clear( );
+
         if ( pickFrameBuffer != null ) pickFrameBuffer.dispose( context.getGLContext( ) );
     }
 
@@ -783,14 +1098,21 @@ public class IconPainter extends GlimpsePainterBase
     {
         private Object groupId;
         private Object iconId;
+        private Object instanceId;
         private int iconIndex;
 
         private GlimpseTargetStack stack;
 
         public PickResult( Object groupId, Object iconId, int iconIndex, GlimpseTargetStack stack )
+        {
+            this( groupId, iconId, null, iconIndex, stack );
+        }
+
+        public PickResult( Object groupId, Object iconId, Object instanceId, int iconIndex, GlimpseTargetStack stack )
         {
             this.groupId = groupId;
             this.iconId = iconId;
+            this.instanceId = instanceId;
             this.iconIndex = iconIndex;
 
             this.stack = stack;
@@ -806,6 +1128,14 @@ public class IconPainter extends GlimpsePainterBase
             return iconId;
         }
 
+        /**
+         * @return the instanceId of the icon if it was added using putIcon( ), otherwise null
+         */
+        public Object getInstanceId( )
+        {
+            return instanceId;
+        }
+
         public int getIconIndex( )
         {
             return iconIndex;
@@ -866,10 +1196,21 @@ public class IconPainter extends GlimpsePainterBase
         }
     }
 
-    private abstract class AddIcons
+    private interface IconUpdate
+    {
+        void apply( IconGroup group );
+    }
+
+    private abstract class AddIcons implements IconUpdate
     {
         protected Object iconId;
 
+        @Override
+        public void apply( IconGroup group )
+        {
+            addIcons( group );
+        }
+
         public abstract int getSize( );
 
         public abstract void addPlacementValues( IconGroup group );
@@ -882,7 +1223,7 @@ public class IconPainter extends GlimpsePainterBase
 
             final int currentSize = group.getCurrentSize( );
 
-            final ImageData imageData = group.getAtlas( ).getImageData( iconId );
+            final ImageData imageData = group.getAtlas( ).peekImageData( iconId );
             final TextureCoords texData = imageData.getTextureCoordinates( );
 
             addPlacementValues( group );
@@ -890,6 +1231,7 @@ public class IconPainter extends GlimpsePainterBase
             for ( int i = 0; i < size; i++ )
             {
                 group.iconIds.add( iconId );
+                group.instanceIds.add( null );
             }
 
             {
@@ -919,12 +1261,20 @@ public class IconPainter extends GlimpsePainterBase
 
                 data.limit( currentSize * length );
                 data.position( ( currentSize - size ) * length );
+
+                // texture coordinates are not known until the image has been packed into the atlas
+                // (if they are missing, they will be filled in by updatePendingTextureCoordinates)
+                float left = texData == null ? 0 : texData.left( );
+                float right = texData == null ? 0 : texData.right( );
+                float top = texData == null ? 0 : texData.top( );
+                float bottom = texData == null ? 0 : texData.bottom( );
+
                 for ( int i = 0; i < size; i++ )
                 {
-                    data.put( texData.left( ) );
-                    data.put( texData.right( ) );
-                    data.put( texData.top( ) );
-                    data.put( texData.bottom( ) );
+                    data.put( left );
+                    data.put( right );
+                    data.put( top );
+                    data.put( bottom );
                 }
             }
 
@@ -951,6 +1301,9 @@ public class IconPainter extends GlimpsePainterBase
                     data.put( r ).put( g ).put( b );
                 }
             }
+
+            group.markDirty( currentSize - size, size );
+            group.indexIcons( currentSize - size, currentSize );
         }
     }
 
@@ -1085,12 +1438,32 @@ public class IconPainter extends GlimpsePainterBase
         private TextureAtlas atlas;
         private List<Object> iconIds;
 
+        // instance ids of icons added with putIcon( ) (null for other icons and free slots)
+        private List<Object> instanceIds;
+        private Map<Object, Integer> instanceSlots;
+        private BitSet freeSlots;
+        private BitSet hiddenSlots;
+
         private FloatBuffer iconPlacementValues;
         private FloatBuffer pixelCoordsValues;
         private FloatBuffer texCoordsValues;
         private ByteBuffer pickColorValues;
 
-        private Collection<AddIcons> addQueue;
+        // GL buffers for placement, pixel coords, tex coords, and pick colors (null until first painted)
+        private int[] deviceBuffers;
+        private int deviceCapacity;
+        // ranges of icon slots which have changed since they were last pushed to the GL buffers
+        private IntRangeSetModifiable dirtySlots;
+
+        private Collection<IconUpdate> addQueue;
+        // true if queued icons were applied for picking (outside of atlas rendering), in which case
+        // the texture coordinates of the dirty slots may be out of date
+        private boolean texCoordsPending;
+
+        // spatial index of icon positions used for CPU picking (null until first used)
+        private QuadTreeInts spatialIndex;
+        // largest distance (in pixels, before global scale) from an icon position to a corner of the icon
+        private float maxIconRadius;
 
         public IconGroup( Object id, TextureAtlas atlas, int initialIconSpace )
         {
@@ -1101,12 +1474,19 @@ public class IconPainter extends GlimpsePainterBase
             this.atlas = atlas;
             this.iconIds = new ArrayList<Object>( );
 
-            this.iconPlacementValues = FloatBuffer.allocate( initialIconSpace * 4 );
-            this.pixelCoordsValues = FloatBuffer.allocate( initialIconSpace * 4 );
-            this.texCoordsValues = FloatBuffer.allocate( initialIconSpace * 4 );
-            this.pickColorValues = ByteBuffer.allocate( initialIconSpace * 3 );
+            this.instanceIds = new ArrayList<Object>( );
+            this.instanceSlots = new HashMap<Object, Integer>( );
+            this.freeSlots = new BitSet( );
+            this.hiddenSlots = new BitSet( );
+
+            this.iconPlacementValues = Buffers.newDirectFloatBuffer( initialIconSpace * 4 );
+            this.pixelCoordsValues = Buffers.newDirectFloatBuffer( initialIconSpace * 4 );
+            this.texCoordsValues = Buffers.newDirectFloatBuffer( initialIconSpace * 4 );
+            this.pickColorValues = Buffers.newDirectByteBuffer( initialIconSpace * 3 );
+
+            this.dirtySlots = new IntRangeSetModifiable( );
 
-            this.addQueue = new LinkedList<AddIcons>( );
+            this.addQueue = new LinkedList<IconUpdate>( );
 
             this.currentSize = 0;
             this.maxSize = initialIconSpace;
@@ -1142,54 +1522,324 @@ public class IconPainter extends GlimpsePainterBase
             return this.iconIds.get( index );
         }
 
-        public final FloatBuffer getBufferIconPlacement( )
+        public final Object getInstanceId( int index )
         {
-            return this.iconPlacementValues;
+            return this.instanceIds.get( index );
         }
 
-        public final FloatBuffer getBufferPixelCoords( )
+        public void addIcons( Object iconId, float[] positionX, float[] positionY, float rotation[], float[] scale )
         {
-            return this.pixelCoordsValues;
+            this.addQueue.add( new AddIconsSeparate( iconId, positionX, positionY, rotation, scale ) );
         }
 
-        public final FloatBuffer getBufferTexCoords( )
+        public void addIcons( Object iconId, float[] positions )
         {
-            return this.texCoordsValues;
+            this.addQueue.add( new AddIconsInterleaved( iconId, positions ) );
         }
 
-        public final ByteBuffer getPickColorCoords( )
+        public void addIcons( Object iconId, FloatBuffer positions, int offset, int vertexCount )
         {
-            return this.pickColorValues;
+            this.addQueue.add( new AddIconsBuffer( iconId, positions, offset, vertexCount ) );
         }
 
-        public void addIcons( Object iconId, float[] positionX, float[] positionY, float rotation[], float[] scale )
+        public void addIcon( Object iconId, final float positionX, final float positionY, final float rotation, float scale )
         {
-            this.addQueue.add( new AddIconsSeparate( iconId, positionX, positionY, rotation, scale ) );
+            addIcons( iconId, new float[] { positionX }, new float[] { positionY }, new float[] { rotation }, new float[] { scale } );
         }
 
-        public void addIcons( Object iconId, float[] positions )
+        // instance updates are queued along with added icons so that they are applied in order
+        public void putIcon( final Object instanceId, final Object iconId, final float positionX, final float positionY, final float rotation, final float scale )
         {
-            this.addQueue.add( new AddIconsInterleaved( iconId, positions ) );
+            this.addQueue.add( new IconUpdate( )
+            {
+                @Override
+                public void apply( IconGroup group )
+                {
+                    group.putIcon0( instanceId, iconId, positionX, positionY, rotation, scale );
+                }
+            } );
         }
 
-        public void addIcons( Object iconId, FloatBuffer positions, int offset, int vertexCount )
+        public void moveIcon( final Object instanceId, final float positionX, final float positionY, final float rotation, final float scale )
         {
-            this.addQueue.add( new AddIconsBuffer( iconId, positions, offset, vertexCount ) );
+            this.addQueue.add( new IconUpdate( )
+            {
+                @Override
+                public void apply( IconGroup group )
+                {
+                    group.moveIcon0( instanceId, positionX, positionY, rotation, scale );
+                }
+            } );
         }
 
-        public void addIcon( Object iconId, final float positionX, final float positionY, final float rotation, float scale )
+        public void removeIcon( final Object instanceId )
         {
-            addIcons( iconId, new float[] { positionX }, new float[] { positionY }, new float[] { rotation }, new float[] { scale } );
+            this.addQueue.add( new IconUpdate( )
+            {
+                @Override
+                public void apply( IconGroup group )
+                {
+                    group.removeIcon0( instanceId );
+                }
+            } );
+        }
+
+        public void setIconVisible( final Object instanceId, final boolean visible )
+        {
+            this.addQueue.add( new IconUpdate( )
+            {
+                @Override
+                public void apply( IconGroup group )
+                {
+                    group.setIconVisible0( instanceId, visible );
+                }
+            } );
         }
 
         public void addQueuedIcons( )
         {
-            for ( AddIcons addIcons : addQueue )
+            if ( addQueue.isEmpty( ) ) return;
+
+            for ( IconUpdate update : addQueue )
             {
-                addIcons.addIcons( this );
+                update.apply( this );
             }
 
             addQueue.clear( );
+
+            compact( );
+        }
+
+        // picking only needs icon positions and image sizes, so queued icons can be applied without
+        // an OpenGL context; their texture coordinates are updated the next time the group is painted
+        public void addQueuedIconsForPicking( )
+        {
+            if ( addQueue.isEmpty( ) ) return;
+
+            this.texCoordsPending = true;
+            addQueuedIcons( );
+        }
+
+        // must be called between atlas.beginRendering( ) and atlas.endRendering( ), so that texture
+        // coordinates are known, and before getDeviceBuffers( ) clears the dirty slots
+        public void updatePendingTextureCoordinates( )
+        {
+            if ( !this.texCoordsPending ) return;
+
+            SortedInts ranges = this.dirtySlots.ranges( );
+            for ( int i = 0; i < ranges.n( ); i += 2 )
+            {
+                reloadTextureCoordinates( ranges.v( i ), Math.min( ranges.v( i + 1 ), this.currentSize ) );
+            }
+
+            this.texCoordsPending = false;
+        }
+
+        protected void putIcon0( Object instanceId, Object iconId, float positionX, float positionY, float rotation, float scale )
+        {
+            ImageData imageData = this.atlas.peekImageData( iconId );
+
+            Integer existingSlot = this.instanceSlots.get( instanceId );
+            int slot;
+            if ( existingSlot != null )
+            {
+                slot = existingSlot;
+                unindexIcon( slot );
+            }
+            else
+            {
+                slot = allocateSlot( );
+                this.instanceSlots.put( instanceId, slot );
+            }
+
+            this.iconIds.set( slot, iconId );
+            this.instanceIds.set( slot, instanceId );
+
+            putPlacement( slot, positionX, positionY, rotation, scale );
+            putPixelCoords( slot, this.hiddenSlots.get( slot ) ? null : imageData );
+            putTexCoords( slot, imageData.getTextureCoordinates( ) );
+
+            indexIcon( slot );
+            markDirty( slot, 1 );
+        }
+
+        protected void moveIcon0( Object instanceId, float positionX, float positionY, float rotation, float scale )
+        {
+            Integer slot = this.instanceSlots.get( instanceId );
+            if ( slot == null ) return;
+
+            if ( Float.isNaN( scale ) ) scale = this.iconPlacementValues.get( slot * 4 + 3 );
+
+            unindexIcon( slot );
+            putPlacement( slot, positionX, positionY, rotation, scale );
+            indexIcon( slot );
+            markDirty( slot, 1 );
+        }
+
+        protected void removeIcon0( Object instanceId )
+        {
+            Integer slot = this.instanceSlots.remove( instanceId );
+            if ( slot == null ) return;
+
+            unindexIcon( slot );
+
+            this.iconIds.set( slot, null );
+            this.instanceIds.set( slot, null );
+            this.hiddenSlots.clear( slot );
+            this.freeSlots.set( slot );
+
+            // free slots are painted as zero size icons until they are reused
+            putPixelCoords( slot, null );
+            markDirty( slot, 1 );
+        }
+
+        protected void setIconVisible0( Object instanceId, boolean visible )
+        {
+            Integer slot = this.instanceSlots.get( instanceId );
+            if ( slot == null || this.hiddenSlots.get( slot ) != visible ) return;
+
+            this.hiddenSlots.set( slot, !visible );
+
+            // hidden icons are painted as zero size icons
+            putPixelCoords( slot, visible ? this.atlas.peekImageData( this.iconIds.get( slot ) ) : null );
+            if ( visible && this.spatialIndex != null ) updateMaxIconRadius( slot );
+            markDirty( slot, 1 );
+        }
+
+        // returns the lowest free slot, or a new slot at the end of the buffers if there are none
+        protected int allocateSlot( )
+        {
+            int slot = this.freeSlots.nextSetBit( 0 );
+            if ( slot >= 0 )
+            {
+                this.freeSlots.clear( slot );
+                return slot;
+            }
+
+            grow( 1 );
+            slot = this.currentSize - 1;
+
+            this.iconIds.add( null );
+            this.instanceIds.add( null );
+
+            this.pickColorValues.put( slot * 3, ( byte ) ( ( slot & 0x00ff0000 ) >> 16 ) );
+            this.pickColorValues.put( slot * 3 + 1, ( byte ) ( ( slot & 0x0000ff00 ) >> 8 ) );
+            this.pickColorValues.put( slot * 3 + 2, ( byte ) ( slot & 0x000000ff ) );
+
+            return slot;
+        }
+
+        protected void putPlacement( int slot, float positionX, float positionY, float rotation, float scale )
+        {
+            this.iconPlacementValues.put( slot * 4, positionX );
+            this.iconPlacementValues.put( slot * 4 + 1, positionY );
+            this.iconPlacementValues.put( slot * 4 + 2, rotation );
+            this.iconPlacementValues.put( slot * 4 + 3, scale );
+        }
+
+        // a null imageData gives the slot zero width and height, so nothing is painted for it
+        protected void putPixelCoords( int slot, ImageData imageData )
+        {
+            float width = 0;
+            float height = 0;
+            float offsetX = 0;
+            float offsetY = 0;
+
+            if ( imageData != null )
+            {
+                width = ( imageData.getWidth( ) + imageData.getBufferX( ) * 2 );
+                height = ( imageData.getHeight( ) + imageData.getBufferY( ) * 2 );
+                offsetX = ( imageData.getCenterX( ) + imageData.getBufferX( ) );
+                offsetY = ( imageData.getCenterY( ) + imageData.getBufferY( ) );
+            }
+
+            this.pixelCoordsValues.put( slot * 4, width );
+            this.pixelCoordsValues.put( slot * 4 + 1, height );
+            this.pixelCoordsValues.put( slot * 4 + 2, offsetX );
+            this.pixelCoordsValues.put( slot * 4 + 3, offsetY );
+        }
+
+        // a null texData (for an image which has not been packed into the atlas yet) is written as zeros
+        protected void putTexCoords( int slot, TextureCoords texData )
+        {
+            this.texCoordsValues.put( slot * 4, texData == null ? 0 : texData.left( ) );
+            this.texCoordsValues.put( slot * 4 + 1, texData == null ? 0 : texData.right( ) );
+            this.texCoordsValues.put( slot * 4 + 2, texData == null ? 0 : texData.top( ) );
+            this.texCoordsValues.put( slot * 4 + 3, texData == null ? 0 : texData.bottom( ) );
+        }
+
+        // moves an icon from one slot to another (pick colors belong to the slot, so they are not moved)
+        protected void moveSlot( int from, int to )
+        {
+            unindexIcon( from );
+
+            for ( int i = 0; i < 4; i++ )
+            {
+                this.iconPlacementValues.put( to * 4 + i, this.iconPlacementValues.get( from * 4 + i ) );
+                this.pixelCoordsValues.put( to * 4 + i, this.pixelCoordsValues.get( from * 4 + i ) );
+                this.texCoordsValues.put( to * 4 + i, this.texCoordsValues.get( from * 4 + i ) );
+            }
+            putPixelCoords( from, null );
+
+            Object instanceId = this.instanceIds.get( from );
+            this.iconIds.set( to, this.iconIds.get( from ) );
+            this.instanceIds.set( to, instanceId );
+            this.iconIds.set( from, null );
+            this.instanceIds.set( from, null );
+            if ( instanceId != null ) this.instanceSlots.put( instanceId, to );
+
+            this.hiddenSlots.set( to, this.hiddenSlots.get( from ) );
+            this.hiddenSlots.clear( from );
+            this.freeSlots.clear( to );
+            this.freeSlots.set( from );
+
+            indexIcon( to );
+            markDirty( to, 1 );
+            markDirty( from, 1 );
+        }
+
+        // once enough of the group is free slots, moves icons added with putIcon( ) from the end of the
+        // buffers into free slots (icons added with addIcon( ) keep their slot) then trims the free slots
+        // from the end of the buffers
+        protected void compact( )
+        {
+            trimFreeSlots( );
+
+            int freeCount = this.freeSlots.cardinality( );
+            if ( freeCount < COMPACTION_MIN_FREE_SLOTS || freeCount < this.currentSize * COMPACTION_THRESHOLD ) return;
+
+            int last = this.currentSize - 1;
+            for ( int slot = this.freeSlots.nextSetBit( 0 ); slot >= 0; slot = this.freeSlots.nextSetBit( slot + 1 ) )
+            {
+                while ( last > slot && ( this.freeSlots.get( last ) || this.instanceIds.get( last ) == null ) )
+                {
+                    last--;
+                }
+
+                if ( last <= slot ) break;
+
+                moveSlot( last, slot );
+                last--;
+            }
+
+            trimFreeSlots( );
+        }
+
+        protected void trimFreeSlots( )
+        {
+            int size = this.currentSize;
+            while ( size > 0 && this.freeSlots.get( size - 1 ) )
+            {
+                size--;
+            }
+
+            if ( size == this.currentSize ) return;
+
+            this.freeSlots.clear( size, this.currentSize );
+            this.iconIds.subList( size, this.currentSize ).clear( );
+            this.instanceIds.subList( size, this.currentSize ).clear( );
+            this.currentSize = size;
+            updateLimits( );
         }
 
         public void grow( int size )
@@ -1200,6 +1850,98 @@ public class IconPainter extends GlimpsePainterBase
                 int newSize = Math.max( this.maxSize + size, ( int ) ( this.maxSize * DEFAULT_GROWTH_FACTOR ) );
                 this.resize( newSize, false );
             }
+            updateLimits( );
+        }
+
+        // keep the buffer limits at the current size, so that resize( ) copies all the icons
+        protected void updateLimits( )
+        {
+            this.iconPlacementValues.limit( this.currentSize * 4 );
+            this.pixelCoordsValues.limit( this.currentSize * 4 );
+            this.texCoordsValues.limit( this.currentSize * 4 );
+            this.pickColorValues.limit( this.currentSize * 3 );
+        }
+
+        public void markDirty( int first, int count )
+        {
+            if ( count > 0 ) this.dirtySlots.add( first, count );
+        }
+
+        // pushes changed icon slots to the GL buffers (or all of them, if the buffers had to be reallocated)
+        public int[] getDeviceBuffers( GL gl )
+        {
+            if ( this.deviceBuffers == null )
+            {
+                this.deviceBuffers = new int[] { genBuffer( gl ), genBuffer( gl ), genBuffer( gl ), genBuffer( gl ) };
+            }
+
+            if ( this.deviceCapacity != this.maxSize )
+            {
+                allocateDeviceBuffer( gl, this.deviceBuffers[0], this.maxSize * 4 * Buffers.SIZEOF_FLOAT );
+                allocateDeviceBuffer( gl, this.deviceBuffers[1], this.maxSize * 4 * Buffers.SIZEOF_FLOAT );
+                allocateDeviceBuffer( gl, this.deviceBuffers[2], this.maxSize * 4 * Buffers.SIZEOF_FLOAT );
+                allocateDeviceBuffer( gl, this.deviceBuffers[3], this.maxSize * 3 );
+                this.deviceCapacity = this.maxSize;
+
+                this.dirtySlots.clear( );
+                markDirty( 0, this.currentSize );
+            }
+
+            this.dirtySlots.coalesce( DIRTY_RANGE_COALESCE_SLOTS );
+
+            SortedInts ranges = this.dirtySlots.ranges( );
+            for ( int i = 0; i < ranges.n( ); i += 2 )
+            {
+                int first = ranges.v( i );
+                int end = Math.min( ranges.v( i + 1 ), this.currentSize );
+                if ( first >= end ) continue;
+
+                uploadFloats( gl, this.deviceBuffers[0], this.iconPlacementValues, first, end );
+                uploadFloats( gl, this.deviceBuffers[1], this.pixelCoordsValues, first, end );
+                uploadFloats( gl, this.deviceBuffers[2], this.texCoordsValues, first, end );
+                uploadBytes( gl, this.deviceBuffers[3], this.pickColorValues, first, end );
+            }
+
+            this.dirtySlots.clear( );
+            gl.glBindBuffer( GL.GL_ARRAY_BUFFER, 0 );
+
+            return this.deviceBuffers;
+        }
+
+        private void allocateDeviceBuffer( GL gl, int buffer, int sizeBytes )
+        {
+            gl.glBindBuffer( GL.GL_ARRAY_BUFFER, buffer );
+            gl.glBufferData( GL.GL_ARRAY_BUFFER, sizeBytes, null, GL.GL_DYNAMIC_DRAW );
+        }
+
+        private void uploadFloats( GL gl, int buffer, FloatBuffer values, int firstSlot, int endSlot )
+        {
+            FloatBuffer range = values.duplicate( );
+            range.limit( endSlot * 4 );
+            range.position( firstSlot * 4 );
+
+            gl.glBindBuffer( GL.GL_ARRAY_BUFFER, buffer );
+            gl.glBufferSubData( GL.GL_ARRAY_BUFFER, firstSlot * 4 * Buffers.SIZEOF_FLOAT, ( endSlot - firstSlot ) * 4 * Buffers.SIZEOF_FLOAT, range );
+        }
+
+        private void uploadBytes( GL gl, int buffer, ByteBuffer values, int firstSlot, int endSlot )
+        {
+            ByteBuffer range = values.duplicate( );
+            range.limit( endSlot * 3 );
+            range.position( firstSlot * 3 );
+
+            gl.glBindBuffer( GL.GL_ARRAY_BUFFER, buffer );
+            gl.glBufferSubData( GL.GL_ARRAY_BUFFER, firstSlot * 3, ( endSlot - firstSlot ) * 3, range );
+        }
+
+        public void disposeBuffers( GL gl )
+        {
+            if ( this.deviceBuffers != null )
+            {
+                deleteBuffers( gl, this.deviceBuffers );
+                this.deviceBuffers = null;
+                this.deviceCapacity = 0;
+            }
         }
 
         public void resize( int newSize, boolean allowShrinking )
@@ -1212,10 +1954,10 @@ public class IconPainter extends GlimpsePainterBase
             }
 
             // create new buffers of the new size
-            FloatBuffer placementValues_temp = FloatBuffer.allocate( newSize * 4 );
-            FloatBuffer pixelCoordsValues_temp = FloatBuffer.allocate( newSize * 4 );
-            FloatBuffer texCoordsValues_temp = FloatBuffer.allocate( newSize * 4 );
-            ByteBuffer pickColorValues_temp = ByteBuffer.allocate( newSize * 3 );
+            FloatBuffer placementValues_temp = Buffers.newDirectFloatBuffer( newSize * 4 );
+            FloatBuffer pixelCoordsValues_temp = Buffers.newDirectFloatBuffer( newSize * 4 );
+            FloatBuffer texCoordsValues_temp = Buffers.newDirectFloatBuffer( newSize * 4 );
+            ByteBuffer pickColorValues_temp = Buffers.newDirectByteBuffer( newSize * 3 );
 
             // copy existing data to the new buffers
             this.iconPlacementValues.rewind( );
@@ -1241,16 +1983,23 @@ public class IconPainter extends GlimpsePainterBase
 
         public void reloadTextureCoordinates( )
         {
-            texCoordsValues.limit( currentSize * 4 );
-            texCoordsValues.position( 0 );
+            reloadTextureCoordinates( 0, currentSize );
+            markDirty( 0, currentSize );
+        }
 
+        // reloads the texture coordinates of icons in the index range [from, to)
+        protected void reloadTextureCoordinates( int from, int to )
+        {
             Object prevIconId = null;
             TextureCoords texData = null;
 
-            for ( int i = 0; i < currentSize; i++ )
+            for ( int i = from; i < to; i++ )
             {
                 Object iconId = iconIds.get( i );
 
+                // free slots have no icon
+                if ( iconId == null ) continue;
+
                 // since looking up texture coordinates in the atlas involves acquiring
                 // a lock, and often the same icon occurs multiple times in a row,
                 // remember the coordinates of the last icon we added
@@ -1260,15 +2009,173 @@ public class IconPainter extends GlimpsePainterBase
                     texData = imageData.getTextureCoordinates( );
                 }
 
-                texCoordsValues.put( texData.left( ) );
-                texCoordsValues.put( texData.right( ) );
-                texCoordsValues.put( texData.top( ) );
-                texCoordsValues.put( texData.bottom( ) );
+                putTexCoords( i, texData );
 
                 prevIconId = iconId;
             }
         }
 
+        protected QuadTreeInts getSpatialIndex( )
+        {
+            if ( this.spatialIndex == null )
+            {
+                this.spatialIndex = new QuadTreeInts( SPATIAL_INDEX_BUCKET_SIZE )
+                {
+                    @Override
+                    public float x( int v )
+                    {
+                        return iconPlacementValues.get( v * 4 );
+                    }
+
+                    @Override
+                    public float y( int v )
+                    {
+                        return iconPlacementValues.get( v * 4 + 1 );
+                    }
+                };
+
+                this.maxIconRadius = 0;
+                indexIcons( 0, this.currentSize );
+            }
+
+            return this.spatialIndex;
+        }
+
+        // add icons in the index range [from, to) to the spatial index, if it has been created
+        public void indexIcons( int from, int to )
+        {
+            if ( this.spatialIndex == null ) return;
+
+            for ( int i = from; i < to; i++ )
+            {
+                if ( !this.freeSlots.get( i ) ) indexIcon( i );
+            }
+        }
+
+        // must be called before the position of an indexed icon changes
+        protected void unindexIcon( int i )
+        {
+            if ( this.spatialIndex != null ) this.spatialIndex.remove( i );
+        }
+
+        protected void indexIcon( int i )
+        {
+            if ( this.spatialIndex == null ) return;
+
+            updateMaxIconRadius( i );
+            this.spatialIndex.add( i );
+        }
+
+        protected void updateMaxIconRadius( int i )
+        {
+            // pixel coords are the icon width and height (including buffer) and the offset of the icon position
+            float width = pixelCoordsValues.get( i * 4 );
+            float height = pixelCoordsValues.get( i * 4 + 1 );
+            float offsetX = pixelCoordsValues.get( i * 4 + 2 );
+            float offsetY = pixelCoordsValues.get( i * 4 + 3 );
+            float scale = Math.abs( iconPlacementValues.get( i * 4 + 3 ) );
+
+            float dx = Math.max( offsetX, width - offsetX );
+            float dy = Math.max( offsetY, height - offsetY );
+            float radius = ( float ) Math.sqrt( dx * dx + dy * dy ) * scale;
+
+            this.maxIconRadius = Math.max( this.maxIconRadius, radius );
+        }
+
+        public void pickIcons( double x, double y, double ppvX, double ppvY, int pixelBuffer, boolean alphaTest, GlimpseTargetStack stack, Set<PickResult> results )
+        {
+            QuadTreeInts index = getSpatialIndex( );
+
+            // any icon which could cover the pick location has its position within this box
+            double radius = this.maxIconRadius * Math.abs( globalScale ) + pixelBuffer;
+            double radiusX = radius / ppvX;
+            double radiusY = radius / ppvY;
+
+            Ints candidates = index.search( ( float ) ( x - radiusX ), ( float ) ( x + radiusX ), ( float ) ( y - radiusY ), ( float ) ( y + radiusY ) );
+
+            Object prevIconId = null;
+            ImageData imageData = null;
+
+            for ( int j = 0; j < candidates.n( ); j++ )
+            {
+                int i = candidates.v( j );
+                if ( this.hiddenSlots.get( i ) ) continue;
+
+                Object iconId = this.iconIds.get( i );
+
+                // looking up image data in the atlas involves acquiring a lock, see reloadTextureCoordinates( )
+                if ( !iconId.equals( prevIconId ) )
+                {
+                    imageData = this.atlas.peekImageData( iconId );
+                    prevIconId = iconId;
+                }
+
+                if ( isPicked( i, imageData, x, y, ppvX, ppvY, pixelBuffer, alphaTest ) )
+                {
+                    results.add( new PickResult( this.id, iconId, this.instanceIds.get( i ), i, stack ) );
+                }
+            }
+        }
+
+        public void pickIcons( double minX, double maxX, double minY, double maxY, double[] polygonX, double[] polygonY, Set<PickResult> results )
+        {
+            QuadTreeInts index = getSpatialIndex( );
+
+            Ints candidates = index.search( ( float ) minX, ( float ) maxX, ( float ) minY, ( float ) maxY );
+
+            for ( int j = 0; j < candidates.n( ); j++ )
+            {
+                int i = candidates.v( j );
+                if ( this.hiddenSlots.get( i ) ) continue;
+
+                if ( polygonX == null || containsPoint( polygonX, polygonY, this.iconPlacementValues.get( i * 4 ), this.iconPlacementValues.get( i * 4 + 1 ) ) )
+                {
+                    results.add( new PickResult( this.id, this.iconIds.get( i ), this.instanceIds.get( i ), i, null ) );
+                }
+            }
+        }
+
+        // transforms the pick location into the pixel space of the icon image (undoing the rotation and
+        // scale applied by the IconShader) then checks for non-transparent pixels within pixelBuffer pixels
+        protected boolean isPicked( int i, ImageData imageData, double x, double y, double ppvX, double ppvY, int pixelBuffer, boolean alphaTest )
+        {
+            float iconX = this.iconPlacementValues.get( i * 4 );
+            float iconY = this.iconPlacementValues.get( i * 4 + 1 );
+            float rotation = this.iconPlacementValues.get( i * 4 + 2 );
+            double scale = this.iconPlacementValues.get( i * 4 + 3 ) * globalScale;
+
+            if ( scale == 0 ) return false;
+
+            double dx = ( x - iconX ) * ppvX;
+            double dy = ( y - iconY ) * ppvY;
+
+            double cos = Math.cos( rotation );
+            double sin = Math.sin( rotation );
+
+            double imageX = ( dx * cos + dy * sin ) / scale + imageData.getCenterX( );
+            double imageY = ( -dx * sin + dy * cos ) / scale + imageData.getCenterY( );
+            double buffer = pixelBuffer / Math.abs( scale );
+
+            int minX = Math.max( 0, ( int ) Math.floor( imageX - buffer ) );
+            int maxX = Math.min( imageData.getWidth( ) - 1, ( int ) Math.floor( imageX + buffer ) );
+            int minY = Math.max( 0, ( int ) Math.floor( imageY - buffer ) );
+            int maxY = Math.min( imageData.getHeight( ) - 1, ( int ) Math.floor( imageY + buffer ) );
+
+            if ( minX > maxX || minY > maxY ) return false;
+
+            if ( !alphaTest ) return true;
+
+            for ( int py = minY; py <= maxY; py++ )
+            {
+                for ( int px = minX; px <= maxX; px++ )
+                {
+                    if ( imageData.getAlpha( px, py ) != 0 ) return true;
+                }
+            }
+
+            return false;
+        }
+
         public void dispose( )
         {
             // does nothing after GL 3.0 refactoring
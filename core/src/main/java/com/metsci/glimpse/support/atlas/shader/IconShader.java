@@ -30,6 +30,7 @@ import java.nio.Buffer;
 import java.nio.FloatBuffer;
 
 import javax.media.opengl.GL;
+import javax.media.opengl.GL2ES2;
 import javax.media.opengl.GLUniformData;
 
 import com.jogamp.opengl.math.Matrix4;
@@ -63,6 +64,9 @@ public class IconShader extends GlimpseShaderProgram
     protected GLUniformData viewportHeight;
     protected GLUniformData globalScale;
 
+    // attribute locations enabled by setVertexBuffers( ), disabled again by useProgram( gl, false )
+    protected int[] enabledAttributes = new int[0];
+
     public IconShader( int textureUnit, boolean enablePicking )
     {
         this.addVertexShader( "shaders/atlas/texture_atlas_icon_shader.vs" );
@@ -139,6 +143,39 @@ public class IconShader extends GlimpseShaderProgram
         this.vertexAttribute.seal( true );
     }
 
+    /**
+     * Sources the vertex attributes from GL buffer objects owned by the caller, instead of from the
+     * client-side arrays provided to the set*Data( ) methods. This allows callers to keep icon data
+     * on the GPU between frames and update only the parts which have changed.
+     * Must be called after {@link #useProgram(GL, boolean)} has been called with on = true.
+     */
+    public void setVertexBuffers( GL gl, int vertexVbo, int pixelCoordVbo, int texCoordVbo, int colorCoordVbo )
+    {
+        if ( this.state == null ) return;
+
+        GL2ES2 gl2 = gl.getGL2ES2( );
+
+        this.enabledAttributes = new int[] {
+                bindAttribute( gl2, "a_position", vertexVbo, 4, GL.GL_FLOAT ),
+                bindAttribute( gl2, "pixelCoords", pixelCoordVbo, 4, GL.GL_FLOAT ),
+                bindAttribute( gl2, "texCoords", texCoordVbo, 4, GL.GL_FLOAT ),
+                bindAttribute( gl2, "pickColor", colorCoordVbo, 3, GL.GL_BYTE ) };
+
+        gl2.glBindBuffer( GL.GL_ARRAY_BUFFER, 0 );
+    }
+
+    protected int bindAttribute( GL2ES2 gl, String name, int vbo, int size, int type )
+    {
+        int location = this.state.getAttribLocation( gl, name );
+        if ( location < 0 ) return location;
+
+        gl.glBindBuffer( GL.GL_ARRAY_BUFFER, vbo );
+        gl.glEnableVertexAttribArray( location );
+        gl.glVertexAttribPointer( location, size, type, false, 0, 0 );
+
+        return location;
+    }
+
     public void updateViewport( GlimpseBounds bounds )
     {
         this.updateViewport( bounds.getWidth( ), bounds.getHeight( ) );
@@ -158,6 +195,16 @@ public class IconShader extends GlimpseShaderProgram
     @Override
     public void useProgram( GL gl, boolean on )
     {
+        if ( !on )
+        {
+            for ( int location : this.enabledAttributes )
+            {
+                if ( location >= 0 ) gl.getGL2ES2( ).glDisableVertexAttribArray( location );
+            }
+
+            this.enabledAttributes = new int[0];
+        }
+
         super.useProgram( gl, on );
     }
 }
\ No newline at end of file
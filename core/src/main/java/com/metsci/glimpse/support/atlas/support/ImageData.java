@@ -102,4 +102,17 @@ public class ImageData
     {
         return delegate.getTextureCoordinates( );
     }
+
+    /**
+     * Returns the alpha value of a pixel of the image, as it was drawn into the TextureAtlas.
+     * This does not require an OpenGL context, so it may be used for picking off the OpenGL thread.
+     *
+     * @param x pixel x coordinate relative to the lower left pixel of the image
+     * @param y pixel y coordinate relative to the lower left pixel of the image
+     * @return the alpha value (0 to 255) of the pixel, or 0 if it is outside the image
+     */
+    public final int getAlpha( int x, int y )
+    {
+        return delegate.getAlpha( x, y );
+    }
 }
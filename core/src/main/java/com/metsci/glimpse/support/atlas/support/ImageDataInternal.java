@@ -61,6 +61,10 @@ public class ImageDataInternal
 
     private TextureCoords texCoords;
 
+    // alpha values of the image (not including buffer), row by row starting from the bottom row
+    // (null if unknown, in which case the image is treated as opaque)
+    private byte[] alphaMask;
+
     private boolean delete = false; // whether the texture is no longer needed
 
     public ImageDataInternal( Object id, int centerX, int centerY, int bufferX, int bufferY, int width, int height )
@@ -142,6 +146,26 @@ public class ImageDataInternal
         return texCoords;
     }
 
+    public void setAlphaMask( byte[] alphaMask )
+    {
+        this.alphaMask = alphaMask;
+    }
+
+    /**
+     * @param x pixel x coordinate relative to the lower left pixel of the image
+     * @param y pixel y coordinate relative to the lower left pixel of the image
+     * @return the alpha value (0 to 255) of the pixel, or 0 if it is outside the image
+     */
+    public int getAlpha( int x, int y )
+    {
+        if ( x < 0 || y < 0 || x >= sizeX || y >= sizeY ) return 0;
+
+        byte[] mask = alphaMask;
+        if ( mask == null ) return 255;
+
+        return mask[y * sizeX + x] & 0xff;
+    }
+
     public boolean isMarkedForDelete( )
     {
         return delete;
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.support.profile;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.metsci.glimpse.context.GlimpseTarget;
+import com.metsci.glimpse.painter.base.GlimpsePainter;
+
+/**
+ * Paint timings for one painter, in one layout, recorded by {@link PainterProfiler}.
+ *
+ * <p>Timings go into a ring of one-second histograms, so a {@link #snapshot(long)} covers
+ * roughly the last {@value #numSlots} seconds. Recording is lock-free: each slot is claimed
+ * for a new second with a compare-and-set on its epoch, then cleared. A sample recorded by
+ * another thread during that clear may be lost, which is harmless for profiling.</p>
+ *
+ * <p>Histogram bins are a quarter-octave wide (about 19%), from 1 microsecond up. Percentiles
+ * are reported as the midpoint of the bin they fall in.</p>
+ */
+public class PainterProfile
+{
+    public static final int numSlots = 8;
+    public static final long slotMillis = 1000;
+
+    protected static final int minOctave = 10;
+    protected static final int subBinsPerOctave = 4;
+    protected static final int numBins = 1 + 30 * subBinsPerOctave;
+
+    protected final WeakReference<GlimpsePainter> painter;
+    protected final WeakReference<GlimpseTarget> layout;
+    protected final String painterClass;
+    protected final String layoutPath;
+    protected final long createdMillis;
+
+    protected final RingHistogram cpu;
+    protected final RingHistogram gpu;
+
+    public PainterProfile( GlimpsePainter painter, GlimpseTarget layout, String layoutPath, long nowMillis )
+    {
+        this.painter = new WeakReference<GlimpsePainter>( painter );
+        this.layout = new WeakReference<GlimpseTarget>( layout );
+        this.painterClass = painter.getClass( ).getName( );
+        this.layoutPath = layoutPath;
+        this.createdMillis = nowMillis;
+
+        this.cpu = new RingHistogram( );
+        this.gpu = new RingHistogram( );
+    }
+
+    public GlimpsePainter getPainter( )
+    {
+        return this.painter.get( );
+    }
+
+    public GlimpseTarget getLayout( )
+    {
+        return this.layout.get( );
+    }
+
+    public String getPainterClass( )
+    {
+        return this.painterClass;
+    }
+
+    public String getLayoutPath( )
+    {
+        return this.layoutPath;
+    }
+
+    public void recordCpu( long nanos, long nowMillis )
+    {
+        this.cpu.record( nanos, nowMillis );
+    }
+
+    public void recordGpu( long nanos, long nowMillis )
+    {
+        this.gpu.record( nanos, nowMillis );
+    }
+
+    public Snapshot snapshot( long nowMillis )
+    {
+        // the current slot is only partly filled, and the profile may be younger than the ring
+        long ringStart = ( nowMillis / slotMillis - ( numSlots - 1 ) ) * slotMillis;
+        double windowSeconds = Math.max( 1e-3, ( nowMillis - Math.max( ringStart, this.createdMillis ) ) * 1e-3 );
+
+        return new Snapshot( this.painterClass, this.layoutPath, this.cpu.stats( nowMillis, windowSeconds ), this.gpu.stats( nowMillis, windowSeconds ) );
+    }
+
+    protected static int bin( long nanos )
+    {
+        if ( nanos < ( 1L << minOctave ) ) return 0;
+
+        int octave = 63 - Long.numberOfLeadingZeros( nanos );
+        int sub = ( int ) ( nanos >>> ( octave - 2 ) ) & ( subBinsPerOctave - 1 );
+        return Math.min( numBins - 1, 1 + ( octave - minOctave ) * subBinsPerOctave + sub );
+    }
+
+    protected static double binLowerNanos( int bin )
+    {
+        if ( bin == 0 ) return 0;
+
+        int octave = minOctave + ( bin - 1 ) / subBinsPerOctave;
+        int sub = ( bin - 1 ) % subBinsPerOctave;
+        return ( double ) ( ( ( long ) ( subBinsPerOctave + sub ) ) << ( octave - 2 ) );
+    }
+
+    protected static double binMidNanos( int bin )
+    {
+        return 0.5 * ( binLowerNanos( bin ) + binLowerNanos( bin + 1 ) );
+    }
+
+    protected static class RingHistogram
+    {
+        protected final AtomicLongArray epochs;
+        protected final AtomicLongArray counts;
+        protected final AtomicLongArray totals;
+        protected final AtomicLongArray maxes;
+
+        public RingHistogram( )
+        {
+            this.epochs = new AtomicLongArray( numSlots );
+            this.counts = new AtomicLongArray( numSlots * numBins );
+            this.totals = new AtomicLongArray( numSlots );
+            this.maxes = new AtomicLongArray( numSlots );
+
+            for ( int i = 0; i < numSlots; i++ )
+            {
+                this.epochs.set( i, -1 );
+            }
+        }
+
+        public void record( long nanos, long nowMillis )
+        {
+            long epoch = nowMillis / slotMillis;
+            int slot = ( int ) ( epoch % numSlots );
+
+            long slotEpoch = this.epochs.get( slot );
+            if ( slotEpoch < epoch && this.epochs.compareAndSet( slot, slotEpoch, epoch ) )
+            {
+                for ( int b = 0; b < numBins; b++ )
+                {
+                    this.counts.set( slot * numBins + b, 0 );
+                }
+                this.totals.set( slot, 0 );
+                this.maxes.set( slot, 0 );
+            }
+
+            this.counts.incrementAndGet( slot * numBins + bin( nanos ) );
+            this.totals.addAndGet( slot, nanos );
+
+            long max = this.maxes.get( slot );
+            while ( nanos > max && !this.maxes.compareAndSet( slot, max, nanos ) )
+            {
+                max = this.maxes.get( slot );
+            }
+        }
+
+        public Stats stats( long nowMillis, double windowSeconds )
+        {
+            long epoch = nowMillis / slotMillis;
+
+            long[] bins = new long[numBins];
+            long count = 0;
+            long total = 0;
+            long max = 0;
+            for ( int slot = 0; slot < numSlots; slot++ )
+            {
+                long slotEpoch = this.epochs.get( slot );
+                if ( slotEpoch < 0 || slotEpoch > epoch || epoch - slotEpoch >= numSlots ) continue;
+
+                for ( int b = 0; b < numBins; b++ )
+                {
+                    long n = this.counts.get( slot * numBins + b );
+                    bins[b] += n;
+                    count += n;
+                }
+                total += this.totals.get( slot );
+                max = Math.max( max, this.maxes.get( slot ) );
+            }
+
+            if ( count == 0 ) return Stats.empty;
+
+            return new Stats( count, total, max, windowSeconds, percentile( bins, count, 0.5 ), percentile( bins, count, 0.9 ), percentile( bins, count, 0.99 ) );
+        }
+
+        protected static double percentile( long[] bins, long count, double fraction )
+        {
+            long rank = ( long ) Math.ceil( fraction * count );
+            long seen = 0;
+            for ( int b = 0; b < numBins; b++ )
+            {
+                seen += bins[b];
+                if ( seen >= rank ) return binMidNanos( b );
+            }
+            return binMidNanos( numBins - 1 );
+        }
+    }
+
+    /**
+     * Summary of one kind of timing (CPU or GPU) over the snapshot window. Times are in
+     * milliseconds. All values are zero if there were no samples.
+     */
+    public static class Stats
+    {
+        public static final Stats empty = new Stats( 0, 0, 0, 1, 0, 0, 0 );
+
+        /** number of paints timed */
+        public final long count;
+        public final double meanMillis;
+        public final double p50Millis;
+        public final double p90Millis;
+        public final double p99Millis;
+        public final double maxMillis;
+        /** total time spent per second of wall time, i.e. the share of the frame budget used */
+        public final double millisPerSecond;
+
+        public Stats( long count, long totalNanos, long maxNanos, double windowSeconds, double p50Nanos, double p90Nanos, double p99Nanos )
+        {
+            this.count = count;
+            this.meanMillis = count == 0 ? 0 : 1e-6 * totalNanos / count;
+            this.p50Millis = 1e-6 * p50Nanos;
+            this.p90Millis = 1e-6 * p90Nanos;
+            this.p99Millis = 1e-6 * p99Nanos;
+            this.maxMillis = 1e-6 * maxNanos;
+            this.millisPerSecond = 1e-6 * totalNanos / windowSeconds;
+        }
+    }
+
+    /**
+     * Immutable view of a {@link PainterProfile}. GPU stats are empty where timer queries
+     * are not available.
+     */
+    public static class Snapshot
+    {
+        public final String painterClass;
+        public final String layoutPath;
+        public final Stats cpu;
+        public final Stats gpu;
+
+        public Snapshot( String painterClass, String layoutPath, Stats cpu, Stats gpu )
+        {
+            this.painterClass = painterClass;
+            this.layoutPath = layoutPath;
+            this.cpu = cpu;
+            this.gpu = gpu;
+        }
+
+        /**
+         * The larger of the CPU and GPU time per second, which is what limits the frame rate.
+         */
+        public double getMillisPerSecond( )
+        {
+            return Math.max( this.cpu.millisPerSecond, this.gpu.millisPerSecond );
+        }
+
+        @Override
+        public String toString( )
+        {
+            return String.format( "%s [%s] cpu p50 %.3f p99 %.3f ms, gpu p50 %.3f p99 %.3f ms, %.1f ms/s", this.painterClass, this.layoutPath, this.cpu.p50Millis, this.cpu.p99Millis, this.gpu.p50Millis, this.gpu.p99Millis, getMillisPerSecond( ) );
+        }
+    }
+}
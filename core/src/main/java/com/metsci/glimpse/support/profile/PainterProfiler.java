@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.support.profile;
+
+import static com.metsci.glimpse.gl.util.GLUtils.getBooleanProperty;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL3;
+import javax.media.opengl.GLContext;
+
+import com.metsci.glimpse.context.GlimpseContext;
+import com.metsci.glimpse.context.GlimpseTarget;
+import com.metsci.glimpse.layout.GlimpseLayout;
+import com.metsci.glimpse.painter.base.GlimpsePainter;
+import com.metsci.glimpse.painter.base.GlimpsePainterCallback;
+
+/**
+ * Times each painter as it paints, and keeps per-painter histograms of the results.
+ *
+ * <p>When profiling is enabled, {@link com.metsci.glimpse.layout.GlimpseLayoutDelegate} calls
+ * {@link #prePaint(GlimpsePainter, GlimpseContext)} and {@link #postPaint(GlimpsePainter, GlimpseContext)}
+ * around every painter it paints (but not around child layouts, whose painters are timed
+ * individually). Profiling is off by default, and can be turned on with {@link #setEnabled(boolean)}
+ * or the {@code glimpse.profilePainters} system property.</p>
+ *
+ * <p>CPU time is always measured with {@link System#nanoTime()}. Where the GL supports
+ * {@code glQueryCounter} (GL 3.3 or ARB_timer_query), GPU time is also measured, with a pair of
+ * {@code GL_TIMESTAMP} queries per paint. Query results are collected a few frames later, once
+ * they are available, so profiling never stalls the pipeline.</p>
+ *
+ * <p>Query objects belong to their GL context. Canvases release them with
+ * {@link #disposeGpuTimer(GLContext, GL)} when their context is disposed, and once profiling
+ * is turned off, {@link com.metsci.glimpse.layout.GlimpseLayoutDelegate} releases them the
+ * next time it paints in each context.</p>
+ *
+ * <p>Results are available from {@link #snapshot()}, or on screen through
+ * {@link com.metsci.glimpse.painter.info.PainterProfilePainter}.</p>
+ */
+public class PainterProfiler implements GlimpsePainterCallback
+{
+    protected static final PainterProfiler instance = new PainterProfiler( );
+
+    protected static volatile boolean enabled = getBooleanProperty( "glimpse.profilePainters", false );
+
+    public static PainterProfiler getInstance( )
+    {
+        return instance;
+    }
+
+    public static boolean isEnabled( )
+    {
+        return enabled;
+    }
+
+    public static void setEnabled( boolean enable )
+    {
+        enabled = enable;
+    }
+
+    // guarded by itself
+    protected final Map<GlimpsePainter, List<PainterProfile>> profilesByPainter;
+    protected final CopyOnWriteArrayList<PainterProfile> profiles;
+
+    // guarded by itself; null values mark contexts without timer queries
+    protected final Map<GLContext, GpuTimer> gpuTimers;
+
+    // true while any context may still hold timer queries, so that releasing them is cheap when there are none
+    protected volatile boolean hasGpuTimers;
+
+    protected final ThreadLocal<ArrayDeque<Frame>> frames;
+
+    protected PainterProfiler( )
+    {
+        this.profilesByPainter = new WeakHashMap<>( );
+        this.profiles = new CopyOnWriteArrayList<>( );
+        this.gpuTimers = new WeakHashMap<>( );
+        this.frames = new ThreadLocal<ArrayDeque<Frame>>( )
+        {
+            @Override
+            protected ArrayDeque<Frame> initialValue( )
+            {
+                return new ArrayDeque<>( );
+            }
+        };
+    }
+
+    @Override
+    public void prePaint( GlimpsePainter painter, GlimpseContext context )
+    {
+        PainterProfile profile = getProfile( painter, context );
+
+        GpuTimer gpuTimer = getGpuTimer( context );
+        GpuQuery query = gpuTimer == null ? null : gpuTimer.begin( context.getGL( ).getGL3( ), profile );
+
+        this.frames.get( ).push( new Frame( painter, profile, gpuTimer, query, System.nanoTime( ) ) );
+    }
+
+    @Override
+    public void postPaint( GlimpsePainter painter, GlimpseContext context )
+    {
+        long end = System.nanoTime( );
+
+        ArrayDeque<Frame> stack = this.frames.get( );
+        Frame frame = stack.peek( );
+        if ( frame == null || frame.painter != painter ) return;
+        stack.pop( );
+
+        frame.profile.recordCpu( end - frame.startNanos, System.currentTimeMillis( ) );
+
+        if ( frame.query != null && !frame.gpuTimer.isDisposed( ) )
+        {
+            frame.gpuTimer.end( context.getGL( ).getGL3( ), frame.query );
+        }
+    }
+
+    /**
+     * @return profiles of all live painters, most expensive first
+     */
+    public List<PainterProfile.Snapshot> snapshot( )
+    {
+        long now = System.currentTimeMillis( );
+
+        List<PainterProfile.Snapshot> snapshots = new ArrayList<>( );
+        for ( PainterProfile profile : this.profiles )
+        {
+            if ( profile.getPainter( ) == null || profile.getLayout( ) == null )
+            {
+                this.profiles.remove( profile );
+            }
+            else
+            {
+                snapshots.add( profile.snapshot( now ) );
+            }
+        }
+
+        Collections.sort( snapshots, new Comparator<PainterProfile.Snapshot>( )
+        {
+            @Override
+            public int compare( PainterProfile.Snapshot a, PainterProfile.Snapshot b )
+            {
+                return Double.compare( b.getMillisPerSecond( ), a.getMillisPerSecond( ) );
+            }
+        } );
+
+        return snapshots;
+    }
+
+    /**
+     * Discards all recorded timings.
+     */
+    public void clear( )
+    {
+        synchronized ( this.profilesByPainter )
+        {
+            this.profilesByPainter.clear( );
+            this.profiles.clear( );
+        }
+    }
+
+    /**
+     * Deletes the timer queries of the current GL context, if profiling is off. Profiling
+     * can be turned off from any thread, but queries can only be deleted while their context
+     * is current, so this is called from the paint loop.
+     */
+    public void releaseGpuTimerIfDisabled( GlimpseContext context )
+    {
+        if ( enabled || !this.hasGpuTimers ) return;
+
+        disposeGpuTimer( context.getGLContext( ), context.getGL( ) );
+    }
+
+    /**
+     * Deletes the timer queries belonging to the given GL context. Must be called while that
+     * context is current, typically from {@link javax.media.opengl.GLEventListener#dispose(javax.media.opengl.GLAutoDrawable)}.
+     * If profiling continues in the context, new queries are created as needed.
+     */
+    public void disposeGpuTimer( GLContext glContext, GL gl )
+    {
+        GpuTimer timer;
+        synchronized ( this.gpuTimers )
+        {
+            timer = this.gpuTimers.remove( glContext );
+            this.hasGpuTimers = !this.gpuTimers.isEmpty( );
+        }
+
+        if ( timer != null )
+        {
+            timer.dispose( gl.getGL3( ) );
+        }
+    }
+
+    protected PainterProfile getProfile( GlimpsePainter painter, GlimpseContext context )
+    {
+        // during GlimpseLayoutDelegate.paintTo, the top of the stack is the painter's layout
+        GlimpseTarget layout = context.getTargetStack( ).getTarget( );
+
+        synchronized ( this.profilesByPainter )
+        {
+            List<PainterProfile> list = this.profilesByPainter.get( painter );
+            if ( list == null )
+            {
+                list = new ArrayList<>( 1 );
+                this.profilesByPainter.put( painter, list );
+            }
+
+            for ( int i = 0; i < list.size( ); i++ )
+            {
+                PainterProfile profile = list.get( i );
+                if ( profile.getLayout( ) == layout ) return profile;
+            }
+
+            PainterProfile profile = new PainterProfile( painter, layout, layoutPath( context ), System.currentTimeMillis( ) );
+            list.add( profile );
+            this.profiles.add( profile );
+            return profile;
+        }
+    }
+
+    protected static String layoutPath( GlimpseContext context )
+    {
+        // the target list runs from the top of the stack down to the canvas
+        List<GlimpseTarget> targets = context.getTargetStack( ).getTargetList( );
+
+        StringBuilder path = new StringBuilder( );
+        for ( int i = targets.size( ) - 1; i >= 0; i-- )
+        {
+            GlimpseTarget target = targets.get( i );
+            if ( path.length( ) > 0 ) path.append( '/' );
+
+            String name = target instanceof GlimpseLayout ? ( ( GlimpseLayout ) target ).getName( ) : null;
+            path.append( name != null ? name : target.getClass( ).getSimpleName( ) );
+        }
+        return path.toString( );
+    }
+
+    protected GpuTimer getGpuTimer( GlimpseContext context )
+    {
+        GLContext glContext = context.getGLContext( );
+
+        synchronized ( this.gpuTimers )
+        {
+            if ( this.gpuTimers.containsKey( glContext ) ) return this.gpuTimers.get( glContext );
+
+            GL gl = context.getGL( );
+            GpuTimer timer = gl.isGL3( ) && gl.isFunctionAvailable( "glQueryCounter" ) ? new GpuTimer( ) : null;
+            this.gpuTimers.put( glContext, timer );
+            this.hasGpuTimers = true;
+            return timer;
+        }
+    }
+
+    protected static class Frame
+    {
+        public final GlimpsePainter painter;
+        public final PainterProfile profile;
+        public final GpuTimer gpuTimer;
+        public final GpuQuery query;
+        public final long startNanos;
+
+        public Frame( GlimpsePainter painter, PainterProfile profile, GpuTimer gpuTimer, GpuQuery query, long startNanos )
+        {
+            this.painter = painter;
+            this.profile = profile;
+            this.gpuTimer = gpuTimer;
+            this.query = query;
+            this.startNanos = startNanos;
+        }
+    }
+
+    protected static class GpuQuery
+    {
+        public final PainterProfile profile;
+        public final int startId;
+        public final int endId;
+
+        public GpuQuery( PainterProfile profile, int startId, int endId )
+        {
+            this.profile = profile;
+            this.startId = startId;
+            this.endId = endId;
+        }
+    }
+
+    /**
+     * Timer queries in flight for one GL context. Only touched while that context is current,
+     * so it needs no locking.
+     */
+    protected static class GpuTimer
+    {
+        // stop issuing queries if results stop coming back
+        protected static final int maxPending = 4096;
+
+        protected final ArrayDeque<GpuQuery> pending;
+        protected int[] freeIds;
+        protected int numFreeIds;
+
+        protected final int[] scratchInt;
+        protected final long[] scratchLong;
+
+        protected boolean disposed;
+
+        public GpuTimer( )
+        {
+            this.pending = new ArrayDeque<>( );
+            this.freeIds = new int[64];
+            this.numFreeIds = 0;
+            this.scratchInt = new int[1];
+            this.scratchLong = new long[1];
+            this.disposed = false;
+        }
+
+        public boolean isDisposed( )
+        {
+            return this.disposed;
+        }
+
+        /**
+         * Deletes all query objects, including those still pending. Results that have not
+         * been collected yet are dropped.
+         */
+        public void dispose( GL3 gl )
+        {
+            if ( this.disposed ) return;
+            this.disposed = true;
+
+            for ( GpuQuery query : this.pending )
+            {
+                releaseId( query.startId );
+                releaseId( query.endId );
+            }
+            this.pending.clear( );
+
+            if ( this.numFreeIds > 0 )
+            {
+                gl.glDeleteQueries( this.numFreeIds, this.freeIds, 0 );
+                this.numFreeIds = 0;
+            }
+        }
+
+        public GpuQuery begin( GL3 gl, PainterProfile profile )
+        {
+            collect( gl );
+            if ( this.pending.size( ) >= maxPending ) return null;
+
+            GpuQuery query = new GpuQuery( profile, takeId( gl ), takeId( gl ) );
+            gl.glQueryCounter( query.startId, GL3.GL_TIMESTAMP );
+            return query;
+        }
+
+        public void end( GL3 gl, GpuQuery query )
+        {
+            gl.glQueryCounter( query.endId, GL3.GL_TIMESTAMP );
+            this.pending.add( query );
+        }
+
+        /**
+         * Records results for completed queries. Queries complete in order, so this stops at
+         * the first one whose result is not yet available.
+         */
+        protected void collect( GL3 gl )
+        {
+            long now = System.currentTimeMillis( );
+            while ( !this.pending.isEmpty( ) )
+            {
+                GpuQuery query = this.pending.peek( );
+
+                gl.glGetQueryObjectuiv( query.endId, GL3.GL_QUERY_RESULT_AVAILABLE, this.scratchInt, 0 );
+                if ( this.scratchInt[0] == GL.GL_FALSE ) break;
+
+                this.pending.poll( );
+
+                gl.glGetQueryObjecti64v( query.startId, GL3.GL_QUERY_RESULT, this.scratchLong, 0 );
+                long start = this.scratchLong[0];
+                gl.glGetQueryObjecti64v( query.endId, GL3.GL_QUERY_RESULT, this.scratchLong, 0 );
+                long end = this.scratchLong[0];
+
+                query.profile.recordGpu( Math.max( 0, end - start ), now );
+
+                releaseId( query.startId );
+                releaseId( query.endId );
+            }
+        }
+
+        protected int takeId( GL3 gl )
+        {
+            if ( this.numFreeIds == 0 )
+            {
+                gl.glGenQueries( this.freeIds.length, this.freeIds, 0 );
+                this.numFreeIds = this.freeIds.length;
+            }
+
+            return this.freeIds[--this.numFreeIds];
+        }
+
+        protected void releaseId( int id )
+        {
+            if ( this.numFreeIds == this.freeIds.length )
+            {
+                int[] newIds = new int[2 * this.freeIds.length];
+                System.arraycopy( this.freeIds, 0, newIds, 0, this.numFreeIds );
+                this.freeIds = newIds;
+            }
+
+            this.freeIds[this.numFreeIds++] = id;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Measures how much of each frame individual
+ * {@link com.metsci.glimpse.painter.base.GlimpsePainter}s use.
+ */
+package com.metsci.glimpse.support.profile;
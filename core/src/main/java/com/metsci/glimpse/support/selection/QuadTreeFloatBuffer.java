@@ -28,6 +28,8 @@ package com.metsci.glimpse.support.selection;
 
 import java.nio.FloatBuffer;
 
+import com.metsci.glimpse.util.primitives.Ints;
+import com.metsci.glimpse.util.quadtree.FilterInt;
 import com.metsci.glimpse.util.quadtree.QuadTreeInts;
 
 /**
@@ -124,6 +126,16 @@ public class QuadTreeFloatBuffer
         }
     }
 
+    /**
+     * Returns the indices of the k points nearest to (x,y), in order of increasing distance.
+     *
+     * @see QuadTreeInts#nearest(float, float, double, double, int, double, FilterInt)
+     */
+    public Ints nearest( float x, float y, double xScale, double yScale, int k, double maxDist, FilterInt filter )
+    {
+        return this.xyIndex.nearest( x, y, xScale, yScale, k, maxDist, filter );
+    }
+
     /**
      * Sets a new FloatBuffer as the backing store and recreates the QuadTreeInts.
      * @param buffer
@@ -103,34 +103,50 @@ public class SwingEDTAnimator implements GLAnimatorControl
             @Override
             public void run( )
             {
-                try
+                tick( );
+            }
+
+        }, 0, ( int ) ( 1000.0 / fps ), TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Called on the animator thread once per frame period.
+     */
+    protected void tick( )
+    {
+        try
+        {
+            SwingUtilities.invokeAndWait( new Runnable( )
+            {
+                @Override
+                public void run( )
                 {
-                    SwingUtilities.invokeAndWait( new Runnable( )
+                    for ( GLAutoDrawable target : targets )
                     {
-                        @Override
-                        public void run( )
-                        {
-                            for ( GLAutoDrawable target : targets )
-                            {
-                                try
-                                {
-                                    target.display( );
-                                }
-                                catch ( Throwable t )
-                                {
-                                    if ( handler != null ) handler.uncaughtException( SwingEDTAnimator.this, target, t );
-                                }
-                            }
-                        }
-                    } );
+                        display( target );
+                    }
                 }
-                catch ( InvocationTargetException | InterruptedException e )
-                {
-                    logWarning( logger, "SwingAnimator Error.", e );
-                }
-            }
+            } );
+        }
+        catch ( InvocationTargetException | InterruptedException e )
+        {
+            logWarning( logger, "SwingAnimator Error.", e );
+        }
+    }
 
-        }, 0, ( int ) ( 1000.0 / fps ), TimeUnit.MILLISECONDS );
+    /**
+     * Called on the Swing EDT.
+     */
+    protected void display( GLAutoDrawable target )
+    {
+        try
+        {
+            target.display( );
+        }
+        catch ( Throwable t )
+        {
+            if ( handler != null ) handler.uncaughtException( this, target, t );
+        }
     }
 
     @Override
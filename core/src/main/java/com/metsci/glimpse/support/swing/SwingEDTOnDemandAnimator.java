@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.support.swing;
+
+import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
+
+import java.awt.Component;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLEventListener;
+import javax.swing.SwingUtilities;
+
+import com.jogamp.newt.Window;
+import com.jogamp.newt.event.MouseEvent;
+import com.jogamp.newt.event.WindowAdapter;
+import com.jogamp.newt.event.WindowEvent;
+import com.jogamp.newt.event.WindowUpdateEvent;
+import com.metsci.glimpse.canvas.RepaintTracker;
+
+/**
+ * A {@link SwingEDTAnimator} which only repaints canvases that have changed.
+ *
+ * <p>Each frame period, the animator checks which of its drawables have been marked dirty
+ * through {@link RepaintTracker}, and repaints just those, once each, on the Swing EDT. Any
+ * number of changes between frames are coalesced into a single repaint. When nothing is
+ * dirty the animator does not touch the EDT at all, so an idle canvas costs almost nothing.</p>
+ *
+ * <p>Canvases are marked dirty by:
+ * <ul>
+ * <li>changes to the axes of the layouts on the canvas,
+ * <li>data and style setters on {@link com.metsci.glimpse.painter.base.GlimpsePainterBase}
+ *     subclasses which call {@link com.metsci.glimpse.painter.base.GlimpsePainterBase#invalidate()},
+ * <li>changes to textures drawn on the canvas,
+ * <li>mouse input, resizes and window repaint requests, which this animator listens for.
+ * </ul>
+ * Painters which animate on their own should opt in with
+ * {@link com.metsci.glimpse.painter.base.GlimpsePainterBase#setContinuousRepaint(boolean)}.</p>
+ *
+ * <p>Painters which do not invalidate when they change will only appear to update when
+ * something else changes. As a backstop, every drawable is also repainted at least once per
+ * {@link #setMaxIdleMillis(long) max idle period} (one second by default).</p>
+ */
+public class SwingEDTOnDemandAnimator extends SwingEDTAnimator
+{
+    private static final Logger logger = Logger.getLogger( SwingEDTOnDemandAnimator.class.getName( ) );
+
+    protected final Map<GLAutoDrawable, RepaintHooks> hooks;
+
+    protected volatile long maxIdleMillis;
+    protected long lastFullRepaintMillis;
+
+    /**
+     * Creates an animator which checks for dirty canvases 60 times per second, roughly
+     * once per vsync on most displays.
+     */
+    public SwingEDTOnDemandAnimator( )
+    {
+        this( 60 );
+    }
+
+    public SwingEDTOnDemandAnimator( double maxFps )
+    {
+        super( maxFps );
+
+        this.hooks = new ConcurrentHashMap<>( );
+        this.maxIdleMillis = 1000;
+        this.lastFullRepaintMillis = System.currentTimeMillis( );
+    }
+
+    /**
+     * Sets how long a drawable may go without being repainted, even if it is not dirty.
+     * Zero or negative disables the idle repaint.
+     */
+    public void setMaxIdleMillis( long maxIdleMillis )
+    {
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    public long getMaxIdleMillis( )
+    {
+        return this.maxIdleMillis;
+    }
+
+    @Override
+    protected void tick( )
+    {
+        long now = System.currentTimeMillis( );
+        final boolean repaintAll = this.maxIdleMillis > 0 && now - this.lastFullRepaintMillis >= this.maxIdleMillis;
+        if ( repaintAll ) this.lastFullRepaintMillis = now;
+
+        if ( !repaintAll && !anyDirty( ) ) return;
+
+        try
+        {
+            SwingUtilities.invokeAndWait( new Runnable( )
+            {
+                @Override
+                public void run( )
+                {
+                    for ( GLAutoDrawable target : targets )
+                    {
+                        // clear before painting, so changes made during the paint are not lost
+                        if ( RepaintTracker.clearDirty( target ) || repaintAll )
+                        {
+                            display( target );
+                        }
+                    }
+                }
+            } );
+        }
+        catch ( InvocationTargetException | InterruptedException e )
+        {
+            logWarning( logger, "SwingAnimator Error.", e );
+        }
+    }
+
+    protected boolean anyDirty( )
+    {
+        for ( GLAutoDrawable target : this.targets )
+        {
+            if ( RepaintTracker.isDirty( target ) ) return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void add( GLAutoDrawable drawable )
+    {
+        RepaintHooks hook = new RepaintHooks( drawable );
+        if ( this.hooks.put( drawable, hook ) == null )
+        {
+            hook.attach( );
+        }
+
+        super.add( drawable );
+        RepaintTracker.markDirty( drawable );
+    }
+
+    @Override
+    public void remove( GLAutoDrawable drawable )
+    {
+        super.remove( drawable );
+
+        RepaintHooks hook = this.hooks.remove( drawable );
+        if ( hook != null ) hook.detach( );
+    }
+
+    /**
+     * Marks a drawable dirty when it is resized, receives mouse input, or is asked to
+     * repaint by the windowing system (which JOGL leaves to the animator while one is running).
+     */
+    protected static class RepaintHooks extends ComponentAdapter implements GLEventListener, com.jogamp.newt.event.MouseListener, java.awt.event.MouseListener, java.awt.event.MouseMotionListener, java.awt.event.MouseWheelListener
+    {
+        protected final GLAutoDrawable drawable;
+        protected final WindowAdapter windowListener;
+
+        public RepaintHooks( GLAutoDrawable drawable )
+        {
+            this.drawable = drawable;
+            this.windowListener = new WindowAdapter( )
+            {
+                @Override
+                public void windowResized( WindowEvent e )
+                {
+                    markDirty( );
+                }
+
+                @Override
+                public void windowRepaint( WindowUpdateEvent e )
+                {
+                    markDirty( );
+                }
+            };
+        }
+
+        public void attach( )
+        {
+            this.drawable.addGLEventListener( this );
+
+            if ( this.drawable instanceof Window )
+            {
+                Window window = ( Window ) this.drawable;
+                window.addMouseListener( this );
+                window.addWindowListener( this.windowListener );
+            }
+            else if ( this.drawable instanceof Component )
+            {
+                Component component = ( Component ) this.drawable;
+                component.addMouseListener( this );
+                component.addMouseMotionListener( this );
+                component.addMouseWheelListener( this );
+                component.addComponentListener( this );
+            }
+        }
+
+        public void detach( )
+        {
+            this.drawable.removeGLEventListener( this );
+
+            if ( this.drawable instanceof Window )
+            {
+                Window window = ( Window ) this.drawable;
+                window.removeMouseListener( this );
+                window.removeWindowListener( this.windowListener );
+            }
+            else if ( this.drawable instanceof Component )
+            {
+                Component component = ( Component ) this.drawable;
+                component.removeMouseListener( this );
+                component.removeMouseMotionListener( this );
+                component.removeMouseWheelListener( this );
+                component.removeComponentListener( this );
+            }
+        }
+
+        protected void markDirty( )
+        {
+            RepaintTracker.markDirty( this.drawable );
+        }
+
+        // GLEventListener
+
+        @Override
+        public void init( GLAutoDrawable drawable )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void reshape( GLAutoDrawable drawable, int x, int y, int width, int height )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void display( GLAutoDrawable drawable )
+        {
+        }
+
+        @Override
+        public void dispose( GLAutoDrawable drawable )
+        {
+        }
+
+        // AWT
+
+        @Override
+        public void componentResized( ComponentEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void componentShown( ComponentEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseClicked( java.awt.event.MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mousePressed( java.awt.event.MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseReleased( java.awt.event.MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseEntered( java.awt.event.MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseExited( java.awt.event.MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseDragged( java.awt.event.MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseMoved( java.awt.event.MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseWheelMoved( java.awt.event.MouseWheelEvent e )
+        {
+            markDirty( );
+        }
+
+        // NEWT
+
+        @Override
+        public void mouseClicked( MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseEntered( MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseExited( MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mousePressed( MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseReleased( MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseMoved( MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseDragged( MouseEvent e )
+        {
+            markDirty( );
+        }
+
+        @Override
+        public void mouseWheelMoved( MouseEvent e )
+        {
+            markDirty( );
+        }
+    }
+}
@@ -85,6 +85,19 @@ public class ColorTextureProjected2D extends FloatTextureProjected2D
         return data.asFloatBuffer( ).position( texStartsY[i] * dataSizeX * FLOATS_PER_PIXEL );
     }
 
+    @Override
+    protected boolean prepare_setSubData( GL gl, int i, int x0, int y0, int sizeX, int sizeY )
+    {
+        gl.glPixelStorei( GL.GL_UNPACK_ALIGNMENT, 1 );
+        gl.glPixelStorei( GL3.GL_UNPACK_SKIP_PIXELS, x0 );
+        gl.glPixelStorei( GL3.GL_UNPACK_ROW_LENGTH, dataSizeX );
+
+        Buffer positionedBuffer = data.asFloatBuffer( ).position( y0 * dataSizeX * FLOATS_PER_PIXEL );
+        gl.glTexSubImage2D( GL.GL_TEXTURE_2D, 0, x0 - texStartsX[i], y0 - texStartsY[i], sizeX, sizeY, GL3.GL_RGBA, GL3.GL_FLOAT, positionedBuffer );
+
+        return true;
+    }
+
     @Override
     protected void prepare_setData( GL gl )
     {
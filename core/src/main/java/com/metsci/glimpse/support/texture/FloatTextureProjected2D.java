@@ -86,6 +86,19 @@ public class FloatTextureProjected2D extends TextureProjected2D
         gl.glPixelStorei( GL2.GL_UNPACK_ROW_LENGTH, 0 );
     }
 
+    @Override
+    protected boolean prepare_setSubData( GL gl, int i, int x0, int y0, int sizeX, int sizeY )
+    {
+        gl.glPixelStorei( GL2.GL_UNPACK_ALIGNMENT, 1 );
+        gl.glPixelStorei( GL2.GL_UNPACK_SKIP_PIXELS, x0 );
+        gl.glPixelStorei( GL2.GL_UNPACK_ROW_LENGTH, dataSizeX );
+
+        Buffer positionedBuffer = data.asFloatBuffer( ).position( y0 * dataSizeX );
+        gl.glTexSubImage2D( GL3.GL_TEXTURE_2D, 0, x0 - texStartsX[i], y0 - texStartsY[i], sizeX, sizeY, GL3.GL_RED, GL3.GL_FLOAT, positionedBuffer );
+
+        return true;
+    }
+
     @Override
     protected int getRequiredCapacityBytes( )
     {
@@ -156,6 +169,56 @@ public class FloatTextureProjected2D extends TextureProjected2D
         }
     }
 
+    /**
+     * Like {@link #mutate(MutatorFloat2D)}, but only marks the given region of the data (in data index
+     * coordinates) as modified, so that only that region is uploaded to the graphics card.
+     * The mutator should not modify data outside the region.
+     */
+    public void mutate( MutatorFloat2D mutator, int x0, int y0, int sizeX, int sizeY )
+    {
+        lock.lock( );
+        try
+        {
+            data.rewind( );
+            mutator.mutate( data.asFloatBuffer( ), dataSizeX, dataSizeY );
+            makeDirty( x0, y0, sizeX, sizeY );
+        }
+        finally
+        {
+            lock.unlock( );
+        }
+    }
+
+    /**
+     * Writes a row of data at {@link #getRingBufferRow()} and advances the ring buffer,
+     * so that only the new row is uploaded to the graphics card. The row should contain one value for each of the dataSizeX texels.
+     *
+     * @see #setRingBufferEnabled(boolean)
+     */
+    public void appendRow( float[] row )
+    {
+        lock.lock( );
+        try
+        {
+            int rowLength = getBytesPerRow( ) / BYTES_PER_FLOAT;
+            if ( row.length != rowLength )
+            {
+                logWarning( logger, "Incorrectly sized row passed to appendRow. Expected %d. Got %d.", rowLength, row.length );
+                return;
+            }
+
+            FloatBuffer buffer = data.asFloatBuffer( );
+            buffer.position( ringBufferRow * rowLength );
+            buffer.put( row );
+
+            advanceRingBuffer( 1 );
+        }
+        finally
+        {
+            lock.unlock( );
+        }
+    }
+
     public static interface MutatorFloat2D
     {
         public void mutate( FloatBuffer data, int dataSizeX, int dataSizeY );
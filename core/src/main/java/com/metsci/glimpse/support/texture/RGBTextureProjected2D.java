@@ -26,10 +26,13 @@
  */
 package com.metsci.glimpse.support.texture;
 
+import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
+
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.Buffer;
+import java.util.logging.Logger;
 
 import javax.imageio.ImageIO;
 import javax.media.opengl.GL;
@@ -46,6 +49,7 @@ import com.metsci.glimpse.support.texture.ByteTextureProjected2D.MutatorByte2D;
  */
 public class RGBTextureProjected2D extends TextureProjected2D
 {
+    private static final Logger logger = Logger.getLogger( RGBTextureProjected2D.class.getName( ) );
 
     public static final int BYTES_PER_PIXEL = 3;
 
@@ -95,6 +99,19 @@ public class RGBTextureProjected2D extends TextureProjected2D
         return data.position( texStartsY[i] * dataSizeX * BYTES_PER_PIXEL );
     }
 
+    @Override
+    protected boolean prepare_setSubData( GL gl, int i, int x0, int y0, int sizeX, int sizeY )
+    {
+        gl.glPixelStorei( GL2.GL_UNPACK_ALIGNMENT, 1 );
+        gl.glPixelStorei( GL2.GL_UNPACK_SKIP_PIXELS, x0 );
+        gl.glPixelStorei( GL2.GL_UNPACK_ROW_LENGTH, dataSizeX );
+
+        Buffer positionedBuffer = data.position( y0 * dataSizeX * BYTES_PER_PIXEL );
+        gl.glTexSubImage2D( GL2.GL_TEXTURE_2D, 0, x0 - texStartsX[i], y0 - texStartsY[i], sizeX, sizeY, GL2.GL_RGB, GL2.GL_UNSIGNED_BYTE, positionedBuffer );
+
+        return true;
+    }
+
     @Override
     protected int getRequiredCapacityBytes( )
     {
@@ -169,4 +186,52 @@ public class RGBTextureProjected2D extends TextureProjected2D
         }
     }
 
+    /**
+     * Like {@link #mutate(MutatorByte2D)}, but only marks the given region of the data (in data index
+     * coordinates) as modified, so that only that region is uploaded to the graphics card.
+     * The mutator should not modify data outside the region.
+     */
+    public void mutate( MutatorByte2D mutator, int x0, int y0, int sizeX, int sizeY )
+    {
+        lock.lock( );
+        try
+        {
+            data.rewind( );
+            mutator.mutate( data, dataSizeX, dataSizeY );
+            makeDirty( x0, y0, sizeX, sizeY );
+        }
+        finally
+        {
+            lock.unlock( );
+        }
+    }
+
+    /**
+     * Writes a row of data at {@link #getRingBufferRow()} and advances the ring buffer,
+     * so that only the new row is uploaded to the graphics card. Pixels should be packed as RGB.
+     *
+     * @see #setRingBufferEnabled(boolean)
+     */
+    public void appendRow( byte[] row )
+    {
+        lock.lock( );
+        try
+        {
+            int rowLength = getBytesPerRow( );
+            if ( row.length != rowLength )
+            {
+                logWarning( logger, "Incorrectly sized row passed to appendRow. Expected %d. Got %d.", rowLength, row.length );
+                return;
+            }
+
+            data.position( ringBufferRow * rowLength );
+            data.put( row );
+
+            advanceRingBuffer( 1 );
+        }
+        finally
+        {
+            lock.unlock( );
+        }
+    }
 }
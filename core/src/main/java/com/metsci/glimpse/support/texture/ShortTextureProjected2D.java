@@ -86,6 +86,19 @@ public class ShortTextureProjected2D extends TextureProjected2D
         gl.glPixelStorei( GL2.GL_UNPACK_ROW_LENGTH, 0 );
     }
 
+    @Override
+    protected boolean prepare_setSubData( GL gl, int i, int x0, int y0, int sizeX, int sizeY )
+    {
+        gl.glPixelStorei( GL2.GL_UNPACK_ALIGNMENT, 1 );
+        gl.glPixelStorei( GL2.GL_UNPACK_SKIP_PIXELS, x0 );
+        gl.glPixelStorei( GL2.GL_UNPACK_ROW_LENGTH, dataSizeX );
+
+        Buffer positionedBuffer = data.asShortBuffer( ).position( y0 * dataSizeX );
+        gl.glTexSubImage2D( GL2.GL_TEXTURE_2D, 0, x0 - texStartsX[i], y0 - texStartsY[i], sizeX, sizeY, GL2.GL_LUMINANCE_INTEGER, GL2.GL_SHORT, positionedBuffer );
+
+        return true;
+    }
+
     @Override
     protected int getRequiredCapacityBytes( )
     {
@@ -139,6 +152,56 @@ public class ShortTextureProjected2D extends TextureProjected2D
         }
     }
 
+    /**
+     * Like {@link #mutate(MutatorShort2D)}, but only marks the given region of the data (in data index
+     * coordinates) as modified, so that only that region is uploaded to the graphics card.
+     * The mutator should not modify data outside the region.
+     */
+    public void mutate( MutatorShort2D mutator, int x0, int y0, int sizeX, int sizeY )
+    {
+        lock.lock( );
+        try
+        {
+            data.rewind( );
+            mutator.mutate( data.asShortBuffer( ), dataSizeX, dataSizeY );
+            makeDirty( x0, y0, sizeX, sizeY );
+        }
+        finally
+        {
+            lock.unlock( );
+        }
+    }
+
+    /**
+     * Writes a row of data at {@link #getRingBufferRow()} and advances the ring buffer,
+     * so that only the new row is uploaded to the graphics card. The row should contain one value for each of the dataSizeX texels.
+     *
+     * @see #setRingBufferEnabled(boolean)
+     */
+    public void appendRow( short[] row )
+    {
+        lock.lock( );
+        try
+        {
+            int rowLength = getBytesPerRow( ) / BYTES_PER_SHORT;
+            if ( row.length != rowLength )
+            {
+                logWarning( logger, "Incorrectly sized row passed to appendRow. Expected %d. Got %d.", rowLength, row.length );
+                return;
+            }
+
+            ShortBuffer buffer = data.asShortBuffer( );
+            buffer.position( ringBufferRow * rowLength );
+            buffer.put( row );
+
+            advanceRingBuffer( 1 );
+        }
+        finally
+        {
+            lock.unlock( );
+        }
+    }
+
     public static interface MutatorShort2D
     {
         public void mutate( ShortBuffer data, int dataSizeX, int dataSizeY );
@@ -32,8 +32,10 @@ import static java.util.logging.Level.WARNING;
 
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
@@ -44,6 +46,7 @@ import javax.media.opengl.GLContext;
 
 import com.jogamp.common.nio.Buffers;
 import com.metsci.glimpse.axis.Axis2D;
+import com.metsci.glimpse.canvas.RepaintTargets;
 import com.metsci.glimpse.context.GlimpseContext;
 import com.metsci.glimpse.gl.texture.DrawableTexture;
 import com.metsci.glimpse.gl.texture.DrawableTextureProgram;
@@ -59,6 +62,9 @@ public abstract class TextureProjected2D implements DrawableTexture
     public static final int VERTICES_PER_QUAD = 6; // quads are made of two triangles
     public static final int BYTES_PER_FLOAT = 4;
 
+    // above this many separate dirty regions, upload their bounding box instead
+    public static final int MAX_DIRTY_REGIONS = 16;
+
     private static final Logger logger = Logger.getLogger( TextureProjected2D.class.getName( ) );
 
     // projection defining the mapping from texel (texture index) to vertex coordinate
@@ -109,8 +115,23 @@ public abstract class TextureProjected2D implements DrawableTexture
 
     protected boolean dirty;
 
+    // canvases to repaint when the texture changes
+    protected final RepaintTargets repaintTargets = new RepaintTargets( );
+
+    // regions of the data which have changed since the last upload (only used
+    // when the whole texture is not dirty)
+    protected List<DirtyRegion> dirtyRegions = new ArrayList<DirtyRegion>( );
+
     protected boolean projectionDirty;
 
+    // true if only the texture coordinates (not the vertex coordinates) need to be updated
+    protected boolean texCoordsDirty;
+
+    // in ring buffer mode, rows are displayed starting from ringBufferRow (the oldest row)
+    protected boolean ringBufferEnabled;
+    protected int ringBufferRow;
+    protected boolean ringBufferWarned;
+
     protected int dataSizeX;
     protected int dataSizeY;
 
@@ -130,6 +151,23 @@ public abstract class TextureProjected2D implements DrawableTexture
 
     protected abstract float getData( int index );
 
+    protected int getBytesPerRow( )
+    {
+        return dataSizeY == 0 ? 0 : getRequiredCapacityBytes( ) / dataSizeY;
+    }
+
+    /**
+     * Uploads the given region of the data (in data index coordinates, and entirely inside the
+     * ith texture) to the ith texture, which has already been bound and previously filled by
+     * {@link #prepare_setData(GL)}.
+     *
+     * @return false if partial uploads are not supported, in which case the whole texture is uploaded
+     */
+    protected boolean prepare_setSubData( GL gl, int i, int x0, int y0, int sizeX, int sizeY )
+    {
+        return false;
+    }
+
     public double getDataValue( double coordX, double coordY )
     {
         lock.lock( );
@@ -149,6 +187,10 @@ public abstract class TextureProjected2D implements DrawableTexture
                 int x = ( int ) Math.floor( fracX * dataSizeX );
                 int y = ( int ) Math.floor( fracY * dataSizeY );
 
+                // in ring buffer mode, the bottom of the texture shows the oldest row
+                int rowOffset = getRingBufferRowOffset( );
+                if ( rowOffset != 0 && y >= 0 && y < dataSizeY ) y = ( y + rowOffset ) % dataSizeY;
+
                 return getDataValue( x, y );
             }
         }
@@ -178,6 +220,7 @@ public abstract class TextureProjected2D implements DrawableTexture
     public void makeProjectionDirty( )
     {
         this.projectionDirty = true;
+        this.repaintTargets.markDirty( );
     }
 
     @Override
@@ -190,12 +233,173 @@ public abstract class TextureProjected2D implements DrawableTexture
     public void makeDirty( )
     {
         this.dirty = true;
+        this.dirtyRegions.clear( );
+        this.repaintTargets.markDirty( );
+    }
+
+    /**
+     * Marks a rectangular region of the data (in data index coordinates) as modified. Only the
+     * modified regions are uploaded to the graphics card, unless the whole texture is dirty.
+     *
+     * Overlapping and adjacent regions are coalesced, and if too many regions accumulate
+     * between uploads their bounding box is uploaded instead.
+     */
+    public void makeDirty( int x0, int y0, int sizeX, int sizeY )
+    {
+        lock.lock( );
+        try
+        {
+            int minX = Math.max( 0, x0 );
+            int minY = Math.max( 0, y0 );
+            int maxX = Math.min( dataSizeX, x0 + sizeX );
+            int maxY = Math.min( dataSizeY, y0 + sizeY );
+
+            if ( dirty || minX >= maxX || minY >= maxY ) return;
+
+            DirtyRegion region = new DirtyRegion( minX, minY, maxX, maxY );
+
+            // merge the new region with every region it can be combined with without
+            // uploading extra data (merging may enable further merges)
+            boolean merged = true;
+            while ( merged )
+            {
+                merged = false;
+                for ( int i = 0; i < dirtyRegions.size( ); i++ )
+                {
+                    DirtyRegion other = dirtyRegions.get( i );
+                    if ( region.canMerge( other ) )
+                    {
+                        region.union( other );
+                        dirtyRegions.remove( i );
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+
+            dirtyRegions.add( region );
+            repaintTargets.markDirty( );
+
+            if ( dirtyRegions.size( ) > MAX_DIRTY_REGIONS )
+            {
+                DirtyRegion bounds = dirtyRegions.get( 0 );
+                for ( DirtyRegion other : dirtyRegions )
+                {
+                    bounds.union( other );
+                }
+
+                dirtyRegions.clear( );
+                dirtyRegions.add( bounds );
+            }
+
+            DirtyRegion first = dirtyRegions.get( 0 );
+            if ( dirtyRegions.size( ) == 1 && first.getArea( ) == ( long ) dataSizeX * dataSizeY )
+            {
+                makeDirty( );
+            }
+        }
+        finally
+        {
+            lock.unlock( );
+        }
     }
 
     @Override
     public boolean isDirty( )
     {
-        return dirty || projectionDirty;
+        return dirty || !dirtyRegions.isEmpty( ) || projectionDirty || texCoordsDirty;
+    }
+
+    /**
+     * In ring buffer mode, rows are written in a circular fashion (see {@link #advanceRingBuffer(int)})
+     * and the texture is displayed starting from the oldest row, which is useful for scrolling
+     * waterfall displays. Rather than shifting the data, only the texture coordinates change
+     * as new rows are written.
+     *
+     * Ring buffer mode requires that dataSizeY be no larger than GL_MAX_TEXTURE_SIZE. Otherwise,
+     * the rows are displayed in storage order.
+     */
+    public void setRingBufferEnabled( boolean enabled )
+    {
+        lock.lock( );
+        try
+        {
+            this.ringBufferEnabled = enabled;
+
+            // texture wrap parameters are set when the full texture is uploaded
+            makeDirty( );
+            this.texCoordsDirty = true;
+        }
+        finally
+        {
+            lock.unlock( );
+        }
+    }
+
+    public boolean isRingBufferEnabled( )
+    {
+        return this.ringBufferEnabled;
+    }
+
+    /**
+     * @return the data row which will be written next in ring buffer mode (this is also the oldest row)
+     */
+    public int getRingBufferRow( )
+    {
+        lock.lock( );
+        try
+        {
+            return this.ringBufferRow;
+        }
+        finally
+        {
+            lock.unlock( );
+        }
+    }
+
+    /**
+     * Marks the rows starting at {@link #getRingBufferRow()} (wrapping around past the last row)
+     * as modified, and advances the ring buffer write row past them.
+     */
+    public void advanceRingBuffer( int rowCount )
+    {
+        lock.lock( );
+        try
+        {
+            if ( dataSizeY == 0 ) return;
+
+            rowCount = Math.min( rowCount, dataSizeY );
+
+            int firstCount = Math.min( rowCount, dataSizeY - ringBufferRow );
+            makeDirty( 0, ringBufferRow, dataSizeX, firstCount );
+            if ( firstCount < rowCount ) makeDirty( 0, 0, dataSizeX, rowCount - firstCount );
+
+            this.ringBufferRow = ( ringBufferRow + rowCount ) % dataSizeY;
+            this.texCoordsDirty = true;
+        }
+        finally
+        {
+            lock.unlock( );
+        }
+    }
+
+    // the number of rows the displayed texture is shifted by (zero unless ring buffer mode is in effect)
+    protected int getRingBufferRowOffset( )
+    {
+        if ( !ringBufferEnabled ) return 0;
+
+        if ( textureCountY > 1 )
+        {
+            if ( !ringBufferWarned )
+            {
+                logger.log( WARNING, "Ring buffer mode is not supported for textures larger than GL_MAX_TEXTURE_SIZE." );
+                ringBufferWarned = true;
+            }
+
+            return 0;
+        }
+
+        return ringBufferRow;
     }
 
     @Override
@@ -222,6 +426,7 @@ public abstract class TextureProjected2D implements DrawableTexture
     public boolean prepare( GlimpseContext context, int texUnit )
     {
         GL gl = context.getGL( );
+        repaintTargets.add( context );
 
         // should we check for dirtiness and allocation before lock to speed up?
         lock.lock( );
@@ -240,13 +445,24 @@ public abstract class TextureProjected2D implements DrawableTexture
             {
                 prepare_setData( gl );
                 dirty = false;
+                dirtyRegions.clear( );
+            }
+            else if ( glAllocated && !dirtyRegions.isEmpty( ) )
+            {
+                prepare_setDirtyRegions( gl );
+                dirtyRegions.clear( );
             }
 
             if ( glAllocated && projectionDirty )
             {
                 prepare_setCoords( gl );
                 projectionDirty = false;
-
+                texCoordsDirty = false;
+            }
+            else if ( glAllocated && texCoordsDirty )
+            {
+                prepare_setTexCoords( gl );
+                texCoordsDirty = false;
             }
 
             return !isDirty( );
@@ -329,25 +545,71 @@ public abstract class TextureProjected2D implements DrawableTexture
         }
     }
 
+    /**
+     * Deletes the OpenGL textures and buffers. The host-side data is kept, so if the texture
+     * is prepared again (for example, it is painted again) it will be reallocated and reuploaded.
+     */
     @Override
     public void dispose( GLContext context )
     {
         GL gl = context.getGL( );
 
-        if ( textureHandles != null && textureHandles.length != 0 )
+        lock.lock( );
+        try
         {
-            gl.glDeleteTextures( textureHandles.length, textureHandles, 0 );
-        }
+            if ( textureHandles != null && textureHandles.length != 0 )
+            {
+                gl.glDeleteTextures( textureHandles.length, textureHandles, 0 );
+            }
 
-        if ( vertexCoordHandles != null && vertexCoordHandles.length != 0 )
+            if ( vertexCoordHandles != null && vertexCoordHandles.length != 0 )
+            {
+                gl.glDeleteBuffers( vertexCoordHandles.length, vertexCoordHandles, 0 );
+            }
+
+            if ( texCoordHandles != null && texCoordHandles.length != 0 )
+            {
+                gl.glDeleteBuffers( texCoordHandles.length, texCoordHandles, 0 );
+            }
+
+            textureHandles = null;
+            vertexCoordHandles = null;
+            texCoordHandles = null;
+            glAllocated = false;
+        }
+        finally
         {
-            gl.glDeleteBuffers( vertexCoordHandles.length, vertexCoordHandles, 0 );
+            lock.unlock( );
         }
+    }
 
-        if ( texCoordHandles != null && texCoordHandles.length != 0 )
+    protected void prepare_setDirtyRegions( GL gl )
+    {
+        for ( DirtyRegion region : dirtyRegions )
         {
-            gl.glDeleteBuffers( texCoordHandles.length, texCoordHandles, 0 );
+            for ( int i = 0; i < numTextures; i++ )
+            {
+                // clip the region to the ith texture
+                int minX = Math.max( region.minX, texStartsX[i] );
+                int minY = Math.max( region.minY, texStartsY[i] );
+                int maxX = Math.min( region.maxX, texStartsX[i] + texSizesX[i] );
+                int maxY = Math.min( region.maxY, texStartsY[i] + texSizesY[i] );
+
+                if ( minX >= maxX || minY >= maxY ) continue;
+
+                gl.glBindTexture( getTextureType( ), textureHandles[i] );
+
+                if ( !prepare_setSubData( gl, i, minX, minY, maxX - minX, maxY - minY ) )
+                {
+                    prepare_setData( gl );
+                    return;
+                }
+            }
         }
+
+        gl.glPixelStorei( GL2.GL_UNPACK_SKIP_PIXELS, 0 );
+        gl.glPixelStorei( GL2.GL_UNPACK_SKIP_ROWS, 0 );
+        gl.glPixelStorei( GL2.GL_UNPACK_ROW_LENGTH, 0 );
     }
 
     protected int getTextureType( )
@@ -472,6 +734,17 @@ public abstract class TextureProjected2D implements DrawableTexture
             putVerticesCoords( i, texStartsX[i], texStartsY[i], texSizesX[i], texSizesY[i], temp );
             gl.glBindBuffer( GL2.GL_ARRAY_BUFFER, vertexCoordHandles[i] );
             gl.glBufferData( GL2.GL_ARRAY_BUFFER, projectFloats * BYTES_PER_FLOAT, coordBuffer.rewind( ), GL2.GL_STATIC_DRAW );
+        }
+
+        prepare_setTexCoords( gl );
+    }
+
+    protected void prepare_setTexCoords( GL gl )
+    {
+        for ( int i = 0; i < numTextures; i++ )
+        {
+            int projectFloats = texQuadCounts[i] * VERTICES_PER_QUAD * floatsPerVertex;
+            if ( coordBuffer == null || coordBuffer.capacity( ) < projectFloats ) coordBuffer = Buffers.newDirectFloatBuffer( projectFloats );
 
             coordBuffer.rewind( );
             putVerticesTexCoords( i, texStartsX[i], texStartsY[i], texSizesX[i], texSizesY[i] );
@@ -555,7 +828,11 @@ public abstract class TextureProjected2D implements DrawableTexture
 
     protected void putVertexTexCoords( int texIndex, double texFracX, double texFracY )
     {
-        coordBuffer.put( ( float ) texFracX ).put( ( float ) texFracY );
+        // in ring buffer mode, shift the texture coordinates so the oldest row is at the bottom
+        // (the texture wraps in the y direction, so coordinates past 1.0 wrap back to the newest rows)
+        double offsetY = getRingBufferRowOffset( ) / ( double ) dataSizeY;
+
+        coordBuffer.put( ( float ) texFracX ).put( ( float ) ( texFracY + offsetY ) );
     }
 
     protected void prepare_setTexParameters( GL gl )
@@ -564,7 +841,7 @@ public abstract class TextureProjected2D implements DrawableTexture
         gl.glTexParameteri( GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_NEAREST );
 
         gl.glTexParameteri( GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_S, GL2.GL_CLAMP );
-        gl.glTexParameteri( GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_T, GL2.GL_CLAMP );
+        gl.glTexParameteri( GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_WRAP_T, ringBufferEnabled ? GL2.GL_REPEAT : GL2.GL_CLAMP );
     }
 
     protected ByteBuffer newByteBuffer( )
@@ -615,6 +892,7 @@ public abstract class TextureProjected2D implements DrawableTexture
             this.dataSizeY = dataSizeY;
 
             this.glAllocated = false;
+            this.ringBufferRow = 0;
 
             if ( this.data == null || this.data.capacity( ) < getRequiredCapacityBytes( ) ) this.data = newByteBuffer( );
 
@@ -653,4 +931,42 @@ public abstract class TextureProjected2D implements DrawableTexture
             lock.unlock( );
         }
     }
+
+    protected static class DirtyRegion
+    {
+        // inclusive min and exclusive max data indices
+        public int minX;
+        public int minY;
+        public int maxX;
+        public int maxY;
+
+        public DirtyRegion( int minX, int minY, int maxX, int maxY )
+        {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        // true if the bounding box of the two regions is no larger than the regions
+        // themselves (for example, if they are adjacent rows or one contains the other)
+        public boolean canMerge( DirtyRegion o )
+        {
+            long unionArea = ( long ) ( Math.max( maxX, o.maxX ) - Math.min( minX, o.minX ) ) * ( Math.max( maxY, o.maxY ) - Math.min( minY, o.minY ) );
+            return unionArea <= getArea( ) + o.getArea( );
+        }
+
+        public void union( DirtyRegion o )
+        {
+            minX = Math.min( minX, o.minX );
+            minY = Math.min( minY, o.minY );
+            maxX = Math.max( maxX, o.maxX );
+            maxY = Math.max( maxY, o.maxY );
+        }
+
+        public long getArea( )
+        {
+            return ( long ) ( maxX - minX ) * ( maxY - minY );
+        }
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.timing;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import com.metsci.glimpse.axis.listener.RateLimitedEventDispatcher;
+
+/**
+ * Creates many idle {@link RateLimitedEventDispatcher}s, fires a burst of events at each,
+ * and reports the number of live threads and the latency from the last event to its dispatch.
+ */
+public class EventDispatcherTimingTest
+{
+
+    public static void main( String[] args ) throws Exception
+    {
+        int numDispatchers = args.length > 0 ? Integer.parseInt( args[0] ) : 1000;
+        int eventsPerDispatcher = 20;
+        long idleMillis = 1000 / 60;
+
+        int threadsBefore = Thread.activeCount( );
+
+        final long[] lastEventNanos = new long[numDispatchers];
+        final long[] latencyNanos = new long[numDispatchers];
+        final CountDownLatch latch = new CountDownLatch( numDispatchers );
+
+        TestDispatcher[] dispatchers = new TestDispatcher[numDispatchers];
+        for ( int i = 0; i < numDispatchers; i++ )
+        {
+            dispatchers[i] = new TestDispatcher( idleMillis, eventsPerDispatcher, lastEventNanos, latencyNanos, latch );
+        }
+
+        for ( int e = 0; e < eventsPerDispatcher; e++ )
+        {
+            for ( int i = 0; i < numDispatchers; i++ )
+            {
+                if ( e == eventsPerDispatcher - 1 ) lastEventNanos[i] = System.nanoTime( );
+                dispatchers[i].eventOccurred( new int[] { i, e } );
+            }
+        }
+
+        latch.await( );
+
+        int threadsAfter = Thread.activeCount( );
+
+        Arrays.sort( latencyNanos );
+        System.out.printf( "dispatchers: %d, live threads before: %d, after: %d%n", numDispatchers, threadsBefore, threadsAfter );
+        System.out.printf( "last-event latency (ms): p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+                percentileMillis( latencyNanos, 0.50 ),
+                percentileMillis( latencyNanos, 0.90 ),
+                percentileMillis( latencyNanos, 0.99 ),
+                percentileMillis( latencyNanos, 1.00 ) );
+
+        for ( TestDispatcher d : dispatchers )
+        {
+            d.dispose( );
+        }
+    }
+
+    protected static double percentileMillis( long[] sorted, double p )
+    {
+        int i = Math.min( sorted.length - 1, ( int ) ( p * sorted.length ) );
+        return sorted[i] * 1e-6;
+    }
+
+    protected static class TestDispatcher extends RateLimitedEventDispatcher<int[]>
+    {
+        protected final int finalEvent;
+        protected final long[] lastEventNanos;
+        protected final long[] latencyNanos;
+        protected final CountDownLatch latch;
+
+        public TestDispatcher( long idleMillis, int eventsPerDispatcher, long[] lastEventNanos, long[] latencyNanos, CountDownLatch latch )
+        {
+            super( idleMillis );
+            this.finalEvent = eventsPerDispatcher - 1;
+            this.lastEventNanos = lastEventNanos;
+            this.latencyNanos = latencyNanos;
+            this.latch = latch;
+        }
+
+        @Override
+        public void eventDispatch( int[] data )
+        {
+            int i = data[0];
+            if ( data[1] == finalEvent )
+            {
+                latencyNanos[i] = System.nanoTime( ) - lastEventNanos[i];
+                latch.countDown( );
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.timing;
+
+import java.util.Random;
+
+import com.metsci.glimpse.util.geo.LatLonGeo;
+import com.metsci.glimpse.util.geo.projection.GeoProjection;
+import com.metsci.glimpse.util.geo.projection.GeoProjections;
+import com.metsci.glimpse.util.geo.projection.KinematicVector2d;
+import com.metsci.glimpse.util.geo.projection.MercatorProjection;
+import com.metsci.glimpse.util.geo.projection.PolynomialTangentPlane;
+import com.metsci.glimpse.util.geo.projection.TangentPlane;
+import com.metsci.glimpse.util.vector.Vector2d;
+
+/**
+ * Projects a large array of random points near a reference point with each of the bulk
+ * projections, and compares the time taken against the per-point {@link GeoProjection} methods.
+ * Also reports the largest difference between the bulk and per-point results, and exercises
+ * the per-point fallback in {@link GeoProjections} with a projection that is not bulk-capable.
+ */
+public class GeoProjectionTimingTest
+{
+
+    public static void main( String[] args ) throws Exception
+    {
+        int n = args.length > 0 ? Integer.parseInt( args[0] ) : 2000000;
+        int reps = args.length > 1 ? Integer.parseInt( args[1] ) : 5;
+
+        Random r = new Random( 0 );
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for ( int i = 0; i < n; i++ )
+        {
+            lat[i] = 30 + 10 * r.nextDouble( );
+            lon[i] = -75 + 10 * r.nextDouble( );
+        }
+
+        LatLonGeo ref = LatLonGeo.fromDeg( 35, -70 );
+        time( "TangentPlane", new TangentPlane( ref ), lat, lon, reps );
+        time( "PolynomialTangentPlane", new PolynomialTangentPlane( ref ), lat, lon, reps );
+        time( "MercatorProjection", new MercatorProjection( -70 ), lat, lon, reps );
+        time( "non-bulk fallback", new PerPointOnly( new TangentPlane( ref ) ), lat, lon, reps );
+    }
+
+    protected static void time( String name, GeoProjection projection, double[] lat, double[] lon, int reps )
+    {
+        int n = lat.length;
+        float[] xy = new float[2 * n];
+        float[] xyBulk = new float[2 * n];
+        double[] latBulk = new double[n];
+        double[] lonBulk = new double[n];
+
+        long perPointNanos = Long.MAX_VALUE;
+        long bulkNanos = Long.MAX_VALUE;
+        long parallelNanos = Long.MAX_VALUE;
+        long unprojectPerPointNanos = Long.MAX_VALUE;
+        long unprojectBulkNanos = Long.MAX_VALUE;
+        for ( int rep = 0; rep < reps; rep++ )
+        {
+            long t0 = System.nanoTime( );
+            for ( int i = 0; i < n; i++ )
+            {
+                Vector2d v = projection.project( LatLonGeo.fromDeg( lat[i], lon[i] ) );
+                xy[2 * i] = ( float ) v.getX( );
+                xy[2 * i + 1] = ( float ) v.getY( );
+            }
+            long t1 = System.nanoTime( );
+            GeoProjections.project( projection, lat, lon, xyBulk, 0, n );
+            long t2 = System.nanoTime( );
+            GeoProjections.projectParallel( projection, lat, lon, xyBulk, 0, n );
+            long t3 = System.nanoTime( );
+            for ( int i = 0; i < n; i++ )
+            {
+                LatLonGeo latLon = projection.unproject( xy[2 * i], xy[2 * i + 1] );
+                latBulk[i] = latLon.getLatDeg( );
+                lonBulk[i] = latLon.getLonDeg( );
+            }
+            long t4 = System.nanoTime( );
+            GeoProjections.unproject( projection, xyBulk, 0, n, latBulk, lonBulk );
+            long t5 = System.nanoTime( );
+
+            perPointNanos = Math.min( perPointNanos, t1 - t0 );
+            bulkNanos = Math.min( bulkNanos, t2 - t1 );
+            parallelNanos = Math.min( parallelNanos, t3 - t2 );
+            unprojectPerPointNanos = Math.min( unprojectPerPointNanos, t4 - t3 );
+            unprojectBulkNanos = Math.min( unprojectBulkNanos, t5 - t4 );
+        }
+
+        double maxProjectDiff = 0;
+        for ( int i = 0; i < 2 * n; i++ )
+        {
+            maxProjectDiff = Math.max( maxProjectDiff, Math.abs( xy[i] - xyBulk[i] ) / Math.max( 1, Math.abs( xy[i] ) ) );
+        }
+
+        double maxUnprojectDiffDeg = 0;
+        for ( int i = 0; i < n; i++ )
+        {
+            maxUnprojectDiffDeg = Math.max( maxUnprojectDiffDeg, Math.abs( latBulk[i] - lat[i] ) );
+            maxUnprojectDiffDeg = Math.max( maxUnprojectDiffDeg, Math.abs( lonBulk[i] - lon[i] ) );
+        }
+
+        System.out.printf( "%s (%d points)%n", name, n );
+        System.out.printf( "  project   per-point: %6.1f ns/pt, bulk: %6.1f ns/pt, bulk parallel: %6.1f ns/pt%n", perPointNanos / ( double ) n, bulkNanos / ( double ) n, parallelNanos / ( double ) n );
+        System.out.printf( "  unproject per-point: %6.1f ns/pt, bulk: %6.1f ns/pt%n", unprojectPerPointNanos / ( double ) n, unprojectBulkNanos / ( double ) n );
+        System.out.printf( "  max relative project diff: %.3g, max round-trip diff: %.3g deg%n", maxProjectDiff, maxUnprojectDiffDeg );
+    }
+
+    /**
+     * Hides the bulk methods of the wrapped projection, to exercise the per-point fallback.
+     */
+    protected static class PerPointOnly implements GeoProjection
+    {
+        protected final GeoProjection delegate;
+
+        public PerPointOnly( GeoProjection delegate )
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Vector2d project( LatLonGeo latLon )
+        {
+            return this.delegate.project( latLon );
+        }
+
+        @Override
+        public LatLonGeo unproject( double x, double y )
+        {
+            return this.delegate.unproject( x, y );
+        }
+
+        @Override
+        public Vector2d reprojectFrom( double x, double y, GeoProjection fromProjection )
+        {
+            return this.delegate.reprojectFrom( x, y, fromProjection );
+        }
+
+        @Override
+        public KinematicVector2d reprojectPosVelFrom( double x, double y, double vx, double vy, GeoProjection fromProjection )
+        {
+            return this.delegate.reprojectPosVelFrom( x, y, vx, vy, fromProjection );
+        }
+    }
+}
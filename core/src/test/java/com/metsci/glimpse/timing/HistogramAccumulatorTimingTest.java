@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.timing;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.metsci.glimpse.painter.plot.HistogramAccumulator;
+
+import it.unimi.dsi.fastutil.floats.Float2IntMap;
+import it.unimi.dsi.fastutil.floats.Float2IntOpenHashMap;
+
+/**
+ * Compares serial hash-map binning (the way HistogramPainter used to bin) against
+ * {@link HistogramAccumulator}, then times sliding-window updates using append and remove.
+ */
+public class HistogramAccumulatorTimingTest
+{
+
+    public static void main( String[] args ) throws Exception
+    {
+        int n = args.length > 0 ? Integer.parseInt( args[0] ) : 50000000;
+        float binSize = 0.05f;
+        float binStart = -10f;
+
+        Random r = new Random( 0 );
+        float[] data = new float[n];
+        for ( int i = 0; i < n; i++ )
+        {
+            data[i] = ( float ) r.nextGaussian( );
+        }
+
+        for ( int pass = 0; pass < 3; pass++ )
+        {
+            long t0 = System.nanoTime( );
+            Float2IntMap map = new Float2IntOpenHashMap( );
+            for ( int i = 0; i < n; i++ )
+            {
+                float bin = ( float ) ( Math.floor( ( ( double ) data[i] - binStart ) / ( double ) binSize ) * binSize + binStart );
+                map.put( bin, map.get( bin ) + 1 );
+            }
+            long t1 = System.nanoTime( );
+
+            HistogramAccumulator accum = new HistogramAccumulator( binSize, binStart );
+            accum.append( data );
+            long t2 = System.nanoTime( );
+
+            boolean same = map.equals( accum.toMap( ) );
+            System.out.printf( "values: %d, serial map: %.1f ms, accumulator: %.1f ms, bins: %d, same counts: %s%n", n, ( t1 - t0 ) * 1e-6, ( t2 - t1 ) * 1e-6, accum.getNumNonEmptyBins( ), same );
+        }
+
+        // slide a window across the data, one block at a time
+        int window = n / 2;
+        int block = 100000;
+        HistogramAccumulator accum = new HistogramAccumulator( binSize, binStart );
+        accum.append( data, 0, window );
+        long t0 = System.nanoTime( );
+        int steps = 0;
+        for ( int start = 0; start + window + block <= n; start += block )
+        {
+            accum.remove( data, start, start + block );
+            accum.append( data, start + window, start + window + block );
+            steps++;
+        }
+        long t1 = System.nanoTime( );
+
+        int end = window + steps * block;
+        HistogramAccumulator check = new HistogramAccumulator( binSize, binStart );
+        check.append( Arrays.copyOfRange( data, end - window, end ) );
+        System.out.printf( "sliding window of %d, %d-value steps: %.2f ms per step, matches rebuild: %s%n", window, block, ( t1 - t0 ) * 1e-6 / steps, check.toMap( ).equals( accum.toMap( ) ) );
+    }
+
+}
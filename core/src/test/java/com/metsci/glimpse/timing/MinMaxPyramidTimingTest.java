@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.timing;
+
+import java.util.Random;
+
+import com.metsci.glimpse.painter.plot.MinMaxPyramid;
+import com.metsci.glimpse.util.primitives.FloatsArray;
+
+/**
+ * Builds a {@link MinMaxPyramid} over a large random-walk series, appends to its tail, and
+ * reports build time, append time, and the number of vertices emitted for a plot of a given
+ * width. Also checks the decimated min/max of random windows against a brute-force scan.
+ */
+public class MinMaxPyramidTimingTest
+{
+
+    public static void main( String[] args ) throws Exception
+    {
+        int n = args.length > 0 ? Integer.parseInt( args[0] ) : 20000000;
+        int pixels = args.length > 1 ? Integer.parseInt( args[1] ) : 2000;
+
+        Random r = new Random( 0 );
+        float[] x = new float[n];
+        float[] y = new float[n];
+        float v = 0;
+        for ( int i = 0; i < n; i++ )
+        {
+            v += r.nextGaussian( );
+            x[i] = i;
+            y[i] = v;
+        }
+
+        long t0 = System.nanoTime( );
+        MinMaxPyramid pyramid = new MinMaxPyramid( x, y );
+        long t1 = System.nanoTime( );
+        System.out.printf( "samples: %d, levels: %d, build: %.1f ms%n", n, pyramid.numLevels( ), ( t1 - t0 ) * 1e-6 );
+
+        // the first append grows the arrays, so time it separately
+        float[] ax = new float[] { n };
+        float[] ay = new float[] { v };
+        t0 = System.nanoTime( );
+        pyramid.append( ax, ay );
+        t1 = System.nanoTime( );
+        System.out.printf( "first append (with growth): %.1f ms%n", ( t1 - t0 ) * 1e-6 );
+
+        int appendCount = 10000;
+        t0 = System.nanoTime( );
+        for ( int i = 1; i <= appendCount; i++ )
+        {
+            v += r.nextGaussian( );
+            ax[0] = n + i;
+            ay[0] = v;
+            pyramid.append( ax, ay );
+        }
+        t1 = System.nanoTime( );
+        System.out.printf( "append: %.2f us per sample%n", ( t1 - t0 ) * 1e-3 / appendCount );
+
+        FloatsArray xy = new FloatsArray( );
+        int size = pyramid.size( );
+        int level = pyramid.selectLevel( size / ( double ) pixels );
+        t0 = System.nanoTime( );
+        pyramid.appendVertices( level, 0, size - 1, xy );
+        t1 = System.nanoTime( );
+        System.out.printf( "full view at %d px: level %d, %d vertices, %.2f ms%n", pixels, level, xy.n / 2, ( t1 - t0 ) * 1e-6 );
+
+        int failures = 0;
+        for ( int trial = 0; trial < 200; trial++ )
+        {
+            int first = r.nextInt( size );
+            int last = Math.min( size - 1, first + r.nextInt( size / 10 + 1 ) );
+            int lev = pyramid.selectLevel( ( last - first + 1 ) / ( double ) pixels );
+            int bucketSize = lev < 0 ? 1 : pyramid.bucketSize( lev );
+            int start = first / bucketSize * bucketSize;
+            int end = Math.min( size - 1, ( last / bucketSize + 1 ) * bucketSize - 1 );
+
+            xy.n = 0;
+            pyramid.appendVertices( lev, first, last, xy );
+
+            float dMin = Float.POSITIVE_INFINITY;
+            float dMax = Float.NEGATIVE_INFINITY;
+            for ( int i = 1; i < xy.n; i += 2 )
+            {
+                dMin = Math.min( dMin, xy.a[i] );
+                dMax = Math.max( dMax, xy.a[i] );
+            }
+
+            float bMin = Float.POSITIVE_INFINITY;
+            float bMax = Float.NEGATIVE_INFINITY;
+            for ( int i = start; i <= end; i++ )
+            {
+                bMin = Math.min( bMin, pyramid.y( i ) );
+                bMax = Math.max( bMax, pyramid.y( i ) );
+            }
+
+            if ( dMin != bMin || dMax != bMax ) failures++;
+        }
+        System.out.printf( "min/max mismatches in random windows: %d%n", failures );
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.timing;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.TimeZone;
+
+import com.metsci.glimpse.axis.painter.label.time.TimeLabelCache;
+import com.metsci.glimpse.util.units.time.TimeStamp;
+import com.metsci.glimpse.util.units.time.format.TimeStampFormatStandard;
+
+/**
+ * Checks that {@link TimeStampFormatStandard#format(long, StringBuilder)} matches the BigDecimal
+ * formatting path across several zones and formats, then times both paths, and times label lookups
+ * through a {@link TimeLabelCache} for a steadily panning axis.
+ */
+public class TimeLabelTimingTest
+{
+
+    public static void main( String[] args ) throws Exception
+    {
+        String[] zones = { "UTC", "America/New_York", "Australia/Lord_Howe", "Asia/Kolkata", "Europe/London" };
+        String[] formats = { "%m:%S", "%d %3N %H:00 ", "%H:%m", "%d %3N %y", "%3N %y", "%y-%M-%dT%H:%m:%SZ", "%0S", "%1S", "%5S", "%j %2y", "%>H|%<m|%!d", "%^N %/3N" };
+
+        Random r = new Random( 0 );
+        int checked = 0;
+        int mismatches = 0;
+        for ( String zone : zones )
+        {
+            for ( String f : formats )
+            {
+                TimeStampFormatStandard format = new TimeStampFormatStandard( f, TimeZone.getTimeZone( zone ) );
+                StringBuilder out = new StringBuilder( );
+                for ( int i = 0; i < 2000; i++ )
+                {
+                    long posixMillis = ( long ) ( ( r.nextDouble( ) - 0.3 ) * 5e12 );
+                    if ( i % 2 == 0 ) posixMillis = posixMillis / 60000 * 60000 + 59999 - r.nextInt( 3 );
+
+                    out.setLength( 0 );
+                    format.format( posixMillis, out );
+                    String expected = format.format( BigDecimal.valueOf( posixMillis, 3 ) );
+
+                    checked++;
+                    if ( !expected.equals( out.toString( ) ) )
+                    {
+                        if ( mismatches++ < 10 ) System.out.printf( "mismatch: %s '%s' %d: expected '%s', got '%s'%n", zone, f, posixMillis, expected, out );
+                    }
+                }
+            }
+        }
+        System.out.printf( "checked: %d, mismatches: %d%n", checked, mismatches );
+
+        TimeStampFormatStandard format = new TimeStampFormatStandard( "%H:%m", TimeZone.getTimeZone( "America/New_York" ) );
+        int n = 1000000;
+        long start = 1700000000000L;
+        StringBuilder out = new StringBuilder( 64 );
+        for ( int pass = 0; pass < 3; pass++ )
+        {
+            long t0 = System.nanoTime( );
+            for ( int i = 0; i < n; i++ )
+            {
+                TimeStamp.fromPosixMillis( start + i * 60000L ).toString( format );
+            }
+            long t1 = System.nanoTime( );
+            for ( int i = 0; i < n; i++ )
+            {
+                out.setLength( 0 );
+                format.format( start + i * 60000L, out );
+            }
+            long t2 = System.nanoTime( );
+            System.out.printf( "TimeStamp.toString: %.0f ns/label, format(long): %.0f ns/label%n", ( t1 - t0 ) / ( double ) n, ( t2 - t1 ) / ( double ) n );
+        }
+
+        // 40 timelines with 20 ticks each, panning by one tick every 30 frames
+        TimeLabelCache cache = new TimeLabelCache( );
+        int frames = 3000;
+        long t0 = System.nanoTime( );
+        for ( int frame = 0; frame < frames; frame++ )
+        {
+            long firstTick = start + ( frame / 30 ) * 60000L;
+            for ( int plot = 0; plot < 40; plot++ )
+            {
+                for ( int tick = 0; tick < 20; tick++ )
+                {
+                    cache.getLabel( TimeStamp.fromPosixMillis( firstTick + tick * 60000L ), format );
+                }
+            }
+        }
+        long t1 = System.nanoTime( );
+        System.out.printf( "cached panning: %.0f ns/label%n", ( t1 - t0 ) / ( frames * 40.0 * 20.0 ) );
+    }
+
+}
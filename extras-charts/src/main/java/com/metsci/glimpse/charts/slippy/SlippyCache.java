@@ -27,7 +27,9 @@
 package com.metsci.glimpse.charts.slippy;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -42,7 +44,10 @@ import javax.imageio.ImageIO;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.io.ByteStreams;
 import com.metsci.glimpse.support.projection.LatLonProjection;
 import com.metsci.glimpse.support.projection.Projection;
 import com.metsci.glimpse.support.texture.RGBTextureProjected2D;
@@ -50,9 +55,12 @@ import com.metsci.glimpse.util.geo.LatLonGeo;
 import com.metsci.glimpse.util.geo.projection.GeoProjection;
 
 /**
- * An in-memory cache that uses soft references.
- * If a path is given the images are checked for locally before fetching them from the web. Multiple URLs may be given,
- * but only one thread will pull from each URL at a given time.
+ * An in-memory cache of tile textures, bounded by the number of bytes of host (not GPU) memory
+ * used by their pixel data and evicting the least recently used tiles first.
+ * If a path is given the images are checked for locally before fetching them from the web. Local
+ * images are kept in a single packed {@link SlippyTileStore} file in that directory (tiles in the
+ * older one-file-per-tile zoom/x/y.png layout are still read, and are copied into the store).
+ * Multiple URLs may be given, but only one thread will pull from each URL at a given time.
  * @author oren
  *
  */
@@ -66,6 +74,21 @@ public class SlippyCache
      */
     private static final String KEY_PATTERN = "%d/%d/%d.png";
 
+    /*
+     * Name of the packed tile store file in the cache directory.
+     */
+    private static final String STORE_FILE = "tiles.dat";
+
+    /*
+     * Host memory budget for cached tile pixels, if none is given.
+     */
+    public static final long DEFAULT_HOST_BUDGET_BYTES = 128L * 1024 * 1024;
+
+    /*
+     * Textures are RGB, one byte per channel.
+     */
+    private static final int BYTES_PER_PIXEL = 3;
+
     /*
      * Queue of URL prefixes for the tile server. You should only fetch from a single server at a time.
      */
@@ -76,6 +99,11 @@ public class SlippyCache
      */
     private final Path cacheDir;
 
+    /*
+     * Packed on-disk tile store in cacheDir, or null if disk caching is disabled.
+     */
+    private final SlippyTileStore store;
+
     /*
      * The in memory cache of textures.
      */
@@ -107,6 +135,14 @@ public class SlippyCache
     }
 
     public SlippyCache( GeoProjection geoProj, List<String> urlPrefixes, Path cacheDir )
+    {
+        this( geoProj, urlPrefixes, cacheDir, DEFAULT_HOST_BUDGET_BYTES );
+    }
+
+    /**
+     * @param hostBudgetBytes the maximum number of bytes of tile pixel data to keep in memory
+     */
+    public SlippyCache( GeoProjection geoProj, List<String> urlPrefixes, Path cacheDir, long hostBudgetBytes )
     {
         this.geoProj = geoProj;
         this.prefixQueue = new LinkedBlockingDeque<>( urlPrefixes.size( ) );
@@ -166,6 +202,8 @@ public class SlippyCache
             this.cacheDir = null;
         }
 
+        this.store = openStore( this.cacheDir );
+
         for ( int zoom = 0; zoom < slippyProj.length; zoom++ )
         {
             this.slippyProj[zoom] = new SlippyProjection( zoom );
@@ -173,10 +211,45 @@ public class SlippyCache
 
         this.cache = CacheBuilder.newBuilder( )
                 .concurrencyLevel( urlPrefixes.size( ) )
-                .softValues( )
+                .maximumWeight( hostBudgetBytes )
+                .weigher( new Weigher<String, RGBTextureProjected2D>( )
+                {
+                    @Override
+                    public int weigh( String key, RGBTextureProjected2D tex )
+                    {
+                        return getHostSizeBytes( tex );
+                    }
+                } )
+                .recordStats( )
                 .build( new SlippyLoader( ) );
     }
 
+    private static SlippyTileStore openStore( Path cacheDir )
+    {
+        if ( cacheDir == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            return new SlippyTileStore( cacheDir.resolve( STORE_FILE ) );
+        }
+        catch ( IOException e )
+        {
+            logger.log( Level.WARNING, "Failed to open tile store, disk caching disabled: " + cacheDir.toAbsolutePath( ), e );
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of bytes of host memory used by the pixel data of a tile texture
+     */
+    public static int getHostSizeBytes( RGBTextureProjected2D tex )
+    {
+        return tex.getDimensionSize( 0 ) * tex.getDimensionSize( 1 ) * BYTES_PER_PIXEL;
+    }
+
     public RGBTextureProjected2D getTexture( int zoom, int x, int y )
     {
         String key = String.format( KEY_PATTERN, zoom, x, y );
@@ -207,6 +280,22 @@ public class SlippyCache
         return tex;
     }
 
+    /**
+     * Hit, miss, load, and eviction counts for the in-memory cache.
+     */
+    public CacheStats getStats( )
+    {
+        return cache.stats( );
+    }
+
+    /**
+     * @return the packed on-disk tile store, or null if disk caching is disabled
+     */
+    public SlippyTileStore getStore( )
+    {
+        return store;
+    }
+
     private class SlippyLoader extends CacheLoader<String, RGBTextureProjected2D>
     {
         @Override
@@ -230,9 +319,11 @@ public class SlippyCache
             {
                 prefix = prefixQueue.take( );
                 String urlStr = prefix + key;
+                byte[] bytes = null;
                 try
                 {
-                    img = ImageIO.read( new URL( urlStr ) );
+                    bytes = readBytes( new URL( urlStr ) );
+                    img = decode( bytes );
                 }
                 catch ( IOException e )
                 {
@@ -241,7 +332,10 @@ public class SlippyCache
                 //If we got an image, try to cache it to disk
                 try
                 {
-                    saveToDisk( key, img );
+                    if ( img != null )
+                    {
+                        saveToDisk( key, bytes );
+                    }
                 }
                 catch ( IOException e )
                 {
@@ -269,37 +363,57 @@ public class SlippyCache
             return img;
         }
 
-        private void saveToDisk( String key, BufferedImage img ) throws IOException
+        private byte[] readBytes( URL url ) throws IOException
         {
-            if ( img != null && cacheDir != null )
+            try ( InputStream in = url.openStream( ) )
             {
-                Path imgPath = cacheDir.resolve( key );
-                if ( !Files.exists( imgPath.getParent( ) ) )
-                {
-                    try
-                    {
-                        Files.createDirectories( imgPath.getParent( ) );
-                    }
-                    catch ( Exception e )
-                    {
-                        //the img write should fail anyway
-                    }
-                }
-                ImageIO.write( img, "PNG", imgPath.toFile( ) );
+                return ByteStreams.toByteArray( in );
+            }
+        }
+
+        private BufferedImage decode( byte[] bytes ) throws IOException
+        {
+            return bytes == null ? null : ImageIO.read( new ByteArrayInputStream( bytes ) );
+        }
+
+        private void saveToDisk( String key, byte[] bytes ) throws IOException
+        {
+            if ( bytes != null && store != null )
+            {
+                int[] zxy = parseKey( key );
+                store.put( zxy[0], zxy[1], zxy[2], bytes );
             }
         }
 
         private BufferedImage fetchFromDisk( String key )
         {
             BufferedImage img = null;
-            if ( cacheDir != null )
+            if ( store != null )
+            {
+                int[] zxy = parseKey( key );
+                try
+                {
+                    img = decode( store.get( zxy[0], zxy[1], zxy[2] ) );
+                }
+                catch ( Exception e )
+                {
+                    logger.log( Level.WARNING, "Exception while attempting to read the tile from the tile store", e );
+                }
+            }
+            if ( img == null && cacheDir != null )
             {
+                //fall back to the one-file-per-tile layout used by earlier versions
                 Path imgPath = cacheDir.resolve( key );
                 if ( Files.exists( imgPath ) )
                 {
                     try
                     {
-                        img = ImageIO.read( imgPath.toFile( ) );
+                        byte[] bytes = Files.readAllBytes( imgPath );
+                        img = decode( bytes );
+                        if ( img != null )
+                        {
+                            saveToDisk( key, bytes );
+                        }
                     }
                     catch ( Exception e )
                     {
@@ -311,6 +425,15 @@ public class SlippyCache
         }
     }
 
+    private static int[] parseKey( String key )
+    {
+        String[] parts = key.substring( 0, key.length( ) - 4 ).split( "/" );
+        int zoom = Integer.parseInt( parts[0] );
+        int x = Integer.parseInt( parts[1] );
+        int y = Integer.parseInt( parts[2] );
+        return new int[] { zoom, x, y };
+    }
+
     private RGBTextureProjected2D makeTex( String key, BufferedImage img )
     {
         if ( img == null )
@@ -318,11 +441,8 @@ public class SlippyCache
             return null;
         }
         RGBTextureProjected2D tex = new RGBTextureProjected2D( img );
-        String[] parts = key.substring( 0, key.length( ) - 4 ).split( "/" );
-        int zoom = Integer.parseInt( parts[0] );
-        int x = Integer.parseInt( parts[1] );
-        int y = Integer.parseInt( parts[2] );
-        tex.setProjection( getProjection( zoom, x, y ) );
+        int[] zxy = parseKey( key );
+        tex.setProjection( getProjection( zxy[0], zxy[1], zxy[2] ) );
         return tex;
     }
 
@@ -28,8 +28,12 @@ package com.metsci.glimpse.charts.slippy;
 
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -54,6 +58,12 @@ import com.metsci.glimpse.util.vector.Vector2d;
 
 /**
  * Paints the slippy tiles. New tiles are fetched dynamically as the user zooms/pans and stale textures are removed.
+ * <p>
+ * Tiles which are likely to be needed soon are prefetched into the {@link SlippyCache}: tiles in the direction
+ * the view is panning (estimated from recent axis motion) and tiles at the next zoom level (in the direction
+ * the view is zooming, or zoomed in when not zooming). Textures which have scrolled out of view stay on the GPU,
+ * so panning back to them is immediate, until the GPU budget is exceeded; then the least recently painted are
+ * deleted.
  * @author oren
  */
 public class SlippyMapTilePainter extends ShadedTexturePainter
@@ -61,11 +71,34 @@ public class SlippyMapTilePainter extends ShadedTexturePainter
     private static final Logger logger = Logger.getLogger( SlippyCache.class.getName( ) );
     private static final double LOG2 = Math.log( 2 );
 
+    /*
+     * GPU memory budget for tile textures, if none is given.
+     */
+    public static final long DEFAULT_GPU_BUDGET_BYTES = 128L * 1024 * 1024;
+
+    /*
+     * How far ahead to predict the view position when prefetching tiles in the direction of motion.
+     */
+    private static final double PREFETCH_LOOKAHEAD_SECONDS = 0.75;
+
+    /*
+     * Limit on queued prefetches, so they don't crowd out fetches of visible tiles.
+     */
+    private static final int MAX_PENDING_PREFETCHES = 16;
+
+    /*
+     * Weight of the newest sample in the smoothed view velocity, and the longest pause between
+     * view changes which still counts as continuous motion.
+     */
+    private static final double VELOCITY_SMOOTHING = 0.5;
+    private static final double MAX_MOTION_GAP_SECONDS = 0.5;
+
     private final GeoProjection geoProj;
     private final int maxZoom;
     private final SlippyProjection[] slippyProj;
     private final ExecutorService exec;
     private final SlippyCache cache;
+    private final long gpuBudgetBytes;
 
     /**
      * These are checked during the asynchronous texture fetch to see if we still need to fetch it,
@@ -80,10 +113,45 @@ public class SlippyMapTilePainter extends ShadedTexturePainter
      */
     private final ConcurrentHashMap<RGBTextureProjected2D, Integer> texZoomMap = new ConcurrentHashMap<>( );
 
+    /**
+     * Tiles (by packed key) with a fetch waiting on the executor, so the same tile isn't queued twice.
+     */
+    private final Set<Long> pendingFetches = Collections.newSetFromMap( new ConcurrentHashMap<Long, Boolean>( ) );
+    private final AtomicInteger pendingPrefetches = new AtomicInteger( );
+
+    /**
+     * Textures which have been uploaded to the GPU (with their size in bytes), least recently painted first.
+     * Only accessed on the rendering thread, while holding the painter lock.
+     */
+    private final LinkedHashMap<TextureProjected2D, Integer> gpuTextures = new LinkedHashMap<>( 16, 0.75f, true );
+    private long gpuBytes;
+
+    /**
+     * Recent motion of the view, in axis units (and log2 of the view width) per second. Only accessed on the rendering thread.
+     */
+    private double velocityX;
+    private double velocityY;
+    private double zoomVelocity;
+    private double lastCenterX;
+    private double lastCenterY;
+    private double lastLogWidth;
+    private long lastUpdateNanos;
+
     public SlippyMapTilePainter( GeoProjection geoProj, List<String> prefixes, ExecutorService exec, Path cacheDir, int maxZoom )
+    {
+        this( geoProj, prefixes, exec, cacheDir, maxZoom, SlippyCache.DEFAULT_HOST_BUDGET_BYTES, DEFAULT_GPU_BUDGET_BYTES );
+    }
+
+    /**
+     * @param hostBudgetBytes the maximum number of bytes of tile pixel data to keep in host memory
+     * @param gpuBudgetBytes the number of bytes of tile textures to keep on the GPU (more may be used if
+     *                       the visible tiles alone exceed the budget)
+     */
+    public SlippyMapTilePainter( GeoProjection geoProj, List<String> prefixes, ExecutorService exec, Path cacheDir, int maxZoom, long hostBudgetBytes, long gpuBudgetBytes )
     {
         this.geoProj = geoProj;
-        this.cache = new SlippyCache( geoProj, prefixes, cacheDir );
+        this.cache = new SlippyCache( geoProj, prefixes, cacheDir, hostBudgetBytes );
+        this.gpuBudgetBytes = gpuBudgetBytes;
         this.maxZoom = maxZoom;
         this.slippyProj = new SlippyProjection[maxZoom + 1];
         for ( int zoom = 0; zoom <= maxZoom; zoom++ )
@@ -99,6 +167,75 @@ public class SlippyMapTilePainter extends ShadedTexturePainter
     {
         updateTiles( GlimpsePainterBase.getAxis2D( context ) );
         super.doPaintTo( context );
+        retainTextures( context );
+    }
+
+    public SlippyCache getCache( )
+    {
+        return cache;
+    }
+
+    /**
+     * Keeps track of which textures are on the GPU, and deletes the least recently painted ones
+     * (which are not currently being painted) once they use more than the GPU budget.
+     */
+    protected void retainTextures( GlimpseContext context )
+    {
+        painterLock.lock( );
+        try
+        {
+            for ( TextureUnit<DrawableTexture> texUnit : drawableTextures.keySet( ) )
+            {
+                TextureProjected2D tex = ( TextureProjected2D ) texUnit.getTexture( );
+                Integer size = gpuTextures.get( tex );
+                if ( size == null )
+                {
+                    size = SlippyCache.getHostSizeBytes( ( RGBTextureProjected2D ) tex );
+                    gpuTextures.put( tex, size );
+                    gpuBytes += size;
+                }
+            }
+
+            Iterator<Map.Entry<TextureProjected2D, Integer>> itr = gpuTextures.entrySet( ).iterator( );
+            while ( gpuBytes > gpuBudgetBytes && itr.hasNext( ) )
+            {
+                Map.Entry<TextureProjected2D, Integer> entry = itr.next( );
+                TextureProjected2D tex = entry.getKey( );
+                if ( drawableTextures.containsKey( new TextureUnit<DrawableTexture>( tex ) ) )
+                {
+                    continue;
+                }
+
+                tex.dispose( context.getGLContext( ) );
+                gpuBytes -= entry.getValue( );
+                itr.remove( );
+            }
+        }
+        finally
+        {
+            painterLock.unlock( );
+        }
+    }
+
+    @Override
+    public void doDispose( GlimpseContext context )
+    {
+        painterLock.lock( );
+        try
+        {
+            for ( TextureProjected2D tex : gpuTextures.keySet( ) )
+            {
+                tex.dispose( context.getGLContext( ) );
+            }
+            gpuTextures.clear( );
+            gpuBytes = 0;
+        }
+        finally
+        {
+            painterLock.unlock( );
+        }
+
+        super.doDispose( context );
     }
 
     protected void updateTiles( Axis2D axis )
@@ -133,13 +270,11 @@ public class SlippyMapTilePainter extends ShadedTexturePainter
         final int zoom = ( int ) Math.min( Math.round( zoomApprox ), maxZoom );
         lastZoom.set( zoom );
 
-        Vector2d tileNE = slippyProj[zoom].project( ne );
-        Vector2d tileSW = slippyProj[zoom].project( sw );
-
-        final int tileYmin = ( int ) Math.floor( tileNE.getY( ) );
-        final int tileYmax = ( int ) Math.ceil( tileSW.getY( ) );
-        final int tileXmin = ( int ) Math.floor( tileSW.getX( ) );
-        final int tileXmax = ( int ) Math.ceil( tileNE.getX( ) );
+        int[] tiles = getTileRange( zoom, minx, maxx, miny, maxy );
+        final int tileXmin = tiles[0];
+        final int tileXmax = tiles[1];
+        final int tileYmin = tiles[2];
+        final int tileYmax = tiles[3];
 
         painterLock.lock( );
         try
@@ -153,7 +288,10 @@ public class SlippyMapTilePainter extends ShadedTexturePainter
                     {
                         continue;
                     }
-                    exec.submit( new FetchTexture( zoom, x, y ) );
+                    if ( pendingFetches.add( SlippyTileStore.packKey( zoom, x, y ) ) )
+                    {
+                        exec.submit( new FetchTexture( zoom, x, y, false ) );
+                    }
                 }
             }
 
@@ -175,6 +313,114 @@ public class SlippyMapTilePainter extends ShadedTexturePainter
         {
             painterLock.unlock( );
         }
+
+        updateMotion( bounds );
+        prefetchTiles( zoom, bounds );
+    }
+
+    private int[] getTileRange( int zoom, double minx, double maxx, double miny, double maxy )
+    {
+        LatLonGeo ne = geoProj.unproject( maxx, maxy );
+        LatLonGeo sw = geoProj.unproject( minx, miny );
+
+        Vector2d tileNE = slippyProj[zoom].project( ne );
+        Vector2d tileSW = slippyProj[zoom].project( sw );
+
+        int tileYmin = ( int ) Math.floor( tileNE.getY( ) );
+        int tileYmax = ( int ) Math.ceil( tileSW.getY( ) );
+        int tileXmin = ( int ) Math.floor( tileSW.getX( ) );
+        int tileXmax = ( int ) Math.ceil( tileNE.getX( ) );
+
+        return new int[] { tileXmin, tileXmax, tileYmin, tileYmax };
+    }
+
+    /**
+     * Updates the smoothed velocity of the view center and zoom level.
+     */
+    private void updateMotion( double[] bounds )
+    {
+        long now = System.nanoTime( );
+        double centerX = ( bounds[0] + bounds[1] ) / 2;
+        double centerY = ( bounds[2] + bounds[3] ) / 2;
+        double logWidth = Math.log( bounds[1] - bounds[0] ) / LOG2;
+
+        double dt = ( now - lastUpdateNanos ) * 1e-9;
+        if ( lastUpdateNanos == 0 || dt > MAX_MOTION_GAP_SECONDS )
+        {
+            // the view was at rest, so start a new estimate
+            velocityX = 0;
+            velocityY = 0;
+            zoomVelocity = 0;
+        }
+        else if ( dt > 0 )
+        {
+            velocityX += VELOCITY_SMOOTHING * ( ( centerX - lastCenterX ) / dt - velocityX );
+            velocityY += VELOCITY_SMOOTHING * ( ( centerY - lastCenterY ) / dt - velocityY );
+            zoomVelocity += VELOCITY_SMOOTHING * ( ( logWidth - lastLogWidth ) / dt - zoomVelocity );
+        }
+
+        lastCenterX = centerX;
+        lastCenterY = centerY;
+        lastLogWidth = logWidth;
+        lastUpdateNanos = now;
+    }
+
+    /**
+     * Prefetches tiles which will be visible if the view keeps moving in its current direction, and tiles
+     * at the next zoom level (zoomed out if the view is zooming out, otherwise zoomed in).
+     */
+    private void prefetchTiles( int zoom, double[] bounds )
+    {
+        double dx = velocityX * PREFETCH_LOOKAHEAD_SECONDS;
+        double dy = velocityY * PREFETCH_LOOKAHEAD_SECONDS;
+        if ( dx != 0 || dy != 0 )
+        {
+            prefetchTiles( zoom, bounds[0] + dx, bounds[1] + dx, bounds[2] + dy, bounds[3] + dy );
+        }
+
+        double centerX = ( bounds[0] + bounds[1] ) / 2;
+        double centerY = ( bounds[2] + bounds[3] ) / 2;
+        double halfWidth = ( bounds[1] - bounds[0] ) / 2;
+        double halfHeight = ( bounds[3] - bounds[2] ) / 2;
+        if ( zoomVelocity > 0 )
+        {
+            if ( zoom > 0 )
+            {
+                prefetchTiles( zoom - 1, centerX - 2 * halfWidth, centerX + 2 * halfWidth, centerY - 2 * halfHeight, centerY + 2 * halfHeight );
+            }
+        }
+        else if ( zoom < maxZoom )
+        {
+            prefetchTiles( zoom + 1, centerX - halfWidth / 2, centerX + halfWidth / 2, centerY - halfHeight / 2, centerY + halfHeight / 2 );
+        }
+    }
+
+    private void prefetchTiles( int zoom, double minx, double maxx, double miny, double maxy )
+    {
+        int[] tiles = getTileRange( zoom, minx, maxx, miny, maxy );
+        int tileCount = 1 << zoom;
+
+        for ( int y = Math.max( tiles[2], 0 ); y < Math.min( tiles[3], tileCount ); y++ )
+        {
+            for ( int x = Math.max( tiles[0], 0 ); x < Math.min( tiles[1], tileCount ); x++ )
+            {
+                if ( pendingPrefetches.get( ) >= MAX_PENDING_PREFETCHES )
+                {
+                    return;
+                }
+
+                if ( cache.getTextureIfPresent( zoom, x, y ) != null )
+                {
+                    continue;
+                }
+
+                if ( pendingFetches.add( SlippyTileStore.packKey( zoom, x, y ) ) )
+                {
+                    pendingPrefetches.incrementAndGet( );
+                    exec.submit( new FetchTexture( zoom, x, y, true ) );
+                }
+            }
+        }
     }
 
     private double[] getBounds( final Projection proj )
@@ -225,11 +471,18 @@ public class SlippyMapTilePainter extends ShadedTexturePainter
         private final int x;
         private final int y;
 
-        private FetchTexture( int zoom, int x, int y )
+        /**
+         * Prefetches load the tile into the cache even if it is not visible yet, but are
+         * still displayed if the tile has become visible by the time it is loaded.
+         */
+        private final boolean prefetch;
+
+        private FetchTexture( int zoom, int x, int y, boolean prefetch )
         {
             this.zoom = zoom;
             this.x = x;
             this.y = y;
+            this.prefetch = prefetch;
         }
 
         @Override
@@ -241,7 +494,7 @@ public class SlippyMapTilePainter extends ShadedTexturePainter
                 RGBTextureProjected2D tex = null;
                 int zoomCheck = lastZoom.get( );
                 double[] boundsCheck = lastBounds.get( );
-                if ( zoom == zoomCheck && intersect( boundsCheck, bounds ) )
+                if ( prefetch || ( zoom == zoomCheck && intersect( boundsCheck, bounds ) ) )
                 {
                     tex = cache.getTexture( zoom, x, y );
                 }
@@ -271,7 +524,11 @@ public class SlippyMapTilePainter extends ShadedTexturePainter
             }
             finally
             {
-                //nothing?
+                pendingFetches.remove( SlippyTileStore.packKey( zoom, x, y ) );
+                if ( prefetch )
+                {
+                    pendingPrefetches.decrementAndGet( );
+                }
             }
         }
     }
@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.charts.slippy;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+/**
+ * An on-disk store of encoded (usually PNG) slippy tile images, packed into a single append-only file
+ * rather than one file per zoom/x/y. Tiles are read with positional reads of the file, so repeated reads
+ * of recently used tiles come from the OS page cache, and the file is not limited to what can be mapped.
+ * <p>
+ * Each record is a 16 byte header (magic, packed zoom/x/y key, and payload length) followed by the
+ * encoded image. The index from key to record is rebuilt by scanning the headers when the store is
+ * opened. A partially written record at the end of the file (for example, from a crash during a write)
+ * is truncated away.
+ * <p>
+ * Putting a tile which is already stored replaces it, leaving the old record as dead space. The file is
+ * kept under a size budget: when it grows past the budget, the least recently used tiles are dropped and
+ * the live records are rewritten (least recently used first) into a new file, which then replaces the old
+ * one. The file is also rewritten when it is opened or grows with more than half of it dead.
+ * <p>
+ * Except when the store is opened, the rewrite runs on a background thread. A put which pushes the file
+ * over the budget only schedules it, and gets and puts continue while the live records are copied. The
+ * store's lock is held only while copying the records appended during the rewrite and swapping the files.
+ */
+public class SlippyTileStore implements Closeable
+{
+    private static final Logger logger = Logger.getLogger( SlippyTileStore.class.getName( ) );
+
+    private static final int MAGIC = 0x534C5459; // "SLTY"
+    private static final int HEADER_SIZE = 16;
+
+    // max payload length which fits in the low bits of an index entry
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = ( 1L << LENGTH_BITS ) - 1;
+
+    /*
+     * Size budget for the store file, if none is given.
+     */
+    public static final long DEFAULT_MAX_SIZE_BYTES = 1024L * 1024 * 1024;
+
+    /*
+     * When the budget is exceeded, least recently used tiles are dropped until the live records fit in this
+     * fraction of the budget, so that the file is not rewritten again after only a few more puts.
+     */
+    private static final double COMPACTION_TARGET_FRACTION = 0.75;
+
+    private static final ExecutorService COMPACTION_EXEC = Executors.newSingleThreadExecutor( new ThreadFactoryBuilder( ).setDaemon( true ).setNameFormat( "slippy-tile-store-compactor-%d" ).build( ) );
+
+    // size of the buffer used to copy the records appended while a compaction was copying the rest
+    private static final int TAIL_COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private FileChannel channel;
+
+    /*
+     * Map from packed tile key to record offset (high bits) and payload length (low bits), in order
+     * from least to most recently used.
+     */
+    private final Long2LongLinkedOpenHashMap index;
+
+    private long maxSizeBytes;
+
+    private long fileSize;
+
+    /*
+     * Bytes of the file used by records which have been replaced or dropped.
+     */
+    private long deadSize;
+
+    /*
+     * Held for the whole of a compaction, so that only one runs at a time and close can wait for a running one.
+     * Always acquired before the store's monitor.
+     */
+    private final Object compactionLock = new Object( );
+
+    /*
+     * True from when a background compaction is requested until it starts.
+     */
+    private boolean compactionScheduled;
+
+    private boolean closed;
+
+    public SlippyTileStore( Path file ) throws IOException
+    {
+        this( file, DEFAULT_MAX_SIZE_BYTES );
+    }
+
+    public SlippyTileStore( Path file, long maxSizeBytes ) throws IOException
+    {
+        if ( maxSizeBytes <= 0 )
+        {
+            throw new IllegalArgumentException( "max size must be positive: " + maxSizeBytes );
+        }
+
+        this.file = file;
+        this.channel = openChannel( file );
+        this.index = new Long2LongLinkedOpenHashMap( );
+        this.index.defaultReturnValue( -1 );
+
+        this.maxSizeBytes = maxSizeBytes;
+        this.fileSize = this.channel.size( );
+        this.deadSize = 0;
+
+        scan( );
+
+        if ( fileSize > maxSizeBytes || deadSize > fileSize / 2 )
+        {
+            compact( );
+        }
+    }
+
+    /**
+     * Packs a tile zoom level and x/y tile indices into a single long key.
+     */
+    public static long packKey( int zoom, int x, int y )
+    {
+        return ( ( long ) zoom << 58 ) | ( ( x & 0x1FFFFFFFL ) << 29 ) | ( y & 0x1FFFFFFFL );
+    }
+
+    public Path getFile( )
+    {
+        return file;
+    }
+
+    public synchronized int size( )
+    {
+        return index.size( );
+    }
+
+    public synchronized long sizeBytes( )
+    {
+        return fileSize;
+    }
+
+    public synchronized long getMaxSizeBytes( )
+    {
+        return maxSizeBytes;
+    }
+
+    /**
+     * Sets the size budget for the store file, scheduling a rewrite of the file if it is currently over the new budget.
+     */
+    public synchronized void setMaxSizeBytes( long maxSizeBytes ) throws IOException
+    {
+        if ( maxSizeBytes <= 0 )
+        {
+            throw new IllegalArgumentException( "max size must be positive: " + maxSizeBytes );
+        }
+
+        this.maxSizeBytes = maxSizeBytes;
+
+        if ( fileSize > maxSizeBytes )
+        {
+            scheduleCompaction( );
+        }
+    }
+
+    public synchronized boolean contains( int zoom, int x, int y )
+    {
+        return index.containsKey( packKey( zoom, x, y ) );
+    }
+
+    /**
+     * @return the encoded image bytes for the tile, or null if the tile is not in the store
+     */
+    public synchronized byte[] get( int zoom, int x, int y ) throws IOException
+    {
+        long entry = index.getAndMoveToLast( packKey( zoom, x, y ) );
+        if ( entry < 0 )
+        {
+            return null;
+        }
+
+        long offset = entry >>> LENGTH_BITS;
+        int length = ( int ) ( entry & LENGTH_MASK );
+
+        ByteBuffer buffer = ByteBuffer.allocate( length );
+        readFully( channel, buffer, offset + HEADER_SIZE );
+        return buffer.array( );
+    }
+
+    /**
+     * Appends the encoded image bytes for a tile to the store, replacing the tile if it is already stored.
+     */
+    public synchronized void put( int zoom, int x, int y, byte[] bytes ) throws IOException
+    {
+        if ( bytes.length > LENGTH_MASK )
+        {
+            throw new IllegalArgumentException( "tile is too large to store: " + bytes.length + " bytes" );
+        }
+
+        long key = packKey( zoom, x, y );
+
+        ByteBuffer record = ByteBuffer.allocate( HEADER_SIZE + bytes.length );
+        record.putInt( MAGIC );
+        record.putLong( key );
+        record.putInt( bytes.length );
+        record.put( bytes );
+        record.flip( );
+
+        long offset = fileSize;
+        writeFully( channel, record, offset );
+
+        fileSize = offset + record.limit( );
+
+        long oldEntry = index.putAndMoveToLast( key, ( offset << LENGTH_BITS ) | bytes.length );
+        if ( oldEntry >= 0 )
+        {
+            deadSize += HEADER_SIZE + ( oldEntry & LENGTH_MASK );
+        }
+
+        if ( fileSize > maxSizeBytes || ( deadSize > fileSize / 2 && deadSize > maxSizeBytes / 4 ) )
+        {
+            scheduleCompaction( );
+        }
+    }
+
+    /**
+     * Closes the store file, first waiting for a compaction which is already running to finish.
+     */
+    @Override
+    public void close( ) throws IOException
+    {
+        synchronized ( compactionLock )
+        {
+            synchronized ( this )
+            {
+                closed = true;
+                channel.close( );
+            }
+        }
+    }
+
+    /*
+     * Must be called while holding the store's monitor.
+     */
+    private void scheduleCompaction( )
+    {
+        if ( compactionScheduled || closed )
+        {
+            return;
+        }
+
+        compactionScheduled = true;
+        COMPACTION_EXEC.execute( new Runnable( )
+        {
+            @Override
+            public void run( )
+            {
+                try
+                {
+                    compact( );
+                }
+                catch ( IOException e )
+                {
+                    logger.log( Level.WARNING, "Failed to compact tile store: " + file, e );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Drops least recently used tiles until the live records fit comfortably within the size budget, then
+     * rewrites the live records into a new file which atomically replaces the old one. Nothing ever writes
+     * into the old file in place, so a crash during compaction leaves either the old or the new file.
+     * <p>
+     * The records which are live when compaction starts are copied without holding the store's monitor. The
+     * old file is append-only, so those records stay where they are while other threads get and put tiles.
+     * Records appended in the meantime are then copied while holding the monitor, and the index is rebuilt
+     * in its current recency order.
+     */
+    protected void compact( ) throws IOException
+    {
+        synchronized ( compactionLock )
+        {
+            long[] keys;
+            long[] entries;
+            long snapshotSize;
+            int dropCount = 0;
+
+            synchronized ( this )
+            {
+                compactionScheduled = false;
+                if ( closed )
+                {
+                    return;
+                }
+
+                long targetSize = ( long ) ( maxSizeBytes * COMPACTION_TARGET_FRACTION );
+                while ( fileSize - deadSize > targetSize && !index.isEmpty( ) )
+                {
+                    long entry = index.remove( index.firstLongKey( ) );
+                    deadSize += HEADER_SIZE + ( entry & LENGTH_MASK );
+                    dropCount++;
+                }
+
+                keys = new long[index.size( )];
+                entries = new long[index.size( )];
+                int i = 0;
+                LongIterator keyIter = index.keySet( ).iterator( );
+                while ( keyIter.hasNext( ) )
+                {
+                    keys[i] = keyIter.nextLong( );
+                    entries[i] = index.get( keys[i] );
+                    i++;
+                }
+
+                snapshotSize = fileSize;
+            }
+
+            Path tempFile = file.resolveSibling( file.getFileName( ) + ".tmp" );
+            FileChannel out = FileChannel.open( tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE );
+            try
+            {
+                Long2LongOpenHashMap copiedEntries = new Long2LongOpenHashMap( keys.length );
+                long newSize = 0;
+
+                ByteBuffer buffer = ByteBuffer.allocate( HEADER_SIZE );
+                for ( int i = 0; i < keys.length; i++ )
+                {
+                    long offset = entries[i] >>> LENGTH_BITS;
+                    int length = ( int ) ( entries[i] & LENGTH_MASK );
+
+                    int recordSize = HEADER_SIZE + length;
+                    if ( buffer.capacity( ) < recordSize )
+                    {
+                        buffer = ByteBuffer.allocate( Math.max( recordSize, buffer.capacity( ) * 2 ) );
+                    }
+
+                    buffer.clear( ).limit( recordSize );
+                    readFully( channel, buffer, offset );
+                    buffer.flip( );
+                    writeFully( out, buffer, newSize );
+
+                    copiedEntries.put( keys[i], ( newSize << LENGTH_BITS ) | length );
+                    newSize += recordSize;
+                }
+
+                synchronized ( this )
+                {
+                    // copy everything appended since the snapshot, shifting those records to follow the copied ones
+                    long tailShift = newSize - snapshotSize;
+                    long tailSize = fileSize - snapshotSize;
+                    ByteBuffer tailBuffer = ByteBuffer.allocate( ( int ) Math.min( TAIL_COPY_BUFFER_SIZE, Math.max( tailSize, 1 ) ) );
+                    long copied = 0;
+                    while ( copied < tailSize )
+                    {
+                        int chunkSize = ( int ) Math.min( tailBuffer.capacity( ), tailSize - copied );
+                        tailBuffer.clear( ).limit( chunkSize );
+                        readFully( channel, tailBuffer, snapshotSize + copied );
+                        tailBuffer.flip( );
+                        writeFully( out, tailBuffer, newSize + copied );
+                        copied += chunkSize;
+                    }
+                    newSize += tailSize;
+
+                    out.force( false );
+                    out.close( );
+
+                    // an entry below the snapshot size is the same record which was copied above
+                    Long2LongLinkedOpenHashMap newIndex = new Long2LongLinkedOpenHashMap( index.size( ) );
+                    long liveSize = 0;
+                    LongIterator keyIter = index.keySet( ).iterator( );
+                    while ( keyIter.hasNext( ) )
+                    {
+                        long key = keyIter.nextLong( );
+                        long entry = index.get( key );
+                        long offset = entry >>> LENGTH_BITS;
+                        long length = entry & LENGTH_MASK;
+
+                        long newEntry = offset >= snapshotSize ? ( ( offset + tailShift ) << LENGTH_BITS ) | length : copiedEntries.get( key );
+                        newIndex.put( key, newEntry );
+                        liveSize += HEADER_SIZE + length;
+                    }
+
+                    // the channel has to be closed before the file can be replaced on some platforms
+                    channel.close( );
+                    try
+                    {
+                        Files.move( tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING );
+                    }
+                    finally
+                    {
+                        // if the move failed, this reopens the old file, which the index still describes
+                        channel = openChannel( file );
+                    }
+
+                    logger.fine( "Compacted tile store from " + fileSize + " to " + newSize + " bytes, dropping " + dropCount + " tiles: " + file );
+
+                    index.clear( );
+                    index.putAll( newIndex );
+                    fileSize = newSize;
+                    deadSize = newSize - liveSize;
+                }
+            }
+            catch ( IOException e )
+            {
+                out.close( );
+                Files.deleteIfExists( tempFile );
+                throw e;
+            }
+        }
+    }
+
+    private void scan( ) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+
+        long offset = 0;
+        while ( offset + HEADER_SIZE <= fileSize )
+        {
+            header.clear( );
+            readFully( channel, header, offset );
+            header.flip( );
+
+            int magic = header.getInt( );
+            long key = header.getLong( );
+            int length = header.getInt( );
+
+            if ( magic != MAGIC || length < 0 || offset + HEADER_SIZE + length > fileSize )
+            {
+                break;
+            }
+
+            // later records for the same tile replace earlier ones, and are more recently used
+            long oldEntry = index.putAndMoveToLast( key, ( offset << LENGTH_BITS ) | length );
+            if ( oldEntry >= 0 )
+            {
+                deadSize += HEADER_SIZE + ( oldEntry & LENGTH_MASK );
+            }
+
+            offset += HEADER_SIZE + length;
+        }
+
+        long validSize = offset;
+        if ( validSize < fileSize )
+        {
+            logger.log( Level.WARNING, "Truncating " + ( fileSize - validSize ) + " bytes of incomplete records from tile store: " + file );
+
+            channel.truncate( validSize );
+            fileSize = validSize;
+        }
+    }
+
+    private static FileChannel openChannel( Path file ) throws IOException
+    {
+        return FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+    }
+
+    private static void readFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException
+    {
+        long start = position - buffer.position( );
+        while ( buffer.hasRemaining( ) )
+        {
+            if ( channel.read( buffer, start + buffer.position( ) ) < 0 )
+            {
+                throw new EOFException( "unexpected end of tile store at " + ( start + buffer.position( ) ) );
+            }
+        }
+    }
+
+    private static void writeFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException
+    {
+        long start = position - buffer.position( );
+        while ( buffer.hasRemaining( ) )
+        {
+            channel.write( buffer, start + buffer.position( ) );
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.charts.slippy;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import com.metsci.glimpse.util.geo.LatLonGeo;
+import com.metsci.glimpse.util.geo.projection.TangentPlane;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs a {@link SlippyCache} against a local HTTP tile server (which generates tiles and adds
+ * some latency), and reports load times and server requests for cold, host-cached, and
+ * disk-cached ({@link SlippyTileStore}) tiles.
+ */
+public class SlippyCacheTimingTest
+{
+
+    public static void main( String[] args ) throws Exception
+    {
+        int numTiles = args.length > 0 ? Integer.parseInt( args[0] ) : 64;
+        final long latencyMillis = 20;
+
+        final byte[] png = createTile( );
+        final AtomicInteger requests = new AtomicInteger( );
+
+        HttpServer server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+        server.createContext( "/", new HttpHandler( )
+        {
+            @Override
+            public void handle( HttpExchange exchange ) throws IOException
+            {
+                requests.incrementAndGet( );
+                try
+                {
+                    Thread.sleep( latencyMillis );
+                }
+                catch ( InterruptedException e )
+                {
+                    // respond anyway
+                }
+                exchange.sendResponseHeaders( 200, png.length );
+                try ( OutputStream out = exchange.getResponseBody( ) )
+                {
+                    out.write( png );
+                }
+            }
+        } );
+        server.start( );
+
+        Path cacheDir = Files.createTempDirectory( "slippy-cache-timing" );
+        try
+        {
+            String prefix = "http://localhost:" + server.getAddress( ).getPort( ) + "/";
+            TangentPlane geoProj = new TangentPlane( LatLonGeo.fromDeg( 0, 0 ) );
+
+            // host budget of a quarter of the tiles
+            long budget = ( long ) ( numTiles / 4 ) * 256 * 256 * 3;
+            SlippyCache cache = new SlippyCache( geoProj, Collections.singletonList( prefix ), cacheDir, budget );
+
+            long t0 = System.nanoTime( );
+            loadAll( cache, numTiles );
+            report( "cold", t0, numTiles, requests.getAndSet( 0 ) );
+
+            t0 = System.nanoTime( );
+            loadAll( cache, numTiles );
+            report( "over budget", t0, numTiles, requests.getAndSet( 0 ) );
+            System.out.println( "  " + cache.getStats( ) );
+            System.out.println( "  store: " + cache.getStore( ).size( ) + " tiles, " + cache.getStore( ).sizeBytes( ) + " bytes" );
+            cache.getStore( ).close( );
+
+            SlippyCache reopened = new SlippyCache( geoProj, Collections.singletonList( prefix ), cacheDir, budget );
+            t0 = System.nanoTime( );
+            loadAll( reopened, numTiles );
+            report( "reopened store", t0, numTiles, requests.getAndSet( 0 ) );
+            reopened.getStore( ).close( );
+        }
+        finally
+        {
+            server.stop( 0 );
+            for ( Path file : Files.newDirectoryStream( cacheDir ) )
+            {
+                Files.delete( file );
+            }
+            Files.delete( cacheDir );
+        }
+    }
+
+    private static void loadAll( SlippyCache cache, int numTiles )
+    {
+        int zoom = 10;
+        int side = ( int ) Math.ceil( Math.sqrt( numTiles ) );
+        for ( int i = 0; i < numTiles; i++ )
+        {
+            if ( cache.getTexture( zoom, 500 + i % side, 500 + i / side ) == null )
+            {
+                throw new RuntimeException( "failed to load tile " + i );
+            }
+        }
+    }
+
+    private static void report( String label, long startNanos, int numTiles, int requests )
+    {
+        double millis = ( System.nanoTime( ) - startNanos ) * 1e-6;
+        System.out.printf( "%-16s %8.1f ms total  %6.2f ms/tile  %4d server requests%n", label, millis, millis / numTiles, requests );
+    }
+
+    private static byte[] createTile( ) throws IOException
+    {
+        BufferedImage img = new BufferedImage( 256, 256, BufferedImage.TYPE_INT_RGB );
+        Graphics2D g = img.createGraphics( );
+        g.setColor( Color.lightGray );
+        g.fillRect( 0, 0, 256, 256 );
+        g.setColor( Color.darkGray );
+        g.drawLine( 0, 0, 255, 255 );
+        g.dispose( );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream( );
+        ImageIO.write( img, "PNG", out );
+        return out.toByteArray( );
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dnc;
+
+import static com.jogamp.common.nio.Buffers.SIZEOF_FLOAT;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import com.metsci.glimpse.dnc.DncChunks.DncChunkKey;
+import com.metsci.glimpse.dnc.DncChunks.DncDeviceChunk;
+import com.metsci.glimpse.dnc.DncChunks.DncHostChunk;
+import com.metsci.glimpse.dnc.DncIconAtlases.DncDeviceIconAtlas;
+import com.metsci.glimpse.dnc.DncIconAtlases.DncHostIconAtlas;
+import com.metsci.glimpse.dnc.DncLabelAtlases.DncDeviceLabelAtlas;
+import com.metsci.glimpse.dnc.DncLabelAtlases.DncHostLabelAtlas;
+
+/**
+ * Bookkeeping for chunks that stay resident after they stop being active, so that
+ * panning back over them doesn't have to reload and re-upload them.
+ * <p>
+ * Keeps the keys of resident-but-inactive chunks in least-recently-used order, along
+ * with separate host-memory and device-memory budgets. The owner is responsible for
+ * evicting chunks, oldest first, while the resident bytes exceed either budget.
+ * <p>
+ * Not thread-safe -- callers are expected to hold their own lock.
+ */
+public class DncChunkRetention
+{
+
+    // Textures are uploaded as 8-bit RGBA
+    protected static final int bytesPerTexel = 4;
+
+
+    public static long hostBytes( DncHostChunk hChunk )
+    {
+        return ( hChunk == null ? 0 : ( ( long ) hChunk.verticesBuf.capacity( ) ) * SIZEOF_FLOAT );
+    }
+
+    public static long hostBytes( DncHostIconAtlas hIconAtlas )
+    {
+        return ( hIconAtlas == null ? 0 : textureBytes( hIconAtlas.textureImage.getWidth( ), hIconAtlas.textureImage.getHeight( ) ) );
+    }
+
+    public static long hostBytes( DncHostLabelAtlas hLabelAtlas )
+    {
+        if ( hLabelAtlas == null ) return 0;
+
+        long entriesBytes = ( ( long ) ( hLabelAtlas.entriesAlignBuf.capacity( ) + hLabelAtlas.entriesBoundsBuf.capacity( ) ) ) * SIZEOF_FLOAT;
+        return entriesBytes + textureBytes( hLabelAtlas.textureImage.getWidth( ), hLabelAtlas.textureImage.getHeight( ) );
+    }
+
+    public static long deviceBytes( DncDeviceChunk dChunk )
+    {
+        return ( dChunk == null ? 0 : dChunk.verticesBytes );
+    }
+
+    public static long deviceBytes( DncDeviceIconAtlas dIconAtlas )
+    {
+        return ( dIconAtlas == null ? 0 : textureBytes( dIconAtlas.textureWidth, dIconAtlas.textureHeight ) );
+    }
+
+    public static long deviceBytes( DncDeviceLabelAtlas dLabelAtlas )
+    {
+        return ( dLabelAtlas == null ? 0 : dLabelAtlas.entriesBytes + textureBytes( dLabelAtlas.textureWidth, dLabelAtlas.textureHeight ) );
+    }
+
+    public static long textureBytes( int width, int height )
+    {
+        return ( ( long ) width ) * height * bytesPerTexel;
+    }
+
+
+    protected final LinkedHashSet<DncChunkKey> keys;
+
+    protected long hostBudget_BYTES;
+    protected long deviceBudget_BYTES;
+
+    protected long hostResident_BYTES;
+    protected long deviceResident_BYTES;
+
+    protected long hitCount;
+    protected long missCount;
+    protected long evictionCount;
+
+
+    public DncChunkRetention( long hostBudget_BYTES, long deviceBudget_BYTES )
+    {
+        this.keys = new LinkedHashSet<>( );
+        setBudgets( hostBudget_BYTES, deviceBudget_BYTES );
+    }
+
+    public void setBudgets( long hostBudget_BYTES, long deviceBudget_BYTES )
+    {
+        if ( hostBudget_BYTES < 0 ) throw new IllegalArgumentException( "Host budget must be non-negative: " + hostBudget_BYTES );
+        if ( deviceBudget_BYTES < 0 ) throw new IllegalArgumentException( "Device budget must be non-negative: " + deviceBudget_BYTES );
+
+        this.hostBudget_BYTES = hostBudget_BYTES;
+        this.deviceBudget_BYTES = deviceBudget_BYTES;
+    }
+
+    public long hostBudget_BYTES( )
+    {
+        return hostBudget_BYTES;
+    }
+
+    public long deviceBudget_BYTES( )
+    {
+        return deviceBudget_BYTES;
+    }
+
+    /**
+     * Marks an inactive chunk as resident and most recently used.
+     */
+    public void retain( DncChunkKey chunkKey )
+    {
+        keys.remove( chunkKey );
+        keys.add( chunkKey );
+    }
+
+    /**
+     * Stops tracking a chunk, e.g. because it has become active again.
+     *
+     * @return whether the chunk was being retained
+     */
+    public boolean release( DncChunkKey chunkKey )
+    {
+        return keys.remove( chunkKey );
+    }
+
+    public boolean isRetained( DncChunkKey chunkKey )
+    {
+        return keys.contains( chunkKey );
+    }
+
+    /**
+     * Retained keys, least recently used first
+     */
+    public Collection<DncChunkKey> keys( )
+    {
+        return keys;
+    }
+
+    public boolean isOverBudget( long hostResident_BYTES, long deviceResident_BYTES )
+    {
+        return ( hostResident_BYTES > hostBudget_BYTES || deviceResident_BYTES > deviceBudget_BYTES );
+    }
+
+    public void setResidentBytes( long hostResident_BYTES, long deviceResident_BYTES )
+    {
+        this.hostResident_BYTES = hostResident_BYTES;
+        this.deviceResident_BYTES = deviceResident_BYTES;
+    }
+
+    public void recordHit( )
+    {
+        hitCount++;
+    }
+
+    public void recordMiss( )
+    {
+        missCount++;
+    }
+
+    public void recordEviction( )
+    {
+        evictionCount++;
+    }
+
+    public void clear( )
+    {
+        keys.clear( );
+        hostResident_BYTES = 0;
+        deviceResident_BYTES = 0;
+    }
+
+    public DncRetentionStats stats( )
+    {
+        return new DncRetentionStats( keys.size( ), hostResident_BYTES, deviceResident_BYTES, hostBudget_BYTES, deviceBudget_BYTES, hitCount, missCount, evictionCount );
+    }
+
+
+    public static class DncRetentionStats
+    {
+        public final int retainedChunkCount;
+        public final long hostResident_BYTES;
+        public final long deviceResident_BYTES;
+        public final long hostBudget_BYTES;
+        public final long deviceBudget_BYTES;
+
+        /**
+         * Activations of chunks that were still resident
+         */
+        public final long hitCount;
+
+        /**
+         * Activations of chunks that had to be loaded from the render cache
+         */
+        public final long missCount;
+
+        public final long evictionCount;
+
+        public DncRetentionStats( int retainedChunkCount, long hostResident_BYTES, long deviceResident_BYTES, long hostBudget_BYTES, long deviceBudget_BYTES, long hitCount, long missCount, long evictionCount )
+        {
+            this.retainedChunkCount = retainedChunkCount;
+            this.hostResident_BYTES = hostResident_BYTES;
+            this.deviceResident_BYTES = deviceResident_BYTES;
+            this.hostBudget_BYTES = hostBudget_BYTES;
+            this.deviceBudget_BYTES = deviceBudget_BYTES;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+        }
+
+        @Override
+        public String toString( )
+        {
+            return String.format( "retained = %d, host = %d / %d bytes, device = %d / %d bytes, hits = %d, misses = %d, evictions = %d", retainedChunkCount, hostResident_BYTES, hostBudget_BYTES, deviceResident_BYTES, deviceBudget_BYTES, hitCount, missCount, evictionCount );
+        }
+    }
+
+}
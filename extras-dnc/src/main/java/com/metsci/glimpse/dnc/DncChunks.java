@@ -102,8 +102,9 @@ public class DncChunks
     {
         int verticesHandle = genBuffer( gl );
         gl.glBindBuffer( GL_ARRAY_BUFFER, verticesHandle );
-        gl.glBufferData( GL_ARRAY_BUFFER, hChunk.verticesBuf.remaining( ) * SIZEOF_FLOAT, hChunk.verticesBuf, GL_STATIC_DRAW );
-        return new DncDeviceChunk( hChunk.chunkKey, hChunk.featureCount, hChunk.groups, verticesHandle );
+        long verticesBytes = hChunk.verticesBuf.remaining( ) * SIZEOF_FLOAT;
+        gl.glBufferData( GL_ARRAY_BUFFER, verticesBytes, hChunk.verticesBuf, GL_STATIC_DRAW );
+        return new DncDeviceChunk( hChunk.chunkKey, hChunk.featureCount, hChunk.groups, verticesHandle, verticesBytes );
     }
 
 
@@ -130,13 +131,15 @@ public class DncChunks
         public final int featureCount;
         public final Collection<DncGroup> groups;
         public final int verticesHandle;
+        public final long verticesBytes;
 
-        public DncDeviceChunk( DncChunkKey chunkKey, int featureCount, Collection<DncGroup> groups, int verticesHandle )
+        public DncDeviceChunk( DncChunkKey chunkKey, int featureCount, Collection<DncGroup> groups, int verticesHandle, long verticesBytes )
         {
             this.chunkKey = chunkKey;
             this.featureCount = featureCount;
             this.groups = unmodifiableCollection( groups );
             this.verticesHandle = verticesHandle;
+            this.verticesBytes = verticesBytes;
         }
 
         public void dispose( GL gl )
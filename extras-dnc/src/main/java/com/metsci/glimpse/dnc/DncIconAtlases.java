@@ -84,7 +84,7 @@ public class DncIconAtlases
         gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE );
         gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE );
         hAtlas.textureImage.pushToTexture( gl, GL_TEXTURE_2D );
-        return new DncDeviceIconAtlas( hAtlas.chunkKey, hAtlas.entries, textureHandle );
+        return new DncDeviceIconAtlas( hAtlas.chunkKey, hAtlas.entries, hAtlas.textureImage.getWidth( ), hAtlas.textureImage.getHeight( ), textureHandle );
     }
 
 
@@ -107,12 +107,16 @@ public class DncIconAtlases
     {
         public final DncChunkKey chunkKey;
         public final Map<String,DncAtlasEntry> entries;
+        public final int textureWidth;
+        public final int textureHeight;
         public final int textureHandle;
 
-        public DncDeviceIconAtlas( DncChunkKey chunkKey, Map<String,DncAtlasEntry> entries, int textureHandle )
+        public DncDeviceIconAtlas( DncChunkKey chunkKey, Map<String,DncAtlasEntry> entries, int textureWidth, int textureHeight, int textureHandle )
         {
             this.chunkKey = chunkKey;
             this.entries = unmodifiableMap( entries );
+            this.textureWidth = textureWidth;
+            this.textureHeight = textureHeight;
             this.textureHandle = textureHandle;
         }
 
@@ -165,14 +165,16 @@ public class DncLabelAtlases
         gl.glGenBuffers( 2, bufferHandles, 0 );
 
         int entriesAlignHandle = bufferHandles[ 0 ];
+        long entriesAlignBytes = hAtlas.entriesAlignBuf.remaining( ) * SIZEOF_FLOAT;
         gl.glBindBuffer( GL_ARRAY_BUFFER, entriesAlignHandle );
-        gl.glBufferData( GL_ARRAY_BUFFER, hAtlas.entriesAlignBuf.remaining( ) * SIZEOF_FLOAT, hAtlas.entriesAlignBuf, GL_STATIC_DRAW );
+        gl.glBufferData( GL_ARRAY_BUFFER, entriesAlignBytes, hAtlas.entriesAlignBuf, GL_STATIC_DRAW );
 
         int entriesBoundsHandle = bufferHandles[ 1 ];
+        long entriesBoundsBytes = hAtlas.entriesBoundsBuf.remaining( ) * SIZEOF_FLOAT;
         gl.glBindBuffer( GL_ARRAY_BUFFER, entriesBoundsHandle );
-        gl.glBufferData( GL_ARRAY_BUFFER, hAtlas.entriesBoundsBuf.remaining( ) * SIZEOF_FLOAT, hAtlas.entriesBoundsBuf, GL_STATIC_DRAW );
+        gl.glBufferData( GL_ARRAY_BUFFER, entriesBoundsBytes, hAtlas.entriesBoundsBuf, GL_STATIC_DRAW );
 
-        return new DncDeviceLabelAtlas( hAtlas.chunkKey, textureImage.getWidth( ), textureImage.getHeight( ), entriesAlignHandle, entriesBoundsHandle, textureHandle );
+        return new DncDeviceLabelAtlas( hAtlas.chunkKey, textureImage.getWidth( ), textureImage.getHeight( ), entriesAlignHandle, entriesBoundsHandle, entriesAlignBytes + entriesBoundsBytes, textureHandle );
     }
 
 
@@ -200,15 +202,17 @@ public class DncLabelAtlases
         public final int textureHeight;
         public final int entriesAlignHandle;
         public final int entriesBoundsHandle;
+        public final long entriesBytes;
         public final int textureHandle;
 
-        public DncDeviceLabelAtlas( DncChunkKey chunkKey, int textureWidth, int textureHeight, int entriesAlignHandle, int entriesBoundsHandle, int textureHandle )
+        public DncDeviceLabelAtlas( DncChunkKey chunkKey, int textureWidth, int textureHeight, int entriesAlignHandle, int entriesBoundsHandle, long entriesBytes, int textureHandle )
         {
             this.chunkKey = chunkKey;
             this.textureWidth = textureWidth;
             this.textureHeight = textureHeight;
             this.entriesAlignHandle = entriesAlignHandle;
             this.entriesBoundsHandle = entriesBoundsHandle;
+            this.entriesBytes = entriesBytes;
             this.textureHandle = textureHandle;
         }
 
@@ -79,6 +79,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -93,10 +95,12 @@ import javax.media.opengl.GL2ES2;
 import com.metsci.glimpse.axis.Axis1D;
 import com.metsci.glimpse.axis.Axis2D;
 import com.metsci.glimpse.axis.listener.AxisListener1D;
+import com.metsci.glimpse.canvas.RepaintTargets;
 import com.metsci.glimpse.context.GlimpseBounds;
 import com.metsci.glimpse.context.GlimpseContext;
 import com.metsci.glimpse.dnc.DncAreaProgram.DncAreaProgramHandles;
 import com.metsci.glimpse.dnc.DncAtlases.DncAtlasEntry;
+import com.metsci.glimpse.dnc.DncChunkRetention.DncRetentionStats;
 import com.metsci.glimpse.dnc.DncChunks.DncChunkKey;
 import com.metsci.glimpse.dnc.DncChunks.DncDeviceChunk;
 import com.metsci.glimpse.dnc.DncChunks.DncGroup;
@@ -153,6 +157,27 @@ public class DncPainter implements GlimpsePainter
     protected static final long labelAtlasXferTimeLimit_MILLIS = 1;
     protected static final int guaranteedLabelAtlasXfersPerFrame = 1;
 
+    public static final long defaultRetentionHostBudget_BYTES = 256L * 1024 * 1024;
+    public static final long defaultRetentionDeviceBudget_BYTES = 128L * 1024 * 1024;
+
+    // How far ahead to extrapolate axis motion when predicting which chunks to pre-upload
+    protected static final long motionLookahead_MILLIS = 750;
+
+
+    protected static class AxisMotion
+    {
+        public final double xCenter;
+        public final double yCenter;
+        public final long time_PMILLIS;
+
+        public AxisMotion( double xCenter, double yCenter, long time_PMILLIS )
+        {
+            this.xCenter = xCenter;
+            this.yCenter = yCenter;
+            this.time_PMILLIS = time_PMILLIS;
+        }
+    }
+
 
     protected static class RasterizeArgs
     {
@@ -191,6 +216,17 @@ public class DncPainter implements GlimpsePainter
     protected final Map<DncChunkKey,IndexSetTexture> highlightSets;
     protected final List<IndexSetTexture> highlightSetsToDispose;
 
+    // Chunks with a non-empty highlight-set, whose highlights pulsate
+    protected final Set<DncChunkKey> highlightedChunks;
+
+    // Canvases and cached layouts to repaint when loaded data arrives
+    protected final RepaintTargets repaintTargets;
+
+    // Inactive chunks that are still resident, and chunks expected to become active soon (per control axis)
+    protected final DncChunkRetention retention;
+    protected final Map<Axis2D,Set<DncChunkKey>> predictedChunks;
+    protected final Map<Axis2D,AxisMotion> axisMotions;
+
     protected final DncAreaProgram areaProgram;
     protected final DncLineProgram lineProgram;
     protected final DncIconProgram iconProgram;
@@ -244,6 +280,12 @@ public class DncPainter implements GlimpsePainter
 
         this.highlightSets = new HashMap<>( );
         this.highlightSetsToDispose = new ArrayList<>( );
+        this.highlightedChunks = new HashSet<>( );
+        this.repaintTargets = new RepaintTargets( );
+
+        this.retention = new DncChunkRetention( defaultRetentionHostBudget_BYTES, defaultRetentionDeviceBudget_BYTES );
+        this.predictedChunks = new HashMap<>( );
+        this.axisMotions = new HashMap<>( );
 
         this.areaProgram = new DncAreaProgram( );
         this.lineProgram = new DncLineProgram( );
@@ -311,6 +353,8 @@ public class DncPainter implements GlimpsePainter
             {
                 axis.getAxisX( ).removeAxisListener( axisListener );
                 axis.getAxisY( ).removeAxisListener( axisListener );
+                axisMotions.remove( axis );
+                predictedChunks.remove( axis );
                 updateActiveLibraries( allLibraries );
             }
         }
@@ -328,8 +372,20 @@ public class DncPainter implements GlimpsePainter
         activeChunksListeners.remove( listener );
     }
 
+    /**
+     * Asks for the canvases (and cached layouts) this painter has been painted to to be repainted.
+     * Called whenever loaded data arrives, or the set of chunks to draw changes, and after each
+     * paint that leaves transfers or disposals for later frames.
+     */
+    public void invalidate( )
+    {
+        repaintTargets.markDirty( );
+    }
+
     protected void notifyActiveChunksListeners( )
     {
+        invalidate( );
+
         // Thread-safe because listeners list is a CopyOnWriteArrayList
         for ( Runnable listener : activeChunksListeners )
         {
@@ -362,6 +418,27 @@ public class DncPainter implements GlimpsePainter
         }
     }
 
+    /**
+     * Sets how much host and device memory may be used by chunks that are no longer active.
+     * Least-recently-deactivated chunks are evicted once either budget is exceeded.
+     */
+    public void setRetentionBudgets( long hostBudget_BYTES, long deviceBudget_BYTES )
+    {
+        synchronized ( mutex )
+        {
+            retention.setBudgets( hostBudget_BYTES, deviceBudget_BYTES );
+            enforceRetentionBudgets( );
+        }
+    }
+
+    public DncRetentionStats retentionStats( )
+    {
+        synchronized ( mutex )
+        {
+            return retention.stats( );
+        }
+    }
+
     public void setTheme( DncGeosymTheme newTheme )
     {
         // If asyncExec is currently in a call to activateCoverages, it's possible for
@@ -377,7 +454,8 @@ public class DncPainter implements GlimpsePainter
             if ( !equal( newTheme, theme ) )
             {
                 // Drop everything that was created using the old theme
-                deactivateChunks( activeLibraries, activeCoverages );
+                dropChunks( activeLibraries, activeCoverages );
+                dropRetainedChunks( );
                 this.lineAreaStyles = emptyMap( );
 
                 // Store the theme
@@ -395,6 +473,7 @@ public class DncPainter implements GlimpsePainter
                         {
                             lineAreaStyles = newLineAreaStyles;
                         }
+                        invalidate( );
                     }
                 } );
             }
@@ -410,7 +489,17 @@ public class DncPainter implements GlimpsePainter
                 highlightSets.put( chunkKey, new IndexSetTexture( ) );
             }
             highlightSets.get( chunkKey ).set( featureNums );
+
+            if ( featureNums.isEmpty( ) )
+            {
+                highlightedChunks.remove( chunkKey );
+            }
+            else
+            {
+                highlightedChunks.add( chunkKey );
+            }
         }
+        invalidate( );
     }
 
     public void setCoverageActive( DncCoverage coverage, boolean active )
@@ -548,147 +637,230 @@ public class DncPainter implements GlimpsePainter
             {
                 for ( DncCoverage coverage : coverages )
                 {
-                    final DncChunkKey chunkKey = new DncChunkKey( library, coverage );
-                    if ( !dChunks.containsKey( chunkKey ) && !hChunks.containsKey( chunkKey ) )
+                    DncChunkKey chunkKey = new DncChunkKey( library, coverage );
+                    if ( isChunkResident( chunkKey ) )
+                    {
+                        retention.release( chunkKey );
+                        retention.recordHit( );
+                    }
+                    else
+                    {
+                        retention.recordMiss( );
+                        requestChunk( chunkKey );
+                    }
+                }
+            }
+        }
+    }
+
+    protected boolean isChunkResident( DncChunkKey chunkKey )
+    {
+        synchronized ( mutex )
+        {
+            return ( dChunks.containsKey( chunkKey ) || hChunks.containsKey( chunkKey ) );
+        }
+    }
+
+    /**
+     * Loaded data is kept for active chunks, for chunks predicted to become active soon, and for
+     * retained chunks (so that icons and labels still arrive for a chunk deactivated mid-load).
+     */
+    protected boolean isChunkWanted( DncChunkKey chunkKey )
+    {
+        synchronized ( mutex )
+        {
+            return ( isChunkActive( chunkKey ) || isChunkPredicted( chunkKey ) || retention.isRetained( chunkKey ) );
+        }
+    }
+
+    /**
+     * Whether the chunk is predicted to become active soon, for any control axis.
+     */
+    protected boolean isChunkPredicted( DncChunkKey chunkKey )
+    {
+        synchronized ( mutex )
+        {
+            for ( Set<DncChunkKey> axisPredictedChunks : predictedChunks.values( ) )
+            {
+                if ( axisPredictedChunks.contains( chunkKey ) ) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The union of the chunks predicted for all control axes.
+     */
+    protected Set<DncChunkKey> allPredictedChunks( )
+    {
+        synchronized ( mutex )
+        {
+            Set<DncChunkKey> chunkKeys = new LinkedHashSet<>( );
+            for ( Set<DncChunkKey> axisPredictedChunks : predictedChunks.values( ) )
+            {
+                chunkKeys.addAll( axisPredictedChunks );
+            }
+            return chunkKeys;
+        }
+    }
+
+    protected void requestChunk( final DncChunkKey chunkKey )
+    {
+        synchronized ( mutex )
+        {
+            // Not strictly necessary, but avoids submitting useless requests to the cache
+            if ( asyncExec.isShutdown( ) ) return;
+
+            cache.getChunk( chunkKey, chunkPriorityFunc, new Consumer<RenderChunk>( )
+            {
+                public void accept( final RenderChunk renderChunk )
+                {
+                    // On the async thread ...
+                    asyncExec.execute( new ThrowingRunnable( )
                     {
-                        cache.getChunk( chunkKey, chunkPriorityFunc, new Consumer<RenderChunk>( )
+                        public void runThrows( ) throws Exception
                         {
-                            public void accept( final RenderChunk renderChunk )
+                            // Wait until we have certain display info from our first paint
+                            final RasterizeArgs rasterizeArgs = waitForRasterizeArgs( );
+                            if ( rasterizeArgs == null )
                             {
-                                // On the async thread ...
-                                asyncExec.execute( new ThrowingRunnable( )
+                                return;
+                            }
+
+                            // Bail out if chunk is no longer wanted
+                            synchronized ( mutex )
+                            {
+                                if ( !isChunkWanted( chunkKey ) )
+                                {
+                                    return;
+                                }
+                            }
+
+                            // Load and put chunk vertices
+                            int featureCount = renderChunk.featureCount;
+                            IntBuffer groupsBuf = cache.sliceChunkGroups( renderChunk );
+                            FloatBuffer verticesBuf = cache.memmapChunkVertices( renderChunk );
+                            final DncHostChunk hChunk = createHostChunk( chunkKey, featureCount, groupsBuf, verticesBuf, cache.geosymAssignments );
+                            synchronized ( mutex )
+                            {
+                                // A repeated request may already have made the chunk resident
+                                if ( !isChunkWanted( chunkKey ) || isChunkResident( chunkKey ) )
+                                {
+                                    return;
+                                }
+
+                                hChunks.put( chunkKey, hChunk );
+                                invalidate( );
+
+                                if ( !highlightSets.containsKey( chunkKey ) )
                                 {
-                                    public void runThrows( ) throws Exception
+                                    highlightSets.put( chunkKey, new IndexSetTexture( ) );
+                                }
+
+                                // Chunks loaded ahead of time count against the retention budgets
+                                if ( !isChunkActive( chunkKey ) )
+                                {
+                                    retention.retain( chunkKey );
+                                    enforceRetentionBudgets( );
+                                }
+                            }
+
+                            // On the icons thread ...
+                            iconsExec.execute( new ThrowingRunnable( )
+                            {
+                                public void runThrows( ) throws Exception
+                                {
+                                    // Bail out if chunk is no longer wanted
+                                    synchronized ( mutex )
                                     {
-                                        // Wait until we have certain display info from our first paint
-                                        final RasterizeArgs rasterizeArgs = waitForRasterizeArgs( );
-                                        if ( rasterizeArgs == null )
+                                        if ( !isChunkWanted( chunkKey ) )
                                         {
                                             return;
                                         }
+                                    }
 
-                                        // Bail out if chunk is no longer active
-                                        synchronized ( mutex )
+                                    // Get up-to-date cgmDir and svgDir
+                                    String cgmDir;
+                                    String svgDir;
+                                    synchronized ( mutex )
+                                    {
+                                        if ( theme == null )
                                         {
-                                            if ( !( activeLibraries.contains( chunkKey.library ) && activeCoverages.contains( chunkKey.coverage ) ) )
-                                            {
-                                                return;
-                                            }
+                                            return;
                                         }
+                                        cgmDir = theme.cgmDir;
+                                        svgDir = theme.svgDir;
+                                    }
 
-                                        // Load and put chunk vertices
-                                        int featureCount = renderChunk.featureCount;
-                                        IntBuffer groupsBuf = cache.sliceChunkGroups( renderChunk );
-                                        FloatBuffer verticesBuf = cache.memmapChunkVertices( renderChunk );
-                                        final DncHostChunk hChunk = createHostChunk( chunkKey, featureCount, groupsBuf, verticesBuf, cache.geosymAssignments );
+                                    // Load, rasterize, and put chunk icons
+                                    DncHostIconAtlas hIconAtlas = createHostIconAtlas( hChunk, cgmDir, svgDir, rasterizeArgs.maxTextureDim, rasterizeArgs.screenDpi );
+                                    if ( hIconAtlas != null )
+                                    {
                                         synchronized ( mutex )
                                         {
-                                            if ( activeLibraries.contains( chunkKey.library ) && activeCoverages.contains( chunkKey.coverage ) )
+                                            if ( equal( cgmDir, theme.cgmDir ) && equal( svgDir, theme.svgDir ) && isChunkWanted( chunkKey ) && !dIconAtlases.containsKey( chunkKey ) )
                                             {
-                                                hChunks.put( chunkKey, hChunk );
-
-                                                if ( !highlightSets.containsKey( chunkKey ) )
-                                                {
-                                                    highlightSets.put( chunkKey, new IndexSetTexture( ) );
-                                                }
+                                                hIconAtlases.put( chunkKey, hIconAtlas );
+                                                invalidate( );
+                                                if ( retention.isRetained( chunkKey ) ) enforceRetentionBudgets( );
                                             }
                                         }
+                                    }
+                                }
+                            } );
 
-                                        // On the icons thread ...
-                                        iconsExec.execute( new ThrowingRunnable( )
+                            // On the labels thread ...
+                            labelsExec.execute( new ThrowingRunnable( )
+                            {
+                                public void runThrows( ) throws Exception
+                                {
+                                    // Bail out if chunk is no longer wanted
+                                    synchronized ( mutex )
+                                    {
+                                        if ( !isChunkWanted( chunkKey ) )
                                         {
-                                            public void runThrows( ) throws Exception
-                                            {
-                                                // Bail out if chunk is no longer active
-                                                synchronized ( mutex )
-                                                {
-                                                    if ( !( activeLibraries.contains( chunkKey.library ) && activeCoverages.contains( chunkKey.coverage ) ) )
-                                                    {
-                                                        return;
-                                                    }
-                                                }
-
-                                                // Get up-to-date cgmDir and svgDir
-                                                String cgmDir;
-                                                String svgDir;
-                                                synchronized ( mutex )
-                                                {
-                                                    if ( theme == null )
-                                                    {
-                                                        return;
-                                                    }
-                                                    cgmDir = theme.cgmDir;
-                                                    svgDir = theme.svgDir;
-                                                }
-
-                                                // Load, rasterize, and put chunk icons
-                                                DncHostIconAtlas hIconAtlas = createHostIconAtlas( hChunk, cgmDir, svgDir, rasterizeArgs.maxTextureDim, rasterizeArgs.screenDpi );
-                                                if ( hIconAtlas != null )
-                                                {
-                                                    synchronized ( mutex )
-                                                    {
-                                                        if ( equal( cgmDir, theme.cgmDir ) && equal( svgDir, theme.svgDir ) && activeLibraries.contains( chunkKey.library ) && activeCoverages.contains( chunkKey.coverage ) )
-                                                        {
-                                                            hIconAtlases.put( chunkKey, hIconAtlas );
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        } );
+                                            return;
+                                        }
+                                    }
+
+                                    // Get up-to-date colors map
+                                    String colorsFile;
+                                    synchronized ( mutex )
+                                    {
+                                        if ( theme == null )
+                                        {
+                                            return;
+                                        }
+                                        colorsFile = theme.colorsFile;
+                                    }
+                                    if ( !equal( colorsFile, labelColorsFile ) )
+                                    {
+                                        labelColors = readGeosymColors( colorsFile );
+                                        labelColorsFile = colorsFile;
+                                    }
 
-                                        // On the labels thread ...
-                                        labelsExec.execute( new ThrowingRunnable( )
+                                    // Load, rasterize, and put chunk labels
+                                    CharBuffer labelCharsBuf = cache.sliceChunkLabelChars( renderChunk );
+                                    IntBuffer labelLengthsBuf = cache.sliceChunkLabelLengths( renderChunk );
+                                    DncHostLabelAtlas hLabelAtlas = createHostLabelAtlas( hChunk, labelCharsBuf, labelLengthsBuf, labelColors, rasterizeArgs.maxTextureDim, rasterizeArgs.screenDpi );
+                                    if ( hLabelAtlas != null )
+                                    {
+                                        synchronized ( mutex )
                                         {
-                                            public void runThrows( ) throws Exception
+                                            if ( equal( colorsFile, theme.colorsFile ) && isChunkWanted( chunkKey ) && !dLabelAtlases.containsKey( chunkKey ) )
                                             {
-                                                // Bail out if chunk is no longer active
-                                                synchronized ( mutex )
-                                                {
-                                                    if ( !( activeLibraries.contains( chunkKey.library ) && activeCoverages.contains( chunkKey.coverage ) ) )
-                                                    {
-                                                        return;
-                                                    }
-                                                }
-
-                                                // Get up-to-date colors map
-                                                String colorsFile;
-                                                synchronized ( mutex )
-                                                {
-                                                    if ( theme == null )
-                                                    {
-                                                        return;
-                                                    }
-                                                    colorsFile = theme.colorsFile;
-                                                }
-                                                if ( !equal( colorsFile, labelColorsFile ) )
-                                                {
-                                                    labelColors = readGeosymColors( colorsFile );
-                                                    labelColorsFile = colorsFile;
-                                                }
-
-                                                // Load, rasterize, and put chunk labels
-                                                CharBuffer labelCharsBuf = cache.sliceChunkLabelChars( renderChunk );
-                                                IntBuffer labelLengthsBuf = cache.sliceChunkLabelLengths( renderChunk );
-                                                DncHostLabelAtlas hLabelAtlas = createHostLabelAtlas( hChunk, labelCharsBuf, labelLengthsBuf, labelColors, rasterizeArgs.maxTextureDim, rasterizeArgs.screenDpi );
-                                                if ( hLabelAtlas != null )
-                                                {
-                                                    synchronized ( mutex )
-                                                    {
-                                                        if ( equal( colorsFile, theme.colorsFile ) && activeLibraries.contains( chunkKey.library ) && activeCoverages.contains( chunkKey.coverage ) )
-                                                        {
-                                                            hLabelAtlases.put( chunkKey, hLabelAtlas );
-                                                        }
-                                                    }
-                                                }
+                                                hLabelAtlases.put( chunkKey, hLabelAtlas );
+                                                invalidate( );
+                                                if ( retention.isRetained( chunkKey ) ) enforceRetentionBudgets( );
                                             }
-                                        } );
+                                        }
                                     }
-                                } );
-                            }
-                        } );
-                    }
+                                }
+                            } );
+                        }
+                    } );
                 }
-            }
+            } );
         }
     }
 
@@ -723,6 +895,9 @@ public class DncPainter implements GlimpsePainter
         }
     }
 
+    /**
+     * Deactivated chunks stay resident, subject to the retention budgets.
+     */
     protected void deactivateChunks( Collection<DncLibrary> libraries, Collection<DncCoverage> coverages )
     {
         synchronized ( mutex )
@@ -735,28 +910,113 @@ public class DncPainter implements GlimpsePainter
                 for ( DncCoverage coverage : coverages )
                 {
                     DncChunkKey chunkKey = new DncChunkKey( library, coverage );
+                    if ( isChunkResident( chunkKey ) )
+                    {
+                        retention.retain( chunkKey );
+                    }
+                }
+            }
+
+            enforceRetentionBudgets( );
+        }
+    }
+
+    /**
+     * Evicts least-recently-used retained chunks until both retention budgets are met.
+     */
+    protected void enforceRetentionBudgets( )
+    {
+        synchronized ( mutex )
+        {
+            long hostResident_BYTES = 0;
+            long deviceResident_BYTES = 0;
+            for ( DncChunkKey chunkKey : retention.keys( ) )
+            {
+                hostResident_BYTES += hostBytes( chunkKey );
+                deviceResident_BYTES += deviceBytes( chunkKey );
+            }
 
-                    hChunks.remove( chunkKey );
-                    hIconAtlases.remove( chunkKey );
-                    hLabelAtlases.remove( chunkKey );
+            Iterator<DncChunkKey> it = retention.keys( ).iterator( );
+            while ( retention.isOverBudget( hostResident_BYTES, deviceResident_BYTES ) && it.hasNext( ) )
+            {
+                DncChunkKey chunkKey = it.next( );
+                hostResident_BYTES -= hostBytes( chunkKey );
+                deviceResident_BYTES -= deviceBytes( chunkKey );
 
-                    DncDeviceChunk dChunk = dChunks.remove( chunkKey );
-                    if ( dChunk != null ) dChunksToDispose.add( dChunk );
+                it.remove( );
+                dropChunk( chunkKey );
+                retention.recordEviction( );
+            }
 
-                    DncDeviceIconAtlas dIconAtlas = dIconAtlases.remove( chunkKey );
-                    if ( dIconAtlas != null ) dIconAtlasesToDispose.add( dIconAtlas );
+            retention.setResidentBytes( hostResident_BYTES, deviceResident_BYTES );
+        }
+    }
+
+    protected long hostBytes( DncChunkKey chunkKey )
+    {
+        return ( DncChunkRetention.hostBytes( hChunks.get( chunkKey ) )
+               + DncChunkRetention.hostBytes( hIconAtlases.get( chunkKey ) )
+               + DncChunkRetention.hostBytes( hLabelAtlases.get( chunkKey ) ) );
+    }
 
-                    DncDeviceLabelAtlas dLabelAtlas = dLabelAtlases.remove( chunkKey );
-                    if ( dLabelAtlas != null ) dLabelAtlasesToDispose.add( dLabelAtlas );
+    protected long deviceBytes( DncChunkKey chunkKey )
+    {
+        return ( DncChunkRetention.deviceBytes( dChunks.get( chunkKey ) )
+               + DncChunkRetention.deviceBytes( dIconAtlases.get( chunkKey ) )
+               + DncChunkRetention.deviceBytes( dLabelAtlases.get( chunkKey ) ) );
+    }
 
-                    // Keep higlight-set objects in the map, but dispose their device resources
-                    IndexSetTexture highlightSet = highlightSets.get( chunkKey );
-                    if ( highlightSet != null ) highlightSetsToDispose.add( highlightSet );
+    protected void dropRetainedChunks( )
+    {
+        synchronized ( mutex )
+        {
+            for ( DncChunkKey chunkKey : retention.keys( ) )
+            {
+                dropChunk( chunkKey );
+            }
+            retention.clear( );
+        }
+    }
+
+    protected void dropChunks( Collection<DncLibrary> libraries, Collection<DncCoverage> coverages )
+    {
+        synchronized ( mutex )
+        {
+            for ( DncLibrary library : libraries )
+            {
+                for ( DncCoverage coverage : coverages )
+                {
+                    DncChunkKey chunkKey = new DncChunkKey( library, coverage );
+                    retention.release( chunkKey );
+                    dropChunk( chunkKey );
                 }
             }
         }
     }
 
+    protected void dropChunk( DncChunkKey chunkKey )
+    {
+        synchronized ( mutex )
+        {
+            hChunks.remove( chunkKey );
+            hIconAtlases.remove( chunkKey );
+            hLabelAtlases.remove( chunkKey );
+
+            DncDeviceChunk dChunk = dChunks.remove( chunkKey );
+            if ( dChunk != null ) dChunksToDispose.add( dChunk );
+
+            DncDeviceIconAtlas dIconAtlas = dIconAtlases.remove( chunkKey );
+            if ( dIconAtlas != null ) dIconAtlasesToDispose.add( dIconAtlas );
+
+            DncDeviceLabelAtlas dLabelAtlas = dLabelAtlases.remove( chunkKey );
+            if ( dLabelAtlas != null ) dLabelAtlasesToDispose.add( dLabelAtlas );
+
+            // Keep higlight-set objects in the map, but dispose their device resources
+            IndexSetTexture highlightSet = highlightSets.get( chunkKey );
+            if ( highlightSet != null ) highlightSetsToDispose.add( highlightSet );
+        }
+    }
+
     @Override
     public void dispose( GlimpseContext context )
     {
@@ -791,6 +1051,12 @@ public class DncPainter implements GlimpsePainter
             for ( IndexSetTexture highlightSet : highlightSets.values( ) ) highlightSet.freeDeviceResources( gl );
             highlightSetsToDispose.clear( );
             highlightSets.clear( );
+            highlightedChunks.clear( );
+
+            // Retained and predicted chunks
+            retention.clear( );
+            predictedChunks.clear( );
+            axisMotions.clear( );
 
             // Shader programs
             areaProgram.dispose( gl );
@@ -855,6 +1121,109 @@ public class DncPainter implements GlimpsePainter
         {
             this.visible = visible;
         }
+        invalidate( );
+    }
+
+    /**
+     * Extrapolates the recent pan motion of a control axis, and requests chunks for libraries
+     * that would be active for the extrapolated viewport but are not active yet. Zoom is not
+     * extrapolated.
+     */
+    protected void updatePredictedChunks( Axis2D axis )
+    {
+        synchronized ( mutex )
+        {
+            Axis1D xAxis = axis.getAxisX( );
+            Axis1D yAxis = axis.getAxisY( );
+            double xCenter = 0.5*( xAxis.getMin( ) + xAxis.getMax( ) );
+            double yCenter = 0.5*( yAxis.getMin( ) + yAxis.getMax( ) );
+            long time_PMILLIS = System.currentTimeMillis( );
+
+            AxisMotion prevMotion = axisMotions.put( axis, new AxisMotion( xCenter, yCenter, time_PMILLIS ) );
+            if ( prevMotion == null ) return;
+
+            // A sample older than the lookahead says nothing about the current motion
+            long dt_MILLIS = time_PMILLIS - prevMotion.time_PMILLIS;
+            if ( dt_MILLIS <= 0 || dt_MILLIS > motionLookahead_MILLIS ) return;
+
+            double lookaheadFactor = ( ( double ) motionLookahead_MILLIS ) / ( ( double ) dt_MILLIS );
+            double dx = lookaheadFactor * ( xCenter - prevMotion.xCenter );
+            double dy = lookaheadFactor * ( yCenter - prevMotion.yCenter );
+            if ( dx == 0 && dy == 0 )
+            {
+                predictedChunks.remove( axis );
+                return;
+            }
+
+            Axis1D xPredicted = new Axis1D( );
+            xPredicted.setMin( xAxis.getMin( ) + dx );
+            xPredicted.setMax( xAxis.getMax( ) + dx );
+            xPredicted.setSizePixels( xAxis.getSizePixels( ), false );
+
+            Axis1D yPredicted = new Axis1D( );
+            yPredicted.setMin( yAxis.getMin( ) + dy );
+            yPredicted.setMax( yAxis.getMax( ) + dy );
+            yPredicted.setSizePixels( yAxis.getSizePixels( ), false );
+
+            Axis2D axisPredicted = new Axis2D( xPredicted, yPredicted );
+
+            List<DncCoverage> coverages = sorted( activeCoverages, coverageSignificanceComparator );
+            Set<DncChunkKey> newPredictedChunks = new LinkedHashSet<>( );
+            for ( DncLibrary library : allLibraries )
+            {
+                if ( !activeLibraries.contains( library ) && settings.isLibraryActive( library, axisPredicted ) )
+                {
+                    for ( DncCoverage coverage : coverages )
+                    {
+                        newPredictedChunks.add( new DncChunkKey( library, coverage ) );
+                    }
+                }
+            }
+
+            // Request only newly predicted chunks (for any axis), since earlier requests may still be in flight
+            for ( DncChunkKey chunkKey : newPredictedChunks )
+            {
+                if ( !isChunkPredicted( chunkKey ) && !isChunkResident( chunkKey ) )
+                {
+                    requestChunk( chunkKey );
+                }
+            }
+
+            predictedChunks.put( axis, newPredictedChunks );
+        }
+    }
+
+    /**
+     * Whether another frame is needed to finish transferring or disposing device resources,
+     * or to animate highlights.
+     */
+    protected boolean isPaintPending( Collection<DncChunkKey> chunksToDraw )
+    {
+        synchronized ( mutex )
+        {
+            if ( !dChunksToDispose.isEmpty( ) || !dIconAtlasesToDispose.isEmpty( ) || !dLabelAtlasesToDispose.isEmpty( ) || !highlightSetsToDispose.isEmpty( ) )
+            {
+                return true;
+            }
+
+            for ( DncChunkKey chunkKey : chunksToDraw )
+            {
+                if ( hChunks.containsKey( chunkKey ) || hIconAtlases.containsKey( chunkKey ) || hLabelAtlases.containsKey( chunkKey ) || highlightedChunks.contains( chunkKey ) )
+                {
+                    return true;
+                }
+            }
+
+            for ( DncChunkKey chunkKey : allPredictedChunks( ) )
+            {
+                if ( hChunks.containsKey( chunkKey ) || hIconAtlases.containsKey( chunkKey ) || hLabelAtlases.containsKey( chunkKey ) )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
     }
 
     @Override
@@ -873,6 +1242,8 @@ public class DncPainter implements GlimpsePainter
 
         synchronized ( mutex )
         {
+            repaintTargets.add( context );
+
             if ( !visible ) return;
 
             // Don't try to paint after disposal
@@ -890,6 +1261,13 @@ public class DncPainter implements GlimpsePainter
             }
 
 
+            // Predict which chunks will become active soon, if this is a control axis
+            if ( axes.contains( axis ) )
+            {
+                updatePredictedChunks( axis );
+            }
+
+
             // Dispose of deactivated chunks
             int chunkDisposeCount = 0;
             long chunkDisposeStart_PMILLIS = System.currentTimeMillis( );
@@ -1023,6 +1401,53 @@ public class DncPainter implements GlimpsePainter
             }
 
 
+            // If nothing needed transferring for active chunks, spend the frame's spare
+            // transfer time on chunks that are predicted to become active soon
+            if ( chunkXferCount == 0 && iconAtlasXferCount == 0 && labelAtlasXferCount == 0 && !predictedChunks.isEmpty( ) )
+            {
+                int predictedXferCount = 0;
+                long predictedXferStart_PMILLIS = System.currentTimeMillis( );
+                for ( DncChunkKey chunkKey : allPredictedChunks( ) )
+                {
+                    boolean allowXfer = ( predictedXferCount < guaranteedChunkXfersPerFrame || timeSince_MILLIS( predictedXferStart_PMILLIS ) <= chunkXferTimeLimit_MILLIS );
+                    if ( !allowXfer ) break;
+
+                    DncHostChunk hChunk = hChunks.remove( chunkKey );
+                    if ( hChunk != null )
+                    {
+                        dChunks.put( chunkKey, xferChunkToDevice( hChunk, gl ) );
+                        predictedXferCount++;
+                    }
+
+                    DncHostIconAtlas hIconAtlas = hIconAtlases.remove( chunkKey );
+                    if ( hIconAtlas != null )
+                    {
+                        dIconAtlases.put( chunkKey, xferIconAtlasToDevice( hIconAtlas, gl ) );
+                        predictedXferCount++;
+                    }
+
+                    DncHostLabelAtlas hLabelAtlas = hLabelAtlases.remove( chunkKey );
+                    if ( hLabelAtlas != null )
+                    {
+                        dLabelAtlases.put( chunkKey, xferLabelAtlasToDevice( hLabelAtlas, gl ) );
+                        predictedXferCount++;
+                    }
+                }
+
+                if ( predictedXferCount > 0 )
+                {
+                    enforceRetentionBudgets( );
+                }
+            }
+
+
+            // Come back next frame if transfers or disposals were deferred, or highlights are pulsating
+            if ( isPaintPending( chunksToDraw ) )
+            {
+                repaintTargets.markDirty( );
+            }
+
+
             // Do the actual drawing
             boolean areasVisible = settings.areAreasVisible( axis );
             boolean linesVisible = settings.areLinesVisible( axis );
@@ -26,22 +26,37 @@
  */
 package com.metsci.glimpse.dspl;
 
+import static com.metsci.glimpse.util.concurrent.ConcurrencyUtils.newDaemonThreadFactory;
+
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.namespace.QName;
 
 import com.metsci.glimpse.dspl.parser.ColumnBinaryParser;
-import com.metsci.glimpse.dspl.parser.CsvParser;
 import com.metsci.glimpse.dspl.parser.ExtendedCsvParser;
+import com.metsci.glimpse.dspl.parser.MappedColumnParser;
+import com.metsci.glimpse.dspl.parser.ParallelCsvParser;
 import com.metsci.glimpse.dspl.parser.TableParser;
 import com.metsci.glimpse.dspl.parser.WildcardCsvParser;
 import com.metsci.glimpse.dspl.schema.Concept;
 import com.metsci.glimpse.dspl.schema.DataSet;
 import com.metsci.glimpse.dspl.schema.DataSet.Import;
+import com.metsci.glimpse.dspl.schema.Slice;
 import com.metsci.glimpse.dspl.schema.Table;
 import com.metsci.glimpse.dspl.util.DsplException;
 import com.metsci.glimpse.dspl.util.DsplHelper;
@@ -53,20 +68,32 @@ public class DsplParser
     // cache of loaded data sets
     protected java.util.Map<String, DataSet> datasetCache;
 
+    // loads which have started but not yet finished, so that concurrent loads of one namespace are only done once
+    protected ConcurrentMap<String, DatasetLoad> datasetLoads;
+
+    // the load each loading thread is currently waiting on, used to detect circular imports
+    protected ConcurrentMap<Thread, DatasetLoad> datasetWaits;
+
     protected boolean failOnError = true;
     protected boolean noNetworkMode = true;
     protected boolean cacheMode = false;
+    protected boolean parallelLoadMode = false;
 
     protected File cacheLocation = null;
 
+    protected ExecutorService loadExecutor = null;
+
     public DsplParser( )
     {
-        datasetCache = new HashMap<String, DataSet>( );
+        datasetCache = Collections.synchronizedMap( new HashMap<String, DataSet>( ) );
+        datasetLoads = new ConcurrentHashMap<String, DatasetLoad>( );
+        datasetWaits = new ConcurrentHashMap<Thread, DatasetLoad>( );
         parsers = new HashMap<String, TableParser>( );
-        parsers.put( "csv", new CsvParser( this ) );
+        parsers.put( "csv", new ParallelCsvParser( this ) );
         parsers.put( "csvx", new ExtendedCsvParser( this ) );
         parsers.put( "csv*", new WildcardCsvParser( this ) );
         parsers.put( "bin", new ColumnBinaryParser( ) );
+        parsers.put( "mbin", new MappedColumnParser( ) );
     }
 
     public boolean isFailOnErrorMode( )
@@ -114,6 +141,40 @@ public class DsplParser
         return !noNetworkMode;
     }
 
+    public boolean isParallelLoadMode( )
+    {
+        return parallelLoadMode;
+    }
+
+    /**
+     * In parallel load mode the imports of a data set are loaded concurrently on the load executor,
+     * rather than one at a time on the calling thread.
+     */
+    public void setParallelLoadMode( boolean mode )
+    {
+        parallelLoadMode = mode;
+    }
+
+    /**
+     * Sets the executor used to load data sets and tables in parallel load mode and by
+     * {@link #loadDatasetAsync(String, String)}. Load tasks block while waiting for the imports
+     * they depend on, so the executor must not have a bounded number of threads.
+     */
+    public synchronized void setLoadExecutor( ExecutorService executor )
+    {
+        loadExecutor = executor;
+    }
+
+    public synchronized ExecutorService getLoadExecutor( )
+    {
+        if ( loadExecutor == null )
+        {
+            loadExecutor = Executors.newCachedThreadPool( newDaemonThreadFactory( Executors.defaultThreadFactory( ) ) );
+        }
+
+        return loadExecutor;
+    }
+
     public void addTableParser( String format, TableParser parser )
     {
         parsers.put( format, parser );
@@ -154,11 +215,162 @@ public class DsplParser
     {
         if ( datasetCache.containsKey( namespace ) ) return datasetCache.get( namespace );
 
-        DataSet dataset = DsplHelper.loadDataset( this, parentDataSet, namespace, location );
+        if ( namespace == null ) return DsplHelper.loadDataset( this, parentDataSet, namespace, location );
+
+        // if another thread is already loading this namespace, wait for its result instead of loading it again
+        DatasetLoad load = newNamespaceLoad( parentDataSet, namespace, location );
+        DatasetLoad existingLoad = datasetLoads.putIfAbsent( namespace, load );
+        if ( existingLoad != null ) return existingLoad.getDataSet( );
+
+        try
+        {
+            load.run( );
+        }
+        finally
+        {
+            datasetLoads.remove( namespace, load );
+        }
+
+        return load.getDataSet( );
+    }
+
+    protected DatasetLoad newNamespaceLoad( final DataSet parentDataSet, final String namespace, final String location )
+    {
+        return new DatasetLoad( namespace, new Callable<DataSet>( )
+        {
+            @Override
+            public DataSet call( ) throws Exception
+            {
+                // the previous load of this namespace may have finished after our cache check
+                DataSet dataset = datasetCache.get( namespace );
+                if ( dataset != null ) return dataset;
+
+                dataset = DsplHelper.loadDataset( DsplParser.this, parentDataSet, namespace, location );
+                datasetCache.put( namespace, dataset );
+                return dataset;
+            }
+        } );
+    }
+
+    /**
+     * Loads each of the given imports of a data set, concurrently on the load executor. The last
+     * import is loaded on the calling thread.
+     */
+    public List<DataSet> loadDatasets( final DataSet parentDataSet, List<Import> imports ) throws JAXBException, IOException, DsplException
+    {
+        List<DatasetLoad> loads = new ArrayList<DatasetLoad>( imports.size( ) );
+
+        for ( final Import importTag : imports )
+        {
+            loads.add( new DatasetLoad( importTag.getNamespace( ), new Callable<DataSet>( )
+            {
+                @Override
+                public DataSet call( ) throws Exception
+                {
+                    return loadDataset( parentDataSet, importTag );
+                }
+            } ) );
+        }
+
+        List<DataSet> datasets = new ArrayList<DataSet>( imports.size( ) );
+
+        try
+        {
+            for ( int i = 0; i < loads.size( ) - 1; i++ )
+            {
+                getLoadExecutor( ).execute( loads.get( i ) );
+            }
+
+            if ( !loads.isEmpty( ) ) loads.get( loads.size( ) - 1 ).run( );
+
+            for ( DatasetLoad load : loads )
+            {
+                datasets.add( load.getDataSet( ) );
+            }
+        }
+        catch ( JAXBException | IOException | DsplException | RuntimeException | Error e )
+        {
+            cancel( loads );
+            throw e;
+        }
+
+        return datasets;
+    }
+
+    public Future<DataSet> loadDatasetAsync( java.io.File file )
+    {
+        return loadDatasetAsync( file.getAbsolutePath( ) );
+    }
+
+    public Future<DataSet> loadDatasetAsync( String location )
+    {
+        return loadDatasetAsync( null, location );
+    }
+
+    /**
+     * Loads and links a data set on the load executor, then parses the tables of its concepts
+     * and slices concurrently. Tables of imported data sets are still parsed when first used.
+     * Set parallel load mode as well to also load the data set's imports concurrently.
+     */
+    public Future<DataSet> loadDatasetAsync( final String namespace, final String location )
+    {
+        return getLoadExecutor( ).submit( new Callable<DataSet>( )
+        {
+            @Override
+            public DataSet call( ) throws Exception
+            {
+                DataSet dataset = loadDataset( null, namespace, location );
+                loadTables( dataset );
+                return dataset;
+            }
+        } );
+    }
+
+    /**
+     * Parses the table data of each concept and slice in the data set, concurrently on the load executor.
+     */
+    public void loadTables( DataSet dataset ) throws JAXBException, IOException, DsplException
+    {
+        List<Future<?>> futures = new ArrayList<Future<?>>( );
+
+        if ( dataset.getConcepts( ) != null )
+        {
+            for ( final Concept concept : dataset.getConcepts( ).getConcept( ) )
+            {
+                if ( concept.getTableMapping( ) == null ) continue;
+
+                futures.add( getLoadExecutor( ).submit( new Callable<Object>( )
+                {
+                    @Override
+                    public Object call( ) throws Exception
+                    {
+                        return concept.getTableData( );
+                    }
+                } ) );
+            }
+        }
 
-        if ( namespace != null ) datasetCache.put( namespace, dataset );
+        if ( dataset.getSlices( ) != null )
+        {
+            for ( final Slice slice : dataset.getSlices( ).getSlice( ) )
+            {
+                if ( slice.getTableMapping( ) == null ) continue;
+
+                futures.add( getLoadExecutor( ).submit( new Callable<Object>( )
+                {
+                    @Override
+                    public Object call( ) throws Exception
+                    {
+                        return slice.getTableData( );
+                    }
+                } ) );
+            }
+        }
 
-        return dataset;
+        for ( Future<?> future : futures )
+        {
+            getResult( future, futures );
+        }
     }
 
     public void cacheDataset( DataSet dataset )
@@ -199,4 +411,110 @@ public class DsplParser
     {
         return datasetCache.get( namespace );
     }
+
+    protected static <T> T getResult( Future<T> future, List<? extends Future<?>> all ) throws JAXBException, IOException, DsplException
+    {
+        try
+        {
+            return future.get( );
+        }
+        catch ( InterruptedException e )
+        {
+            cancel( all );
+            Thread.currentThread( ).interrupt( );
+            throw new DsplException( "Interrupted while loading data set.", e );
+        }
+        catch ( ExecutionException e )
+        {
+            cancel( all );
+            throw unwrap( e );
+        }
+    }
+
+    protected static DsplException unwrap( ExecutionException e ) throws JAXBException, IOException, DsplException
+    {
+        Throwable cause = e.getCause( );
+        if ( cause instanceof JAXBException ) throw ( JAXBException ) cause;
+        if ( cause instanceof IOException ) throw ( IOException ) cause;
+        if ( cause instanceof DsplException ) throw ( DsplException ) cause;
+        if ( cause instanceof RuntimeException ) throw ( RuntimeException ) cause;
+        if ( cause instanceof Error ) throw ( Error ) cause;
+        return new DsplException( "Problem loading data set.", cause );
+    }
+
+    protected static void cancel( List<? extends Future<?>> futures )
+    {
+        for ( Future<?> future : futures )
+        {
+            future.cancel( true );
+        }
+    }
+
+    /**
+     * A data set load which other threads may wait on. Threads waiting on a load are tracked so
+     * that circular imports are reported rather than leaving the loading threads waiting on each other.
+     */
+    protected class DatasetLoad extends FutureTask<DataSet>
+    {
+        protected final String namespace;
+        protected volatile Thread loader;
+
+        public DatasetLoad( String namespace, Callable<DataSet> callable )
+        {
+            super( callable );
+
+            this.namespace = namespace;
+        }
+
+        @Override
+        public void run( )
+        {
+            loader = Thread.currentThread( );
+            try
+            {
+                super.run( );
+            }
+            finally
+            {
+                loader = null;
+            }
+        }
+
+        public DataSet getDataSet( ) throws JAXBException, IOException, DsplException
+        {
+            Thread current = Thread.currentThread( );
+
+            DatasetLoad previousWait = datasetWaits.put( current, this );
+            try
+            {
+                // follow the chain of loads being waited on: if it leads back to this thread, none of them can finish
+                Thread thread = loader;
+                for ( int i = 0; thread != null && i <= datasetWaits.size( ); i++ )
+                {
+                    if ( thread == current ) throw new DsplException( "Circular import of data set namespace %s.", namespace );
+
+                    DatasetLoad wait = datasetWaits.get( thread );
+                    thread = wait == null ? null : wait.loader;
+                }
+
+                return get( );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new DsplException( "Interrupted while loading data set namespace %s.", e, namespace );
+            }
+            catch ( ExecutionException e )
+            {
+                throw unwrap( e );
+            }
+            finally
+            {
+                if ( previousWait == null )
+                    datasetWaits.remove( current );
+                else
+                    datasetWaits.put( current, previousWait );
+            }
+        }
+    }
 }
@@ -0,0 +1,791 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dspl.parser;
+
+import static com.metsci.glimpse.dspl.parser.util.ParserUtils.getColumns;
+import static com.metsci.glimpse.dspl.parser.util.ParserUtils.getConcepts;
+import static com.metsci.glimpse.dspl.parser.util.ParserUtils.getConstantTableColumns;
+import static com.metsci.glimpse.dspl.parser.util.ParserUtils.getTypes;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBException;
+
+import com.metsci.glimpse.dspl.parser.column.MappedStringTableColumn;
+import com.metsci.glimpse.dspl.parser.column.MappedTableColumn;
+import com.metsci.glimpse.dspl.parser.column.SliceColumnType;
+import com.metsci.glimpse.dspl.parser.column.TableColumn;
+import com.metsci.glimpse.dspl.parser.table.PropertyTableData;
+import com.metsci.glimpse.dspl.parser.table.SimplePropertyTableData;
+import com.metsci.glimpse.dspl.parser.table.SimpleSliceTableData;
+import com.metsci.glimpse.dspl.parser.table.SliceTableData;
+import com.metsci.glimpse.dspl.parser.util.ParserUtils.SimpleParserFactory;
+import com.metsci.glimpse.dspl.parser.util.ParserUtils.TableParserInfo;
+import com.metsci.glimpse.dspl.schema.Concept;
+import com.metsci.glimpse.dspl.schema.DataType;
+import com.metsci.glimpse.dspl.schema.Slice;
+import com.metsci.glimpse.dspl.schema.Table.Column;
+import com.metsci.glimpse.dspl.util.DsplException;
+import com.metsci.glimpse.dspl.util.DsplHelper;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * A columnar binary format which is opened with {@link FileChannel#map} instead of being read.
+ *
+ * <p>Parsing a file only reads its header and column directory, then maps each column's region.
+ * The returned {@link MappedTableColumn}s and {@link MappedStringTableColumn}s read values straight
+ * from the mapped pages as they are requested, so opening a large table is nearly free and only the
+ * queried pages are ever loaded. Files which do not come from a {@link FileChannel} are read into a
+ * heap buffer instead.</p>
+ *
+ * <p>Layout (all values little-endian):
+ * <pre>
+ *   int magic, int version, int numColumns, int numRows, long headerLength
+ *   numColumns directory entries of:
+ *     long dataOffset, long dataLength, int nameOffset, int nameLength, int storage, int unused
+ *   utf-8 column ids (nameOffset is relative to the start of the file)
+ *   column data, each starting on an 8 byte boundary
+ * </pre>
+ * Float, integer, and date columns hold one 4 or 8 byte value per row; boolean columns hold one byte
+ * per row. String and concept columns are dictionary encoded, see {@link MappedStringTableColumn}.</p>
+ *
+ * <p>Each column is mapped as a single {@link ByteBuffer}, so no column may exceed
+ * {@link #MAX_COLUMN_BYTES} (2 GB): about 536 million rows for float and integer columns, and
+ * 268 million rows for date columns. The whole file may be larger. Writing a table with a larger
+ * column fails with a {@link DsplException} before anything is written.</p>
+ *
+ * <p>This is the format used by {@link com.metsci.glimpse.dspl.parser.util.DsplCacheHelper} for
+ * cached tables.</p>
+ */
+public class MappedColumnParser implements TableParser, TableWriter
+{
+    public static final int MAGIC = 0x4D434F4C;
+    public static final int VERSION = 1;
+    public static final Charset ENCODING = Charset.forName( "UTF-8" );
+
+    // each column is mapped as one buffer, which is indexed by int
+    public static final long MAX_COLUMN_BYTES = Integer.MAX_VALUE;
+
+    protected static final int HEADER_SIZE = 24;
+    protected static final int DIRECTORY_ENTRY_SIZE = 32;
+    protected static final int ALIGNMENT = 8;
+
+    protected static final int STORAGE_FLOAT = 1;
+    protected static final int STORAGE_INT = 2;
+    protected static final int STORAGE_LONG = 3;
+    protected static final int STORAGE_BOOLEAN = 4;
+    protected static final int STORAGE_DICTIONARY = 5;
+
+    protected SimpleParserFactory factory;
+
+    public MappedColumnParser( )
+    {
+        this.factory = createParserFactory( );
+    }
+
+    public SimpleParserFactory createParserFactory( )
+    {
+        return new SimpleParserFactory( );
+    }
+
+    @Override
+    public boolean isCachable( )
+    {
+        return false;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //////                        Writing                            //////
+    ///////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void write( Slice slice, SliceTableData data, OutputStream stream ) throws IOException, DsplException, JAXBException
+    {
+        write( slice, data, Channels.newChannel( stream ) );
+    }
+
+    @Override
+    public void write( Slice slice, SliceTableData data, WritableByteChannel channel ) throws IOException, DsplException, JAXBException
+    {
+        // constant columns have their value specified in the dspl metadata, so they are not written
+        List<TableColumn> columns = new ArrayList<TableColumn>( );
+
+        for ( String id : data.getDimensionColumnIds( ) )
+        {
+            TableColumn column = data.getDimensionColumn( id );
+            if ( !column.isConstant( ) ) columns.add( column );
+        }
+
+        for ( String id : data.getMetricColumnIds( ) )
+        {
+            TableColumn column = data.getMetricColumn( id );
+            if ( !column.isConstant( ) ) columns.add( column );
+        }
+
+        write( columns, data.getNumRows( ), channel );
+    }
+
+    @Override
+    public void write( Concept concept, PropertyTableData data, OutputStream stream ) throws IOException, DsplException, JAXBException
+    {
+        write( concept, data, Channels.newChannel( stream ) );
+    }
+
+    @Override
+    public void write( Concept concept, PropertyTableData data, WritableByteChannel channel ) throws IOException, DsplException, JAXBException
+    {
+        List<TableColumn> columns = new ArrayList<TableColumn>( );
+
+        for ( String id : data.getColumnIds( ) )
+        {
+            TableColumn column = data.getColumn( id );
+            if ( !column.isConstant( ) ) columns.add( column );
+        }
+
+        write( columns, data.getNumRows( ), channel );
+    }
+
+    protected void write( List<TableColumn> columns, int numRows, WritableByteChannel channel ) throws IOException, DsplException
+    {
+        try
+        {
+            int numColumns = columns.size( );
+
+            byte[][] names = new byte[numColumns][];
+            ColumnData[] columnData = new ColumnData[numColumns];
+
+            long headerLength = HEADER_SIZE + numColumns * DIRECTORY_ENTRY_SIZE;
+            for ( int i = 0; i < numColumns; i++ )
+            {
+                names[i] = columns.get( i ).getColumn( ).getId( ).getBytes( ENCODING );
+                headerLength += names[i].length;
+
+                columnData[i] = newColumnData( columns.get( i ), numRows );
+                checkLength( columnData[i].getLength( ) );
+            }
+
+            long[] offsets = new long[numColumns];
+            long offset = align( headerLength );
+            for ( int i = 0; i < numColumns; i++ )
+            {
+                offsets[i] = offset;
+                offset = align( offset + columnData[i].getLength( ) );
+            }
+
+            Output out = new Output( channel );
+
+            out.putInt( MAGIC );
+            out.putInt( VERSION );
+            out.putInt( numColumns );
+            out.putInt( numRows );
+            out.putLong( headerLength );
+
+            long nameOffset = HEADER_SIZE + numColumns * DIRECTORY_ENTRY_SIZE;
+            for ( int i = 0; i < numColumns; i++ )
+            {
+                out.putLong( offsets[i] );
+                out.putLong( columnData[i].getLength( ) );
+                out.putInt( ( int ) nameOffset );
+                out.putInt( names[i].length );
+                out.putInt( columnData[i].getStorage( ) );
+                out.putInt( 0 );
+
+                nameOffset += names[i].length;
+            }
+
+            for ( int i = 0; i < numColumns; i++ )
+            {
+                out.putBytes( names[i] );
+            }
+
+            for ( int i = 0; i < numColumns; i++ )
+            {
+                out.padTo( offsets[i] );
+                columnData[i].write( out );
+
+                // let large columns be collected once written
+                columnData[i] = null;
+            }
+
+            out.flush( );
+        }
+        finally
+        {
+            channel.close( );
+        }
+    }
+
+    protected ColumnData newColumnData( final TableColumn column, final int numRows ) throws DsplException
+    {
+        switch ( column.getType( ) )
+        {
+            case FLOAT:
+                return new ColumnData( STORAGE_FLOAT, 4L * numRows )
+                {
+                    @Override
+                    public void write( Output out ) throws IOException
+                    {
+                        for ( float v : column.getFloatData( ) )
+                            out.putFloat( v );
+                    }
+                };
+            case INTEGER:
+                return new ColumnData( STORAGE_INT, 4L * numRows )
+                {
+                    @Override
+                    public void write( Output out ) throws IOException
+                    {
+                        for ( int v : column.getIntegerData( ) )
+                            out.putInt( v );
+                    }
+                };
+            case DATE:
+                return new ColumnData( STORAGE_LONG, 8L * numRows )
+                {
+                    @Override
+                    public void write( Output out ) throws IOException
+                    {
+                        for ( long v : column.getDateData( ) )
+                            out.putLong( v );
+                    }
+                };
+            case BOOLEAN:
+                return new ColumnData( STORAGE_BOOLEAN, numRows )
+                {
+                    @Override
+                    public void write( Output out ) throws IOException
+                    {
+                        for ( boolean v : column.getBooleanData( ) )
+                            out.putByte( ( byte ) ( v ? 1 : 0 ) );
+                    }
+                };
+            case STRING:
+            case CONCEPT:
+                return newDictionaryData( column.getStringData( ) );
+            default:
+                throw new DsplException( "Unknown Type %s provided for Column %s.", column.getType( ), column.getColumn( ).getId( ) );
+        }
+    }
+
+    protected ColumnData newDictionaryData( String[] strings ) throws DsplException
+    {
+        Object2IntMap<String> codesByValue = new Object2IntOpenHashMap<String>( );
+        codesByValue.defaultReturnValue( -1 );
+
+        final List<byte[]> values = new ArrayList<byte[]>( );
+        final int[] codes = new int[strings.length];
+        long poolLength = 0;
+
+        for ( int i = 0; i < strings.length; i++ )
+        {
+            String string = strings[i];
+
+            if ( string == null )
+            {
+                codes[i] = -1;
+                continue;
+            }
+
+            int code = codesByValue.getInt( string );
+            if ( code < 0 )
+            {
+                code = values.size( );
+                codesByValue.put( string, code );
+
+                byte[] value = string.getBytes( ENCODING );
+                values.add( value );
+                poolLength += value.length;
+            }
+
+            codes[i] = code;
+        }
+
+        if ( poolLength > Integer.MAX_VALUE ) throw new DsplException( "Distinct values of string column exceed 2GB." );
+
+        long length = 4 + 4L * ( values.size( ) + 1 ) + 4L * codes.length + poolLength;
+
+        return new ColumnData( STORAGE_DICTIONARY, length )
+        {
+            @Override
+            public void write( Output out ) throws IOException
+            {
+                out.putInt( values.size( ) );
+
+                int poolOffset = 0;
+                out.putInt( poolOffset );
+                for ( byte[] value : values )
+                {
+                    poolOffset += value.length;
+                    out.putInt( poolOffset );
+                }
+
+                for ( int code : codes )
+                    out.putInt( code );
+
+                for ( byte[] value : values )
+                    out.putBytes( value );
+            }
+        };
+    }
+
+    protected static long align( long offset )
+    {
+        return ( offset + ALIGNMENT - 1 ) / ALIGNMENT * ALIGNMENT;
+    }
+
+    protected static abstract class ColumnData
+    {
+        protected int storage;
+        protected long length;
+
+        public ColumnData( int storage, long length )
+        {
+            this.storage = storage;
+            this.length = length;
+        }
+
+        public int getStorage( )
+        {
+            return storage;
+        }
+
+        public long getLength( )
+        {
+            return length;
+        }
+
+        public abstract void write( Output out ) throws IOException;
+    }
+
+    /**
+     * Buffers little-endian writes to a channel and tracks the file position.
+     */
+    protected static class Output
+    {
+        protected WritableByteChannel channel;
+        protected ByteBuffer buffer;
+        protected long position;
+
+        public Output( WritableByteChannel channel )
+        {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate( 64 * 1024 ).order( ByteOrder.LITTLE_ENDIAN );
+        }
+
+        protected void ensure( int bytes ) throws IOException
+        {
+            if ( buffer.remaining( ) < bytes ) flush( );
+        }
+
+        public void putByte( byte v ) throws IOException
+        {
+            ensure( 1 );
+            buffer.put( v );
+            position += 1;
+        }
+
+        public void putInt( int v ) throws IOException
+        {
+            ensure( 4 );
+            buffer.putInt( v );
+            position += 4;
+        }
+
+        public void putFloat( float v ) throws IOException
+        {
+            ensure( 4 );
+            buffer.putFloat( v );
+            position += 4;
+        }
+
+        public void putLong( long v ) throws IOException
+        {
+            ensure( 8 );
+            buffer.putLong( v );
+            position += 8;
+        }
+
+        public void putBytes( byte[] v ) throws IOException
+        {
+            for ( int i = 0; i < v.length; )
+            {
+                ensure( 1 );
+                int n = Math.min( v.length - i, buffer.remaining( ) );
+                buffer.put( v, i, n );
+                i += n;
+                position += n;
+            }
+        }
+
+        public void padTo( long offset ) throws IOException
+        {
+            while ( position < offset )
+                putByte( ( byte ) 0 );
+        }
+
+        public void flush( ) throws IOException
+        {
+            buffer.flip( );
+            while ( buffer.hasRemaining( ) )
+                channel.write( buffer );
+            buffer.clear( );
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //////                        Reading                            //////
+    ///////////////////////////////////////////////////////////////////////
+
+    @Override
+    public SliceTableData parse( Slice slice ) throws IOException, JAXBException, DsplException
+    {
+        return parse( slice, DsplHelper.getTableInputStream( slice ) );
+    }
+
+    @Override
+    public PropertyTableData parse( Concept concept ) throws IOException, JAXBException, DsplException
+    {
+        return parse( concept, DsplHelper.getTableInputStream( concept ) );
+    }
+
+    @Override
+    public SliceTableData parse( Slice slice, InputStream stream ) throws IOException, JAXBException, DsplException
+    {
+        return parse( slice, toChannel( stream ) );
+    }
+
+    @Override
+    public PropertyTableData parse( Concept concept, InputStream stream ) throws IOException, JAXBException, DsplException
+    {
+        return parse( concept, toChannel( stream ) );
+    }
+
+    @Override
+    public SliceTableData parse( Slice slice, ReadableByteChannel channel ) throws IOException, JAXBException, DsplException
+    {
+        MappedTable table = open( channel );
+
+        String[] columnIds = table.getColumnIds( );
+        int numColumns = columnIds.length;
+        int numRows = table.getNumRows( );
+
+        Concept[] concepts = new Concept[numColumns];
+        SliceColumnType[] sliceColumnTypes = new SliceColumnType[numColumns];
+        getConcepts( columnIds, slice, concepts, sliceColumnTypes );
+        Column[] columns = getColumns( columnIds, slice.getTable( ) );
+        DataType[] types = getTypes( concepts, columns );
+
+        Map<String, TableColumn> dimensionMap = new HashMap<String, TableColumn>( );
+        Map<String, TableColumn> metricMap = new HashMap<String, TableColumn>( );
+
+        for ( int i = 0; i < numColumns; i++ )
+        {
+            Map<String, TableColumn> map = sliceColumnTypes[i] == SliceColumnType.Dimension ? dimensionMap : metricMap;
+            map.put( columns[i].getId( ), newColumn( table, i, columns[i], concepts[i], types[i] ) );
+        }
+
+        TableParserInfo info = new TableParserInfo( columnIds, concepts, sliceColumnTypes, columns, types, null );
+        dimensionMap.putAll( getConstantTableColumns( slice, info, factory, SliceColumnType.Dimension, numRows ) );
+        metricMap.putAll( getConstantTableColumns( slice, info, factory, SliceColumnType.Metric, numRows ) );
+
+        return new SimpleSliceTableData( slice, dimensionMap, metricMap );
+    }
+
+    @Override
+    public PropertyTableData parse( Concept concept, ReadableByteChannel channel ) throws IOException, JAXBException, DsplException
+    {
+        MappedTable table = open( channel );
+
+        String[] columnIds = table.getColumnIds( );
+        int numColumns = columnIds.length;
+        int numRows = table.getNumRows( );
+
+        Concept[] concepts = getConcepts( columnIds, concept );
+        Column[] columns = getColumns( columnIds, concept.getTable( ) );
+        DataType[] types = getTypes( concepts, columns );
+
+        Map<String, TableColumn> map = new HashMap<String, TableColumn>( );
+
+        for ( int i = 0; i < numColumns; i++ )
+        {
+            map.put( columns[i].getId( ), newColumn( table, i, columns[i], concepts[i], types[i] ) );
+        }
+
+        TableParserInfo info = new TableParserInfo( columnIds, concepts, null, columns, types, null );
+        map.putAll( getConstantTableColumns( concept, info, factory, numRows ) );
+
+        return new SimplePropertyTableData( concept, map );
+    }
+
+    protected TableColumn newColumn( MappedTable table, int i, Column column, Concept concept, DataType type ) throws DsplException
+    {
+        int storage = table.getStorage( i );
+        ByteBuffer bytes = table.getData( i );
+        int numRows = table.getNumRows( );
+
+        if ( storage != getStorage( type ) )
+        {
+            throw new DsplException( "Column %s has type %s but is stored as incompatible type %d.", column.getId( ), type, storage );
+        }
+
+        if ( storage == STORAGE_DICTIONARY )
+        {
+            String format = column.getFormat( );
+            boolean intern = format != null && format.equals( "intern" );
+            return new MappedStringTableColumn( column, concept, type, numRows, bytes, intern );
+        }
+        else
+        {
+            return new MappedTableColumn( column, concept, type, numRows, bytes );
+        }
+    }
+
+    protected static int getStorage( DataType type ) throws DsplException
+    {
+        switch ( type )
+        {
+            case FLOAT:
+                return STORAGE_FLOAT;
+            case INTEGER:
+                return STORAGE_INT;
+            case DATE:
+                return STORAGE_LONG;
+            case BOOLEAN:
+                return STORAGE_BOOLEAN;
+            case STRING:
+            case CONCEPT:
+                return STORAGE_DICTIONARY;
+            default:
+                throw new DsplException( "Unknown Type %s.", type );
+        }
+    }
+
+    protected static ReadableByteChannel toChannel( InputStream stream )
+    {
+        if ( stream instanceof FileInputStream )
+        {
+            return ( ( FileInputStream ) stream ).getChannel( );
+        }
+        else
+        {
+            return Channels.newChannel( stream );
+        }
+    }
+
+    /**
+     * Reads the header and directory, and maps (or reads) the region of each column. The channel
+     * is closed before returning; mapped regions remain valid after it is closed.
+     */
+    protected MappedTable open( ReadableByteChannel channel ) throws IOException, DsplException
+    {
+        try
+        {
+            if ( channel instanceof FileChannel )
+            {
+                FileChannel file = ( FileChannel ) channel;
+
+                ByteBuffer header = file.map( READ_ONLY, 0, Math.min( HEADER_SIZE, file.size( ) ) );
+                long headerLength = readHeaderLength( header );
+                header = file.map( READ_ONLY, 0, headerLength );
+
+                MappedTable table = new MappedTable( header );
+                for ( int i = 0; i < table.getNumColumns( ); i++ )
+                {
+                    table.setData( i, file.map( READ_ONLY, table.getDataOffset( i ), checkLength( table.getDataLength( i ) ) ) );
+                }
+
+                return table;
+            }
+            else
+            {
+                ByteBuffer all = readFully( channel );
+
+                MappedTable table = new MappedTable( all );
+                for ( int i = 0; i < table.getNumColumns( ); i++ )
+                {
+                    ByteBuffer data = all.duplicate( );
+                    data.position( ( int ) table.getDataOffset( i ) );
+                    data.limit( ( int ) ( table.getDataOffset( i ) + table.getDataLength( i ) ) );
+                    table.setData( i, data.slice( ) );
+                }
+
+                return table;
+            }
+        }
+        finally
+        {
+            channel.close( );
+        }
+    }
+
+    protected static long readHeaderLength( ByteBuffer header ) throws DsplException
+    {
+        header.order( ByteOrder.LITTLE_ENDIAN );
+
+        if ( header.limit( ) < HEADER_SIZE || header.getInt( 0 ) != MAGIC )
+        {
+            throw new DsplException( "File does not contain proper header code: %s", Integer.toHexString( MAGIC ) );
+        }
+
+        int version = header.getInt( 4 );
+        if ( version != VERSION )
+        {
+            throw new DsplException( "Unsupported mapped column file version: %d", version );
+        }
+
+        return header.getLong( 16 );
+    }
+
+    protected static long checkLength( long length ) throws DsplException
+    {
+        if ( length > MAX_COLUMN_BYTES ) throw new DsplException( "Column of %d bytes exceeds the %d byte column limit of the mapped column format.", length, MAX_COLUMN_BYTES );
+        return length;
+    }
+
+    protected static ByteBuffer readFully( ReadableByteChannel channel ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+
+        while ( channel.read( buffer ) >= 0 )
+        {
+            if ( !buffer.hasRemaining( ) )
+            {
+                ByteBuffer larger = ByteBuffer.allocate( 2 * buffer.capacity( ) );
+                buffer.flip( );
+                larger.put( buffer );
+                buffer = larger;
+            }
+        }
+
+        buffer.flip( );
+        return buffer;
+    }
+
+    /**
+     * The parsed header and column directory of a mapped column file.
+     */
+    protected static class MappedTable
+    {
+        protected int numRows;
+        protected String[] columnIds;
+        protected long[] dataOffsets;
+        protected long[] dataLengths;
+        protected int[] storages;
+        protected ByteBuffer[] data;
+
+        public MappedTable( ByteBuffer header ) throws DsplException
+        {
+            header = header.duplicate( ).order( ByteOrder.LITTLE_ENDIAN );
+            readHeaderLength( header );
+
+            int numColumns = header.getInt( 8 );
+            this.numRows = header.getInt( 12 );
+
+            this.columnIds = new String[numColumns];
+            this.dataOffsets = new long[numColumns];
+            this.dataLengths = new long[numColumns];
+            this.storages = new int[numColumns];
+            this.data = new ByteBuffer[numColumns];
+
+            for ( int i = 0; i < numColumns; i++ )
+            {
+                int entry = HEADER_SIZE + i * DIRECTORY_ENTRY_SIZE;
+
+                dataOffsets[i] = header.getLong( entry );
+                dataLengths[i] = header.getLong( entry + 8 );
+                int nameOffset = header.getInt( entry + 16 );
+                int nameLength = header.getInt( entry + 20 );
+                storages[i] = header.getInt( entry + 24 );
+
+                byte[] name = new byte[nameLength];
+                for ( int j = 0; j < nameLength; j++ )
+                {
+                    name[j] = header.get( nameOffset + j );
+                }
+
+                columnIds[i] = new String( name, ENCODING ).intern( );
+            }
+        }
+
+        public int getNumColumns( )
+        {
+            return columnIds.length;
+        }
+
+        public int getNumRows( )
+        {
+            return numRows;
+        }
+
+        public String[] getColumnIds( )
+        {
+            return columnIds;
+        }
+
+        public long getDataOffset( int i )
+        {
+            return dataOffsets[i];
+        }
+
+        public long getDataLength( int i )
+        {
+            return dataLengths[i];
+        }
+
+        public int getStorage( int i )
+        {
+            return storages[i];
+        }
+
+        public ByteBuffer getData( int i )
+        {
+            return data[i];
+        }
+
+        public void setData( int i, ByteBuffer buffer )
+        {
+            data[i] = buffer;
+        }
+    }
+}
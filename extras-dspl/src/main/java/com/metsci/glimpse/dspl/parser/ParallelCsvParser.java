@@ -0,0 +1,846 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dspl.parser;
+
+import static com.metsci.glimpse.dspl.parser.util.ParserUtils.buildPropertyTableData;
+import static com.metsci.glimpse.dspl.parser.util.ParserUtils.buildSliceTableData;
+import static com.metsci.glimpse.util.concurrent.ConcurrencyUtils.newDaemonThreadFactory;
+import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.bind.JAXBException;
+
+import com.metsci.glimpse.dspl.DsplParser;
+import com.metsci.glimpse.dspl.parser.table.PropertyTableData;
+import com.metsci.glimpse.dspl.parser.table.SliceTableData;
+import com.metsci.glimpse.dspl.parser.util.ParserUtils.ParserFactory;
+import com.metsci.glimpse.dspl.parser.util.ParserUtils.TableParserInfo;
+import com.metsci.glimpse.dspl.schema.Concept;
+import com.metsci.glimpse.dspl.schema.Slice;
+import com.metsci.glimpse.dspl.schema.Table.Column;
+import com.metsci.glimpse.dspl.util.DsplException;
+
+/**
+ * A {@link CsvParser} which memory maps local csv files and parses them in parallel.
+ *
+ * <p>The file is split into chunks at line breaks. Each chunk is parsed on its own thread,
+ * directly from the file bytes into primitive column arrays, and the chunks are then
+ * concatenated in file order. Records are split exactly as {@link CsvParser} splits them:
+ * every CR or LF ends a record (even inside quotes), empty lines are skipped, and each
+ * line is split into cells following the rules of
+ * {@link com.metsci.glimpse.dspl.parser.util.QuoteAwareStringSplitter}. The resulting
+ * {@link SliceTableData} or {@link PropertyTableData} is the same as the one produced
+ * by {@link CsvParser}.</p>
+ *
+ * <p>Streams which are not backed by a local file (classpath resources, zip entries, network
+ * urls) are handed to {@link CsvParser}, as are files in a charset which is not a superset
+ * of ascii.</p>
+ */
+public class ParallelCsvParser extends CsvParser
+{
+    public static final long DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    // parse chunks must fit in a single mapped buffer and byte array, with room for the record which straddles the chunk end
+    public static final long MAX_CHUNK_SIZE = 1024 * 1024 * 1024;
+
+    // the largest byte array which can be allocated, which bounds the chunk plus the line which straddles its end
+    protected static final long MAX_RANGE_SIZE = Integer.MAX_VALUE - 8;
+
+    // size of the buffer used to search for the line break which ends each chunk
+    protected static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    protected static final byte QUOTE = '\"';
+    protected static final byte COMMA = ',';
+    protected static final byte LF = '\n';
+    protected static final byte CR = '\r';
+
+    // cell splitting states, see splitRecord
+    protected static final int DEFAULT = 0;
+    protected static final int BETWEEN_QUOTES = 1;
+    protected static final int AFTER_END_QUOTE_BEFORE_COMMA = 2;
+
+    // powers of ten which are exactly representable as doubles
+    protected static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    protected static ExecutorService sharedExecutor;
+
+    protected static synchronized ExecutorService getSharedExecutor( )
+    {
+        if ( sharedExecutor == null )
+        {
+            int nThreads = Runtime.getRuntime( ).availableProcessors( );
+            sharedExecutor = Executors.newFixedThreadPool( nThreads, newDaemonThreadFactory( Executors.defaultThreadFactory( ) ) );
+        }
+
+        return sharedExecutor;
+    }
+
+    protected ExecutorService executor;
+    protected long chunkSize;
+    protected Charset charset;
+
+    public ParallelCsvParser( DsplParser dsplParser )
+    {
+        this( dsplParser, getSharedExecutor( ), DEFAULT_CHUNK_SIZE );
+    }
+
+    /**
+     * @param executor runs the scan and parse tasks for each chunk
+     * @param chunkSize the approximate number of bytes parsed by each task. Each chunk is mapped
+     *                  separately, so very small chunks on a large file can exhaust the process's
+     *                  limit on memory mappings.
+     */
+    public ParallelCsvParser( DsplParser dsplParser, ExecutorService executor, long chunkSize )
+    {
+        super( dsplParser );
+
+        if ( chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE ) throw new IllegalArgumentException( "Chunk size must be between 1 and " + MAX_CHUNK_SIZE + " bytes: " + chunkSize );
+
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+
+        // the superclass reads with the default charset, so cells are decoded the same way here
+        this.charset = Charset.defaultCharset( );
+    }
+
+    public long getChunkSize( )
+    {
+        return chunkSize;
+    }
+
+    @Override
+    public ParserFactory createParserFactory( )
+    {
+        return new ByteParserFactory( );
+    }
+
+    @Override
+    public SliceTableData parse( Slice slice, InputStream stream ) throws IOException, JAXBException, DsplException
+    {
+        if ( !( stream instanceof FileInputStream ) || !isAsciiCompatible( charset ) )
+        {
+            return super.parse( slice, stream );
+        }
+
+        try
+        {
+            return parse( slice, ( ( FileInputStream ) stream ).getChannel( ) );
+        }
+        finally
+        {
+            stream.close( );
+        }
+    }
+
+    @Override
+    public SliceTableData parse( Slice slice, ReadableByteChannel channel ) throws IOException, JAXBException, DsplException
+    {
+        if ( !( channel instanceof FileChannel ) || !isAsciiCompatible( charset ) )
+        {
+            return super.parse( slice, channel );
+        }
+
+        try
+        {
+            FileChannel file = ( FileChannel ) channel;
+            List<Long> boundaries = findRecordBoundaries( file );
+            String header = readHeader( file, boundaries );
+
+            TableParserInfo info = newParserInfo( slice, new BufferedReader( new StringReader( header ) ) );
+
+            parse( file, boundaries, info );
+
+            return buildSliceTableData( slice, info, factory );
+        }
+        finally
+        {
+            channel.close( );
+        }
+    }
+
+    @Override
+    public PropertyTableData parse( Concept concept, InputStream stream ) throws IOException, JAXBException, DsplException
+    {
+        if ( !( stream instanceof FileInputStream ) || !isAsciiCompatible( charset ) )
+        {
+            return super.parse( concept, stream );
+        }
+
+        try
+        {
+            return parse( concept, ( ( FileInputStream ) stream ).getChannel( ) );
+        }
+        finally
+        {
+            stream.close( );
+        }
+    }
+
+    @Override
+    public PropertyTableData parse( Concept concept, ReadableByteChannel channel ) throws IOException, JAXBException, DsplException
+    {
+        if ( !( channel instanceof FileChannel ) || !isAsciiCompatible( charset ) )
+        {
+            return super.parse( concept, channel );
+        }
+
+        try
+        {
+            FileChannel file = ( FileChannel ) channel;
+            List<Long> boundaries = findRecordBoundaries( file );
+            String header = readHeader( file, boundaries );
+
+            TableParserInfo info = newParserInfo( concept, new BufferedReader( new StringReader( header ) ) );
+
+            parse( file, boundaries, info );
+
+            return buildPropertyTableData( concept, info, factory );
+        }
+        finally
+        {
+            channel.close( );
+        }
+    }
+
+    /**
+     * Splits the remainder of the file into byte ranges which each begin at the start of a line.
+     * The first range holds only the header line. Each following range ends at the first line
+     * break at least chunkSize bytes after its start (or at the end of the file).
+     *
+     * @return offsets into the file, starting with the current channel position and ending with the file size
+     */
+    protected List<Long> findRecordBoundaries( FileChannel file ) throws IOException, DsplException
+    {
+        long start = file.position( );
+        long end = file.size( );
+
+        List<Long> boundaries = new ArrayList<Long>( );
+        boundaries.add( start );
+
+        // the first range ends at the first line break, after the header
+        long rangeStart = start;
+        long searchStart = start;
+        while ( searchStart < end )
+        {
+            long boundary = findLineEnd( file, searchStart, end );
+            checkRangeSize( rangeStart, boundary );
+            if ( boundary >= end ) break;
+
+            boundaries.add( boundary );
+
+            rangeStart = boundary;
+            searchStart = boundary + chunkSize;
+        }
+
+        checkRangeSize( rangeStart, end );
+        boundaries.add( end );
+
+        return boundaries;
+    }
+
+    /**
+     * @return the offset just after the first CR or LF at or after {@code start}, or {@code end} if there is none
+     */
+    protected static long findLineEnd( FileChannel file, long start, long end ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( SCAN_BUFFER_SIZE );
+
+        long position = start;
+        while ( position < end )
+        {
+            buffer.clear( );
+            int count = file.read( buffer, position );
+            if ( count <= 0 ) break;
+
+            for ( int i = 0; i < count; i++ )
+            {
+                byte c = buffer.get( i );
+                if ( c == LF || c == CR ) return position + i + 1;
+            }
+
+            position += count;
+        }
+
+        return end;
+    }
+
+    protected static void checkRangeSize( long start, long end ) throws DsplException
+    {
+        if ( end - start > MAX_RANGE_SIZE )
+        {
+            throw new DsplException( "Csv line starting near byte %d is too long to parse (more than %d bytes).", start, MAX_RANGE_SIZE );
+        }
+    }
+
+    protected String readHeader( FileChannel file, List<Long> boundaries ) throws IOException
+    {
+        long start = boundaries.get( 0 );
+        long end = boundaries.get( 1 );
+
+        byte[] bytes = read( file, start, end - start );
+
+        int size = bytes.length;
+        while ( size > 0 && ( bytes[size - 1] == LF || bytes[size - 1] == CR ) )
+        {
+            size--;
+        }
+
+        return decode( bytes, 0, size );
+    }
+
+    protected void parse( final FileChannel file, List<Long> boundaries, final TableParserInfo info ) throws IOException, DsplException
+    {
+        // the first range is the header line
+        List<Future<ByteColumnParser[]>> chunks = new ArrayList<Future<ByteColumnParser[]>>( );
+        for ( int i = 1; i < boundaries.size( ) - 1; i++ )
+        {
+            final long rangeStart = boundaries.get( i );
+            final long rangeSize = boundaries.get( i + 1 ) - rangeStart;
+
+            chunks.add( executor.submit( new Callable<ByteColumnParser[]>( )
+            {
+                @Override
+                public ByteColumnParser[] call( ) throws Exception
+                {
+                    ByteColumnParser[] parsers = newChunkParsers( info );
+                    parseChunk( read( file, rangeStart, rangeSize ), parsers );
+                    return parsers;
+                }
+            } ) );
+        }
+
+        CSVTableColumnParser[] parsers = ( CSVTableColumnParser[] ) info.getParsers( );
+
+        for ( int i = 0; i < chunks.size( ); i++ )
+        {
+            ByteColumnParser[] chunkParsers = getResult( chunks.get( i ), chunks );
+
+            for ( int j = 0; j < parsers.length; j++ )
+            {
+                ( ( ByteColumnParser ) parsers[j] ).append( chunkParsers[j] );
+            }
+
+            // let the chunk columns be collected as soon as they have been copied
+            chunks.set( i, null );
+        }
+    }
+
+    /**
+     * Maps a range of the file and copies it onto the heap, where it can be scanned
+     * much faster than through the mapped buffer.
+     */
+    protected static byte[] read( FileChannel file, long start, long size ) throws IOException
+    {
+        ByteBuffer buffer = file.map( READ_ONLY, start, size );
+
+        byte[] bytes = new byte[buffer.remaining( )];
+        buffer.get( bytes );
+
+        return bytes;
+    }
+
+    protected ByteColumnParser[] newChunkParsers( TableParserInfo info ) throws DsplException
+    {
+        CSVTableColumnParser[] parsers = getParsers( factory, info.getColumns( ), info.getDataTypes( ) );
+        return Arrays.copyOf( parsers, parsers.length, ByteColumnParser[].class );
+    }
+
+    protected void parseChunk( byte[] bytes, ByteColumnParser[] parsers ) throws IOException, DsplException
+    {
+        Tokens tokens = new Tokens( parsers.length );
+
+        int size = bytes.length;
+        int recordStart = 0;
+
+        for ( int i = 0; i <= size; i++ )
+        {
+            if ( i < size && bytes[i] != LF && bytes[i] != CR )
+            {
+                continue;
+            }
+
+            // empty records are skipped, which also covers the LF of a CRLF line ending
+            if ( i > recordStart )
+            {
+                parseRecord( bytes, recordStart, i, tokens, parsers );
+            }
+
+            recordStart = i + 1;
+        }
+    }
+
+    protected void parseRecord( byte[] bytes, int start, int end, Tokens tokens, ByteColumnParser[] parsers ) throws IOException, DsplException
+    {
+        splitRecord( bytes, start, end, tokens );
+
+        int size = parsers.length;
+
+        if ( tokens.count == size )
+        {
+            for ( int i = 0; i < size; i++ )
+            {
+                parsers[i].addData( bytes, tokens.starts[i], tokens.ends[i] );
+            }
+        }
+        else
+        {
+            if ( dsplParser.isFailOnErrorMode( ) )
+            {
+                throw new DsplException( "Encountered row of incorrect size (expected %d found %d): [%s]", size, tokens.count, decode( bytes, start, end ) );
+            }
+            else
+            {
+                logWarning( logger, "Skipping row of incorrect size (expected %d found %d): [%s]", size, tokens.count, decode( bytes, start, end ) );
+            }
+        }
+    }
+
+    /**
+     * Splits a record into cells following the same rules as
+     * {@link com.metsci.glimpse.dspl.parser.util.QuoteAwareStringSplitter#splitLine(String)}.
+     */
+    protected void splitRecord( byte[] bytes, int start, int end, Tokens tokens ) throws IOException
+    {
+        tokens.count = 0;
+
+        int itemStart = start;
+        int mode = DEFAULT;
+
+        for ( int i = start; i < end; i++ )
+        {
+            byte c = bytes[i];
+
+            if ( i == end - 1 )
+            {
+                if ( c == QUOTE )
+                {
+                    tokens.add( itemStart, i );
+                }
+                else if ( c == COMMA )
+                {
+                    tokens.add( itemStart, i );
+                    tokens.add( i, i );
+                }
+                else
+                {
+                    tokens.add( itemStart, i + 1 );
+                }
+                break;
+            }
+
+            switch ( mode )
+            {
+                case BETWEEN_QUOTES:
+                    if ( c == QUOTE )
+                    {
+                        tokens.add( itemStart, i );
+                        mode = AFTER_END_QUOTE_BEFORE_COMMA;
+                        itemStart = i + 1;
+                    }
+                    break;
+
+                case AFTER_END_QUOTE_BEFORE_COMMA:
+                    if ( c == QUOTE )
+                    {
+                        throw new IOException( String.format( "Unable to parse: \"%s\"", decode( bytes, start, end ) ) );
+                    }
+                    else if ( c == COMMA )
+                    {
+                        itemStart = i + 1;
+                        mode = DEFAULT;
+                    }
+                    break;
+
+                case DEFAULT:
+                    if ( c == QUOTE )
+                    {
+                        itemStart = i + 1;
+                        mode = BETWEEN_QUOTES;
+                    }
+                    else if ( c == COMMA )
+                    {
+                        tokens.add( itemStart, i );
+                        itemStart = i + 1;
+                    }
+                    break;
+            }
+        }
+    }
+
+    protected static class Tokens
+    {
+        protected int[] starts;
+        protected int[] ends;
+        protected int count;
+
+        public Tokens( int capacity )
+        {
+            this.starts = new int[capacity + 1];
+            this.ends = new int[capacity + 1];
+        }
+
+        public void add( int start, int end )
+        {
+            if ( count == starts.length )
+            {
+                starts = Arrays.copyOf( starts, 2 * count );
+                ends = Arrays.copyOf( ends, 2 * count );
+            }
+
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+    }
+
+    protected String decode( byte[] bytes, int start, int end )
+    {
+        return new String( bytes, start, end - start, charset );
+    }
+
+    /**
+     * The record splitting works on raw bytes, so the quote, comma, and newline characters (and
+     * the characters of plain numbers) must each be encoded as their single ascii byte.
+     */
+    protected static boolean isAsciiCompatible( Charset charset )
+    {
+        String ascii = "\",\r\n+-.0123456789";
+        return Arrays.equals( ascii.getBytes( charset ), ascii.getBytes( Charset.forName( "US-ASCII" ) ) );
+    }
+
+    /**
+     * Parses a plain decimal integer with at most nine digits.
+     *
+     * @return the value, or Long.MIN_VALUE if the text should be handed to {@link Integer#parseInt(String)}
+     */
+    protected static long parseSimpleInt( byte[] bytes, int start, int end )
+    {
+        int i = start;
+        boolean negative = false;
+
+        byte first = bytes[i];
+        if ( first == '-' || first == '+' )
+        {
+            negative = first == '-';
+            i++;
+        }
+
+        int digits = end - i;
+        if ( digits < 1 || digits > 9 ) return Long.MIN_VALUE;
+
+        int value = 0;
+        for ( ; i < end; i++ )
+        {
+            int d = bytes[i] - '0';
+            if ( d < 0 || d > 9 ) return Long.MIN_VALUE;
+            value = 10 * value + d;
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a plain decimal number (no exponent) with at most fifteen digits.
+     *
+     * <p>The digits and the power of ten are both exact as doubles, so their quotient is the correctly
+     * rounded double. Rounding that double to a float gives the same result as {@link Float#parseFloat(String)},
+     * unless the double landed exactly halfway between two floats; those rare values are handed back.</p>
+     *
+     * @return the value, or NaN if the text should be handed to {@link Float#parseFloat(String)}
+     */
+    protected static float parseSimpleFloat( byte[] bytes, int start, int end )
+    {
+        int i = start;
+        boolean negative = false;
+
+        byte first = bytes[i];
+        if ( first == '-' || first == '+' )
+        {
+            negative = first == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+
+        for ( ; i < end; i++ )
+        {
+            byte c = bytes[i];
+
+            if ( c == '.' && !point )
+            {
+                point = true;
+            }
+            else if ( c >= '0' && c <= '9' )
+            {
+                if ( ++digits > 15 ) return Float.NaN;
+                mantissa = 10 * mantissa + ( c - '0' );
+                if ( point ) fractionDigits++;
+            }
+            else
+            {
+                return Float.NaN;
+            }
+        }
+
+        if ( digits == 0 || fractionDigits >= POW10.length ) return Float.NaN;
+
+        double exact = mantissa / POW10[fractionDigits];
+        float value = ( float ) exact;
+
+        // float spacing halves below a power of two, so check both possible half-spacings
+        double error = Math.abs( exact - value );
+        double ulp = Math.ulp( value );
+        if ( error != 0 && ( error == 0.5 * ulp || error == 0.25 * ulp ) ) return Float.NaN;
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * A column parser which can read cells directly from bytes, and which can absorb the
+     * values of another parser of the same type (used to join the chunks of a file in order).
+     */
+    public interface ByteColumnParser extends CSVTableColumnParser
+    {
+        public void addData( byte[] bytes, int start, int end ) throws DsplException;
+
+        public void append( ByteColumnParser other );
+    }
+
+    public class ByteParserFactory extends CSVParserFactory
+    {
+        @Override
+        public ByteColumnParser newConceptParser( Column column )
+        {
+            return new ByteStringColumnParser( );
+        }
+
+        @Override
+        public ByteColumnParser newDateParser( Column column )
+        {
+            return new ByteDateColumnParser( column );
+        }
+
+        @Override
+        public ByteColumnParser newBooleanParser( Column column )
+        {
+            return new ByteBooleanColumnParser( );
+        }
+
+        @Override
+        public ByteColumnParser newIntegerParser( Column column )
+        {
+            return new ByteIntegerColumnParser( );
+        }
+
+        @Override
+        public ByteColumnParser newFloatParser( Column column )
+        {
+            return new ByteFloatColumnParser( );
+        }
+
+        @Override
+        public ByteColumnParser newStringParser( Column column )
+        {
+            return new ByteStringColumnParser( );
+        }
+    }
+
+    protected class ByteStringColumnParser extends CSVStringColumnParser implements ByteColumnParser
+    {
+        @Override
+        public void addData( byte[] bytes, int start, int end )
+        {
+            data.add( decode( bytes, start, end ) );
+        }
+
+        @Override
+        public void append( ByteColumnParser other )
+        {
+            data.addAll( ( ( ByteStringColumnParser ) other ).data );
+        }
+    }
+
+    protected class ByteIntegerColumnParser extends CSVIntegerColumnParser implements ByteColumnParser
+    {
+        @Override
+        public void addData( byte[] bytes, int start, int end ) throws DsplException
+        {
+            if ( start == end )
+            {
+                addGap( );
+                return;
+            }
+
+            long value = parseSimpleInt( bytes, start, end );
+            if ( value != Long.MIN_VALUE )
+            {
+                data.append( ( int ) value );
+            }
+            else
+            {
+                addData( decode( bytes, start, end ) );
+            }
+        }
+
+        @Override
+        public void append( ByteColumnParser other )
+        {
+            data.append( ( ( ByteIntegerColumnParser ) other ).data );
+        }
+    }
+
+    protected class ByteFloatColumnParser extends CSVFloatColumnParser implements ByteColumnParser
+    {
+        @Override
+        public void addData( byte[] bytes, int start, int end ) throws DsplException
+        {
+            if ( start == end )
+            {
+                addGap( );
+                return;
+            }
+
+            float value = parseSimpleFloat( bytes, start, end );
+            if ( !Float.isNaN( value ) )
+            {
+                data.append( value );
+            }
+            else
+            {
+                addData( decode( bytes, start, end ) );
+            }
+        }
+
+        @Override
+        public void append( ByteColumnParser other )
+        {
+            data.append( ( ( ByteFloatColumnParser ) other ).data );
+        }
+    }
+
+    protected class ByteBooleanColumnParser extends CSVBooleanColumnParser implements ByteColumnParser
+    {
+        @Override
+        public void addData( byte[] bytes, int start, int end ) throws DsplException
+        {
+            if ( start == end )
+            {
+                addGap( );
+                return;
+            }
+
+            // same as Boolean.parseBoolean: true for any capitalization of "true", false otherwise
+            boolean value = end - start == 4;
+            for ( int i = 0; value && i < 4; i++ )
+            {
+                value = ( bytes[start + i] | 0x20 ) == "true".charAt( i );
+            }
+
+            data.append( value );
+        }
+
+        @Override
+        public void append( ByteColumnParser other )
+        {
+            data.append( ( ( ByteBooleanColumnParser ) other ).data );
+        }
+    }
+
+    protected class ByteDateColumnParser extends CSVDateColumnParser implements ByteColumnParser
+    {
+        public ByteDateColumnParser( Column column )
+        {
+            super( column );
+        }
+
+        @Override
+        public void addData( byte[] bytes, int start, int end ) throws DsplException
+        {
+            addData( decode( bytes, start, end ) );
+        }
+
+        @Override
+        public void append( ByteColumnParser other )
+        {
+            data.append( ( ( ByteDateColumnParser ) other ).data );
+        }
+    }
+
+    protected static <T> T getResult( Future<T> future, List<? extends Future<?>> all ) throws IOException, DsplException
+    {
+        try
+        {
+            return future.get( );
+        }
+        catch ( InterruptedException e )
+        {
+            cancel( all );
+            Thread.currentThread( ).interrupt( );
+            throw new DsplException( "Interrupted while parsing csv data.", e );
+        }
+        catch ( ExecutionException e )
+        {
+            cancel( all );
+
+            Throwable cause = e.getCause( );
+            if ( cause instanceof IOException ) throw ( IOException ) cause;
+            if ( cause instanceof DsplException ) throw ( DsplException ) cause;
+            if ( cause instanceof RuntimeException ) throw ( RuntimeException ) cause;
+            if ( cause instanceof Error ) throw ( Error ) cause;
+            throw new DsplException( "Problem parsing csv data.", cause );
+        }
+    }
+
+    protected static void cancel( List<? extends Future<?>> futures )
+    {
+        for ( Future<?> future : futures )
+        {
+            if ( future != null ) future.cancel( true );
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dspl.parser.column;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+
+import com.metsci.glimpse.dspl.schema.Concept;
+import com.metsci.glimpse.dspl.schema.DataType;
+import com.metsci.glimpse.dspl.schema.Table.Column;
+
+/**
+ * A dictionary encoded string column backed by a (usually memory mapped) region of a
+ * {@link com.metsci.glimpse.dspl.parser.MappedColumnParser} file.
+ *
+ * <p>Each row holds a code into a pool of the column's distinct values (-1 for null). A value
+ * is decoded from the pool the first time it is requested, so only the pages holding requested
+ * rows and values are ever read.</p>
+ */
+public class MappedStringTableColumn extends AbstractTableColumn
+{
+    protected static final Charset ENCODING = Charset.forName( "UTF-8" );
+
+    protected ByteBuffer bytes;
+    protected boolean intern;
+
+    protected IntBuffer poolOffsets;
+    protected ByteBuffer pool;
+    protected volatile IntBuffer codes;
+
+    // decoded values, filled in as they are requested
+    protected String[] values;
+
+    /**
+     * @param bytes the little-endian column region: the number of distinct values n, n+1 offsets into the
+     *              pool, one code per row, then the utf-8 pool itself
+     * @param intern whether decoded values should be interned (the "intern" column format)
+     */
+    public MappedStringTableColumn( Column column, Concept concept, DataType type, int size, ByteBuffer bytes, boolean intern )
+    {
+        super( column, concept, type, size );
+
+        this.bytes = bytes;
+        this.intern = intern;
+    }
+
+    @Override
+    public boolean isConstant( )
+    {
+        return false;
+    }
+
+    protected void init( )
+    {
+        // codes is assigned last, so once it is visible the other views are too
+        if ( codes != null ) return;
+
+        synchronized ( this )
+        {
+            if ( codes != null ) return;
+
+            ByteBuffer buffer = bytes.duplicate( ).order( ByteOrder.LITTLE_ENDIAN );
+
+            int numValues = buffer.getInt( 0 );
+            int offsetsStart = 4;
+            int codesStart = offsetsStart + 4 * ( numValues + 1 );
+            int poolStart = codesStart + 4 * size;
+
+            buffer.position( offsetsStart ).limit( codesStart );
+            this.poolOffsets = buffer.slice( ).order( ByteOrder.LITTLE_ENDIAN ).asIntBuffer( );
+
+            buffer.limit( buffer.capacity( ) ).position( poolStart );
+            this.pool = buffer.slice( );
+
+            this.values = new String[numValues];
+
+            buffer.position( codesStart ).limit( poolStart );
+            this.codes = buffer.slice( ).order( ByteOrder.LITTLE_ENDIAN ).asIntBuffer( );
+        }
+    }
+
+    /**
+     * @return a read-only view of the dictionary code of each row (-1 for null), without copying them
+     */
+    public IntBuffer getCodes( )
+    {
+        init( );
+        return codes.asReadOnlyBuffer( );
+    }
+
+    /**
+     * @return the number of distinct non-null values in the column
+     */
+    public int getNumValues( )
+    {
+        init( );
+        return values.length;
+    }
+
+    /**
+     * @return the distinct value with the given dictionary code
+     */
+    public String getValue( int code )
+    {
+        init( );
+
+        String value = values[code];
+
+        if ( value == null )
+        {
+            int start = poolOffsets.get( code );
+            int end = poolOffsets.get( code + 1 );
+
+            byte[] data = new byte[end - start];
+            ByteBuffer buffer = pool.duplicate( );
+            buffer.position( start );
+            buffer.get( data );
+
+            value = new String( data, ENCODING );
+            if ( intern ) value = value.intern( );
+
+            // racing threads decode equal strings, so either may win
+            values[code] = value;
+        }
+
+        return value;
+    }
+
+    @Override
+    public String[] getStringData( )
+    {
+        String[] array = new String[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            array[i] = getStringData( i );
+        }
+
+        return array;
+    }
+
+    @Override
+    public String getStringData( int i )
+    {
+        init( );
+
+        int code = codes.get( i );
+        return code < 0 ? null : getValue( code );
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dspl.parser.column;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import com.metsci.glimpse.dspl.schema.Concept;
+import com.metsci.glimpse.dspl.schema.DataType;
+import com.metsci.glimpse.dspl.schema.Table.Column;
+
+/**
+ * A numeric, date, or boolean column backed by a (usually memory mapped) region of a
+ * {@link com.metsci.glimpse.dspl.parser.MappedColumnParser} file.
+ *
+ * <p>Nothing is read from the region until the column is first accessed. Single values are
+ * read straight from the buffer. The array getters return a new copy on each call, so callers
+ * reading many values should hold on to the array, or use the buffer views.</p>
+ */
+public class MappedTableColumn extends AbstractTableColumn
+{
+    protected ByteBuffer bytes;
+    protected volatile Buffer view;
+
+    /**
+     * @param bytes the little-endian values of the column: 4 byte floats or ints, 8 byte dates, or 1 byte booleans
+     */
+    public MappedTableColumn( Column column, Concept concept, DataType type, int size, ByteBuffer bytes )
+    {
+        super( column, concept, type, size );
+
+        this.bytes = bytes;
+    }
+
+    @Override
+    public boolean isConstant( )
+    {
+        return false;
+    }
+
+    protected Buffer view( )
+    {
+        Buffer view = this.view;
+
+        if ( view == null )
+        {
+            ByteBuffer buffer = bytes.duplicate( ).order( ByteOrder.LITTLE_ENDIAN );
+
+            switch ( type )
+            {
+                case FLOAT:
+                    view = buffer.asFloatBuffer( );
+                    break;
+                case INTEGER:
+                    view = buffer.asIntBuffer( );
+                    break;
+                case DATE:
+                    view = buffer.asLongBuffer( );
+                    break;
+                default:
+                    view = buffer;
+                    break;
+            }
+
+            this.view = view;
+        }
+
+        return view;
+    }
+
+    /**
+     * @return a read-only view of the values of a FLOAT column, without copying them
+     */
+    public FloatBuffer getFloatBuffer( )
+    {
+        if ( type != DataType.FLOAT ) throw new UnsupportedOperationException( "Float DataType is not supported by this TableColumn." );
+        return ( ( FloatBuffer ) view( ) ).asReadOnlyBuffer( );
+    }
+
+    /**
+     * @return a read-only view of the values of an INTEGER column, without copying them
+     */
+    public IntBuffer getIntegerBuffer( )
+    {
+        if ( type != DataType.INTEGER ) throw new UnsupportedOperationException( "Integer DataType is not supported by this TableColumn." );
+        return ( ( IntBuffer ) view( ) ).asReadOnlyBuffer( );
+    }
+
+    /**
+     * @return a read-only view of the values of a DATE column, without copying them
+     */
+    public LongBuffer getDateBuffer( )
+    {
+        if ( type != DataType.DATE ) throw new UnsupportedOperationException( "Date DataType is not supported by this TableColumn." );
+        return ( ( LongBuffer ) view( ) ).asReadOnlyBuffer( );
+    }
+
+    @Override
+    public float[] getFloatData( )
+    {
+        float[] array = new float[size];
+        getFloatBuffer( ).get( array );
+        return array;
+    }
+
+    @Override
+    public int[] getIntegerData( )
+    {
+        int[] array = new int[size];
+        getIntegerBuffer( ).get( array );
+        return array;
+    }
+
+    @Override
+    public long[] getDateData( )
+    {
+        long[] array = new long[size];
+        getDateBuffer( ).get( array );
+        return array;
+    }
+
+    @Override
+    public boolean[] getBooleanData( )
+    {
+        boolean[] array = new boolean[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            array[i] = getBooleanData( i );
+        }
+
+        return array;
+    }
+
+    @Override
+    public float getFloatData( int i )
+    {
+        if ( type != DataType.FLOAT ) return super.getFloatData( i );
+        return ( ( FloatBuffer ) view( ) ).get( i );
+    }
+
+    @Override
+    public int getIntegerData( int i )
+    {
+        if ( type != DataType.INTEGER ) return super.getIntegerData( i );
+        return ( ( IntBuffer ) view( ) ).get( i );
+    }
+
+    @Override
+    public long getDateData( int i )
+    {
+        if ( type != DataType.DATE ) return super.getDateData( i );
+        return ( ( LongBuffer ) view( ) ).get( i );
+    }
+
+    @Override
+    public boolean getBooleanData( int i )
+    {
+        if ( type != DataType.BOOLEAN ) return super.getBooleanData( i );
+        return ( ( ByteBuffer ) view( ) ).get( i ) != 0;
+    }
+}
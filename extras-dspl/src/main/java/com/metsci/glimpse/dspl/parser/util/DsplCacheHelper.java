@@ -26,6 +26,10 @@
  */
 package com.metsci.glimpse.dspl.parser.util;
 
+import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -34,9 +38,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
@@ -67,7 +73,7 @@ public class DsplCacheHelper
 
     public static final String CACHE_FILE = "cache_data";
 
-    public static final String CACHE_FORMAT = "bin";
+    public static final String CACHE_FORMAT = "mbin";
     public static final String HASH_FILE = ".md5";
 
     public static PropertyTableData getTableData( Concept concept ) throws DsplException, JAXBException, IOException
@@ -82,9 +88,6 @@ public class DsplCacheHelper
             DsplParser dsplParser = dataset.getParser( );
             if ( dsplParser == null ) return null;
 
-            String calculatedHash = getCalculatedHash( concept );
-            if ( calculatedHash == null ) return null;
-
             Table table = concept.getTable( );
             if ( table == null ) return null;
 
@@ -98,40 +101,61 @@ public class DsplCacheHelper
                 return parser.parse( concept );
             }
 
+            File cacheFile = getCacheFile( concept );
             String cachedHash = getCachedHash( concept );
 
-            // the cache has not been created or the csv data has changed, load the data from the csv file and recreate the hash
-            if ( cachedHash == null || !cachedHash.equals( calculatedHash ) )
+            // taken before the source is read, so that changes made while parsing are noticed next time
+            String sourceStamp = getSourceStamp( concept );
+
+            // the cache file may also be missing if it was written in an older cache format
+            boolean cacheValid = cacheFile.exists( ) && cachedHash != null && sourceStamp != null && sourceStamp.equals( getCachedSourceStamp( concept ) );
+
+            // the source size or modification time has changed (or is unknown), so compare hashes
+            String calculatedHash = null;
+            if ( !cacheValid )
             {
-                PropertyTableData tableData = parser.parse( concept );
+                calculatedHash = getCalculatedHash( concept );
+                if ( calculatedHash == null ) return null;
+
+                cacheValid = cacheFile.exists( ) && calculatedHash.equals( cachedHash );
 
-                File cacheFile = getCacheFile( concept );
-                FileOutputStream cacheFileStream = new FileOutputStream( cacheFile );
+                // the source was touched but not changed, so remember its new stamp to avoid hashing next time
+                if ( cacheValid && sourceStamp != null ) writeHash( concept, calculatedHash, sourceStamp );
+            }
 
-                String cacheFormat = getExtension( cacheFile );
+            // load the data from the cache
+            if ( cacheValid )
+            {
+                FileInputStream cacheFileStream = new FileInputStream( cacheFile );
+                TableParser cacheParser = dsplParser.getTableParser( getExtension( cacheFile ) );
+                return cacheParser.parse( concept, cacheFileStream.getChannel( ) );
+            }
+            // the cache has not been created or the csv data has changed, load the data from the csv file and recreate the hash
+            else
+            {
+                PropertyTableData tableData = parser.parse( concept );
 
-                TableParser cacheParser = dsplParser.getTableParser( cacheFormat );
+                TableWriter cacheWriter = getCacheWriter( dsplParser, cacheFile );
 
-                if ( cacheParser instanceof TableWriter )
+                // the old cache file may still be mapped by tables loaded earlier, so it must be replaced rather than overwritten
+                File tempFile = newTempFile( cacheFile );
+                try
                 {
-                    ( ( TableWriter ) cacheParser ).write( concept, tableData, cacheFileStream.getChannel( ) );
-                    writeHash( concept, calculatedHash );
+                    cacheWriter.write( concept, tableData, new FileOutputStream( tempFile ).getChannel( ) );
+                    replaceFile( tempFile, cacheFile );
+                    writeHash( concept, calculatedHash, sourceStamp );
                 }
-                else
+                catch ( DsplException | IOException e )
                 {
-                    throw new DsplException( "Invalid cache format: %s. TableParser %s is not a TableWriter.", cacheFormat, cacheParser.getClass( ) );
+                    logWarning( logger, "Unable to cache table data for concept %s. It will be parsed again next time.", e, concept.getId( ) );
+                }
+                finally
+                {
+                    tempFile.delete( );
                 }
 
                 return tableData;
             }
-            // load the data from the cache
-            else
-            {
-                File cacheFile = getCacheFile( concept );
-                FileInputStream cacheFileStream = new FileInputStream( cacheFile );
-                TableParser cacheParser = dsplParser.getTableParser( getExtension( cacheFile ) );
-                return cacheParser.parse( concept, cacheFileStream.getChannel( ) );
-            }
         }
         catch ( NoSuchAlgorithmException e )
         {
@@ -151,9 +175,6 @@ public class DsplCacheHelper
             DsplParser dsplParser = dataset.getParser( );
             if ( dsplParser == null ) return null;
 
-            String calculatedHash = getCalculatedHash( slice );
-            if ( calculatedHash == null ) return null;
-
             Table table = slice.getTable( );
             if ( table == null ) return null;
 
@@ -167,40 +188,61 @@ public class DsplCacheHelper
                 return parser.parse( slice );
             }
 
+            File cacheFile = getCacheFile( slice );
             String cachedHash = getCachedHash( slice );
 
-            // the cache has not been created or the csv data has changed, load the data from the csv file and recreate the hash
-            if ( cachedHash == null || !cachedHash.equals( calculatedHash ) )
+            // taken before the source is read, so that changes made while parsing are noticed next time
+            String sourceStamp = getSourceStamp( slice );
+
+            // the cache file may also be missing if it was written in an older cache format
+            boolean cacheValid = cacheFile.exists( ) && cachedHash != null && sourceStamp != null && sourceStamp.equals( getCachedSourceStamp( slice ) );
+
+            // the source size or modification time has changed (or is unknown), so compare hashes
+            String calculatedHash = null;
+            if ( !cacheValid )
             {
-                SliceTableData tableData = parser.parse( slice );
+                calculatedHash = getCalculatedHash( slice );
+                if ( calculatedHash == null ) return null;
 
-                File cacheFile = getCacheFile( slice );
-                OutputStream cacheFileStream = new FileOutputStream( cacheFile );
+                cacheValid = cacheFile.exists( ) && calculatedHash.equals( cachedHash );
 
-                String cacheFormat = getExtension( cacheFile );
+                // the source was touched but not changed, so remember its new stamp to avoid hashing next time
+                if ( cacheValid && sourceStamp != null ) writeHash( slice, calculatedHash, sourceStamp );
+            }
+
+            // load the data from the cache
+            if ( cacheValid )
+            {
+                InputStream cacheFileStream = new FileInputStream( cacheFile );
+                TableParser cacheParser = dsplParser.getTableParser( getExtension( cacheFile ) );
+                return cacheParser.parse( slice, cacheFileStream );
+            }
+            // the cache has not been created or the csv data has changed, load the data from the csv file and recreate the hash
+            else
+            {
+                SliceTableData tableData = parser.parse( slice );
 
-                TableParser cacheParser = dsplParser.getTableParser( cacheFormat );
+                TableWriter cacheWriter = getCacheWriter( dsplParser, cacheFile );
 
-                if ( cacheParser instanceof TableWriter )
+                // the old cache file may still be mapped by tables loaded earlier, so it must be replaced rather than overwritten
+                File tempFile = newTempFile( cacheFile );
+                try
+                {
+                    cacheWriter.write( slice, tableData, new FileOutputStream( tempFile ).getChannel( ) );
+                    replaceFile( tempFile, cacheFile );
+                    writeHash( slice, calculatedHash, sourceStamp );
+                }
+                catch ( DsplException | IOException e )
                 {
-                    ( ( TableWriter ) cacheParser ).write( slice, tableData, cacheFileStream );
-                    writeHash( slice, calculatedHash );
+                    logWarning( logger, "Unable to cache table data for slice %s. It will be parsed again next time.", e, slice.getId( ) );
                 }
-                else
+                finally
                 {
-                    throw new DsplException( "Invalid cache format: %s. TableParser %s is not a TableWriter.", cacheFormat, cacheParser.getClass( ) );
+                    tempFile.delete( );
                 }
 
                 return tableData;
             }
-            // load the data from the cache
-            else
-            {
-                File cacheFile = getCacheFile( slice );
-                InputStream cacheFileStream = new FileInputStream( cacheFile );
-                TableParser cacheParser = dsplParser.getTableParser( getExtension( cacheFile ) );
-                return cacheParser.parse( slice, cacheFileStream );
-            }
         }
         catch ( NoSuchAlgorithmException e )
         {
@@ -208,6 +250,47 @@ public class DsplCacheHelper
         }
     }
 
+    protected static TableWriter getCacheWriter( DsplParser dsplParser, File cacheFile ) throws DsplException
+    {
+        String cacheFormat = getExtension( cacheFile );
+
+        TableParser cacheParser = dsplParser.getTableParser( cacheFormat );
+
+        if ( cacheParser instanceof TableWriter )
+        {
+            return ( TableWriter ) cacheParser;
+        }
+        else
+        {
+            throw new DsplException( "Invalid cache format: %s. TableParser %s is not a TableWriter.", cacheFormat, cacheParser.getClass( ) );
+        }
+    }
+
+    /**
+     * Creates an empty file in the same directory as the given file, so that it can later be
+     * moved over the given file atomically.
+     */
+    protected static File newTempFile( File file ) throws IOException
+    {
+        return File.createTempFile( file.getName( ), ".tmp", file.getParentFile( ) );
+    }
+
+    /**
+     * Moves a file over another, atomically where the file system allows. Readers which already
+     * have the old file open or mapped keep seeing its old contents.
+     */
+    protected static void replaceFile( File source, File target ) throws IOException
+    {
+        try
+        {
+            Files.move( source.toPath( ), target.toPath( ), ATOMIC_MOVE, REPLACE_EXISTING );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( source.toPath( ), target.toPath( ), REPLACE_EXISTING );
+        }
+    }
+
     public static File getCacheDirectory( Concept concept ) throws DsplException, JAXBException, IOException
     {
         return getCacheDirectory( concept.getDataSet( ), concept.getTable( ), concept.getId( ) );
@@ -378,58 +461,189 @@ public class DsplCacheHelper
         }
     }
 
+    /**
+     * Identifies the current version of the slice's source data by the sizes and modification times
+     * of its files, so that unchanged data can be recognized without hashing it.
+     *
+     * @return the stamp, or null if the data does not come from local files (in which case it must be hashed)
+     */
+    public static String getSourceStamp( Slice slice ) throws DsplException, JAXBException, IOException
+    {
+        TableParser parser = slice.getDataSet( ).getParser( ).getTableParser( slice.getTable( ) );
+
+        if ( parser instanceof MultipleFileTableParser )
+        {
+            return getSourceStamp( ( ( MultipleFileTableParser ) parser ).getDataFiles( slice ) );
+        }
+        else
+        {
+            return getSourceStamp( DsplHelper.getTableSourceFile( slice.getTable( ) ) );
+        }
+    }
+
+    /**
+     * @see #getSourceStamp(Slice)
+     */
+    public static String getSourceStamp( Concept concept ) throws DsplException, JAXBException, IOException
+    {
+        TableParser parser = concept.getDataSet( ).getParser( ).getTableParser( concept.getTable( ) );
+
+        if ( parser instanceof MultipleFileTableParser )
+        {
+            return getSourceStamp( ( ( MultipleFileTableParser ) parser ).getDataFiles( concept ) );
+        }
+        else
+        {
+            return getSourceStamp( DsplHelper.getTableSourceFile( concept.getTable( ) ) );
+        }
+    }
+
+    protected static String getSourceStamp( List<URL> urls )
+    {
+        File[] files = new File[urls.size( )];
+        for ( int i = 0; i < files.length; i++ )
+        {
+            URL url = urls.get( i );
+            if ( !"file".equals( url.getProtocol( ) ) ) return null;
+
+            try
+            {
+                files[i] = new File( url.toURI( ) );
+            }
+            catch ( URISyntaxException | IllegalArgumentException e )
+            {
+                return null;
+            }
+        }
+
+        return getSourceStamp( files );
+    }
+
+    protected static String getSourceStamp( File... files )
+    {
+        StringBuilder stamp = new StringBuilder( );
+        for ( File file : files )
+        {
+            if ( file == null || !file.isFile( ) ) return null;
+
+            if ( stamp.length( ) > 0 ) stamp.append( ';' );
+            stamp.append( file.length( ) ).append( ':' ).append( file.lastModified( ) );
+        }
+
+        return stamp.toString( );
+    }
+
     public static String getCachedHash( Slice slice ) throws DsplException, JAXBException, IOException
     {
-        return getCachedHash( slice.getDataSet( ), slice.getTable( ), slice.getId( ) );
+        return readHashFileLine( slice.getDataSet( ), slice.getTable( ), slice.getId( ), 0 );
     }
 
     public static String getCachedHash( Concept concept ) throws DsplException, JAXBException, IOException
     {
-        return getCachedHash( concept.getDataSet( ), concept.getTable( ), concept.getId( ) );
+        return readHashFileLine( concept.getDataSet( ), concept.getTable( ), concept.getId( ), 0 );
+    }
+
+    /**
+     * @return the source stamp recorded along with the cached hash, or null if there is none
+     * @see #getSourceStamp(Slice)
+     */
+    public static String getCachedSourceStamp( Slice slice ) throws DsplException, JAXBException, IOException
+    {
+        return readHashFileLine( slice.getDataSet( ), slice.getTable( ), slice.getId( ), 1 );
+    }
+
+    public static String getCachedSourceStamp( Concept concept ) throws DsplException, JAXBException, IOException
+    {
+        return readHashFileLine( concept.getDataSet( ), concept.getTable( ), concept.getId( ), 1 );
     }
 
     protected static String getCachedHash( DataSet dataset, Table table, String id ) throws DsplException, JAXBException, IOException
     {
-        File cacheDirectory = getCacheDirectory( dataset, table, id );
+        return readHashFileLine( dataset, table, id, 0 );
+    }
 
-        for ( File file : cacheDirectory.listFiles( ) )
-        {
-            String fileName = file.getName( );
+    /**
+     * The hash file holds the hash of the source data on its first line, and the source stamp
+     * (if the source is made of local files) on its second.
+     */
+    protected static String readHashFileLine( DataSet dataset, Table table, String id, int lineIndex ) throws DsplException, JAXBException, IOException
+    {
+        File hashFile = new File( getCacheDirectory( dataset, table, id ), HASH_FILE );
+        if ( !hashFile.isFile( ) ) return null;
 
-            if ( fileName.equals( HASH_FILE ) )
+        BufferedReader in = new BufferedReader( new InputStreamReader( new FileInputStream( hashFile ) ) );
+        try
+        {
+            String line = in.readLine( );
+            for ( int i = 0; i < lineIndex && line != null; i++ )
             {
-                BufferedReader in = new BufferedReader( new InputStreamReader( new FileInputStream( file ) ) );
-                try
-                {
-                    return in.readLine( );
-                }
-                finally
-                {
-                    in.close( );
-                }
+                line = in.readLine( );
             }
+            return line;
+        }
+        finally
+        {
+            in.close( );
         }
-
-        return null;
     }
 
     public static void writeHash( Concept concept, String hash ) throws IOException, DsplException, NoSuchAlgorithmException, JAXBException
     {
-        writeHash( getCacheDirectory( concept ), hash );
+        writeHash( getCacheDirectory( concept ), hash, null );
     }
 
     public static void writeHash( Slice slice, String hash ) throws IOException, DsplException, NoSuchAlgorithmException, JAXBException
     {
-        writeHash( getCacheDirectory( slice ), hash );
+        writeHash( getCacheDirectory( slice ), hash, null );
+    }
+
+    public static void writeHash( Concept concept, String hash, String sourceStamp ) throws IOException, DsplException, NoSuchAlgorithmException, JAXBException
+    {
+        writeHash( getCacheDirectory( concept ), hash, sourceStamp );
+    }
+
+    public static void writeHash( Slice slice, String hash, String sourceStamp ) throws IOException, DsplException, NoSuchAlgorithmException, JAXBException
+    {
+        writeHash( getCacheDirectory( slice ), hash, sourceStamp );
     }
 
     public static void writeHash( File directory, String hash ) throws IOException, DsplException, NoSuchAlgorithmException, JAXBException
+    {
+        writeHash( directory, hash, null );
+    }
+
+    /**
+     * Writes the hash file, replacing any existing one in a single step.
+     *
+     * @param sourceStamp the source stamp to record, or null if the source cannot be stamped
+     */
+    public static void writeHash( File directory, String hash, String sourceStamp ) throws IOException, DsplException, NoSuchAlgorithmException, JAXBException
     {
         File hashFile = new File( directory, HASH_FILE );
+        File tempFile = newTempFile( hashFile );
+        try
+        {
+            BufferedWriter out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( tempFile ) ) );
+            try
+            {
+                out.write( hash );
+                if ( sourceStamp != null )
+                {
+                    out.newLine( );
+                    out.write( sourceStamp );
+                }
+            }
+            finally
+            {
+                out.close( );
+            }
 
-        BufferedWriter out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( hashFile ) ) );
-        out.write( hash );
-        out.close( );
+            replaceFile( tempFile, hashFile );
+        }
+        finally
+        {
+            tempFile.delete( );
+        }
     }
 
     protected static String getExtension( File file )
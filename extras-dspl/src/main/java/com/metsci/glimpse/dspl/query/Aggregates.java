@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dspl.query;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * The per-group count, sum, min, max, and mean of a metric column, grouped by the values
+ * of a dimension column. Only groups with at least one selected value are included.
+ *
+ * <p>Every selected row is aggregated, so the count of a group is its number of rows. Metric
+ * cells which were empty or could not be parsed are stored by the DSPL column parsers as a gap
+ * value of -1 (see {@link com.metsci.glimpse.dspl.parser.CsvParser}), and are aggregated as -1
+ * like any other value.</p>
+ */
+public class Aggregates
+{
+    protected String dimensionId;
+    protected String metricId;
+
+    protected String[] keys;
+    protected long[] counts;
+    protected double[] sums;
+    protected double[] mins;
+    protected double[] maxs;
+
+    protected Object2IntMap<String> groupsByKey;
+
+    protected Aggregates( String dimensionId, String metricId, String[] keys, long[] counts, double[] sums, double[] mins, double[] maxs )
+    {
+        this.dimensionId = dimensionId;
+        this.metricId = metricId;
+        this.keys = keys;
+        this.counts = counts;
+        this.sums = sums;
+        this.mins = mins;
+        this.maxs = maxs;
+
+        this.groupsByKey = new Object2IntOpenHashMap<String>( keys.length );
+        this.groupsByKey.defaultReturnValue( -1 );
+        for ( int i = 0; i < keys.length; i++ )
+        {
+            groupsByKey.put( keys[i], i );
+        }
+    }
+
+    public String getDimensionId( )
+    {
+        return dimensionId;
+    }
+
+    public String getMetricId( )
+    {
+        return metricId;
+    }
+
+    public int getNumGroups( )
+    {
+        return keys.length;
+    }
+
+    /**
+     * @return the index of the group with the given dimension value, or -1 if no selected row has it
+     */
+    public int getGroup( String key )
+    {
+        return groupsByKey.getInt( key );
+    }
+
+    public String getKey( int group )
+    {
+        return keys[group];
+    }
+
+    public long getCount( int group )
+    {
+        return counts[group];
+    }
+
+    public double getSum( int group )
+    {
+        return sums[group];
+    }
+
+    public double getMin( int group )
+    {
+        return mins[group];
+    }
+
+    public double getMax( int group )
+    {
+        return maxs[group];
+    }
+
+    public double getMean( int group )
+    {
+        return sums[group] / counts[group];
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dspl.query;
+
+import java.util.Arrays;
+
+import com.metsci.glimpse.dspl.parser.column.TableColumn;
+import com.metsci.glimpse.dspl.util.DsplException;
+
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+/**
+ * A sorted index over a date, integer, or float dimension column, for range queries.
+ *
+ * <p>Holds the rows of the column ordered by value, along with the values in that order,
+ * so the rows within a range are found with two binary searches. Columns which are already
+ * in ascending order (the usual case for time dimensions) are not copied or sorted.</p>
+ */
+public class RangeIndex
+{
+    protected TableColumn column;
+
+    // null if the column is already sorted, in which case the row is the position
+    protected int[] rowsByValue;
+    protected double[] sortedValues;
+
+    public RangeIndex( TableColumn column ) throws DsplException
+    {
+        this.column = column;
+
+        final double[] values = getValues( column );
+
+        boolean sorted = true;
+        for ( int i = 1; sorted && i < values.length; i++ )
+        {
+            sorted = values[i - 1] <= values[i];
+        }
+
+        if ( sorted )
+        {
+            this.sortedValues = values;
+        }
+        else
+        {
+            int[] rows = new int[values.length];
+            for ( int i = 0; i < rows.length; i++ )
+                rows[i] = i;
+
+            IntArrays.quickSort( rows, new AbstractIntComparator( )
+            {
+                @Override
+                public int compare( int a, int b )
+                {
+                    int c = Double.compare( values[a], values[b] );
+                    return c != 0 ? c : Integer.compare( a, b );
+                }
+            } );
+
+            double[] sortedValues = new double[values.length];
+            for ( int i = 0; i < rows.length; i++ )
+                sortedValues[i] = values[rows[i]];
+
+            this.rowsByValue = rows;
+            this.sortedValues = sortedValues;
+        }
+    }
+
+    /**
+     * Dates are exact as doubles up to 2^53 milliseconds, which is well beyond any calendar date.
+     */
+    protected static double[] getValues( TableColumn column ) throws DsplException
+    {
+        int size = column.getSize( );
+        double[] values = new double[size];
+
+        switch ( column.getType( ) )
+        {
+            case DATE:
+                for ( int i = 0; i < size; i++ )
+                    values[i] = column.getDateData( i );
+                break;
+            case INTEGER:
+                for ( int i = 0; i < size; i++ )
+                    values[i] = column.getIntegerData( i );
+                break;
+            case FLOAT:
+                for ( int i = 0; i < size; i++ )
+                    values[i] = column.getFloatData( i );
+                break;
+            default:
+                throw new DsplException( "Cannot build a range index over Column %s of type %s.", column.getColumn( ).getId( ), column.getType( ) );
+        }
+
+        return values;
+    }
+
+    public double getValue( int row )
+    {
+        switch ( column.getType( ) )
+        {
+            case DATE:
+                return column.getDateData( row );
+            case INTEGER:
+                return column.getIntegerData( row );
+            default:
+                return column.getFloatData( row );
+        }
+    }
+
+    /**
+     * @return the position of the first sorted value &gt;= min
+     */
+    protected int lowerBound( double min )
+    {
+        int low = 0;
+        int high = sortedValues.length;
+        while ( low < high )
+        {
+            int mid = ( low + high ) >>> 1;
+            if ( sortedValues[mid] < min )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @return the position of the first sorted value &gt; max
+     */
+    protected int upperBound( double max )
+    {
+        int low = 0;
+        int high = sortedValues.length;
+        while ( low < high )
+        {
+            int mid = ( low + high ) >>> 1;
+            if ( sortedValues[mid] <= max )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @return the number of rows with min &lt;= value &lt;= max
+     */
+    public int getCount( double min, double max )
+    {
+        return Math.max( 0, upperBound( max ) - lowerBound( min ) );
+    }
+
+    /**
+     * @return the rows with min &lt;= value &lt;= max, in ascending order
+     */
+    public int[] getRows( double min, double max )
+    {
+        int from = lowerBound( min );
+        int to = Math.max( from, upperBound( max ) );
+
+        int[] rows = new int[to - from];
+
+        if ( rowsByValue == null )
+        {
+            for ( int i = 0; i < rows.length; i++ )
+                rows[i] = from + i;
+        }
+        else
+        {
+            System.arraycopy( rowsByValue, from, rows, 0, rows.length );
+            Arrays.sort( rows );
+        }
+
+        return rows;
+    }
+}
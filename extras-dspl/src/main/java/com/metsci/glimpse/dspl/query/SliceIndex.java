@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dspl.query;
+
+import static com.metsci.glimpse.util.concurrent.ConcurrencyUtils.newDaemonThreadFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.metsci.glimpse.dspl.parser.column.TableColumn;
+import com.metsci.glimpse.dspl.parser.table.SliceTableData;
+import com.metsci.glimpse.dspl.schema.DataType;
+import com.metsci.glimpse.dspl.util.DsplException;
+
+/**
+ * Lazily built dimension indexes over the table data of a {@link com.metsci.glimpse.dspl.schema.Slice}.
+ *
+ * <p>A {@link ValueIndex} or {@link RangeIndex} is built for a dimension column the first time a
+ * query needs it, and is kept for later queries. Use {@link com.metsci.glimpse.dspl.schema.Slice#getTableIndex( )}
+ * to share one index between all users of a loaded slice.</p>
+ */
+public class SliceIndex
+{
+    /**
+     * Group-by aggregations over fewer rows than this are run on the calling thread.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    protected static ExecutorService sharedExecutor;
+
+    protected static synchronized ExecutorService getSharedExecutor( )
+    {
+        if ( sharedExecutor == null )
+        {
+            int nThreads = Runtime.getRuntime( ).availableProcessors( );
+            sharedExecutor = Executors.newFixedThreadPool( nThreads, newDaemonThreadFactory( Executors.defaultThreadFactory( ) ) );
+        }
+
+        return sharedExecutor;
+    }
+
+    protected SliceTableData data;
+    protected ExecutorService executor;
+    protected int numTasks;
+
+    protected Map<String, ValueIndex> valueIndexes;
+    protected Map<String, RangeIndex> rangeIndexes;
+
+    public SliceIndex( SliceTableData data )
+    {
+        this( data, getSharedExecutor( ), Runtime.getRuntime( ).availableProcessors( ) );
+    }
+
+    /**
+     * @param executor runs the group-by aggregation tasks
+     * @param numTasks the number of tasks each large aggregation is split into
+     */
+    public SliceIndex( SliceTableData data, ExecutorService executor, int numTasks )
+    {
+        if ( numTasks < 1 ) throw new IllegalArgumentException( "Number of tasks must be positive: " + numTasks );
+
+        this.data = data;
+        this.executor = executor;
+        this.numTasks = numTasks;
+
+        this.valueIndexes = new HashMap<>( );
+        this.rangeIndexes = new HashMap<>( );
+    }
+
+    public SliceTableData getTableData( )
+    {
+        return data;
+    }
+
+    public int getNumRows( )
+    {
+        return data.getNumRows( );
+    }
+
+    /**
+     * @return a new query matching every row of the slice
+     */
+    public SliceQuery query( )
+    {
+        return new SliceQuery( this );
+    }
+
+    public synchronized ValueIndex getValueIndex( String dimensionId ) throws DsplException
+    {
+        ValueIndex index = valueIndexes.get( dimensionId );
+
+        if ( index == null )
+        {
+            index = new ValueIndex( getDimensionColumn( dimensionId ) );
+            valueIndexes.put( dimensionId, index );
+        }
+
+        return index;
+    }
+
+    public synchronized RangeIndex getRangeIndex( String dimensionId ) throws DsplException
+    {
+        RangeIndex index = rangeIndexes.get( dimensionId );
+
+        if ( index == null )
+        {
+            index = new RangeIndex( getDimensionColumn( dimensionId ) );
+            rangeIndexes.put( dimensionId, index );
+        }
+
+        return index;
+    }
+
+    protected TableColumn getDimensionColumn( String dimensionId ) throws DsplException
+    {
+        TableColumn column = data.getDimensionColumn( dimensionId );
+        if ( column == null ) throw new DsplException( "No dimension Column %s in slice table.", dimensionId );
+        return column;
+    }
+
+    protected TableColumn getMetricColumn( String metricId ) throws DsplException
+    {
+        TableColumn column = data.getMetricColumn( metricId );
+        if ( column == null ) throw new DsplException( "No metric Column %s in slice table.", metricId );
+
+        DataType type = column.getType( );
+        if ( type != DataType.FLOAT && type != DataType.INTEGER ) throw new DsplException( "Cannot aggregate metric Column %s of type %s.", metricId, type );
+
+        return column;
+    }
+
+    /**
+     * Aggregates the given metric over every row of the slice, grouped by the values of the given dimension.
+     * Rows with a gap in the metric column are included, with the gap value of -1 (see {@link Aggregates}).
+     */
+    public Aggregates groupBy( String dimensionId, String metricId ) throws DsplException
+    {
+        return groupBy( dimensionId, metricId, null );
+    }
+
+    /**
+     * @param rows the rows to aggregate, or null for every row
+     */
+    protected Aggregates groupBy( String dimensionId, String metricId, final int[] rows ) throws DsplException
+    {
+        final ValueIndex index = getValueIndex( dimensionId );
+        final TableColumn metric = getMetricColumn( metricId );
+
+        final int size = rows == null ? data.getNumRows( ) : rows.length;
+        final int numGroups = index.getNumValues( );
+
+        Accumulator total;
+
+        if ( size < PARALLEL_THRESHOLD || numTasks == 1 )
+        {
+            total = new Accumulator( numGroups );
+            total.add( index, metric, rows, 0, size );
+        }
+        else
+        {
+            List<Future<Accumulator>> futures = new ArrayList<>( numTasks );
+
+            for ( int i = 0; i < numTasks; i++ )
+            {
+                final int from = ( int ) ( ( long ) size * i / numTasks );
+                final int to = ( int ) ( ( long ) size * ( i + 1 ) / numTasks );
+
+                futures.add( executor.submit( new Callable<Accumulator>( )
+                {
+                    @Override
+                    public Accumulator call( ) throws Exception
+                    {
+                        Accumulator accumulator = new Accumulator( numGroups );
+                        accumulator.add( index, metric, rows, from, to );
+                        return accumulator;
+                    }
+                } ) );
+            }
+
+            total = getResult( futures.get( 0 ), futures );
+            for ( int i = 1; i < futures.size( ); i++ )
+            {
+                total.merge( getResult( futures.get( i ), futures ) );
+            }
+        }
+
+        return total.toAggregates( index, dimensionId, metricId );
+    }
+
+    protected static <T> T getResult( Future<T> future, List<? extends Future<?>> all ) throws DsplException
+    {
+        try
+        {
+            return future.get( );
+        }
+        catch ( InterruptedException e )
+        {
+            cancel( all );
+            Thread.currentThread( ).interrupt( );
+            throw new DsplException( "Interrupted while aggregating slice data.", e );
+        }
+        catch ( ExecutionException e )
+        {
+            cancel( all );
+
+            Throwable cause = e.getCause( );
+            if ( cause instanceof DsplException ) throw ( DsplException ) cause;
+            if ( cause instanceof RuntimeException ) throw ( RuntimeException ) cause;
+            if ( cause instanceof Error ) throw ( Error ) cause;
+            throw new DsplException( "Problem aggregating slice data.", cause );
+        }
+    }
+
+    protected static void cancel( List<? extends Future<?>> futures )
+    {
+        for ( Future<?> future : futures )
+        {
+            future.cancel( true );
+        }
+    }
+
+    protected static class Accumulator
+    {
+        protected long[] counts;
+        protected double[] sums;
+        protected double[] mins;
+        protected double[] maxs;
+
+        public Accumulator( int numGroups )
+        {
+            this.counts = new long[numGroups];
+            this.sums = new double[numGroups];
+            this.mins = new double[numGroups];
+            this.maxs = new double[numGroups];
+
+            for ( int i = 0; i < numGroups; i++ )
+            {
+                mins[i] = Double.POSITIVE_INFINITY;
+                maxs[i] = Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        public void add( ValueIndex index, TableColumn metric, int[] rows, int from, int to )
+        {
+            boolean isFloat = metric.getType( ) == DataType.FLOAT;
+
+            for ( int i = from; i < to; i++ )
+            {
+                int row = rows == null ? i : rows[i];
+
+                int group = index.getRowCode( row );
+                if ( group < 0 ) continue;
+
+                double value = isFloat ? metric.getFloatData( row ) : metric.getIntegerData( row );
+
+                counts[group]++;
+                sums[group] += value;
+                if ( value < mins[group] ) mins[group] = value;
+                if ( value > maxs[group] ) maxs[group] = value;
+            }
+        }
+
+        public void merge( Accumulator other )
+        {
+            for ( int i = 0; i < counts.length; i++ )
+            {
+                counts[i] += other.counts[i];
+                sums[i] += other.sums[i];
+                mins[i] = Math.min( mins[i], other.mins[i] );
+                maxs[i] = Math.max( maxs[i], other.maxs[i] );
+            }
+        }
+
+        public Aggregates toAggregates( ValueIndex index, String dimensionId, String metricId )
+        {
+            int n = 0;
+            for ( int i = 0; i < counts.length; i++ )
+            {
+                if ( counts[i] > 0 ) n++;
+            }
+
+            String[] keys = new String[n];
+            long[] counts = new long[n];
+            double[] sums = new double[n];
+            double[] mins = new double[n];
+            double[] maxs = new double[n];
+
+            int j = 0;
+            for ( int i = 0; i < this.counts.length; i++ )
+            {
+                if ( this.counts[i] == 0 ) continue;
+
+                keys[j] = index.getValue( i );
+                counts[j] = this.counts[i];
+                sums[j] = this.sums[i];
+                mins[j] = this.mins[i];
+                maxs[j] = this.maxs[i];
+                j++;
+            }
+
+            return new Aggregates( dimensionId, metricId, keys, counts, sums, mins, maxs );
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dspl.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.metsci.glimpse.dspl.util.DsplException;
+
+/**
+ * A conjunction of dimension filters over a {@link SliceIndex}.
+ *
+ * <p>Filters are evaluated by reading the rows of the most selective filter from its index,
+ * then checking the remaining filters row by row. For example:</p>
+ *
+ * <pre>
+ * int[] rows = slice.getTableIndex( ).query( ).equal( "state", "CA" ).between( "year", start, end ).rows( );
+ * </pre>
+ */
+public class SliceQuery
+{
+    protected SliceIndex index;
+    protected List<Filter> filters;
+
+    protected SliceQuery( SliceIndex index )
+    {
+        this.index = index;
+        this.filters = new ArrayList<>( );
+    }
+
+    /**
+     * Keeps rows whose value in the given dimension equals value. Integer and boolean dimension
+     * values are compared by their string form.
+     */
+    public SliceQuery equal( final String dimensionId, final String value )
+    {
+        filters.add( new Filter( )
+        {
+            ValueIndex values;
+            int code;
+
+            @Override
+            public void init( ) throws DsplException
+            {
+                values = index.getValueIndex( dimensionId );
+                code = values.getCode( value );
+            }
+
+            @Override
+            public int getCount( )
+            {
+                return values.getCount( code );
+            }
+
+            @Override
+            public int[] getRows( )
+            {
+                return values.getRows( code );
+            }
+
+            @Override
+            public boolean accept( int row )
+            {
+                return code >= 0 && values.getRowCode( row ) == code;
+            }
+        } );
+
+        return this;
+    }
+
+    /**
+     * Keeps rows whose value in the given date or numeric dimension lies in [min, max].
+     * Date values are epoch milliseconds.
+     */
+    public SliceQuery between( final String dimensionId, final double min, final double max )
+    {
+        filters.add( new Filter( )
+        {
+            RangeIndex range;
+
+            @Override
+            public void init( ) throws DsplException
+            {
+                range = index.getRangeIndex( dimensionId );
+            }
+
+            @Override
+            public int getCount( )
+            {
+                return range.getCount( min, max );
+            }
+
+            @Override
+            public int[] getRows( )
+            {
+                return range.getRows( min, max );
+            }
+
+            @Override
+            public boolean accept( int row )
+            {
+                double value = range.getValue( row );
+                return min <= value && value <= max;
+            }
+        } );
+
+        return this;
+    }
+
+    /**
+     * @return the matching rows, in ascending order
+     */
+    public int[] rows( ) throws DsplException
+    {
+        if ( filters.isEmpty( ) )
+        {
+            int[] rows = new int[index.getNumRows( )];
+            for ( int i = 0; i < rows.length; i++ )
+                rows[i] = i;
+            return rows;
+        }
+
+        Filter first = null;
+        int firstCount = Integer.MAX_VALUE;
+        for ( Filter filter : filters )
+        {
+            filter.init( );
+
+            int count = filter.getCount( );
+            if ( count < firstCount )
+            {
+                first = filter;
+                firstCount = count;
+            }
+        }
+
+        int[] rows = first.getRows( );
+        int n = 0;
+
+        for ( int i = 0; i < rows.length; i++ )
+        {
+            int row = rows[i];
+
+            boolean accept = true;
+            for ( int j = 0; accept && j < filters.size( ); j++ )
+            {
+                Filter filter = filters.get( j );
+                accept = filter == first || filter.accept( row );
+            }
+
+            if ( accept ) rows[n++] = row;
+        }
+
+        return n == rows.length ? rows : Arrays.copyOf( rows, n );
+    }
+
+    /**
+     * @return the number of matching rows
+     */
+    public int count( ) throws DsplException
+    {
+        return filters.isEmpty( ) ? index.getNumRows( ) : rows( ).length;
+    }
+
+    /**
+     * Aggregates the given metric over the matching rows, grouped by the values of the given dimension.
+     * Rows with a gap in the metric column are included, with the gap value of -1 (see {@link Aggregates}).
+     */
+    public Aggregates groupBy( String dimensionId, String metricId ) throws DsplException
+    {
+        return index.groupBy( dimensionId, metricId, filters.isEmpty( ) ? null : rows( ) );
+    }
+
+    protected static abstract class Filter
+    {
+        public abstract void init( ) throws DsplException;
+
+        public abstract int getCount( );
+
+        public abstract int[] getRows( );
+
+        public abstract boolean accept( int row );
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dspl.query;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import com.metsci.glimpse.dspl.parser.column.MappedStringTableColumn;
+import com.metsci.glimpse.dspl.parser.column.TableColumn;
+import com.metsci.glimpse.dspl.util.DsplException;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * A posting-list index over the values of a (usually string or concept) dimension column.
+ *
+ * <p>Each distinct value is given a dictionary code, and the rows holding each code are stored
+ * in ascending order in one shared array. Columns read from a
+ * {@link com.metsci.glimpse.dspl.parser.MappedColumnParser} file are already dictionary encoded,
+ * so their codes are used as is. Other columns are encoded when the index is built. Integer and
+ * boolean columns are indexed by the string form of their values.</p>
+ */
+public class ValueIndex
+{
+    protected int numRows;
+
+    protected String[] values;
+    protected Object2IntMap<String> codesByValue;
+
+    // the code of each row (-1 for null), either read from a mapped column or built here
+    protected IntBuffer codes;
+
+    // rowsByCode[rowStarts[code] ... rowStarts[code+1]) are the rows holding code, in ascending order
+    protected int[] rowStarts;
+    protected int[] rowsByCode;
+
+    public ValueIndex( TableColumn column ) throws DsplException
+    {
+        this.numRows = column.getSize( );
+
+        if ( column instanceof MappedStringTableColumn )
+        {
+            MappedStringTableColumn mapped = ( MappedStringTableColumn ) column;
+
+            this.codes = mapped.getCodes( );
+            this.values = new String[mapped.getNumValues( )];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                values[i] = mapped.getValue( i );
+            }
+        }
+        else
+        {
+            encode( getStrings( column ) );
+        }
+
+        this.codesByValue = new Object2IntOpenHashMap<String>( values.length );
+        this.codesByValue.defaultReturnValue( -1 );
+        for ( int i = 0; i < values.length; i++ )
+        {
+            codesByValue.put( values[i], i );
+        }
+
+        buildPostings( );
+    }
+
+    protected static String[] getStrings( TableColumn column ) throws DsplException
+    {
+        switch ( column.getType( ) )
+        {
+            case STRING:
+            case CONCEPT:
+                return column.getStringData( );
+            case INTEGER:
+            {
+                int[] data = column.getIntegerData( );
+                String[] strings = new String[data.length];
+                for ( int i = 0; i < data.length; i++ )
+                    strings[i] = String.valueOf( data[i] );
+                return strings;
+            }
+            case BOOLEAN:
+            {
+                boolean[] data = column.getBooleanData( );
+                String[] strings = new String[data.length];
+                for ( int i = 0; i < data.length; i++ )
+                    strings[i] = String.valueOf( data[i] );
+                return strings;
+            }
+            default:
+                throw new DsplException( "Cannot build a value index over Column %s of type %s.", column.getColumn( ).getId( ), column.getType( ) );
+        }
+    }
+
+    protected void encode( String[] strings )
+    {
+        Object2IntMap<String> codesByValue = new Object2IntOpenHashMap<String>( );
+        codesByValue.defaultReturnValue( -1 );
+
+        int[] codes = new int[numRows];
+        int numValues = 0;
+
+        for ( int i = 0; i < numRows; i++ )
+        {
+            String string = strings[i];
+
+            if ( string == null )
+            {
+                codes[i] = -1;
+                continue;
+            }
+
+            int code = codesByValue.getInt( string );
+            if ( code < 0 )
+            {
+                code = numValues++;
+                codesByValue.put( string, code );
+            }
+
+            codes[i] = code;
+        }
+
+        this.values = new String[numValues];
+        for ( Object2IntMap.Entry<String> entry : codesByValue.object2IntEntrySet( ) )
+        {
+            values[entry.getIntValue( )] = entry.getKey( );
+        }
+
+        this.codes = IntBuffer.wrap( codes );
+    }
+
+    protected void buildPostings( )
+    {
+        // counting sort of the rows by code
+        int[] starts = new int[values.length + 1];
+        for ( int i = 0; i < numRows; i++ )
+        {
+            int code = codes.get( i );
+            if ( code >= 0 ) starts[code + 1]++;
+        }
+
+        for ( int code = 0; code < values.length; code++ )
+        {
+            starts[code + 1] += starts[code];
+        }
+
+        int[] next = Arrays.copyOf( starts, values.length );
+        int[] rows = new int[starts[values.length]];
+        for ( int i = 0; i < numRows; i++ )
+        {
+            int code = codes.get( i );
+            if ( code >= 0 ) rows[next[code]++] = i;
+        }
+
+        this.rowStarts = starts;
+        this.rowsByCode = rows;
+    }
+
+    public int getNumValues( )
+    {
+        return values.length;
+    }
+
+    public String getValue( int code )
+    {
+        return values[code];
+    }
+
+    /**
+     * @return the dictionary code of value, or -1 if no row holds it
+     */
+    public int getCode( String value )
+    {
+        return codesByValue.getInt( value );
+    }
+
+    /**
+     * @return the dictionary code of the given row, or -1 if its value is null
+     */
+    public int getRowCode( int row )
+    {
+        return codes.get( row );
+    }
+
+    public int getCount( int code )
+    {
+        return code < 0 ? 0 : rowStarts[code + 1] - rowStarts[code];
+    }
+
+    /**
+     * @return the rows holding code, in ascending order
+     */
+    public int[] getRows( int code )
+    {
+        if ( code < 0 ) return new int[0];
+        return Arrays.copyOfRange( rowsByCode, rowStarts[code], rowStarts[code + 1] );
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Indexed filtering and aggregation over loaded DSPL slice tables.
+ */
+package com.metsci.glimpse.dspl.query;
@@ -346,6 +346,9 @@ public class Slice
     @javax.xml.bind.annotation.XmlTransient
     protected com.metsci.glimpse.dspl.parser.table.SliceTableData tableData;
 
+    @javax.xml.bind.annotation.XmlTransient
+    protected com.metsci.glimpse.dspl.query.SliceIndex tableIndex;
+
     public DataSet getDataSet( )
     {
         return parentDataset;
@@ -370,6 +373,15 @@ public class Slice
         return tableData;
     }
 
+    public synchronized com.metsci.glimpse.dspl.query.SliceIndex getTableIndex( ) throws javax.xml.bind.JAXBException, java.io.IOException, com.metsci.glimpse.dspl.util.DsplException
+    {
+        if ( tableIndex != null ) return tableIndex;
+
+        tableIndex = new com.metsci.glimpse.dspl.query.SliceIndex( getTableData( ) );
+
+        return tableIndex;
+    }
+
     public Concept getCompatibleDimension( Concept superConcept ) throws javax.xml.bind.JAXBException, java.io.IOException, com.metsci.glimpse.dspl.util.DsplException
     {
         return com.metsci.glimpse.dspl.util.DsplHelper.getCompatibleConceptRef( this, superConcept, getDimension( ) );
@@ -291,9 +291,16 @@ public class DsplHelper
     // make sure that we've loaded all datasets imported by this data set
     public static void loadImportedDataSets( DsplParser parser, DataSet dataset ) throws JAXBException, IOException, DsplException
     {
-        for ( Import imp : dataset.getImport( ) )
+        if ( parser.isParallelLoadMode( ) )
         {
-            dataset.getDataSet( imp );
+            parser.loadDatasets( dataset, dataset.getImport( ) );
+        }
+        else
+        {
+            for ( Import imp : dataset.getImport( ) )
+            {
+                dataset.getDataSet( imp );
+            }
         }
     }
 
@@ -448,6 +455,59 @@ public class DsplHelper
         }
     }
 
+    /**
+     * Finds the local file which {@link #getTableInputStream(Table)} reads the table's data from,
+     * following the same search order. For a table inside a zipped dataset, the zip file is returned.
+     *
+     * @return the file, or null if the data comes from a classpath resource or the network,
+     *         or cannot be found
+     */
+    public static java.io.File getTableSourceFile( Table table )
+    {
+        if ( table == null ) return null;
+
+        DataSet dataset = table.getDataSet( );
+
+        Data data = table.getData( );
+        if ( data == null ) return null;
+
+        String name = data.getFile( ).getValue( );
+
+        String namespace = dataset.getTargetNamespace( );
+
+        if ( namespace != null && namespace.startsWith( canonicalGoogleNamespace ) )
+        {
+            return getExistingFile( new java.io.File( canonicalGoogleLocalBase + name ) );
+        }
+        else if ( namespace != null && namespace.startsWith( canonicalMetronNamespace ) )
+        {
+            return getExistingFile( new java.io.File( canonicalMetronLocalBase + name ) );
+        }
+
+        java.io.File file = new java.io.File( name );
+        if ( file.isFile( ) ) return file;
+
+        // a classpath resource would be found before the file next to the dataset
+        if ( DsplHelper.class.getClassLoader( ).getResource( name ) != null ) return null;
+
+        java.io.File dataSetFile = dataset.getFile( );
+        if ( dataSetFile == null ) return null;
+
+        if ( dataSetFile.getName( ).endsWith( ".zip" ) )
+        {
+            return getExistingFile( dataSetFile );
+        }
+        else
+        {
+            return getExistingFile( new java.io.File( dataSetFile.getParentFile( ), name ) );
+        }
+    }
+
+    protected static java.io.File getExistingFile( java.io.File file )
+    {
+        return file.isFile( ) ? file : null;
+    }
+
     public static InputStream getCanonicalTableInputStream( DsplParser parser, String file, String localBase, String urlBase ) throws IOException
     {
         if ( parser.isNetworkMode( ) )
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dspl.parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.metsci.glimpse.dspl.DsplParser;
+import com.metsci.glimpse.dspl.parser.column.TableColumn;
+import com.metsci.glimpse.dspl.parser.table.PropertyTableData;
+import com.metsci.glimpse.dspl.parser.table.SliceTableData;
+import com.metsci.glimpse.dspl.schema.Concept;
+import com.metsci.glimpse.dspl.schema.DataSet;
+import com.metsci.glimpse.dspl.schema.Slice;
+
+/**
+ * Parses the same csv files with {@link CsvParser} and {@link ParallelCsvParser} (using a tiny
+ * chunk size, so most files span many chunks) and checks that the resulting tables are identical.
+ * Throws an AssertionError describing the first difference found.
+ */
+public class ParallelCsvParserComparisonTest
+{
+    private static final String DATASET = "" +
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<dspl xmlns=\"http://schemas.google.com/dspl/2010\">\n" +
+            "  <concepts>\n" +
+            "    <concept id=\"item\">\n" +
+            "      <type ref=\"string\"/>\n" +
+            "      <property id=\"label\"><type ref=\"string\"/></property>\n" +
+            "      <property id=\"weight\"><type ref=\"float\"/></property>\n" +
+            "      <property id=\"count\"><type ref=\"integer\"/></property>\n" +
+            "      <property id=\"flag\"><type ref=\"boolean\"/></property>\n" +
+            "      <table ref=\"item_table\"/>\n" +
+            "    </concept>\n" +
+            "    <concept id=\"amount\"><type ref=\"integer\"/></concept>\n" +
+            "    <concept id=\"rate\"><type ref=\"float\"/></concept>\n" +
+            "  </concepts>\n" +
+            "  <slices>\n" +
+            "    <slice id=\"item_slice\">\n" +
+            "      <dimension concept=\"item\"/>\n" +
+            "      <metric concept=\"amount\"/>\n" +
+            "      <metric concept=\"rate\"/>\n" +
+            "      <table ref=\"item_slice_table\"/>\n" +
+            "    </slice>\n" +
+            "  </slices>\n" +
+            "  <tables>\n" +
+            "    <table id=\"item_table\">\n" +
+            "      <column id=\"item\" type=\"string\"/>\n" +
+            "      <column id=\"label\" type=\"string\"/>\n" +
+            "      <column id=\"weight\" type=\"float\"/>\n" +
+            "      <column id=\"count\" type=\"integer\"/>\n" +
+            "      <column id=\"flag\" type=\"boolean\"/>\n" +
+            "      <data><file format=\"csv\" encoding=\"utf-8\">items.csv</file></data>\n" +
+            "    </table>\n" +
+            "    <table id=\"item_slice_table\">\n" +
+            "      <column id=\"item\" type=\"string\"/>\n" +
+            "      <column id=\"amount\" type=\"integer\"/>\n" +
+            "      <column id=\"rate\" type=\"float\"/>\n" +
+            "      <data><file format=\"csv\" encoding=\"utf-8\">item_slice.csv</file></data>\n" +
+            "    </table>\n" +
+            "  </tables>\n" +
+            "</dspl>\n";
+
+    private static final String ITEMS_HEADER = "item,label,weight,count,flag";
+    private static final String SLICE_HEADER = "item,amount,rate";
+
+    public static void main( String[] args ) throws Exception
+    {
+        File dir = createTempDir( );
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            File datasetFile = new File( dir, "dataset.xml" );
+            write( datasetFile, DATASET );
+
+            DsplParser dsplParser = new DsplParser( );
+            dsplParser.setFailOnError( false );
+            DataSet dataset = dsplParser.loadDataset( datasetFile );
+
+            Concept item = dataset.getConcept( "item" );
+            Slice slice = dataset.getSlices( ).getSlice( ).get( 0 );
+
+            CsvParser serial = new CsvParser( dsplParser );
+            ParallelCsvParser parallel = new ParallelCsvParser( dsplParser, executor, 7 );
+
+            List<String[]> cases = new ArrayList<String[]>( );
+            cases.add( new String[] { "quoted commas", lines( "\n", ITEMS_HEADER, "a,\"x, y\",1.5,3,true", "\"b,c\",\"\",2,4,false", "c,\"a,\",0.25,-7,TRUE" ) } );
+            cases.add( new String[] { "crlf", lines( "\r\n", ITEMS_HEADER, "a,x,1.5,3,true", "b,y,2.5,4,false", "c,z,3.5,5,true" ) } );
+            cases.add( new String[] { "cr only", lines( "\r", ITEMS_HEADER, "a,x,1.5,3,true", "b,y,2.5,4,false" ) } );
+            cases.add( new String[] { "empty cells", lines( "\n", ITEMS_HEADER, "a,,,,", "b,y,,4,", ",z,2.5,,true", "", "c,w,1,2,false" ) } );
+            cases.add( new String[] { "unbalanced quote", lines( "\n", ITEMS_HEADER, "a,x,1.5,3,true", "b,\"y,2.5,4,false", "c,z\"q,3.5,5,true", "d,w,4.5,6,false", "e,v,5.5,7,true" ) } );
+            cases.add( new String[] { "newline in quotes", lines( "\n", ITEMS_HEADER, "a,\"x", "y\",1.5,3,true", "b,y,2.5,4,false" ) } );
+            cases.add( new String[] { "no trailing newline", ITEMS_HEADER + "\na,x,1.5,3,true\nb,y,2.5,4,false" } );
+            cases.add( new String[] { "multi-chunk", manyRows( 5000 ) } );
+
+            File itemsFile = new File( dir, "items.csv" );
+            for ( String[] c : cases )
+            {
+                write( itemsFile, c[1] );
+
+                PropertyTableData expected = serial.parse( item, new FileInputStream( itemsFile ) );
+                PropertyTableData actual = parallel.parse( item, new FileInputStream( itemsFile ) );
+                compare( c[0], expected, actual );
+
+                System.out.printf( "%-20s %6d rows  ok%n", c[0], expected.getNumRows( ) );
+            }
+
+            File sliceFile = new File( dir, "item_slice.csv" );
+            StringBuilder sliceCsv = new StringBuilder( SLICE_HEADER ).append( "\r\n" );
+            for ( int i = 0; i < 3000; i++ )
+            {
+                sliceCsv.append( i % 5 == 0 ? "\"item," + i + "\"" : "item" + i ).append( ',' );
+                sliceCsv.append( i % 7 == 0 ? "" : String.valueOf( i * 31 ) ).append( ',' );
+                sliceCsv.append( i % 11 == 0 ? "" : String.valueOf( i * 0.125 ) ).append( "\r\n" );
+            }
+            write( sliceFile, sliceCsv.toString( ) );
+
+            SliceTableData expectedSlice = serial.parse( slice, new FileInputStream( sliceFile ) );
+            SliceTableData actualSlice = parallel.parse( slice, new FileInputStream( sliceFile ) );
+            compare( "slice", expectedSlice, actualSlice );
+            System.out.printf( "%-20s %6d rows  ok%n", "slice", expectedSlice.getNumRows( ) );
+
+            // in fail-on-error mode, both parsers must reject the same file
+            dsplParser.setFailOnError( true );
+            write( itemsFile, cases.get( 4 )[1] );
+            String serialFailure = parseFailure( serial, item, itemsFile );
+            String parallelFailure = parseFailure( parallel, item, itemsFile );
+            if ( serialFailure == null || !serialFailure.equals( parallelFailure ) )
+            {
+                throw new AssertionError( "fail-on-error: expected " + serialFailure + " but found " + parallelFailure );
+            }
+            System.out.printf( "%-20s %s  ok%n", "fail-on-error", serialFailure );
+        }
+        finally
+        {
+            executor.shutdown( );
+            for ( File file : dir.listFiles( ) )
+            {
+                file.delete( );
+            }
+            dir.delete( );
+        }
+    }
+
+    private static String parseFailure( CsvParser parser, Concept concept, File file ) throws Exception
+    {
+        try
+        {
+            parser.parse( concept, new FileInputStream( file ) );
+            return null;
+        }
+        catch ( Exception e )
+        {
+            return e.getClass( ).getSimpleName( ) + ": " + e.getMessage( );
+        }
+    }
+
+    private static String manyRows( int numRows )
+    {
+        StringBuilder b = new StringBuilder( ITEMS_HEADER ).append( '\n' );
+        for ( int i = 0; i < numRows; i++ )
+        {
+            b.append( "item" ).append( i ).append( ',' );
+            b.append( i % 3 == 0 ? "\"label, " + i + "\"" : i % 3 == 1 ? "" : "label" + i ).append( ',' );
+            b.append( i % 13 == 0 ? "" : String.valueOf( i * 1.1f ) ).append( ',' );
+            b.append( i - numRows / 2 ).append( ',' );
+            b.append( i % 2 == 0 ).append( i % 17 == 0 ? "\r\n" : "\n" );
+            if ( i % 401 == 0 ) b.append( "bad,\"row,1,2,true\n" );
+        }
+        return b.toString( );
+    }
+
+    private static void compare( String name, PropertyTableData expected, PropertyTableData actual )
+    {
+        check( name + ": row count", expected.getNumRows( ), actual.getNumRows( ) );
+        check( name + ": column ids", new ArrayList<String>( expected.getColumnIds( ) ), new ArrayList<String>( actual.getColumnIds( ) ) );
+
+        for ( String id : expected.getColumnIds( ) )
+        {
+            compare( name + ": column " + id, expected.getColumn( id ), actual.getColumn( id ) );
+        }
+    }
+
+    private static void compare( String name, SliceTableData expected, SliceTableData actual )
+    {
+        check( name + ": row count", expected.getNumRows( ), actual.getNumRows( ) );
+        check( name + ": dimension ids", new ArrayList<String>( expected.getDimensionColumnIds( ) ), new ArrayList<String>( actual.getDimensionColumnIds( ) ) );
+        check( name + ": metric ids", new ArrayList<String>( expected.getMetricColumnIds( ) ), new ArrayList<String>( actual.getMetricColumnIds( ) ) );
+
+        for ( String id : expected.getDimensionColumnIds( ) )
+        {
+            compare( name + ": dimension " + id, expected.getDimensionColumn( id ), actual.getDimensionColumn( id ) );
+        }
+
+        for ( String id : expected.getMetricColumnIds( ) )
+        {
+            compare( name + ": metric " + id, expected.getMetricColumn( id ), actual.getMetricColumn( id ) );
+        }
+    }
+
+    private static void compare( String name, TableColumn expected, TableColumn actual )
+    {
+        check( name + ": type", expected.getType( ), actual.getType( ) );
+        check( name + ": size", expected.getSize( ), actual.getSize( ) );
+
+        switch ( expected.getType( ) )
+        {
+            case INTEGER:
+                check( name, Arrays.toString( expected.getIntegerData( ) ), Arrays.toString( actual.getIntegerData( ) ) );
+                break;
+            case FLOAT:
+                check( name, Arrays.toString( expected.getFloatData( ) ), Arrays.toString( actual.getFloatData( ) ) );
+                break;
+            case BOOLEAN:
+                check( name, Arrays.toString( expected.getBooleanData( ) ), Arrays.toString( actual.getBooleanData( ) ) );
+                break;
+            case DATE:
+                check( name, Arrays.toString( expected.getDateData( ) ), Arrays.toString( actual.getDateData( ) ) );
+                break;
+            default:
+                check( name, Arrays.toString( expected.getStringData( ) ), Arrays.toString( actual.getStringData( ) ) );
+                break;
+        }
+    }
+
+    private static void check( String name, Object expected, Object actual )
+    {
+        if ( !expected.equals( actual ) )
+        {
+            throw new AssertionError( name + " differs: expected " + describe( expected ) + " but found " + describe( actual ) );
+        }
+    }
+
+    private static String describe( Object o )
+    {
+        String s = String.valueOf( o );
+        return s.length( ) > 200 ? s.substring( 0, 200 ) + "..." : s;
+    }
+
+    private static String lines( String lineEnd, String... lines )
+    {
+        StringBuilder b = new StringBuilder( );
+        for ( String line : lines )
+        {
+            b.append( line ).append( lineEnd );
+        }
+        return b.toString( );
+    }
+
+    private static void write( File file, String text ) throws IOException
+    {
+        Writer out = new OutputStreamWriter( new FileOutputStream( file ), Charset.defaultCharset( ) );
+        try
+        {
+            out.write( text );
+        }
+        finally
+        {
+            out.close( );
+        }
+    }
+
+    private static File createTempDir( ) throws IOException
+    {
+        File dir = File.createTempFile( "dspl-csv-comparison", "" );
+        if ( !dir.delete( ) || !dir.mkdir( ) ) throw new IOException( "Unable to create temp directory: " + dir );
+        return dir;
+    }
+}
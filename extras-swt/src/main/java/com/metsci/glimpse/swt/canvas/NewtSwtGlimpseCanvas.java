@@ -60,6 +60,7 @@ import com.metsci.glimpse.context.GlimpseTargetStack;
 import com.metsci.glimpse.event.mouse.newt.MouseWrapperNewt;
 import com.metsci.glimpse.layout.GlimpseLayout;
 import com.metsci.glimpse.painter.base.GlimpsePainter;
+import com.metsci.glimpse.support.profile.PainterProfiler;
 import com.metsci.glimpse.support.settings.LookAndFeel;
 
 public class NewtSwtGlimpseCanvas extends Composite implements NewtGlimpseCanvas
@@ -216,6 +217,8 @@ public class NewtSwtGlimpseCanvas extends Composite implements NewtGlimpseCanvas
                 {
                     runnable.run( drawable );
                 }
+
+                PainterProfiler.getInstance( ).disposeGpuTimer( drawable.getContext( ), drawable.getGL( ) );
             }
         };
     }
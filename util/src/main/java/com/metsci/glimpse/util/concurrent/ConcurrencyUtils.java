@@ -26,12 +26,30 @@
  */
 package com.metsci.glimpse.util.concurrent;
 
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class ConcurrencyUtils
 {
 
+    private static ForkJoinPool sharedForkJoinPool;
+
+    /**
+     * Returns the fork-join pool shared by Glimpse's parallel computations, so that they do not
+     * each start a full set of worker threads (ForkJoinPool.commonPool is not available on Java 7).
+     * The pool is created on first use, with one (daemon) worker thread per available processor.
+     */
+    public static synchronized ForkJoinPool getSharedForkJoinPool( )
+    {
+        if ( sharedForkJoinPool == null )
+        {
+            sharedForkJoinPool = new ForkJoinPool( );
+        }
+
+        return sharedForkJoinPool;
+    }
+
     public static void requireLock( ReentrantLock lock )
     {
         if ( !lock.isHeldByCurrentThread( ) )
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.geo.projection;
+
+/**
+ * A {@link GeoProjection} which can also project and unproject whole arrays of points at once,
+ * without allocating a {@link com.metsci.glimpse.util.geo.LatLonGeo} or
+ * {@link com.metsci.glimpse.util.vector.Vector2d} per point.
+ *
+ * <p>Element {@code i} of the lat/lon arrays corresponds to elements {@code 2*i} (x) and
+ * {@code 2*i+1} (y) of the interleaved xy array. The methods touch only indices in
+ * {@code [offset, offset+count)}, so the same arrays can be filled in several calls, or
+ * by several threads working on disjoint ranges.</p>
+ *
+ * <p>Results are (nearly) equivalent to calling {@link #project(com.metsci.glimpse.util.geo.LatLonGeo)}
+ * and {@link #unproject(double, double)} on each point in turn. For projections which do not
+ * implement this interface, see {@link GeoProjections}.</p>
+ */
+public interface BulkGeoProjection extends GeoProjection
+{
+
+    /**
+     * Convert lat/lon pairs to (nearly) equivalent projected x,y positions.
+     *
+     * @param   latDeg  latitudes, in degrees
+     * @param   lonDeg  longitudes, in degrees
+     * @param   outXy   interleaved projected x,y positions (written)
+     * @param   offset  index of the first point to convert
+     * @param   count   number of points to convert
+     */
+    void project( double[] latDeg, double[] lonDeg, float[] outXy, int offset, int count );
+
+    /**
+     * Convert projected x,y positions back to (nearly) equivalent lat/lon pairs.
+     *
+     * @param   xy         interleaved projected x,y positions
+     * @param   offset     index of the first point to convert
+     * @param   count      number of points to convert
+     * @param   outLatDeg  latitudes, in degrees (written)
+     * @param   outLonDeg  longitudes, in degrees (written)
+     */
+    void unproject( float[] xy, int offset, int count, double[] outLatDeg, double[] outLonDeg );
+
+}
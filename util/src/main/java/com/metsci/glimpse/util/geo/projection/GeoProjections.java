@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.geo.projection;
+
+import static com.metsci.glimpse.util.concurrent.ConcurrencyUtils.getSharedForkJoinPool;
+
+import java.util.concurrent.RecursiveAction;
+
+import com.metsci.glimpse.util.geo.LatLonGeo;
+import com.metsci.glimpse.util.vector.Vector2d;
+
+/**
+ * Static helpers for projecting arrays of points through any {@link GeoProjection}.
+ *
+ * <p>Projections implementing {@link BulkGeoProjection} are handed the arrays directly;
+ * other projections fall back to a per-point loop. The {@code parallel} variants split
+ * large arrays into chunks and project them on a shared fork-join pool, so the projection
+ * must be safe to call from several threads at once. The projections in this package are
+ * immutable, so they all qualify.</p>
+ */
+public class GeoProjections
+{
+    /**
+     * Arrays with fewer points than this are projected on the calling thread, even by the
+     * {@code parallel} variants.
+     */
+    public static final int defaultParallelChunkSize = 16384;
+
+    private GeoProjections( )
+    {
+    }
+
+    /**
+     * @see BulkGeoProjection#project(double[], double[], float[], int, int)
+     */
+    public static void project( GeoProjection projection, double[] latDeg, double[] lonDeg, float[] outXy, int offset, int count )
+    {
+        checkRange( latDeg.length, lonDeg.length, outXy.length, offset, count );
+
+        if ( projection instanceof BulkGeoProjection )
+        {
+            ( ( BulkGeoProjection ) projection ).project( latDeg, lonDeg, outXy, offset, count );
+        }
+        else
+        {
+            for ( int i = offset; i < offset + count; i++ )
+            {
+                Vector2d xy = projection.project( LatLonGeo.fromDeg( latDeg[i], lonDeg[i] ) );
+                outXy[2 * i] = ( float ) xy.getX( );
+                outXy[2 * i + 1] = ( float ) xy.getY( );
+            }
+        }
+    }
+
+    /**
+     * @see BulkGeoProjection#unproject(float[], int, int, double[], double[])
+     */
+    public static void unproject( GeoProjection projection, float[] xy, int offset, int count, double[] outLatDeg, double[] outLonDeg )
+    {
+        checkRange( outLatDeg.length, outLonDeg.length, xy.length, offset, count );
+
+        if ( projection instanceof BulkGeoProjection )
+        {
+            ( ( BulkGeoProjection ) projection ).unproject( xy, offset, count, outLatDeg, outLonDeg );
+        }
+        else
+        {
+            for ( int i = offset; i < offset + count; i++ )
+            {
+                LatLonGeo latLon = projection.unproject( xy[2 * i], xy[2 * i + 1] );
+                outLatDeg[i] = latLon.getLatDeg( );
+                outLonDeg[i] = latLon.getLonDeg( );
+            }
+        }
+    }
+
+    /**
+     * Like {@link #project(GeoProjection, double[], double[], float[], int, int)}, but splits
+     * the range into chunks of {@link #defaultParallelChunkSize} points and projects them in
+     * parallel.
+     */
+    public static void projectParallel( GeoProjection projection, double[] latDeg, double[] lonDeg, float[] outXy, int offset, int count )
+    {
+        projectParallel( projection, latDeg, lonDeg, outXy, offset, count, defaultParallelChunkSize );
+    }
+
+    public static void projectParallel( GeoProjection projection, double[] latDeg, double[] lonDeg, float[] outXy, int offset, int count, int chunkSize )
+    {
+        checkRange( latDeg.length, lonDeg.length, outXy.length, offset, count );
+
+        if ( count <= chunkSize )
+        {
+            project( projection, latDeg, lonDeg, outXy, offset, count );
+        }
+        else
+        {
+            getSharedForkJoinPool( ).invoke( new ProjectTask( projection, latDeg, lonDeg, outXy, offset, count, Math.max( 1, chunkSize ) ) );
+        }
+    }
+
+    /**
+     * Like {@link #unproject(GeoProjection, float[], int, int, double[], double[])}, but splits
+     * the range into chunks of {@link #defaultParallelChunkSize} points and unprojects them in
+     * parallel.
+     */
+    public static void unprojectParallel( GeoProjection projection, float[] xy, int offset, int count, double[] outLatDeg, double[] outLonDeg )
+    {
+        unprojectParallel( projection, xy, offset, count, outLatDeg, outLonDeg, defaultParallelChunkSize );
+    }
+
+    public static void unprojectParallel( GeoProjection projection, float[] xy, int offset, int count, double[] outLatDeg, double[] outLonDeg, int chunkSize )
+    {
+        checkRange( outLatDeg.length, outLonDeg.length, xy.length, offset, count );
+
+        if ( count <= chunkSize )
+        {
+            unproject( projection, xy, offset, count, outLatDeg, outLonDeg );
+        }
+        else
+        {
+            getSharedForkJoinPool( ).invoke( new UnprojectTask( projection, xy, offset, count, outLatDeg, outLonDeg, Math.max( 1, chunkSize ) ) );
+        }
+    }
+
+    protected static void checkRange( int latLength, int lonLength, int xyLength, int offset, int count )
+    {
+        if ( offset < 0 || count < 0 )
+        {
+            throw new IndexOutOfBoundsException( "offset: " + offset + ", count: " + count );
+        }
+
+        long end = ( long ) offset + count;
+        if ( end > latLength || end > lonLength || 2 * end > xyLength )
+        {
+            throw new IndexOutOfBoundsException( "offset: " + offset + ", count: " + count + ", lat length: " + latLength + ", lon length: " + lonLength + ", xy length: " + xyLength );
+        }
+    }
+
+    protected static class ProjectTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        protected final GeoProjection projection;
+        protected final double[] latDeg;
+        protected final double[] lonDeg;
+        protected final float[] outXy;
+        protected final int offset;
+        protected final int count;
+        protected final int chunkSize;
+
+        public ProjectTask( GeoProjection projection, double[] latDeg, double[] lonDeg, float[] outXy, int offset, int count, int chunkSize )
+        {
+            this.projection = projection;
+            this.latDeg = latDeg;
+            this.lonDeg = lonDeg;
+            this.outXy = outXy;
+            this.offset = offset;
+            this.count = count;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute( )
+        {
+            if ( this.count <= this.chunkSize )
+            {
+                project( this.projection, this.latDeg, this.lonDeg, this.outXy, this.offset, this.count );
+            }
+            else
+            {
+                int half = this.count / 2;
+                invokeAll( new ProjectTask( this.projection, this.latDeg, this.lonDeg, this.outXy, this.offset, half, this.chunkSize ), new ProjectTask( this.projection, this.latDeg, this.lonDeg, this.outXy, this.offset + half, this.count - half, this.chunkSize ) );
+            }
+        }
+    }
+
+    protected static class UnprojectTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        protected final GeoProjection projection;
+        protected final float[] xy;
+        protected final int offset;
+        protected final int count;
+        protected final double[] outLatDeg;
+        protected final double[] outLonDeg;
+        protected final int chunkSize;
+
+        public UnprojectTask( GeoProjection projection, float[] xy, int offset, int count, double[] outLatDeg, double[] outLonDeg, int chunkSize )
+        {
+            this.projection = projection;
+            this.xy = xy;
+            this.offset = offset;
+            this.count = count;
+            this.outLatDeg = outLatDeg;
+            this.outLonDeg = outLonDeg;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute( )
+        {
+            if ( this.count <= this.chunkSize )
+            {
+                unproject( this.projection, this.xy, this.offset, this.count, this.outLatDeg, this.outLonDeg );
+            }
+            else
+            {
+                int half = this.count / 2;
+                invokeAll( new UnprojectTask( this.projection, this.xy, this.offset, half, this.outLatDeg, this.outLonDeg, this.chunkSize ), new UnprojectTask( this.projection, this.xy, this.offset + half, this.count - half, this.outLatDeg, this.outLonDeg, this.chunkSize ) );
+            }
+        }
+    }
+}
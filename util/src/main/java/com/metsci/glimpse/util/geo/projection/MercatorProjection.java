@@ -40,10 +40,15 @@ import com.metsci.glimpse.util.vector.Vector2d;
 /**
  * Mercator cylindrical map projection.
  *
+ * <p>Also implements {@link BulkGeoProjection}, for projecting arrays of points without
+ * allocating per point.</p>
+ *
  * @author ulman
  */
-public class MercatorProjection implements GeoProjection
+public class MercatorProjection implements BulkGeoProjection
 {
+    private static final double halfPi = 0.5 * PI;
+
     protected final double originLon;
 
     public MercatorProjection( double originLongitudeDeg )
@@ -77,6 +82,36 @@ public class MercatorProjection implements GeoProjection
         return LatLonGeo.fromRad( lat, lon );
     }
 
+    @Override
+    public void project( double[] latDeg, double[] lonDeg, float[] outXy, int offset, int count )
+    {
+        for ( int i = offset; i < offset + count; i++ )
+        {
+            double lat = Angle.degreesToRadians( latDeg[i] );
+            if ( lat < -halfPi || lat > halfPi )
+            {
+                lat = LatLonGeo.normalizeLat( lat );
+            }
+            double lon = Angle.degreesToRadians( lonDeg[i] );
+
+            outXy[2 * i] = ( float ) Angle.normalizeAnglePi( lon - originLon );
+            outXy[2 * i + 1] = ( float ) log( ( sin( lat ) + 1 ) / cos( lat ) );
+        }
+    }
+
+    @Override
+    public void unproject( float[] xy, int offset, int count, double[] outLatDeg, double[] outLonDeg )
+    {
+        for ( int i = offset; i < offset + count; i++ )
+        {
+            double lat = 2 * atan( exp( xy[2 * i + 1] ) ) - halfPi;
+            double lon = LatLonGeo.normalizeLon( xy[2 * i] + originLon );
+
+            outLatDeg[i] = Angle.radiansToDegrees( lat );
+            outLonDeg[i] = Angle.radiansToDegrees( lon );
+        }
+    }
+
     @Override
     public Vector2d reprojectFrom( double x, double y, GeoProjection fromProjection )
     {
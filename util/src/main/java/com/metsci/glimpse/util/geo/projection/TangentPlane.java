@@ -39,13 +39,17 @@ import com.metsci.glimpse.util.vector.Vector3d;
  * Implementation of GeoProjection via a plane which is tangent to the Earth and maps x, y
  * coordinates on the plane to/from lat/lon pairs.  Class instances are immutable.
  *
+ * <p>The bulk methods from {@link BulkGeoProjection} perform the same math as the per-point
+ * methods, but on primitive locals, so that the inner loops allocate nothing.</p>
+ *
  * @author moskowitz
  */
-public class TangentPlane implements GeoProjection, Serializable
+public class TangentPlane implements BulkGeoProjection, Serializable
 {
     public static final long serialVersionUID = -6802219476339525122L;
     private static final Vector2d defaultTangentPointOnPlane = new Vector2d( 0.0, 0.0 );
     private static final double earthRadius = DatumSphereWgs84.Constants.avgGeodesicRadius;
+    private static final double piOverTwo = 0.5 * Math.PI;
 
     // reference LatLon at point of tangency as a LatLon instance and also represented as point on
     // unit sphere (Earth units: radius of earth = 1.0)
@@ -117,6 +121,76 @@ public class TangentPlane implements GeoProjection, Serializable
         return ns;
     }
 
+    @Override
+    public void project( double[] latDeg, double[] lonDeg, float[] outXy, int offset, int count )
+    {
+        final double rx = _refPointOnUnitSphere.getX( );
+        final double ry = _refPointOnUnitSphere.getY( );
+        final double rz = _refPointOnUnitSphere.getZ( );
+        final double ex = _localEast.getX( );
+        final double ey = _localEast.getY( );
+        final double ez = _localEast.getZ( );
+        final double nx = _localNorth.getX( );
+        final double ny = _localNorth.getY( );
+        final double nz = _localNorth.getZ( );
+        final double tx = _tangentPointOnPlane.getX( );
+        final double ty = _tangentPointOnPlane.getY( );
+        final double twoR = 2 * earthRadius;
+
+        for ( int i = offset; i < offset + count; i++ )
+        {
+            double latRad = Angle.degreesToRadians( latDeg[i] );
+            if ( latRad < -piOverTwo || latRad > piOverTwo )
+            {
+                latRad = LatLonGeo.normalizeLat( latRad );
+            }
+            double lonRad = Angle.degreesToRadians( lonDeg[i] );
+
+            double cosLat = Math.cos( latRad );
+            double px = cosLat * Math.cos( lonRad );
+            double py = cosLat * Math.sin( lonRad );
+            double pz = Math.sin( latRad );
+
+            double scale = twoR / ( 1 + px * rx + py * ry + pz * rz );
+            outXy[2 * i] = ( float ) ( ( px * ex + py * ey + pz * ez ) * scale + tx );
+            outXy[2 * i + 1] = ( float ) ( ( px * nx + py * ny + pz * nz ) * scale + ty );
+        }
+    }
+
+    @Override
+    public void unproject( float[] xy, int offset, int count, double[] outLatDeg, double[] outLonDeg )
+    {
+        final double rx = _refPointOnUnitSphere.getX( );
+        final double ry = _refPointOnUnitSphere.getY( );
+        final double rz = _refPointOnUnitSphere.getZ( );
+        final double ex = _localEast.getX( );
+        final double ey = _localEast.getY( );
+        final double ez = _localEast.getZ( );
+        final double nx = _localNorth.getX( );
+        final double ny = _localNorth.getY( );
+        final double nz = _localNorth.getZ( );
+        final double tx = _tangentPointOnPlane.getX( );
+        final double ty = _tangentPointOnPlane.getY( );
+
+        for ( int i = offset; i < offset + count; i++ )
+        {
+            double a = ( xy[2 * i] - tx ) / earthRadius;
+            double b = ( xy[2 * i + 1] - ty ) / earthRadius;
+            double beta = 4.0 / ( 4.0 + ( a * a ) + ( b * b ) );
+
+            // beta * ( ref + a*east + b*north ) + ( beta - 1 ) * ref
+            double refCoeff = 2 * beta - 1;
+            double aCoeff = beta * a;
+            double bCoeff = beta * b;
+            double px = refCoeff * rx + aCoeff * ex + bCoeff * nx;
+            double py = refCoeff * ry + aCoeff * ey + bCoeff * ny;
+            double pz = refCoeff * rz + aCoeff * ez + bCoeff * nz;
+
+            outLatDeg[i] = Angle.radiansToDegrees( PolynomialApprox.asin( pz ) );
+            outLonDeg[i] = Angle.radiansToDegrees( calcAtan2( py, px ) );
+        }
+    }
+
     // This is defined here as a member function so it can be overriden by subclasses to improve runtime.
     protected double calcAtan2( double y, double x )
     {
@@ -29,6 +29,8 @@ package com.metsci.glimpse.util.quadtree;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 
+import java.util.PriorityQueue;
+
 /**
  * @author hogye
  */
@@ -44,6 +46,19 @@ public abstract class QuadTree<B>
         void accumulate( B bucket, float xMinBucket, float xMaxBucket, float yMinBucket, float yMaxBucket );
     }
 
+    public static interface NearestAccumulator<B>
+    {
+        /**
+         * Called for leaf buckets in order of increasing minimum distance from the query point.
+         * Distances are squared, and are measured after scaling x and y by the scale factors
+         * passed to {@link QuadTree#accumulateNearest(float, float, double, double, double, NearestAccumulator)}.
+         *
+         * @return The squared search radius after this bucket has been processed. Buckets
+         *         farther away than this will not be visited.
+         */
+        double accumulate( B bucket, double bucketDistSq );
+    }
+
     public static interface Node<B>
     {
         LeafNode<B> leaf( float x, float y );
@@ -167,6 +182,265 @@ public abstract class QuadTree<B>
         root[0].accumulate( xMin, xMax, yMin, yMax, accumulator );
     }
 
+    /**
+     * Visits leaf buckets in best-first order: in order of increasing minimum distance from
+     * {@code (x,y)} to the bucket's bounds. Traversal stops once the nearest unvisited bucket
+     * is farther away than the search radius returned by the accumulator.
+     *
+     * Distances are computed as {@code sqrt( (xScale*dx)^2 + (yScale*dy)^2 )}. Passing the
+     * pixels-per-value of each axis as the scale factors gives distances in pixels.
+     *
+     * @param maxDistSq the initial squared search radius
+     */
+    public void accumulateNearest( float x, float y, double xScale, double yScale, double maxDistSq, NearestAccumulator<B> accumulator )
+    {
+        PriorityQueue<NodeDist<B>> queue = new PriorityQueue<NodeDist<B>>( );
+        queue.add( new NodeDist<B>( root[0], Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, 0 ) );
+
+        double radiusSq = maxDistSq;
+        NodeDist<B> entry;
+        while ( ( entry = queue.poll( ) ) != null )
+        {
+            if ( entry.distSq > radiusSq ) break;
+
+            Node<B> node = entry.node;
+            if ( node instanceof LeafNode )
+            {
+                radiusSq = accumulator.accumulate( ( ( LeafNode<B> ) node ).bucket, entry.distSq );
+            }
+            else
+            {
+                InternalNode<B> internal = ( InternalNode<B> ) node;
+                float xDivider = internal.xDivider;
+                float yDivider = internal.yDivider;
+                Node<B>[] children = internal.children;
+
+                offerNearest( queue, children[0], entry.xMin, xDivider, entry.yMin, yDivider, x, y, xScale, yScale, radiusSq );
+                offerNearest( queue, children[1], xDivider, entry.xMax, entry.yMin, yDivider, x, y, xScale, yScale, radiusSq );
+                offerNearest( queue, children[2], entry.xMin, xDivider, yDivider, entry.yMax, x, y, xScale, yScale, radiusSq );
+                offerNearest( queue, children[3], xDivider, entry.xMax, yDivider, entry.yMax, x, y, xScale, yScale, radiusSq );
+            }
+        }
+    }
+
+    protected static <B> void offerNearest( PriorityQueue<NodeDist<B>> queue, Node<B> node, float xMin, float xMax, float yMin, float yMax, float x, float y, double xScale, double yScale, double radiusSq )
+    {
+        double distSq = minDistSq( xMin, xMax, yMin, yMax, x, y, xScale, yScale );
+        if ( distSq <= radiusSq ) queue.add( new NodeDist<B>( node, xMin, xMax, yMin, yMax, distSq ) );
+    }
+
+    /**
+     * @return the squared scaled distance from {@code (x,y)} to the nearest point in the given box
+     */
+    public static double minDistSq( float xMin, float xMax, float yMin, float yMax, float x, float y, double xScale, double yScale )
+    {
+        double dx = xScale * max( 0, max( xMin - x, x - xMax ) );
+        double dy = yScale * max( 0, max( yMin - y, y - yMax ) );
+        return dx * dx + dy * dy;
+    }
+
+    public static double distSq( float x1, float y1, float x2, float y2, double xScale, double yScale )
+    {
+        double dx = xScale * ( x2 - x1 );
+        double dy = yScale * ( y2 - y1 );
+        return dx * dx + dy * dy;
+    }
+
+    protected static class NodeDist<B> implements Comparable<NodeDist<B>>
+    {
+        public final Node<B> node;
+        public final float xMin;
+        public final float xMax;
+        public final float yMin;
+        public final float yMax;
+        public final double distSq;
+
+        public NodeDist( Node<B> node, float xMin, float xMax, float yMin, float yMax, double distSq )
+        {
+            this.node = node;
+            this.xMin = xMin;
+            this.xMax = xMax;
+            this.yMin = yMin;
+            this.yMax = yMax;
+            this.distSq = distSq;
+        }
+
+        @Override
+        public int compareTo( NodeDist<B> o )
+        {
+            return Double.compare( distSq, o.distSq );
+        }
+    }
+
+    /**
+     * A bounded max-heap holding the k nearest values found so far, for use by
+     * nearest-neighbor searches. Each entry holds either a long value (used for
+     * primitive trees) or an object value.
+     */
+    protected static class NearestHeap
+    {
+        protected final int k;
+        protected final double maxDistSq;
+
+        protected final double[] distSq;
+        protected final long[] longValues;
+        protected final Object[] objectValues;
+        protected int n;
+
+        public NearestHeap( int k, double maxDist, boolean objects )
+        {
+            this.k = k;
+            this.maxDistSq = maxDist * maxDist;
+            this.distSq = new double[k];
+            this.longValues = ( objects ? null : new long[k] );
+            this.objectValues = ( objects ? new Object[k] : null );
+            this.n = 0;
+        }
+
+        /**
+         * @return the squared distance a candidate must be within to be accepted
+         */
+        public double radiusSq( )
+        {
+            return ( n < k ? maxDistSq : min( maxDistSq, distSq[0] ) );
+        }
+
+        public void offer( double d, long v )
+        {
+            int i = slot( d );
+            if ( i >= 0 )
+            {
+                distSq[i] = d;
+                longValues[i] = v;
+                siftUp( i );
+            }
+        }
+
+        public void offer( double d, Object v )
+        {
+            int i = slot( d );
+            if ( i >= 0 )
+            {
+                distSq[i] = d;
+                objectValues[i] = v;
+                siftUp( i );
+            }
+        }
+
+        /**
+         * Makes room for a value at distance {@code d}, if it is close enough, and returns
+         * the index at which it should be placed (or -1 if it should be discarded).
+         */
+        protected int slot( double d )
+        {
+            if ( k == 0 || d > maxDistSq ) return -1;
+
+            if ( n < k )
+            {
+                return n++;
+            }
+            else if ( d < distSq[0] )
+            {
+                // drop the farthest value, then re-insert at the bottom of the heap
+                n--;
+                move( n, 0 );
+                siftDown( 0 );
+                return n++;
+            }
+            else
+            {
+                return -1;
+            }
+        }
+
+        protected void siftUp( int i )
+        {
+            while ( i > 0 )
+            {
+                int parent = ( i - 1 ) >>> 1;
+                if ( distSq[parent] >= distSq[i] ) break;
+                swap( i, parent );
+                i = parent;
+            }
+        }
+
+        protected void siftDown( int i )
+        {
+            while ( true )
+            {
+                int left = 2 * i + 1;
+                if ( left >= n ) break;
+
+                int right = left + 1;
+                int largest = ( right < n && distSq[right] > distSq[left] ? right : left );
+                if ( distSq[i] >= distSq[largest] ) break;
+
+                swap( i, largest );
+                i = largest;
+            }
+        }
+
+        protected void move( int from, int to )
+        {
+            distSq[to] = distSq[from];
+            if ( longValues != null ) longValues[to] = longValues[from];
+            if ( objectValues != null ) objectValues[to] = objectValues[from];
+        }
+
+        protected void swap( int i, int j )
+        {
+            double d = distSq[i];
+            distSq[i] = distSq[j];
+            distSq[j] = d;
+
+            if ( longValues != null )
+            {
+                long v = longValues[i];
+                longValues[i] = longValues[j];
+                longValues[j] = v;
+            }
+
+            if ( objectValues != null )
+            {
+                Object v = objectValues[i];
+                objectValues[i] = objectValues[j];
+                objectValues[j] = v;
+            }
+        }
+
+        /**
+         * Empties the heap, returning the long values in order of increasing distance.
+         */
+        public long[] drainLongs( )
+        {
+            long[] result = new long[n];
+            for ( int i = n - 1; i >= 0; i-- )
+            {
+                result[i] = longValues[0];
+                n--;
+                move( n, 0 );
+                siftDown( 0 );
+            }
+            return result;
+        }
+
+        /**
+         * Empties the heap, returning the object values in order of increasing distance.
+         */
+        public Object[] drainObjects( )
+        {
+            Object[] result = new Object[n];
+            for ( int i = n - 1; i >= 0; i-- )
+            {
+                result[i] = objectValues[0];
+                n--;
+                move( n, 0 );
+                siftDown( 0 );
+            }
+            return result;
+        }
+    }
+
     /**
      * For subclasses to call when a leaf's bucket gets full.
      *
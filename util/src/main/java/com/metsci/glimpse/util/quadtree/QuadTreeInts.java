@@ -310,6 +310,72 @@ public abstract class QuadTreeInts extends QuadTree<Bucket>
         return results.n( ) - nBefore;
     }
 
+    public Ints nearest( float x, float y, int k, double maxDist, FilterInt vFilter )
+    {
+        return nearest( x, y, 1, 1, k, maxDist, vFilter );
+    }
+
+    /**
+     * Finds the {@code k} values nearest to {@code (x,y)}, using a best-first traversal which
+     * visits only buckets that could contain one of the nearest values. Distances are measured
+     * as {@code sqrt( (xScale*dx)^2 + (yScale*dy)^2 )}, so passing the pixels-per-value of each
+     * axis gives pixel distances.
+     *
+     * @param vFilter only values accepted by the filter are considered (may be null)
+     * @return up to {@code k} values within {@code maxDist}, in order of increasing distance
+     */
+    public Ints nearest( final float x, final float y, final double xScale, final double yScale, int k, double maxDist, final FilterInt vFilter )
+    {
+        final NearestHeap heap = new NearestHeap( k, maxDist, false );
+
+        accumulateNearest( x, y, xScale, yScale, heap.radiusSq( ), new NearestAccumulator<Bucket>( )
+        {
+            @Override
+            public double accumulate( Bucket bucket, double bucketDistSq )
+            {
+                IntsArray singles = bucket.singles;
+                int[] a = singles.a;
+                int n = singles.n;
+
+                for ( int i = 0; i < n; i++ )
+                {
+                    int v = a[i];
+                    if ( vFilter != null && !vFilter.include( v ) ) continue;
+
+                    heap.offer( distSq( x, y, x( v ), y( v ), xScale, yScale ), v );
+                }
+
+                for ( Entry<IntsArray> en : bucket.dupes.long2ObjectEntrySet( ) )
+                {
+                    long xyKey = en.getLongKey( );
+
+                    // all values in a dupes entry share the same location
+                    double d = distSq( x, y, xFromKey( xyKey ), yFromKey( xyKey ), xScale, yScale );
+                    if ( d > heap.radiusSq( ) ) continue;
+
+                    IntsArray vs = en.getValue( );
+                    for ( int i = 0; i < vs.n; i++ )
+                    {
+                        int v = vs.a[i];
+                        if ( vFilter != null && !vFilter.include( v ) ) continue;
+
+                        heap.offer( d, v );
+                    }
+                }
+
+                return heap.radiusSq( );
+            }
+        } );
+
+        long[] nearest = heap.drainLongs( );
+        IntsArray results = new IntsArray( nearest.length );
+        for ( long v : nearest )
+        {
+            results.append( ( int ) v );
+        }
+        return results;
+    }
+
     /**
      * If {@code x(v)} or {@code y(v)} returns {@code NaN}, this method returns
      * immediately without adding {@code v} to the tree.
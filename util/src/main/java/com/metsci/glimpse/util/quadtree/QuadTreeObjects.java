@@ -28,6 +28,7 @@ package com.metsci.glimpse.util.quadtree;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * @author hogye
@@ -186,6 +187,49 @@ public abstract class QuadTreeObjects<V> extends QuadTree<Collection<V>>
         return results.size( ) - nBefore;
     }
 
+    public List<V> nearest( float x, float y, int k, double maxDist, FilterObject<V> vFilter )
+    {
+        return nearest( x, y, 1, 1, k, maxDist, vFilter );
+    }
+
+    /**
+     * Finds the {@code k} values nearest to {@code (x,y)}, using a best-first traversal which
+     * visits only buckets that could contain one of the nearest values. Distances are measured
+     * as {@code sqrt( (xScale*dx)^2 + (yScale*dy)^2 )}, so passing the pixels-per-value of each
+     * axis gives pixel distances.
+     *
+     * @param vFilter only values accepted by the filter are considered (may be null)
+     * @return up to {@code k} values within {@code maxDist}, in order of increasing distance
+     */
+    @SuppressWarnings( "unchecked" )
+    public List<V> nearest( final float x, final float y, final double xScale, final double yScale, int k, double maxDist, final FilterObject<V> vFilter )
+    {
+        final NearestHeap heap = new NearestHeap( k, maxDist, true );
+
+        accumulateNearest( x, y, xScale, yScale, heap.radiusSq( ), new NearestAccumulator<Collection<V>>( )
+        {
+            @Override
+            public double accumulate( Collection<V> bucket, double bucketDistSq )
+            {
+                for ( V v : bucket )
+                {
+                    if ( vFilter != null && !vFilter.include( v ) ) continue;
+
+                    heap.offer( distSq( x, y, x( v ), y( v ), xScale, yScale ), v );
+                }
+
+                return heap.radiusSq( );
+            }
+        } );
+
+        List<V> results = new ArrayList<V>( );
+        for ( Object v : heap.drainObjects( ) )
+        {
+            results.add( ( V ) v );
+        }
+        return results;
+    }
+
     /**
      * If {@code x(v)} or {@code y(v)} returns {@code NaN}, this method returns
      * immediately without adding {@code v} to the tree.
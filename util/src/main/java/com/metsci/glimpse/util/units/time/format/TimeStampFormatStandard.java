@@ -30,10 +30,14 @@ import static java.util.Arrays.asList;
 
 import java.math.BigDecimal;
 import java.text.DateFormatSymbols;
+import java.text.DecimalFormatSymbols;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.regex.Matcher;
@@ -240,6 +244,16 @@ import com.metsci.glimpse.util.GeneralUtils;
  * <p>
  * If (for some strange reason) a format string contains multiple <code>%S</code> fields, the
  * precision of the rightmost one is used for figuring rollover.
+ *
+ *
+ * <h4>Formatting Posix Milliseconds</h4>
+ * <p>
+ * {@link #format(long, StringBuilder)} produces the same text as {@link #format(BigDecimal)}, for
+ * times with millisecond precision, but appends to a caller-supplied {@link StringBuilder} and does
+ * not create any intermediate objects (except for <code>%z</code>, whose zone name comes from
+ * {@link TimeZone#getDisplayName(boolean, int)}). It computes calendar fields directly, using a
+ * precomputed table of the time zone's offset transitions. Times before the Gregorian cutover, and
+ * non-Gregorian default calendars, fall back to the general path.
  */
 public class TimeStampFormatStandard implements TimeStampFormat
 {
@@ -252,6 +266,13 @@ public class TimeStampFormatStandard implements TimeStampFormat
     private final String formatString;
     private final int precision;
 
+    // literals[i] precedes fields[i]; the last literal follows the last field
+    private final String[] literals;
+    private final ZoneOffsetTable zoneOffsets;
+    private final boolean fastFormatSupported;
+    private final char decimalSeparator;
+    private final ThreadLocal<CalendarFields> calendarFields;
+
     public TimeStampFormatStandard( String format, String timeZoneName )
     {
         this( format, TimeZone.getTimeZone( timeZoneName ) );
@@ -280,8 +301,10 @@ public class TimeStampFormatStandard implements TimeStampFormat
         this.baseForTwoDigitYears = baseForTwoDigitYears;
 
         List<Field> fieldsList = new LinkedList<Field>( );
+        List<String> literalsList = new LinkedList<String>( );
         StringBuilder patternBuilder = new StringBuilder( );
         StringBuilder formatBuilder = new StringBuilder( );
+        StringBuilder literalBuilder = new StringBuilder( );
         int floatSecondsPrecision = -1;
         for ( int i = 0; i < format.length( ); )
         {
@@ -292,12 +315,14 @@ public class TimeStampFormatStandard implements TimeStampFormat
             {
                 formatBuilder.append( c );
                 patternBuilder.append( c );
+                literalBuilder.append( c );
             }
             else if ( c == '%' && i < format.length( ) && format.charAt( i ) == '%' )
             {
                 i++;
                 formatBuilder.append( "%%" );
                 patternBuilder.append( '%' );
+                literalBuilder.append( '%' );
             }
             else
             {
@@ -325,6 +350,9 @@ public class TimeStampFormatStandard implements TimeStampFormat
                 patternBuilder.append( field.getRegexSpecifier( ) );
                 formatBuilder.append( field.getFormatSpecifier( ) );
 
+                literalsList.add( literalBuilder.toString( ) );
+                literalBuilder.setLength( 0 );
+
                 // See "Rollover and the %S Field" in the class comment
                 if ( field instanceof FloatSecondField ) floatSecondsPrecision = ( ( FloatSecondField ) field ).precision;
             }
@@ -334,6 +362,23 @@ public class TimeStampFormatStandard implements TimeStampFormat
         parsePattern = Pattern.compile( patternBuilder.toString( ) );
         formatString = formatBuilder.toString( );
         precision = floatSecondsPrecision;
+
+        literalsList.add( literalBuilder.toString( ) );
+        literals = literalsList.toArray( new String[0] );
+
+        // String.format localizes digits and the decimal separator, so only take
+        // the fast path when the default locale uses plain ASCII digits
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance( Locale.getDefault( Locale.Category.FORMAT ) );
+        decimalSeparator = symbols.getDecimalSeparator( );
+        fastFormatSupported = symbols.getZeroDigit( ) == '0' && ( calendars.get( ) instanceof GregorianCalendar );
+        zoneOffsets = new ZoneOffsetTable( timeZone );
+        calendarFields = new ThreadLocal<CalendarFields>( )
+        {
+            public CalendarFields initialValue( )
+            {
+                return new CalendarFields( timeZone );
+            }
+        };
     }
 
     public Field newField( char code, String flags )
@@ -428,6 +473,150 @@ public class TimeStampFormatStandard implements TimeStampFormat
         return String.format( formatString, fieldValues );
     }
 
+    /**
+     * Appends the formatted time to {@code out}, without allocating intermediate objects. The output
+     * matches {@code format( BigDecimal.valueOf( posixMillis, 3 ) )}.
+     */
+    public void format( long posixMillis, StringBuilder out )
+    {
+        if ( !fastFormatSupported || posixMillis < GREGORIAN_CUTOVER_MILLIS )
+        {
+            out.append( format( BigDecimal.valueOf( posixMillis, 3 ) ) );
+            return;
+        }
+
+        // See "Rollover and the %S Field" in the class comment
+        if ( precision >= 0 && precision < 3 )
+        {
+            long unit = ( precision == 0 ? 1000 : ( precision == 1 ? 100 : 10 ) );
+            long half = unit / 2;
+            posixMillis = ( posixMillis >= 0 ? ( ( posixMillis + half ) / unit ) * unit : -( ( ( -posixMillis + half ) / unit ) * unit ) );
+        }
+
+        CalendarFields t = calendarFields.get( );
+        t.set( posixMillis, posixMillis + zoneOffsets.getOffset( posixMillis ) );
+
+        for ( int i = 0; i < fields.length; i++ )
+        {
+            out.append( literals[i] );
+            fields[i].appendValue( t, decimalSeparator, out );
+        }
+        out.append( literals[fields.length] );
+    }
+
+    /**
+     * Convenience wrapper around {@link #format(long, StringBuilder)}.
+     */
+    public String formatPosixMillis( long posixMillis )
+    {
+        StringBuilder out = new StringBuilder( 32 );
+        format( posixMillis, out );
+        return out.toString( );
+    }
+
+    // 1582-10-15T00:00:00Z, before which GregorianCalendar switches to Julian dates
+    private static final long GREGORIAN_CUTOVER_MILLIS = -12219292800000L;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private static final int[] DAYS_BEFORE_MONTH = { 0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334 };
+
+    /**
+     * Proleptic Gregorian calendar fields for a local (zone-adjusted) time in millis.
+     */
+    private static class CalendarFields
+    {
+        final TimeZone timeZone;
+        final Date time;
+
+        int year;
+        int month; // 1-12
+        int dayOfMonth;
+        int dayOfYear;
+        int hour;
+        int minute;
+        int second;
+        int millis;
+
+        CalendarFields( TimeZone timeZone )
+        {
+            this.timeZone = timeZone;
+            this.time = new Date( );
+        }
+
+        void set( long posixMillis, long localMillis )
+        {
+            this.time.setTime( posixMillis );
+
+            long days = floorDiv( localMillis, MILLIS_PER_DAY );
+            int millisOfDay = ( int ) ( localMillis - days * MILLIS_PER_DAY );
+
+            // Civil-from-days, using 400-year eras that start on March 1
+            long z = days + 719468;
+            long era = ( z >= 0 ? z : z - 146096 ) / 146097;
+            long doe = z - era * 146097;
+            long yoe = ( doe - doe / 1460 + doe / 36524 - doe / 146096 ) / 365;
+            long doyFromMarch = doe - ( 365 * yoe + yoe / 4 - yoe / 100 );
+            long mp = ( 5 * doyFromMarch + 2 ) / 153;
+            int d = ( int ) ( doyFromMarch - ( 153 * mp + 2 ) / 5 + 1 );
+            int m = ( int ) ( mp < 10 ? mp + 3 : mp - 9 );
+            int y = ( int ) ( yoe + era * 400 + ( m <= 2 ? 1 : 0 ) );
+
+            boolean leap = ( y % 4 == 0 ) && ( y % 100 != 0 || y % 400 == 0 );
+
+            this.year = y;
+            this.month = m;
+            this.dayOfMonth = d;
+            this.dayOfYear = DAYS_BEFORE_MONTH[m - 1] + d + ( leap && m > 2 ? 1 : 0 );
+            this.hour = millisOfDay / 3600000;
+            this.minute = ( millisOfDay / 60000 ) % 60;
+            this.second = ( millisOfDay / 1000 ) % 60;
+            this.millis = millisOfDay % 1000;
+        }
+
+        static long floorDiv( long x, long y )
+        {
+            long q = x / y;
+            if ( ( x % y != 0 ) && ( ( x < 0 ) != ( y < 0 ) ) ) q--;
+            return q;
+        }
+    }
+
+    private static void appendPadded( StringBuilder out, int value, int numDigits, Padding padding )
+    {
+        int length = numDigitsOf( value );
+        switch ( padding )
+        {
+            case SPACES_ON_LEFT:
+                for ( int i = length; i < numDigits; i++ )
+                    out.append( ' ' );
+                out.append( value );
+                break;
+            case SPACES_ON_RIGHT:
+                out.append( value );
+                for ( int i = length; i < numDigits; i++ )
+                    out.append( ' ' );
+                break;
+            case NONE:
+                out.append( value );
+                break;
+            default:
+                for ( int i = length; i < numDigits; i++ )
+                    out.append( '0' );
+                out.append( value );
+                break;
+        }
+    }
+
+    private static int numDigitsOf( int value )
+    {
+        // the sign counts toward the width, just as in String.format
+        int n = ( value < 0 ? 2 : 1 );
+        for ( int v = Math.abs( value ); v >= 10; v /= 10 )
+            n++;
+        return n;
+    }
+
     private static interface Field
     {
         String getRegexSpecifier( );
@@ -436,6 +625,11 @@ public class TimeStampFormatStandard implements TimeStampFormat
 
         Object getValue( BigDecimal posixSeconds, Calendar calendar );
 
+        /**
+         * Appends the same text as the format specifier would produce for {@link #getValue(BigDecimal, Calendar)}.
+         */
+        void appendValue( CalendarFields t, char decimalSeparator, StringBuilder out );
+
         /**
          * @throws NumberFormatException if valueString cannot be parsed
          */
@@ -495,6 +689,34 @@ public class TimeStampFormatStandard implements TimeStampFormat
             calendar.set( calendarField, Integer.parseInt( valueString ) );
             return BigDecimal.ZERO;
         }
+
+        public void appendValue( CalendarFields t, char decimalSeparator, StringBuilder out )
+        {
+            appendPadded( out, getValue( t ), numDigits, padding );
+        }
+
+        protected int getValue( CalendarFields t )
+        {
+            switch ( calendarField )
+            {
+                case Calendar.YEAR:
+                    return t.year;
+                case Calendar.MONTH:
+                    return t.month - 1;
+                case Calendar.DAY_OF_MONTH:
+                    return t.dayOfMonth;
+                case Calendar.DAY_OF_YEAR:
+                    return t.dayOfYear;
+                case Calendar.HOUR_OF_DAY:
+                    return t.hour;
+                case Calendar.MINUTE:
+                    return t.minute;
+                case Calendar.SECOND:
+                    return t.second;
+                default:
+                    throw new UnsupportedOperationException( "Unsupported calendar field: " + calendarField );
+            }
+        }
     }
 
     private static class YearField extends CalendarField
@@ -520,6 +742,11 @@ public class TimeStampFormatStandard implements TimeStampFormat
             return ( twoDigit ? fourDigit % 100 : fourDigit );
         }
 
+        protected int getValue( CalendarFields t )
+        {
+            return ( twoDigit ? t.year % 100 : t.year );
+        }
+
         public BigDecimal putValue( String valueString, Calendar calendar )
         {
             String fourDigit = ( twoDigit ? twoDigitYearToFour( valueString ) : valueString );
@@ -551,6 +778,11 @@ public class TimeStampFormatStandard implements TimeStampFormat
             return calendar.get( calendarField ) + 1;
         }
 
+        protected int getValue( CalendarFields t )
+        {
+            return t.month;
+        }
+
         public BigDecimal putValue( String valueString, Calendar calendar )
         {
             // Calendar uses 0 for January
@@ -612,11 +844,37 @@ public class TimeStampFormatStandard implements TimeStampFormat
 
         private final boolean abbreviate;
         private final Case capitalization;
+        private final String[] formattedNames;
 
         public TextMonthField( String flags )
         {
             abbreviate = flags.contains( "3" );
             capitalization = getCase( flags );
+
+            String[] monthNames = ( abbreviate ? shortMonthNames : longMonthNames );
+            formattedNames = new String[monthNames.length];
+            for ( int i = 0; i < monthNames.length; i++ )
+            {
+                formattedNames[i] = applyCase( monthNames[i] );
+            }
+        }
+
+        private String applyCase( String monthName )
+        {
+            switch ( capitalization )
+            {
+                case UPPERCASE:
+                    return monthName.toUpperCase( );
+                case LOWERCASE:
+                    return monthName.toLowerCase( );
+                default:
+                    return monthName;
+            }
+        }
+
+        public void appendValue( CalendarFields t, char decimalSeparator, StringBuilder out )
+        {
+            out.append( formattedNames[t.month - 1] );
         }
 
         public String getFormatSpecifier( )
@@ -631,17 +889,7 @@ public class TimeStampFormatStandard implements TimeStampFormat
 
         public String getValue( BigDecimal posixSeconds, Calendar calendar )
         {
-            int month = calendar.get( Calendar.MONTH );
-            String monthName = ( abbreviate ? shortMonthNames[month] : longMonthNames[month] );
-            switch ( capitalization )
-            {
-                case UPPERCASE:
-                    return monthName.toUpperCase( );
-                case LOWERCASE:
-                    return monthName.toLowerCase( );
-                default:
-                    return monthName;
-            }
+            return formattedNames[calendar.get( Calendar.MONTH )];
         }
 
         public BigDecimal putValue( String valueString, Calendar calendar )
@@ -685,8 +933,12 @@ public class TimeStampFormatStandard implements TimeStampFormat
 
         public String getValue( BigDecimal posixSeconds, Calendar calendar )
         {
-            TimeZone tz = calendar.getTimeZone( );
-            boolean daylightSavings = tz.inDaylightTime( calendar.getTime( ) );
+            return getValue( calendar.getTimeZone( ), calendar.getTime( ) );
+        }
+
+        private String getValue( TimeZone tz, Date time )
+        {
+            boolean daylightSavings = tz.inDaylightTime( time );
             String tzString = tz.getDisplayName( daylightSavings, TimeZone.SHORT );
             switch ( capitalization )
             {
@@ -705,6 +957,11 @@ public class TimeStampFormatStandard implements TimeStampFormat
             return BigDecimal.ZERO;
         }
 
+        public void appendValue( CalendarFields t, char decimalSeparator, StringBuilder out )
+        {
+            out.append( getValue( t.timeZone, t.time ) );
+        }
+
         public static TimeZone getTimeZone( String id )
         {
             if ( !recognizedTimeZoneIds.contains( id ) ) throw new IllegalArgumentException( "Unrecognized time-zone id: " + id );
@@ -788,6 +1045,43 @@ public class TimeStampFormatStandard implements TimeStampFormat
             }
         }
 
+        public void appendValue( CalendarFields t, char decimalSeparator, StringBuilder out )
+        {
+            if ( t.second < 10 ) out.append( '0' );
+            out.append( t.second );
+
+            if ( precision < 0 )
+            {
+                // Full precision: the millis, with trailing zeros stripped, always using '.' like toPlainString
+                if ( t.millis != 0 )
+                {
+                    int digits = 3;
+                    int value = t.millis;
+                    while ( value % 10 == 0 )
+                    {
+                        value /= 10;
+                        digits--;
+                    }
+
+                    out.append( '.' );
+                    for ( int i = numDigitsOf( value ); i < digits; i++ )
+                        out.append( '0' );
+                    out.append( value );
+                }
+            }
+            else if ( precision > 0 )
+            {
+                // The millis were already rounded to the requested precision
+                out.append( decimalSeparator );
+                int divisor = 100;
+                for ( int i = 0; i < precision; i++ )
+                {
+                    out.append( i < 3 ? ( char ) ( '0' + ( t.millis / divisor ) % 10 ) : '0' );
+                    divisor /= 10;
+                }
+            }
+        }
+
         public BigDecimal putValue( String valueString, Calendar calendar )
         {
             if ( !isPlainDecimal( valueString ) ) throw new NumberFormatException( "Illegal seconds string: " + valueString );
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.units.time.format;
+
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.metsci.glimpse.util.primitives.IntsArray;
+import com.metsci.glimpse.util.primitives.LongsArray;
+
+/**
+ * Precomputed UTC-offset transitions for a {@link TimeZone}, so that the offset for an instant
+ * can be found with a short array scan instead of a full {@link java.util.Calendar} recompute.
+ * <p>
+ * Time is divided into buckets of about 400 days. The first lookup in a bucket samples the zone's
+ * offset once an hour across the bucket, and locates each change to the millisecond. Buckets are
+ * immutable once built, so lookups are thread-safe and allocation-free. Instants more than a few
+ * centuries from 1970 fall outside the table and are passed straight to the time zone.
+ */
+class ZoneOffsetTable
+{
+    private static final int BUCKET_BITS = 35;
+    private static final int NUM_BUCKETS = 512;
+    private static final long SAMPLE_MILLIS = 60 * 60 * 1000L;
+
+    private final TimeZone timeZone;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    public ZoneOffsetTable( TimeZone timeZone )
+    {
+        this.timeZone = timeZone;
+        this.buckets = new AtomicReferenceArray<Bucket>( NUM_BUCKETS );
+    }
+
+    /**
+     * @return the offset from UTC, in milliseconds, at the given instant
+     */
+    public int getOffset( long posixMillis )
+    {
+        long b = ( posixMillis >> BUCKET_BITS ) + ( NUM_BUCKETS / 2 );
+        if ( b < 0 || b >= NUM_BUCKETS ) return timeZone.getOffset( posixMillis );
+
+        Bucket bucket = buckets.get( ( int ) b );
+        if ( bucket == null )
+        {
+            // Racing threads may both build the bucket, but they will build identical ones
+            bucket = new Bucket( ( b - ( NUM_BUCKETS / 2 ) ) << BUCKET_BITS );
+            buckets.set( ( int ) b, bucket );
+        }
+
+        return bucket.getOffset( posixMillis );
+    }
+
+    private class Bucket
+    {
+        // offsets[i] applies before transitions[i], and the last offset applies after the last transition
+        private final long[] transitions;
+        private final int[] offsets;
+
+        public Bucket( long start )
+        {
+            long end = start + ( 1L << BUCKET_BITS );
+
+            LongsArray transitionsList = new LongsArray( );
+            IntsArray offsetsList = new IntsArray( );
+
+            int prevOffset = timeZone.getOffset( start );
+            offsetsList.append( prevOffset );
+
+            for ( long t = start; t < end; )
+            {
+                long next = Math.min( end - 1, t + SAMPLE_MILLIS );
+                if ( next <= t ) break;
+
+                int nextOffset = timeZone.getOffset( next );
+                if ( nextOffset != prevOffset )
+                {
+                    // Binary search for the first millisecond with the new offset
+                    long lo = t;
+                    long hi = next;
+                    while ( hi - lo > 1 )
+                    {
+                        long mid = lo + ( ( hi - lo ) >> 1 );
+                        if ( timeZone.getOffset( mid ) == prevOffset )
+                            lo = mid;
+                        else
+                            hi = mid;
+                    }
+
+                    transitionsList.append( hi );
+                    offsetsList.append( nextOffset );
+                    prevOffset = nextOffset;
+                }
+
+                t = next;
+            }
+
+            this.transitions = transitionsList.copyOf( );
+            this.offsets = offsetsList.copyOf( );
+        }
+
+        public int getOffset( long posixMillis )
+        {
+            for ( int i = 0; i < transitions.length; i++ )
+            {
+                if ( posixMillis < transitions[i] ) return offsets[i];
+            }
+            return offsets[transitions.length];
+        }
+    }
+}